@@ -0,0 +1,160 @@
+package com.geolud.atomica.benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Measures the bytes allocated by the current thread and the garbage
+ * collections of the whole virtual machine between {@link #start()} and
+ * {@link #stop()}. The allocated bytes are read from the HotSpot specific
+ * ThreadMXBean, which is available in all OpenJDK and Oracle virtual machines.
+ *
+ * @author Georg Ludewig
+ */
+public class AllocationMeter {
+    /**
+     * The bean reporting the bytes allocated by a thread.
+     */
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    /**
+     * The beans of all garbage collectors.
+     */
+    private final List<GarbageCollectorMXBean> collectorBeans;
+
+    /**
+     * The id of the measured thread.
+     */
+    private final long threadId;
+
+    /**
+     * The allocated bytes at the start of the measurement.
+     */
+    private long startBytes;
+
+    /**
+     * The number of collections at the start of the measurement.
+     */
+    private long startCollections;
+
+    /**
+     * The collection time in milliseconds at the start of the measurement.
+     */
+    private long startCollectionTime;
+
+    /**
+     * The bytes allocated during the last measurement.
+     */
+    private long allocatedBytes;
+
+    /**
+     * The number of collections during the last measurement.
+     */
+    private long collections;
+
+    /**
+     * The collection time in milliseconds during the last measurement.
+     */
+    private long collectionTime;
+
+    /**
+     * Creates a meter for the current thread.
+     *
+     * @throws UnsupportedOperationException if the virtual machine can't
+     *                                       measure allocations
+     */
+    public AllocationMeter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory
+                .getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            throw new UnsupportedOperationException(
+                    "Allocation measurement not supported by this VM");
+        }
+
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            throw new UnsupportedOperationException(
+                    "Allocation measurement not supported by this VM");
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        collectorBeans = ManagementFactory.getGarbageCollectorMXBeans();
+        threadId = Thread.currentThread().getId();
+    }
+
+    /**
+     * Starts a measurement.
+     */
+    public void start() {
+        startCollections = sumCollections();
+        startCollectionTime = sumCollectionTime();
+        startBytes = threadBean.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * Ends the measurement started last.
+     */
+    public void stop() {
+        allocatedBytes = threadBean.getThreadAllocatedBytes(threadId)
+                - startBytes;
+        collections = sumCollections() - startCollections;
+        collectionTime = sumCollectionTime() - startCollectionTime;
+    }
+
+    /**
+     * Returns the bytes allocated during the last measurement.
+     *
+     * @return the allocated bytes
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the number of garbage collections during the last measurement.
+     *
+     * @return the number of collections
+     */
+    public long getCollections() {
+        return collections;
+    }
+
+    /**
+     * Returns the time spent in garbage collections during the last
+     * measurement.
+     *
+     * @return the collection time in milliseconds
+     */
+    public long getCollectionTime() {
+        return collectionTime;
+    }
+
+    /**
+     * Sums up the collections of all garbage collectors so far.
+     *
+     * @return the number of collections
+     */
+    private long sumCollections() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : collectorBeans) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+
+        return count;
+    }
+
+    /**
+     * Sums up the collection time of all garbage collectors so far.
+     *
+     * @return the collection time in milliseconds
+     */
+    private long sumCollectionTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : collectorBeans) {
+            time += Math.max(0, bean.getCollectionTime());
+        }
+
+        return time;
+    }
+}
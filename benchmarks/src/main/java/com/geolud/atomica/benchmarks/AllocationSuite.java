@@ -0,0 +1,257 @@
+package com.geolud.atomica.benchmarks;
+
+import com.geolud.atomica.logic.Editor;
+import com.geolud.atomica.logic.MoleculeDetector;
+import com.geolud.atomica.logic.pathfinding.PathFinder;
+import com.geolud.atomica.objects.EditorGameSettings;
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.ui.util.ImageLoader;
+import com.geolud.atomica.ui.util.board.EditorBoardPanel;
+import com.geolud.atomica.util.metrics.AtomicaMetrics;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Measures the memory allocated by the frequent operations of the game and
+ * the garbage collections they cause: one move, one round, one path search
+ * for the hover preview, one molecule detection and one paint of the board.
+ * Each operation is warmed up and then repeated, and the average bytes per
+ * operation are compared with a budget. The process exits with status 1 if a
+ * budget is exceeded, so the suite can guard a build, see the profile
+ * <code>allocation-check</code>.
+ * <p/>
+ * <p>
+ * The budgets are read from <code>allocation-budgets.properties</code> by the
+ * key <code>&lt;operation&gt;.&lt;size&gt;</code>, a system property
+ * <code>budget.&lt;operation&gt;</code> overrides them. An operation without
+ * budget is only reported. The system properties <code>size</code>,
+ * <code>warmup</code> and <code>iterations</code> select the board size and
+ * the number of repetitions before and while measuring. The warm up must be
+ * long enough for the JIT compiler to remove the allocations escape analysis
+ * can prove unnecessary, otherwise the results vary from run to run.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class AllocationSuite {
+    /**
+     * The resource holding the budgets.
+     */
+    private static final String BUDGETS = "/allocation-budgets.properties";
+
+    /**
+     * The share of fields holding an atom for the path search, the detection
+     * and the paint.
+     */
+    private static final double DENSITY = 0.5;
+
+    /**
+     * The number of path queries cycled through.
+     */
+    private static final int QUERIES = 64;
+
+    /**
+     * The width and height of the painted board in pixels.
+     */
+    private static final int PAINT_SIZE = 600;
+
+    /**
+     * An operation whose allocations are measured.
+     */
+    private abstract static class Operation {
+        /**
+         * The name of the operation, also the key of its budget.
+         */
+        private final String name;
+
+        /**
+         * Creates an operation.
+         *
+         * @param name the name of the operation
+         */
+        Operation(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Runs the operation once.
+         */
+        abstract void run();
+    }
+
+    /**
+     * No instances, only static access.
+     */
+    private AllocationSuite() {
+
+    }
+
+    /**
+     * Measures all operations and prints the results.
+     *
+     * @param args not used
+     * @throws IOException if the budgets can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        BoardFixture.silenceLogging();
+        AtomicaMetrics.register();
+        int size = Integer.getInteger("size", 10);
+        int warmup = Integer.getInteger("warmup", 10000);
+        int iterations = Integer.getInteger("iterations", 1000);
+        Properties budgets = loadBudgets();
+        AllocationMeter meter = new AllocationMeter();
+
+        System.out.println("Allocations on a board of " + size + "x" + size
+                + ", " + iterations + " iterations");
+        System.out.println(String.format(Locale.ENGLISH,
+                "%-10s %14s %6s %8s %14s  %s", "operation", "bytes/op", "gcs",
+                "gc ms", "budget", "result"));
+
+        boolean exceeded = false;
+        for (Operation operation : createOperations(size)) {
+            for (int i = 0; i < warmup; i++) {
+                operation.run();
+            }
+
+            meter.start();
+            for (int i = 0; i < iterations; i++) {
+                operation.run();
+            }
+            meter.stop();
+
+            long bytesPerOp = meter.getAllocatedBytes() / iterations;
+            long budget = getBudget(budgets, operation.name, size);
+            String result = "-";
+            if (budget >= 0) {
+                result = bytesPerOp <= budget ? "ok" : "EXCEEDED";
+                exceeded |= bytesPerOp > budget;
+            }
+            System.out.println(String.format(Locale.ENGLISH,
+                    "%-10s %14d %6d %8d %14s  %s", operation.name, bytesPerOp,
+                    meter.getCollections(), meter.getCollectionTime(),
+                    budget >= 0 ? String.valueOf(budget) : "-", result));
+        }
+
+        if (exceeded) {
+            System.out.println("Allocation budget exceeded");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Creates the measured operations.
+     *
+     * @param size the number of columns and rows of the board
+     * @return the operations
+     */
+    private static List<Operation> createOperations(int size) {
+        final GameSituation gameSituation = BoardFixture.createSituation(
+                size, DENSITY, BoardFixture.SEED);
+        List<Operation> operations = new ArrayList<Operation>();
+
+        final RandomPlayer movePlayer = new RandomPlayer(size,
+                BoardFixture.SEED);
+        operations.add(new Operation("move") {
+            @Override
+            void run() {
+                movePlayer.move();
+            }
+        });
+
+        final RandomPlayer roundPlayer = new RandomPlayer(size,
+                BoardFixture.SEED);
+        operations.add(new Operation("round") {
+            @Override
+            void run() {
+                roundPlayer.playRound();
+            }
+        });
+
+        final Field[] queries = BoardFixture.createPathQueries(gameSituation,
+                QUERIES, BoardFixture.SEED);
+        final PathFinder pathFinder = new PathFinder();
+        operations.add(new Operation("path") {
+            private int next = 0;
+
+            @Override
+            void run() {
+                pathFinder.findShortestPath(gameSituation, queries[2 * next],
+                        queries[2 * next + 1]);
+                next = (next + 1) % QUERIES;
+            }
+        });
+
+        operations.add(new Operation("detection") {
+            @Override
+            void run() {
+                new MoleculeDetector(gameSituation).detectMolecules();
+            }
+        });
+
+        ImageLoader.getInstance().awaitLoaded();
+        Editor editor = new Editor(new EditorGameSettings());
+        editor.setSituation(gameSituation);
+        final EditorBoardPanel panel = new EditorBoardPanel(editor);
+        panel.setSize(PAINT_SIZE, PAINT_SIZE);
+        final BufferedImage image = new BufferedImage(PAINT_SIZE, PAINT_SIZE,
+                BufferedImage.TYPE_INT_ARGB);
+        operations.add(new Operation("paint") {
+            @Override
+            void run() {
+                Graphics2D g2 = image.createGraphics();
+                try {
+                    panel.paint(g2);
+                } finally {
+                    g2.dispose();
+                }
+            }
+        });
+
+        return operations;
+    }
+
+    /**
+     * Reads the budgets from the class path.
+     *
+     * @return the budgets, empty if there are none
+     * @throws IOException if the budgets can't be read
+     */
+    private static Properties loadBudgets() throws IOException {
+        Properties budgets = new Properties();
+        InputStream in = AllocationSuite.class.getResourceAsStream(BUDGETS);
+        if (in != null) {
+            try {
+                budgets.load(in);
+            } finally {
+                in.close();
+            }
+        }
+
+        return budgets;
+    }
+
+    /**
+     * Returns the budget of the given operation.
+     *
+     * @param budgets the budgets read from the class path
+     * @param name    the name of the operation
+     * @param size    the number of columns and rows of the board
+     * @return the budget in bytes per operation, -1 if there is none
+     */
+    private static long getBudget(Properties budgets, String name, int size) {
+        String budget = System.getProperty("budget." + name);
+        if (budget == null) {
+            budget = budgets.getProperty(name + "." + size);
+        }
+
+        return budget != null ? Long.parseLong(budget.trim()) : -1;
+    }
+}
@@ -0,0 +1,124 @@
+package com.geolud.atomica.benchmarks;
+
+import com.geolud.atomica.objects.AtomToken;
+import com.geolud.atomica.objects.DefaultGameSettings;
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.GameSettings;
+import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.objects.IndicatorToken;
+import com.geolud.atomica.util.logging.Logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.logging.Level;
+
+/**
+ * Creates reproducible game situations for the benchmarks. A situation is
+ * defined by its board size, the share of fields holding atoms and a seed, so
+ * every run of a benchmark measures exactly the same boards.
+ *
+ * @author Georg Ludewig
+ */
+public final class BoardFixture {
+    /**
+     * The seed used by all benchmarks unless they need several boards.
+     */
+    public static final long SEED = 20080401L;
+
+    /**
+     * The number of colors of the atoms, as in the third default level.
+     */
+    public static final int COLORS = 5;
+
+    /**
+     * No instances, only static access.
+     */
+    private BoardFixture() {
+
+    }
+
+    /**
+     * Turns off the informational logging of the game engine, which would
+     * otherwise dominate the measurements.
+     */
+    public static void silenceLogging() {
+        Logging.getLogger().setLevel(Level.WARNING);
+    }
+
+    /**
+     * Creates settings for a square board of the given size.
+     *
+     * @param size the number of columns and rows
+     * @return the settings
+     */
+    public static GameSettings createSettings(int size) {
+        DefaultGameSettings settings = new DefaultGameSettings();
+        settings.setCols(size);
+        settings.setRows(size);
+        return settings;
+    }
+
+    /**
+     * Creates a square board filled with atoms of random colors on the given
+     * share of its fields, plus one round of indicators on empty fields.
+     *
+     * @param size    the number of columns and rows
+     * @param density the share of fields holding an atom, from 0 to 1
+     * @param seed    the seed of the random placement
+     * @return the game situation
+     */
+    public static GameSituation createSituation(int size, double density,
+                                                long seed) {
+        GameSituation gameSituation = new GameSituation(createSettings(size));
+        Random random = new Random(seed);
+
+        ArrayList<Field> fields = new ArrayList<Field>(size * size);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                fields.add(gameSituation.getField(col, row));
+            }
+        }
+        Collections.shuffle(fields, random);
+
+        int atoms = (int) Math.round(fields.size() * density);
+        atoms = Math.min(atoms, fields.size() - 1);
+        for (int i = 0; i < atoms; i++) {
+            fields.get(i).placeToken(new AtomToken(random.nextInt(COLORS)));
+        }
+
+        int indicators = Math.min(GameSituation.INDICATORS_IN_ROUND,
+                fields.size() - atoms);
+        for (int i = atoms; i < atoms + indicators; i++) {
+            fields.get(i).placeToken(
+                    new IndicatorToken(random.nextInt(COLORS)));
+        }
+
+        return gameSituation;
+    }
+
+    /**
+     * Selects pairs of fields for path queries, each from a field holding an
+     * atom to a field without one.
+     *
+     * @param gameSituation the situation to select the fields of
+     * @param count         the number of pairs
+     * @param seed          the seed of the random selection
+     * @return the pairs, the first field of pair <code>i</code> at
+     * <code>2 * i</code> and the second at <code>2 * i + 1</code>
+     */
+    public static Field[] createPathQueries(GameSituation gameSituation,
+                                            int count, long seed) {
+        Random random = new Random(seed);
+        ArrayList<AtomToken> atoms = gameSituation.getAtoms();
+        ArrayList<Field> empty = gameSituation.getEmptyFields(true);
+
+        Field[] queries = new Field[2 * count];
+        for (int i = 0; i < count; i++) {
+            queries[2 * i] = atoms.get(random.nextInt(atoms.size())).getField();
+            queries[2 * i + 1] = empty.get(random.nextInt(empty.size()));
+        }
+
+        return queries;
+    }
+}
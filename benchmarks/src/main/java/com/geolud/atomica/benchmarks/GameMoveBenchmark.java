@@ -0,0 +1,66 @@
+package com.geolud.atomica.benchmarks;
+
+import com.geolud.atomica.logic.Game;
+import com.geolud.atomica.objects.AtomToken;
+import com.geolud.atomica.objects.Field;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Game#moveAtomToken(AtomToken, Field)} end to end: finding
+ * the path, detecting molecules, scoring and starting the next round. Random
+ * atoms are moved to random fields of a seeded game; a finished game is
+ * replaced by a new one with the next seed, which is part of the measurement
+ * but rare.
+ *
+ * @author Georg Ludewig
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameMoveBenchmark {
+    /**
+     * The number of columns and rows of the board.
+     */
+    @Param({"10", "20", "30", "60"})
+    public int size;
+
+    /**
+     * The player moving the atoms.
+     */
+    private RandomPlayer player;
+
+    /**
+     * Starts the first game.
+     */
+    @Setup
+    public void setUp() {
+        BoardFixture.silenceLogging();
+        player = new RandomPlayer(size, BoardFixture.SEED);
+    }
+
+    /**
+     * Moves a random atom to a random field without an atom. The move fails
+     * if there is no path.
+     *
+     * @return true if the atom was moved
+     */
+    @Benchmark
+    public boolean moveAtomToken() {
+        return player.move();
+    }
+}
@@ -0,0 +1,102 @@
+package com.geolud.atomica.benchmarks;
+
+import com.geolud.atomica.objects.AtomToken;
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.objects.IndicatorToken;
+import com.geolud.atomica.objects.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the list getters of GameSituation, which the game calls several
+ * times per move.
+ *
+ * @author Georg Ludewig
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameSituationBenchmark {
+    /**
+     * The number of columns and rows of the board.
+     */
+    @Param({"10", "20", "30", "60"})
+    public int size;
+
+    /**
+     * The share of fields holding an atom.
+     */
+    @Param({"0.2", "0.5", "0.8"})
+    public double density;
+
+    /**
+     * The board.
+     */
+    private GameSituation gameSituation;
+
+    /**
+     * Creates the board.
+     */
+    @Setup
+    public void setUp() {
+        BoardFixture.silenceLogging();
+        gameSituation = BoardFixture.createSituation(size, density,
+                BoardFixture.SEED);
+    }
+
+    /**
+     * Collects all atoms.
+     *
+     * @return the atoms
+     */
+    @Benchmark
+    public ArrayList<AtomToken> getAtoms() {
+        return gameSituation.getAtoms();
+    }
+
+    /**
+     * Collects all fields without an atom.
+     *
+     * @return the fields
+     */
+    @Benchmark
+    public ArrayList<Field> getEmptyFields() {
+        return gameSituation.getEmptyFields(true);
+    }
+
+    /**
+     * Collects all indicators.
+     *
+     * @return the indicators
+     */
+    @Benchmark
+    public ArrayList<IndicatorToken> getIndicators() {
+        return gameSituation.getIndicators();
+    }
+
+    /**
+     * Collects all tokens.
+     *
+     * @return the tokens
+     */
+    @Benchmark
+    public ArrayList<Token> getTokens() {
+        return gameSituation.getTokens();
+    }
+}
@@ -0,0 +1,255 @@
+package com.geolud.atomica.benchmarks;
+
+import com.geolud.atomica.server.GameServer;
+import com.geolud.atomica.util.metrics.AtomicaMetrics;
+import com.geolud.atomica.util.metrics.LogHistogram;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the game server with simulated clients on the local host to find the
+ * number of sessions at which the move latency degrades. The clients are
+ * added in stages; in each stage every client moves at the configured rate
+ * and the end-to-end latency of the moves and the throughput are reported.
+ * All clients are driven by a single thread through a selector.
+ * <p/>
+ * <p>
+ * System properties:
+ * <ul>
+ * <li><code>clients</code> the number of clients of the stages, comma
+ * separated (default 10,100,1000)</li>
+ * <li><code>rate</code> the moves per second of a client (default 2)</li>
+ * <li><code>duration</code> the seconds a stage is measured (default 10)</li>
+ * <li><code>warmup</code> the seconds before a stage is measured (default
+ * 2)</li>
+ * <li><code>size</code> the number of columns and rows of the games (default
+ * 10)</li>
+ * <li><code>port</code> the port of a running server; without it a server is
+ * started in this process</li>
+ * </ul>
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class LoadGenerator {
+    /**
+     * The longest time the selector waits for answers in milliseconds.
+     */
+    private static final long MAX_WAIT = 10;
+
+    /**
+     * The selector serving all clients.
+     */
+    private final Selector selector;
+
+    /**
+     * The address of the server.
+     */
+    private final InetSocketAddress address;
+
+    /**
+     * The number of columns and rows of the games.
+     */
+    private final int size;
+
+    /**
+     * The time between two moves of a client in nanoseconds.
+     */
+    private final long interval;
+
+    /**
+     * All connected clients.
+     */
+    private final List<SimulatedClient> clients = new ArrayList<SimulatedClient>();
+
+    /**
+     * The idle clients ordered by the time they are due.
+     */
+    private final PriorityQueue<SimulatedClient> idle = new PriorityQueue<SimulatedClient>();
+
+    /**
+     * The moves of the current stage.
+     */
+    private final LoadStats stats = new LoadStats();
+
+    /**
+     * Creates a generator for the given server.
+     *
+     * @param address the address of the server
+     * @param size    the number of columns and rows of the games
+     * @param rate    the moves per second of a client
+     * @throws IOException if the selector can't be opened
+     */
+    public LoadGenerator(InetSocketAddress address, int size, double rate)
+            throws IOException {
+        this.selector = Selector.open();
+        this.address = address;
+        this.size = size;
+        this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+    }
+
+    /**
+     * Connects further clients, each starting a game. Their first moves are
+     * spread over one interval.
+     *
+     * @param count the total number of clients
+     * @throws IOException if a client can't connect
+     */
+    public void addClients(int count) throws IOException {
+        long now = System.nanoTime();
+        for (int i = clients.size(); i < count; i++) {
+            SimulatedClient client = new SimulatedClient(address, size,
+                    BoardFixture.SEED + i);
+            client.getChannel().register(selector, SelectionKey.OP_READ,
+                    client);
+            client.setDue(now + interval * i / count);
+            client.startGame();
+            clients.add(client);
+        }
+    }
+
+    /**
+     * Lets the clients move for the given time.
+     *
+     * @param nanos the time in nanoseconds
+     * @throws IOException if a client loses its connection
+     */
+    public void run(long nanos) throws IOException {
+        long end = System.nanoTime() + nanos;
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            SimulatedClient next;
+            while ((next = idle.peek()) != null && next.getDue() <= now) {
+                idle.poll();
+                next.move();
+            }
+
+            long wait = next == null ? MAX_WAIT : Math.min(MAX_WAIT,
+                    TimeUnit.NANOSECONDS.toMillis(next.getDue() - now));
+            if (wait > 0) {
+                selector.select(wait);
+            } else {
+                selector.selectNow();
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                SimulatedClient client = (SimulatedClient) key.attachment();
+                if (client.read(stats)) {
+                    schedule(client);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the moves recorded since the last reset.
+     *
+     * @return the statistics of the moves
+     */
+    public LoadStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Closes all clients.
+     */
+    public void close() {
+        for (SimulatedClient client : clients) {
+            client.close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    /**
+     * Queues an idle client for its next move. A client which has fallen
+     * behind moves at once but does not try to catch up.
+     *
+     * @param client the idle client
+     */
+    private void schedule(SimulatedClient client) {
+        long now = System.nanoTime();
+        long due = client.getDue() + interval;
+        client.setDue(due < now - interval ? now : due);
+        idle.add(client);
+    }
+
+    /**
+     * Runs the stages and prints a line per stage.
+     *
+     * @param args not used
+     * @throws IOException if the clients or the server fail
+     */
+    public static void main(String[] args) throws IOException {
+        BoardFixture.silenceLogging();
+        int size = Integer.getInteger("size", 10);
+        double rate = Double.parseDouble(System.getProperty("rate", "2"));
+        long duration = TimeUnit.SECONDS.toNanos(Integer.getInteger(
+                "duration", 10));
+        long warmup = TimeUnit.SECONDS.toNanos(Integer.getInteger("warmup", 2));
+        String[] stages = System.getProperty("clients", "10,100,1000").split(
+                ",");
+
+        GameServer server = null;
+        int port = Integer.getInteger("port", 0);
+        if (port == 0) {
+            AtomicaMetrics.register();
+            server = new GameServer(0, Runtime.getRuntime()
+                    .availableProcessors(), Integer.MAX_VALUE);
+            server.start();
+            port = server.getPort();
+        }
+
+        LoadGenerator generator = new LoadGenerator(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), port), size, rate);
+        System.out.println("Moves on boards of " + size + "x" + size + " at "
+                + rate + " moves/s per client against port " + port);
+        System.out.println(String.format(Locale.ENGLISH,
+                "%8s %10s %10s %10s %10s %10s %10s %8s %8s", "clients",
+                "moves/s", "mean us", "p50 us", "p90 us", "p99 us", "max us",
+                "rejected", "restarts"));
+
+        try {
+            for (String stage : stages) {
+                int count = Integer.parseInt(stage.trim());
+                generator.addClients(count);
+                generator.run(warmup);
+                generator.getStats().reset();
+                generator.run(duration);
+
+                LoadStats stats = generator.getStats();
+                LogHistogram latency = stats.getLatency();
+                System.out.println(String.format(Locale.ENGLISH,
+                        "%8d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f %8d %8d",
+                        count, latency.getCount() * 1e9 / duration,
+                        latency.getMean() / 1000.0,
+                        latency.getValueAtPercentile(50) / 1000.0,
+                        latency.getValueAtPercentile(90) / 1000.0,
+                        latency.getValueAtPercentile(99) / 1000.0,
+                        latency.getMax() / 1000.0, stats.getRejected(),
+                        stats.getRestarts()));
+            }
+        } finally {
+            generator.close();
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+}
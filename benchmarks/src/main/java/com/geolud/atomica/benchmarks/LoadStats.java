@@ -0,0 +1,82 @@
+package com.geolud.atomica.benchmarks;
+
+import com.geolud.atomica.util.metrics.LogHistogram;
+
+/**
+ * Collects the moves of the simulated clients during one stage of the
+ * LoadGenerator. Only used by the thread driving the clients.
+ *
+ * @author Georg Ludewig
+ */
+public class LoadStats {
+    /**
+     * The end-to-end latencies of the moves in nanoseconds.
+     */
+    private final LogHistogram latency = new LogHistogram("move", true);
+
+    /**
+     * The number of moves rejected by the server.
+     */
+    private long rejected = 0;
+
+    /**
+     * The number of games started because the previous one was over.
+     */
+    private long restarts = 0;
+
+    /**
+     * Records an answered move.
+     *
+     * @param nanos    the time from sending the move until its answer
+     * @param accepted false if the server rejected the move
+     */
+    public void moved(long nanos, boolean accepted) {
+        latency.record(nanos);
+        if (!accepted) {
+            rejected++;
+        }
+    }
+
+    /**
+     * Records a game started because the previous one was over.
+     */
+    public void restarted() {
+        restarts++;
+    }
+
+    /**
+     * Returns the latencies of the moves.
+     *
+     * @return the histogram of the latencies in nanoseconds
+     */
+    public LogHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the number of moves rejected by the server.
+     *
+     * @return the number of rejected moves
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Returns the number of games started because the previous one was over.
+     *
+     * @return the number of restarted games
+     */
+    public long getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * Discards everything recorded so far.
+     */
+    public void reset() {
+        latency.reset();
+        rejected = 0;
+        restarts = 0;
+    }
+}
@@ -0,0 +1,70 @@
+package com.geolud.atomica.benchmarks;
+
+import com.geolud.atomica.logic.MoleculeDetector;
+import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.objects.Molecule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MoleculeDetector#detectMolecules()} scanning a whole board.
+ * A new detector is created per scan, as the game does.
+ *
+ * @author Georg Ludewig
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoleculeDetectorBenchmark {
+    /**
+     * The number of columns and rows of the board.
+     */
+    @Param({"10", "20", "30", "60"})
+    public int size;
+
+    /**
+     * The share of fields holding an atom.
+     */
+    @Param({"0.2", "0.5", "0.8"})
+    public double density;
+
+    /**
+     * The board.
+     */
+    private GameSituation gameSituation;
+
+    /**
+     * Creates the board.
+     */
+    @Setup
+    public void setUp() {
+        BoardFixture.silenceLogging();
+        gameSituation = BoardFixture.createSituation(size, density,
+                BoardFixture.SEED);
+    }
+
+    /**
+     * Detects all molecules of the board.
+     *
+     * @return the detected molecules
+     */
+    @Benchmark
+    public ArrayList<Molecule> detectMolecules() {
+        return new MoleculeDetector(gameSituation).detectMolecules();
+    }
+}
@@ -0,0 +1,97 @@
+package com.geolud.atomica.benchmarks;
+
+import com.geolud.atomica.logic.pathfinding.Path;
+import com.geolud.atomica.logic.pathfinding.PathFinder;
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.GameSituation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PathFinder#findShortestPath(GameSituation, Field, Field)}
+ * for a fixed set of queries from an atom to an empty field. Queries without
+ * a path are included, as they explore the whole reachable area.
+ *
+ * @author Georg Ludewig
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathFinderBenchmark {
+    /**
+     * The number of queries cycled through.
+     */
+    private static final int QUERIES = 64;
+
+    /**
+     * The number of columns and rows of the board.
+     */
+    @Param({"10", "20", "30", "60"})
+    public int size;
+
+    /**
+     * The share of fields holding an atom.
+     */
+    @Param({"0.2", "0.5", "0.8"})
+    public double density;
+
+    /**
+     * The board.
+     */
+    private GameSituation gameSituation;
+
+    /**
+     * The queries, see BoardFixture#createPathQueries.
+     */
+    private Field[] queries;
+
+    /**
+     * The path finder, reused as by a game.
+     */
+    private PathFinder pathFinder;
+
+    /**
+     * The index of the next query.
+     */
+    private int next = 0;
+
+    /**
+     * Creates the board and the queries.
+     */
+    @Setup
+    public void setUp() {
+        BoardFixture.silenceLogging();
+        gameSituation = BoardFixture.createSituation(size, density,
+                BoardFixture.SEED);
+        queries = BoardFixture.createPathQueries(gameSituation, QUERIES,
+                BoardFixture.SEED);
+        pathFinder = new PathFinder();
+    }
+
+    /**
+     * Finds the path of the next query.
+     *
+     * @return the path, null if there is none
+     */
+    @Benchmark
+    public Path findShortestPath() {
+        int query = next;
+        next = (next + 1) % QUERIES;
+        return pathFinder.findShortestPath(gameSituation, queries[2 * query],
+                queries[2 * query + 1]);
+    }
+}
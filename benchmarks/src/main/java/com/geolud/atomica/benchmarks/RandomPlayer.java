@@ -0,0 +1,101 @@
+package com.geolud.atomica.benchmarks;
+
+import com.geolud.atomica.logic.Game;
+import com.geolud.atomica.objects.AtomToken;
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.GameSituation;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Plays reproducible games by moving random atoms to random fields. A
+ * finished game is replaced by a new one with the next seed.
+ *
+ * @author Georg Ludewig
+ */
+public class RandomPlayer {
+    /**
+     * The number of columns and rows of the board.
+     */
+    private final int size;
+
+    /**
+     * Selects the atoms and destinations of the moves.
+     */
+    private final Random random;
+
+    /**
+     * The seed of the next game.
+     */
+    private long seed;
+
+    /**
+     * The current game.
+     */
+    private Game game;
+
+    /**
+     * Creates a player and starts its first game.
+     *
+     * @param size the number of columns and rows of the board
+     * @param seed the seed of the moves and the first game
+     */
+    public RandomPlayer(int size, long seed) {
+        this.size = size;
+        this.random = new Random(seed);
+        this.seed = seed;
+        startGame();
+    }
+
+    /**
+     * Returns the current game.
+     *
+     * @return the current game
+     */
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * Moves a random atom to a random field without an atom. The move fails
+     * if there is no path.
+     *
+     * @return true if the atom was moved
+     */
+    public boolean move() {
+        if (game.getIsGameOver()) {
+            startGame();
+        }
+
+        GameSituation gameSituation = game.getSituation();
+        ArrayList<AtomToken> atoms = gameSituation.getAtoms();
+        ArrayList<Field> empty = gameSituation.getEmptyFields(true);
+        return game.moveAtomToken(atoms.get(random.nextInt(atoms.size())),
+                empty.get(random.nextInt(empty.size())));
+    }
+
+    /**
+     * Moves until a move starts a new round, which turns the indicators into
+     * atoms.
+     *
+     * @return the number of moves tried
+     */
+    public int playRound() {
+        int moves = 0;
+        do {
+            moves++;
+        } while (!move() || game.getLastMoveResult().getTransformedCount() == 0);
+
+        return moves;
+    }
+
+    /**
+     * Starts a new game with the next seed.
+     */
+    private void startGame() {
+        game = new Game(BoardFixture.createSettings(size));
+        game.setSeed(seed++);
+        game.start();
+    }
+}
@@ -0,0 +1,255 @@
+package com.geolud.atomica.benchmarks;
+
+import com.geolud.atomica.logic.Editor;
+import com.geolud.atomica.logic.Editor.EditorMode;
+import com.geolud.atomica.logic.Game;
+import com.geolud.atomica.logic.GameController;
+import com.geolud.atomica.logic.pathfinding.Path;
+import com.geolud.atomica.logic.pathfinding.PathFinder;
+import com.geolud.atomica.objects.EditorGameSettings;
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.ui.util.ImageLoader;
+import com.geolud.atomica.ui.util.board.EditorBoardPanel;
+import com.geolud.atomica.ui.util.board.GameBoardPanel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JComponent;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures painting a whole frame of the game board and the editor board into
+ * an offscreen image, without a display. With <code>overlay</code> the game
+ * board shows a selected atom, the highlighted cursor field and the shortest
+ * path between them, and the editor board an atom being moved to the cursor
+ * field. The boards are painted by <code>paint</code> as by the
+ * RepaintManager, so the paint diagnostics are part of the measurement.
+ *
+ * @author Georg Ludewig
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+    /**
+     * The share of fields holding an atom.
+     */
+    private static final double DENSITY = 0.5;
+
+    /**
+     * The number of path queries tried for finding a path to display.
+     */
+    private static final int QUERIES = 64;
+
+    /**
+     * The number of columns and rows of the board.
+     */
+    @Param({"10", "20", "30", "60"})
+    public int size;
+
+    /**
+     * The width and height of the panels in pixels.
+     */
+    @Param({"300", "600", "1200"})
+    public int pixels;
+
+    /**
+     * Flag which indicates that selection, cursor and path are painted.
+     */
+    @Param({"false", "true"})
+    public boolean overlay;
+
+    /**
+     * The game board.
+     */
+    private BenchmarkGameBoard gameBoard;
+
+    /**
+     * The editor board.
+     */
+    private BenchmarkEditorBoard editorBoard;
+
+    /**
+     * The image painted into.
+     */
+    private BufferedImage image;
+
+    /**
+     * Game board whose selection and cursor are set directly instead of by
+     * the mouse.
+     */
+    @SuppressWarnings("serial")
+    static class BenchmarkGameBoard extends GameBoardPanel {
+        /**
+         * Creates the board.
+         *
+         * @param controller the controller of a game
+         */
+        BenchmarkGameBoard(GameController controller) {
+            super(controller);
+        }
+
+        /**
+         * Selects the atom at the start of the given path and moves the
+         * cursor to its end.
+         *
+         * @param path the path to display
+         */
+        void select(Path path) {
+            Field from = path.get(0);
+            Field to = path.get(path.size() - 1);
+            token2MoveCell = getCellIndex(from.getCol(), from.getRow());
+            cursorCell = getCellIndex(to.getCol(), to.getRow());
+            update(null, path);
+        }
+    }
+
+    /**
+     * Editor board whose cursor is set directly instead of by the mouse.
+     */
+    @SuppressWarnings("serial")
+    static class BenchmarkEditorBoard extends EditorBoardPanel {
+        /**
+         * Creates the board.
+         *
+         * @param editor the editor
+         */
+        BenchmarkEditorBoard(Editor editor) {
+            super(editor);
+        }
+
+        /**
+         * Moves the cursor to the given field.
+         *
+         * @param field the field
+         */
+        void hover(Field field) {
+            cursorCell = getCellIndex(field.getCol(), field.getRow());
+        }
+    }
+
+    /**
+     * Creates the boards for the same situation and waits for the images.
+     */
+    @Setup
+    public void setUp() {
+        BoardFixture.silenceLogging();
+        ImageLoader.getInstance().awaitLoaded();
+
+        GameSituation gameSituation = BoardFixture.createSituation(size,
+                DENSITY, BoardFixture.SEED);
+        Path path = findPath(gameSituation);
+
+        gameBoard = new BenchmarkGameBoard(new GameController(new Game(
+                gameSituation)));
+        layout(gameBoard);
+
+        Editor editor = new Editor(new EditorGameSettings());
+        editor.setSituation(gameSituation);
+        editorBoard = new BenchmarkEditorBoard(editor);
+        layout(editorBoard);
+
+        if (overlay) {
+            gameBoard.select(path);
+            editor.setMode(EditorMode.MOVE);
+            editor.setToken2Move(path.get(0).getToken());
+            editorBoard.hover(path.get(path.size() - 1));
+        }
+
+        image = new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Paints a frame of the game board.
+     *
+     * @return the image painted into
+     */
+    @Benchmark
+    public BufferedImage paintGameBoard() {
+        return paint(gameBoard);
+    }
+
+    /**
+     * Paints a frame of the editor board.
+     *
+     * @return the image painted into
+     */
+    @Benchmark
+    public BufferedImage paintEditorBoard() {
+        return paint(editorBoard);
+    }
+
+    /**
+     * Paints the given panel into the image.
+     *
+     * @param panel the panel
+     * @return the image painted into
+     */
+    private BufferedImage paint(JComponent panel) {
+        Graphics2D g2 = image.createGraphics();
+        try {
+            panel.paint(g2);
+        } finally {
+            g2.dispose();
+        }
+
+        return image;
+    }
+
+    /**
+     * Gives the panel its size.
+     *
+     * @param panel the panel
+     */
+    private void layout(JComponent panel) {
+        panel.setSize(pixels, pixels);
+        panel.doLayout();
+    }
+
+    /**
+     * Finds the longest of the fixture's path queries ending on a field
+     * without indicator, so the overlay has a path and the editor a field to
+     * move the atom to.
+     *
+     * @param gameSituation the board
+     * @return the path
+     * @throws IllegalStateException if no query has a path
+     */
+    private static Path findPath(GameSituation gameSituation) {
+        Field[] queries = BoardFixture.createPathQueries(gameSituation,
+                QUERIES, BoardFixture.SEED);
+        PathFinder pathFinder = new PathFinder();
+
+        Path longest = null;
+        for (int i = 0; i < QUERIES; i++) {
+            Path path = pathFinder.findShortestPath(gameSituation,
+                    queries[2 * i], queries[2 * i + 1]);
+            if (path != null && path.get(path.size() - 1).getToken() == null
+                    && (longest == null
+                    || path.size() > longest.size())) {
+                longest = path;
+            }
+        }
+
+        if (longest == null) {
+            throw new IllegalStateException("No path on the board");
+        }
+
+        return longest;
+    }
+}
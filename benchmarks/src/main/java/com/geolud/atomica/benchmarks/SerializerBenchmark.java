@@ -0,0 +1,129 @@
+package com.geolud.atomica.benchmarks;
+
+import com.geolud.atomica.logic.GameSituationCodec;
+import com.geolud.atomica.logic.GameSituationSerializer;
+import com.geolud.atomica.objects.GameSituation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures saving and loading game situations, both in memory by the
+ * GameSituationCodec and through a file by the GameSituationSerializer. The
+ * file round trip includes storing the last used path in the user
+ * preferences, as the game does.
+ *
+ * @author Georg Ludewig
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+    /**
+     * The number of columns and rows of the board.
+     */
+    @Param({"10", "20", "30", "60"})
+    public int size;
+
+    /**
+     * The share of fields holding an atom.
+     */
+    @Param({"0.2", "0.5", "0.8"})
+    public double density;
+
+    /**
+     * The situation to save.
+     */
+    private GameSituation gameSituation;
+
+    /**
+     * The encoded situation to decode.
+     */
+    private ByteBuffer encoded;
+
+    /**
+     * The serializer.
+     */
+    private GameSituationSerializer serializer;
+
+    /**
+     * The file of the file round trip.
+     */
+    private File file;
+
+    /**
+     * Creates the situation and the file.
+     *
+     * @throws IOException if the file can't be created
+     */
+    @Setup
+    public void setUp() throws IOException {
+        BoardFixture.silenceLogging();
+        gameSituation = BoardFixture.createSituation(size, density,
+                BoardFixture.SEED);
+        encoded = GameSituationCodec.encode(gameSituation);
+        serializer = new GameSituationSerializer();
+        file = File.createTempFile("atomica-benchmark", ".atomica");
+    }
+
+    /**
+     * Deletes the file.
+     */
+    @TearDown
+    public void tearDown() {
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Encodes the situation.
+     *
+     * @return the encoded situation
+     */
+    @Benchmark
+    public ByteBuffer encode() {
+        return GameSituationCodec.encode(gameSituation);
+    }
+
+    /**
+     * Decodes the situation.
+     *
+     * @return the decoded situation
+     * @throws IOException if decoding fails
+     */
+    @Benchmark
+    public GameSituation decode() throws IOException {
+        return GameSituationCodec.decode(encoded.duplicate());
+    }
+
+    /**
+     * Saves the situation into the file and loads it again.
+     *
+     * @return the loaded situation
+     * @throws IOException if saving or loading fails
+     */
+    @Benchmark
+    public GameSituation saveAndLoad() throws IOException {
+        String path = file.getAbsolutePath();
+        serializer.save(GameSituationCodec.encode(gameSituation), path, null);
+        return serializer.load(path, null);
+    }
+}
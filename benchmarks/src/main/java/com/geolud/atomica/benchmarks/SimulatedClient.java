@@ -0,0 +1,356 @@
+package com.geolud.atomica.benchmarks;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A client of the game server driven by the LoadGenerator. When it is due it
+ * requests the board, picks a random atom and a random field the atom can
+ * reach and sends the move. The time from sending the move until its answer
+ * arrives is recorded. A finished game is replaced by a new one.
+ *
+ * @author Georg Ludewig
+ */
+public class SimulatedClient implements Comparable<SimulatedClient> {
+    /**
+     * The state of a client waiting until it is due.
+     */
+    private static final int IDLE = 0;
+
+    /**
+     * The state of a client waiting for a new game.
+     */
+    private static final int AWAIT_GAME = 1;
+
+    /**
+     * The state of a client waiting for the board.
+     */
+    private static final int AWAIT_BOARD = 2;
+
+    /**
+     * The state of a client waiting for the answer to a move.
+     */
+    private static final int AWAIT_MOVE = 3;
+
+    /**
+     * The number of atoms tried before a new game is started.
+     */
+    private static final int ATTEMPTS = 8;
+
+    /**
+     * The channel connected to the server.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * The number of columns and rows of the games.
+     */
+    private final int size;
+
+    /**
+     * The random generator for the moves and the seeds of the games.
+     */
+    private final Random random;
+
+    /**
+     * The received bytes not yet taken as lines.
+     */
+    private final ByteBuffer input;
+
+    /**
+     * The board as last received, row by row.
+     */
+    private final char[] board;
+
+    /**
+     * The fields reachable from the atom to move, reused for every move.
+     */
+    private final int[] reachable;
+
+    /**
+     * Marks the fields found by the search for reachable fields.
+     */
+    private final boolean[] visited;
+
+    /**
+     * The current state.
+     */
+    private int state = IDLE;
+
+    /**
+     * The time the client is due to move next in nanoseconds.
+     */
+    private long due = 0;
+
+    /**
+     * The time the pending move was sent in nanoseconds.
+     */
+    private long sentAt = 0;
+
+    /**
+     * Connects a client to the server.
+     *
+     * @param address the address of the server
+     * @param size    the number of columns and rows of the games
+     * @param seed    the seed of the random moves
+     * @throws IOException if the server can't be connected to
+     */
+    public SimulatedClient(InetSocketAddress address, int size, long seed)
+            throws IOException {
+        this.channel = SocketChannel.open(address);
+        this.size = size;
+        this.random = new Random(seed);
+        this.input = ByteBuffer.allocate(size * size + 64);
+        this.board = new char[size * size];
+        this.reachable = new int[size * size];
+        this.visited = new boolean[size * size];
+
+        channel.socket().setTcpNoDelay(true);
+        channel.configureBlocking(false);
+    }
+
+    /**
+     * Returns the channel connected to the server.
+     *
+     * @return the channel
+     */
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns the time the client is due to move next.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getDue() {
+        return due;
+    }
+
+    /**
+     * Sets the time the client is due to move next.
+     *
+     * @param due the time in nanoseconds
+     */
+    public void setDue(long due) {
+        this.due = due;
+    }
+
+    /**
+     * Orders the clients by the time they are due.
+     *
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    public int compareTo(SimulatedClient other) {
+        return due < other.due ? -1 : (due == other.due ? 0 : 1);
+    }
+
+    /**
+     * Starts a new game. The client is idle when its answer was received.
+     *
+     * @throws IOException if the command can't be sent
+     */
+    public void startGame() throws IOException {
+        state = AWAIT_GAME;
+        send("NEW " + size + " " + size + " " + random.nextLong());
+    }
+
+    /**
+     * Starts the next move by requesting the board. Must only be called on
+     * an idle client.
+     *
+     * @throws IOException if the command can't be sent
+     */
+    public void move() throws IOException {
+        state = AWAIT_BOARD;
+        send("BOARD");
+    }
+
+    /**
+     * Reads the answers of the server and continues the move.
+     *
+     * @param stats receives the latency of a finished move
+     * @return true if the client became idle
+     * @throws IOException if the server closed the connection
+     */
+    public boolean read(LoadStats stats) throws IOException {
+        if (channel.read(input) < 0) {
+            throw new IOException("Connection closed by server");
+        }
+
+        boolean idle = false;
+        byte[] bytes = input.array();
+        int start = 0;
+        int end = input.position();
+        for (int i = 0; i < end; i++) {
+            if (bytes[i] == '\n') {
+                idle |= answer(new String(bytes, start, i - start,
+                        StandardCharsets.US_ASCII), stats);
+                start = i + 1;
+            }
+        }
+        System.arraycopy(bytes, start, bytes, 0, end - start);
+        input.position(end - start);
+
+        return idle;
+    }
+
+    /**
+     * Closes the connection.
+     */
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    /**
+     * Handles an answer of the server.
+     *
+     * @param line  the answer
+     * @param stats receives the latency of a finished move
+     * @return true if the client became idle
+     * @throws IOException if the next command can't be sent
+     */
+    private boolean answer(String line, LoadStats stats) throws IOException {
+        switch (state) {
+            case AWAIT_GAME:
+                state = IDLE;
+                return true;
+            case AWAIT_BOARD:
+                long move = line.startsWith("BOARD ") ? chooseMove(line) : -1;
+                if (move < 0) {
+                    stats.restarted();
+                    startGame();
+                } else {
+                    state = AWAIT_MOVE;
+                    sentAt = System.nanoTime();
+                    int from = (int) (move >>> 32);
+                    int to = (int) move;
+                    send("MOVE " + from % size + " " + from / size + " " + to
+                            % size + " " + to / size);
+                }
+                return false;
+            case AWAIT_MOVE:
+                stats.moved(System.nanoTime() - sentAt, line.startsWith("OK"));
+                // OK score level molecules gameOver steps
+                String[] words = line.split(" ");
+                if (words.length > 4 && "1".equals(words[4])) {
+                    stats.restarted();
+                    startGame();
+                    return false;
+                }
+                state = IDLE;
+                return true;
+            default:
+                throw new IOException("Unexpected answer " + line);
+        }
+    }
+
+    /**
+     * Chooses a random atom and a random field it can reach.
+     *
+     * @param line the answer to the board request
+     * @return the index of the atom in the upper and the index of the field
+     * in the lower 32 bits, -1 if no atom can move
+     */
+    private long chooseMove(String line) {
+        int cells = line.lastIndexOf(' ') + 1;
+        line.getChars(cells, cells + board.length, board, 0);
+
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            int from = random.nextInt(board.length);
+            while (from < board.length && !isAtom(from)) {
+                from++;
+            }
+            if (from == board.length) {
+                continue;
+            }
+
+            int count = findReachable(from);
+            if (count > 0) {
+                return (long) from << 32 | reachable[random.nextInt(count)];
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the fields an atom can reach by a breadth first search, moving
+     * horizontally and vertically across fields without atoms.
+     *
+     * @param from the index of the atom
+     * @return the number of reachable fields, stored in front of reachable
+     */
+    private int findReachable(int from) {
+        Arrays.fill(visited, false);
+        visited[from] = true;
+        reachable[0] = from;
+        int head = 0;
+        int count = 1;
+        while (head < count) {
+            int cell = reachable[head++];
+            int col = cell % size;
+            count = visit(cell - size, cell >= size, count);
+            count = visit(cell + size, cell + size < board.length, count);
+            count = visit(cell - 1, col > 0, count);
+            count = visit(cell + 1, col < size - 1, count);
+        }
+
+        // drop the atom itself
+        System.arraycopy(reachable, 1, reachable, 0, count - 1);
+        return count - 1;
+    }
+
+    /**
+     * Adds a neighbour to the search if it is free and not yet visited.
+     *
+     * @param cell   the index of the neighbour
+     * @param inside true if the neighbour is on the board
+     * @param count  the number of fields found so far
+     * @return the new number of fields found
+     */
+    private int visit(int cell, boolean inside, int count) {
+        if (inside && !visited[cell] && !isAtom(cell)) {
+            visited[cell] = true;
+            reachable[count++] = cell;
+        }
+
+        return count;
+    }
+
+    /**
+     * Indicates if a field holds an atom.
+     *
+     * @param cell the index of the field
+     * @return true if the field holds an atom
+     */
+    private boolean isAtom(int cell) {
+        return board[cell] >= 'A' && board[cell] <= 'Z';
+    }
+
+    /**
+     * Sends a command. The command is short, so the channel takes it at once
+     * unless the server stopped reading.
+     *
+     * @param command the command without line terminator
+     * @throws IOException if the command can't be sent
+     */
+    private void send(String command) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((command + "\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) == 0) {
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.geolud.atomica.logic;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of cells, each defined by a column, a row and a color
+ * index. Used for recording what happened on the board during a move without
+ * creating an object per cell. It can be cleared and reused.
+ *
+ * @author Georg Ludewig
+ */
+class CellList {
+    /**
+     * The columns of the cells.
+     */
+    private int[] cols = new int[16];
+
+    /**
+     * The rows of the cells.
+     */
+    private int[] rows = new int[16];
+
+    /**
+     * The color indices of the cells.
+     */
+    private int[] colors = new int[16];
+
+    /**
+     * The number of cells in the list.
+     */
+    private int size = 0;
+
+    /**
+     * Appends a cell to the list.
+     *
+     * @param col        the column of the cell
+     * @param row        the row of the cell
+     * @param colorIndex the color index of the token on the cell
+     */
+    void add(int col, int row, int colorIndex) {
+        if (size == cols.length) {
+            cols = Arrays.copyOf(cols, size * 2);
+            rows = Arrays.copyOf(rows, size * 2);
+            colors = Arrays.copyOf(colors, size * 2);
+        }
+
+        cols[size] = col;
+        rows[size] = row;
+        colors[size] = colorIndex;
+        size++;
+    }
+
+    /**
+     * Removes all cells from the list.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the number of cells in the list.
+     *
+     * @return the number of cells
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the column of a cell.
+     *
+     * @param n the index of the cell
+     * @return the column of the cell
+     */
+    int getCol(int n) {
+        return cols[n];
+    }
+
+    /**
+     * Returns a copy of the columns of all cells.
+     *
+     * @return the columns of all cells
+     */
+    int[] copyCols() {
+        return Arrays.copyOf(cols, size);
+    }
+
+    /**
+     * Returns a copy of the rows of all cells.
+     *
+     * @return the rows of all cells
+     */
+    int[] copyRows() {
+        return Arrays.copyOf(rows, size);
+    }
+
+    /**
+     * Returns a copy of the color indices of all cells.
+     *
+     * @return the color indices of all cells
+     */
+    int[] copyColors() {
+        return Arrays.copyOf(colors, size);
+    }
+}
@@ -3,7 +3,9 @@ package com.geolud.atomica.logic;
 import com.geolud.atomica.logic.pathfinding.Path;
 import com.geolud.atomica.logic.pathfinding.PathFinder;
 import com.geolud.atomica.objects.*;
+import com.geolud.atomica.util.flightrecorder.FlightEvents;
 import com.geolud.atomica.util.logging.Logging;
+import com.geolud.atomica.util.metrics.GameMetrics;
 
 import java.util.ArrayList;
 import java.util.Observable;
@@ -41,6 +43,57 @@ public class Game extends Observable {
      */
     private boolean isGameOver;
 
+    /**
+     * Records the atoms removed as molecules during the current move.
+     */
+    private CellList removedAtoms = null;
+
+    /**
+     * Records the indicators transformed to atoms during the current move.
+     */
+    private CellList transformedIndicators = null;
+
+    /**
+     * The result of the last successful move.
+     */
+    private MoveResult lastMoveResult = null;
+
+    /**
+     * The seed of the random generator.
+     */
+    private long seed;
+
+    /**
+     * The random generator for placing new tokens. Seeded, so a game can be
+     * reproduced.
+     */
+    private Random random = null;
+
+    /**
+     * The number of steps (start, moves and flushes) applied so far.
+     */
+    private int stepCount = 0;
+
+    /**
+     * The precomputed scores of the molecules, built when the game starts.
+     */
+    private ScoreTable scoreTable = null;
+
+    /**
+     * Lets the tokens fall down when flushing, created with the first flush.
+     */
+    private GravityEngine gravityEngine = null;
+
+    /**
+     * The number of times molecules were removed in a row by the last flush.
+     */
+    private int cascadeLength = 0;
+
+    /**
+     * The listeners receiving all changes of the game.
+     */
+    private ArrayList<GameEventListener> eventListeners = null;
+
     /**
      * Default constructor for initialization. It doesn't create a valid game so
      * it is privat.
@@ -51,6 +104,10 @@ public class Game extends Observable {
         this.pathFinder = new PathFinder();
         this.moleculesInCurrentRound = new ArrayList<Molecule>();
         this.moleculesInGame = new ArrayList<Molecule>();
+        this.removedAtoms = new CellList();
+        this.transformedIndicators = new CellList();
+        this.eventListeners = new ArrayList<GameEventListener>();
+        setSeed(new Random().nextLong());
         isGameOver = false;
     }
 
@@ -75,29 +132,155 @@ public class Game extends Observable {
         this.gameSituation = gameSituation;
     }
 
+    /**
+     * Adds a listener receiving all changes of the game. Listeners must be
+     * added before the game is started.
+     *
+     * @param listener the listener to add
+     */
+    public void addGameEventListener(GameEventListener listener) {
+        eventListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeGameEventListener(GameEventListener listener) {
+        eventListeners.remove(listener);
+    }
+
+    /**
+     * Sets the seed of the random generator placing the tokens. Playing the
+     * same moves on the same initial situation with the same seed leads to
+     * the same game. Must be called before the game is started.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Returns the seed of the random generator placing the tokens.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the number of steps (start, moves and flushes) applied so far.
+     *
+     * @return the number of steps
+     */
+    public int getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Places the given token on the given field and reports it to the
+     * listeners.
+     *
+     * @param field the field
+     * @param token the token to place
+     */
+    private void placeToken(Field field, Token token) {
+        field.placeToken(token);
+        for (GameEventListener listener : eventListeners) {
+            listener.tokenPlaced(field.getCol(), field.getRow(), token);
+        }
+    }
+
+    /**
+     * Moves the token of the first field to the second one and reports it to
+     * the listeners.
+     *
+     * @param from the field of the token
+     * @param to   the destination field
+     */
+    private void moveToken(Field from, Field to) {
+        to.placeToken(from.getToken());
+        for (GameEventListener listener : eventListeners) {
+            listener.tokenMoved(from.getCol(), from.getRow(), to.getCol(),
+                    to.getRow());
+        }
+    }
+
+    /**
+     * Removes the token from the given field and reports it to the listeners.
+     *
+     * @param field the field
+     */
+    private void removeToken(Field field) {
+        field.removeToken();
+        for (GameEventListener listener : eventListeners) {
+            listener.tokenRemoved(field.getCol(), field.getRow());
+        }
+    }
+
+    /**
+     * Reports the current score and level to the listeners.
+     */
+    private void fireScoreChanged() {
+        for (GameEventListener listener : eventListeners) {
+            listener.scoreChanged(gameSituation.getCurrentScore(),
+                    getCurrentLevelNumber());
+        }
+    }
+
+    /**
+     * Finishes a step and reports it to the listeners.
+     */
+    private void finishStep() {
+        stepCount++;
+        for (GameEventListener listener : eventListeners) {
+            listener.stepFinished(this);
+        }
+    }
+
+    /**
+     * Closes the game. The listeners are informed that no further changes
+     * follow.
+     */
+    public void close() {
+        for (GameEventListener listener : eventListeners) {
+            listener.gameClosed();
+        }
+    }
+
     /**
      * Calculates the score for the constructed Molecules and adds them to the
      * current GameSituation.
      *
      * @param molecules the constructed Molecules
+     * @param link      the link of the chain reaction which formed them,
+     *                  starting with 1
      */
-    private void addMoleculeScore(ArrayList<Molecule> molecules) {
+    private void addMoleculeScore(ArrayList<Molecule> molecules, int link) {
+        int levelNumber = gameSituation.getCurrentLevel().getLevelNumber();
         for (Molecule m : molecules) {
             moleculesInCurrentRound.add(m);
-            int score = calcMoleculeScore(m);
             // Consider "Combos": the more molecules found in one round the
             // higher factor
+            int score = scoreTable.getScore(levelNumber, m.size(),
+                    moleculesInCurrentRound.size(), link);
             if (moleculesInCurrentRound.size() > 1) {
-                score = score * moleculesInCurrentRound.size();
-                Logging.getLogger().log(java.util.logging.Level.INFO,
-                        moleculesInCurrentRound.size() + " Combo");
-
+                if (Logging.isLoggable(java.util.logging.Level.INFO)) {
+                    Logging.getLogger().log(java.util.logging.Level.INFO,
+                            moleculesInCurrentRound.size() + " Combo");
+                }
             }
             gameSituation.addScore(score);
-            Logging.getLogger().log(
-                    java.util.logging.Level.INFO,
-                    score + " scores added for molecule with " + m.size()
-                            + " atoms");
+            if (Logging.isLoggable(java.util.logging.Level.INFO)) {
+                Logging.getLogger().log(
+                        java.util.logging.Level.INFO,
+                        score + " scores added for molecule with " + m.size()
+                                + " atoms");
+            }
         }
     }
 
@@ -107,8 +290,7 @@ public class Game extends Observable {
      * @return true when no Atoms in current GameSituation
      */
     private boolean allAtomsRemoved() {
-        ArrayList<AtomToken> atoms = gameSituation.getAtoms();
-        return atoms == null || atoms.size() == 0;
+        return gameSituation.getAtomCount() == 0;
 
     }
 
@@ -138,43 +320,11 @@ public class Game extends Observable {
             Token indicator = new IndicatorToken(color);
             Field indicatorField = findRandomEmptyField();
             if (indicatorField != null) {
-                indicatorField.placeToken(indicator);
+                placeToken(indicatorField, indicator);
             }
         }
     }
 
-    /**
-     * Calculates the score for a given Molecule.
-     *
-     * @param m the Molecule which score shall be calculated
-     * @return the calculated score for the Molecule
-     */
-    private int calcMoleculeScore(Molecule m) {
-        int size = m.size();
-
-        // Level currentLevel = gameSituation.getCurrentLevel();
-        // int f = currentLevel.getNumberOfColors();
-        // int b = GameSettings.getBaseFactor();
-        //
-        int score = 0;
-        //
-        // // calculate scores for molecules with 4 atoms
-        // if (size == 4)
-        // {
-        // score = (f - 2) * b;
-        // }
-        // // calculate score for molecules with more then 4 atoms
-        // else if (size > 4)
-        // {
-        // double factor = (double) size / 3;
-        // score = (int) (factor * ((f - 2) * b));
-        // }
-
-        score = size * size;
-
-        return score;
-    }
-
     /**
      * Considering the current score, this method returns the necessary score to
      * reach the next Level.
@@ -225,8 +375,10 @@ public class Game extends Observable {
             return false;
 
         gameSituation.setCurrentLevel(nextLevel);
-        Logging.getLogger().log(java.util.logging.Level.INFO,
-                "Level changed to " + nextLevel.getLevelNumber());
+        if (Logging.isLoggable(java.util.logging.Level.INFO)) {
+            Logging.getLogger().log(java.util.logging.Level.INFO,
+                    "Level changed to " + nextLevel.getLevelNumber());
+        }
 
         return true;
     }
@@ -238,17 +390,35 @@ public class Game extends Observable {
      * @return true if Molecules were detected and removed
      */
     private boolean checkNewMolecules() {
+        return checkNewMolecules(1);
+    }
+
+    /**
+     * This Method detects all Molecules, adds their score and removes them from
+     * the board.
+     *
+     * @param link the link of the chain reaction, starting with 1
+     * @return true if Molecules were detected and removed
+     */
+    private boolean checkNewMolecules(int link) {
+        long startTime = GameMetrics.start();
         boolean moleculesFound = false;
 
         MoleculeDetector moleculeDetector = new MoleculeDetector(gameSituation);
-        ArrayList<Molecule> molecules = moleculeDetector.detectMolecules();
+        ArrayList<Molecule> molecules = moleculeDetector.detectNewMolecules();
+        GameMetrics.stop(GameMetrics.DETECTION, startTime);
+        GameMetrics.count(GameMetrics.ATOMS_SCANNED, moleculeDetector
+                .getScannedAtoms());
+        GameMetrics.count(GameMetrics.MOLECULES_FOUND, molecules.size());
 
         if (molecules != null && molecules.size() > 0) {
-            Logging.getLogger().log(java.util.logging.Level.INFO,
-                    molecules.size() + " molecules found");
+            if (Logging.isLoggable(java.util.logging.Level.INFO)) {
+                Logging.getLogger().log(java.util.logging.Level.INFO,
+                        molecules.size() + " molecules found");
+            }
 
             // calculate score and add it to current scores
-            addMoleculeScore(molecules);
+            addMoleculeScore(molecules, link);
 
             for (Molecule m : molecules) {
                 addMoleculeInGame(m);
@@ -260,10 +430,12 @@ public class Game extends Observable {
             // if the necessary score of the current level is reached,
             // it might change to a higher level
             checkLevelChange();
+            fireScoreChanged();
 
             moleculesFound = true;
         }
 
+        GameMetrics.stop(GameMetrics.CHECK_MOLECULES, startTime);
         return moleculesFound;
     }
 
@@ -278,18 +450,13 @@ public class Game extends Observable {
      */
     public Field findRandomEmptyField() {
         boolean allowIndicators = false;
-        ArrayList<Field> emptyFields = gameSituation
-                .getEmptyFields(allowIndicators);
-
-        int size = emptyFields.size();
+        int size = gameSituation.getEmptyCount(allowIndicators);
         if (size == 0)
             return null;
 
-        Random random = new Random();
-
         int n = random.nextInt(size);
 
-        return emptyFields.get(n);
+        return gameSituation.getEmptyField(n, allowIndicators);
     }
 
     /**
@@ -301,7 +468,11 @@ public class Game extends Observable {
      * @return the shortest Path
      */
     public Path findShortestPath(Field from, Field to) {
-        return pathFinder.findShortestPath(gameSituation, from, to);
+        long startTime = GameMetrics.start();
+        Path path = pathFinder.findShortestPath(gameSituation, from, to);
+        GameMetrics.stop(GameMetrics.PATH_QUERY, startTime);
+
+        return path;
     }
 
     /**
@@ -311,7 +482,8 @@ public class Game extends Observable {
      */
     private void firstRound() {
         // if board is empty put new tokens
-        if (gameSituation.getTokens().size() == 0) {
+        if (gameSituation.getAtomCount()
+                + gameSituation.getIndicatorCount() == 0) {
             // considering the current level and set new tokens
             // on random fields
             placeNewIndicators();
@@ -382,8 +554,6 @@ public class Game extends Observable {
 
         ArrayList<Integer> randomColors = new ArrayList<Integer>();
 
-        Random random = new Random();
-
         while (randomColors.size() < number) {
             int randomColor = random.nextInt(level.getNumberOfColors());
             if (!randomColors.contains(randomColor)
@@ -407,8 +577,6 @@ public class Game extends Observable {
     public ArrayList<Integer> getRandomColors(Level level) {
         ArrayList<Integer> randomColors = new ArrayList<Integer>();
 
-        Random random = new Random();
-
         while (randomColors.size() != GameSituation.INDICATORS_IN_ROUND) {
             int randomColor = random.nextInt(level.getNumberOfColors());
             if (/*
@@ -421,6 +589,15 @@ public class Game extends Observable {
         return randomColors;
     }
 
+    /**
+     * Returns what happened on the board during the last successful move.
+     *
+     * @return the result of the last move, null if no atom was moved yet
+     */
+    public MoveResult getLastMoveResult() {
+        return lastMoveResult;
+    }
+
     /**
      * Returns the number of rows in current GameSituation.
      *
@@ -466,16 +643,21 @@ public class Game extends Observable {
         if (destinationField.isBlocked())
             return false;
 
+        long startTime = GameMetrics.start();
         Field from = atom.getField();
 
         // check if there is a possible path to the target
         Path path = pathFinder.findShortestPath(gameSituation, from,
                 destinationField);
+        GameMetrics.count(GameMetrics.PATH_NODES, pathFinder
+                .getExpandedNodes());
         if (path == null)
             return false;
 
-        from.removeToken();
-        destinationField.placeToken(atom);
+        removedAtoms.clear();
+        transformedIndicators.clear();
+
+        moveToken(from, destinationField);
 
         // start next round when ...
         // 1. standard: no new molecule could be detected
@@ -486,15 +668,20 @@ public class Game extends Observable {
 
         // if there are now no atoms on board start a new round. it will turn
         // current indicators to atoms, so the game keeps playable.
-        if (gameSituation.getAtoms().size() == 0) {
+        if (gameSituation.getAtomCount() == 0) {
             nextRound();
         }
 
-        ArrayList<Field> emptyFields = gameSituation.getEmptyFields(true);
-        if (emptyFields.size() <= 1) {
+        if (gameSituation.getEmptyCount(true) <= 1) {
             isGameOver = true;
         }
 
+        lastMoveResult = new MoveResult(path, atom.getColorIndex(),
+                removedAtoms, transformedIndicators);
+        GameMetrics.stop(GameMetrics.MOVE, startTime);
+
+        finishStep();
+
         setChanged();
         notifyObservers();
 
@@ -506,6 +693,8 @@ public class Game extends Observable {
      * checking the situation for new Molecules and placing new Indicators.
      */
     private void nextRound() {
+        long startTime = GameMetrics.start();
+        Object event = FlightEvents.beginRound();
         moleculesInCurrentRound.clear();
 
         // transform all current indicator to atoms
@@ -518,6 +707,10 @@ public class Game extends Observable {
         // considering the current level and set new tokens
         // on random fields
         placeNewIndicators();
+
+        GameMetrics.stop(GameMetrics.NEXT_ROUND, startTime);
+        FlightEvents.endRound(event, getCols() * getRows(),
+                transformedIndicators.size(), stepCount);
     }
 
     /**
@@ -535,7 +728,7 @@ public class Game extends Observable {
                 // game over
                 return;
             }
-            atomField.placeToken(atom);
+            placeToken(atomField, atom);
         }
     }
 
@@ -543,6 +736,7 @@ public class Game extends Observable {
      * Places new IndicatorTokens considering the colors of the current Level.
      */
     private void placeNewIndicators() {
+        long startTime = GameMetrics.start();
         Level currentLevel = gameSituation.getCurrentLevel();
 
         ArrayList<Integer> colorsIndicator = getRandomColors(currentLevel);
@@ -551,9 +745,11 @@ public class Game extends Observable {
             Token indicator = new IndicatorToken(color);
             Field indicatorField = findRandomEmptyField();
             if (indicatorField != null) {
-                indicatorField.placeToken(indicator);
+                placeToken(indicatorField, indicator);
             }
         }
+
+        GameMetrics.stop(GameMetrics.PLACE_INDICATORS, startTime);
     }
 
     /**
@@ -597,7 +793,9 @@ public class Game extends Observable {
                 AtomToken atom = m.getAtom(i);
                 Field field = atom.getField();
                 if (field != null) {
-                    field.removeToken();
+                    removedAtoms.add(field.getCol(), field.getRow(),
+                            atom.getColorIndex());
+                    removeToken(field);
                 }
             }
         }
@@ -609,15 +807,25 @@ public class Game extends Observable {
      * round. That will transform current IndicatorTokens to AtomTokens.
      */
     public void start() {
+        scoreTable = new ScoreTable(gameSituation.getGameSettings());
+        removedAtoms.clear();
+        transformedIndicators.clear();
+
+        for (GameEventListener listener : eventListeners) {
+            listener.gameStarted(seed, getCols(), getRows());
+        }
+
         // set tokens for the first round
         firstRound();
 
         // in case an initial situation without atoms was loaded,
         // directly go to next round
-        if (gameSituation.getAtoms().size() == 0) {
+        if (gameSituation.getAtomCount() == 0) {
             nextRound();
         }
 
+        finishStep();
+
         setChanged();
         notifyObservers();
         // 2. special treatment: in case all atoms are removed
@@ -630,7 +838,9 @@ public class Game extends Observable {
         ArrayList<IndicatorToken> indicators = gameSituation.getIndicators();
         for (IndicatorToken indicator : indicators) {
             Field f = indicator.getField();
-            f.placeToken(new AtomToken(indicator.getColorIndex()));
+            transformedIndicators.add(f.getCol(), f.getRow(),
+                    indicator.getColorIndex());
+            placeToken(f, new AtomToken(indicator.getColorIndex()));
         }
     }
 
@@ -638,48 +848,60 @@ public class Game extends Observable {
         return moleculesInGame.size();
     }
 
+    /**
+     * Returns the number of times molecules were removed in a row by the last
+     * flush: 0 if the falling tokens formed no molecule, 2 if removing the
+     * first molecules let further tokens fall into new ones, and so on.
+     *
+     * @return the length of the cascade of the last flush
+     */
+    public int getLastCascadeLength() {
+        return cascadeLength;
+    }
+
     /**
      * This method lets all tokens in the current game situation "fall" down.
-     * New molecules which might be created will be removed.
+     * New molecules which might be created will be removed, which lets the
+     * tokens above them fall again, until no further molecule is formed.
      * <p/>
      * This was an adaption from the ProPra Seminar 07.09.2008.
      */
     public void flushTokens() {
-        int rows = getRows();
-        int cols = getCols();
-
-        // start in the lower left in the second row
-        for (int r = rows - 2; r >= 0; r--) {
-            for (int c = 0; c < cols; c++) {
-                Token token = queryToken(c, r);
-
-                // if there already a token continue since it can't "fall" down
-                // anymore
-                if (token == null)
-                    continue;
-
-                // now find emtpy fields below this one so it can fall down to
-                // the lowest emtpy field
-                int nextRow = r + 1;
-                Field emptyNextField = null;
-                Field nextField = gameSituation.getField(c, nextRow);
-                while (nextField != null && nextField.getToken() == null) {
-                    emptyNextField = nextField;
-                    nextField = gameSituation.getField(c, nextRow);
-                    nextRow += 1;
-                }
+        long startTime = GameMetrics.start();
+        removedAtoms.clear();
+        transformedIndicators.clear();
+
+        if (gravityEngine == null) {
+            gravityEngine = new GravityEngine(gameSituation,
+                    new GravityEngine.TokenMover() {
+                        public void moveToken(Field from, Field to) {
+                            Game.this.moveToken(from, to);
+                        }
+                    });
+        }
 
-                if (emptyNextField != null) {
-                    emptyNextField.placeToken(token);
-                }
+        moleculesInGame.clear();
+
+        // let all columns fall, then only those which lost atoms to molecules
+        cascadeLength = 0;
+        gravityEngine.markAllDirty();
+        gravityEngine.compact();
+        int removed = 0;
+        while (checkNewMolecules(cascadeLength + 1)) {
+            cascadeLength++;
+            for (int i = removed; i < removedAtoms.size(); i++) {
+                gravityEngine.markDirty(removedAtoms.getCol(i));
+            }
+            removed = removedAtoms.size();
+            if (gravityEngine.compact() == 0) {
+                break;
             }
         }
 
-        moleculesInGame.clear();
+        GameMetrics.count(GameMetrics.CASCADE_LINKS, cascadeLength);
+        GameMetrics.stop(GameMetrics.FLUSH, startTime);
 
-        // start next round when ...
-        // 1. standard: no new molecule could be detected
-        checkNewMolecules();
+        finishStep();
 
         setChanged();
         notifyObservers();
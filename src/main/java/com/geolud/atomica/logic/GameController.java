@@ -0,0 +1,380 @@
+package com.geolud.atomica.logic;
+
+import com.geolud.atomica.logic.leaderboard.Leaderboard;
+import com.geolud.atomica.logic.leaderboard.LeaderboardStore;
+import com.geolud.atomica.logic.pathfinding.Path;
+import com.geolud.atomica.objects.AtomToken;
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.GameSettings;
+import com.geolud.atomica.util.logging.Logging;
+import com.geolud.atomica.util.metrics.AtomicaMetrics;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.nio.ByteBuffer;
+import java.util.Observable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies all commands on a Game in a single background thread, so the event
+ * dispatch thread never runs pathfinding, molecule detection or a round
+ * transition. After a command was applied an immutable GameSnapshot is
+ * published to the observers on the event dispatch thread.
+ * <p/>
+ * <p>
+ * The Game must not be accessed by any other thread once the controller was
+ * created. While a move or flush is processed further ones are rejected.
+ * Path queries for displaying the shortest path are coalesced, so only the
+ * latest one is answered with a Path (empty if there is no path).
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class GameController extends Observable {
+    /**
+     * Action command which indicates that the game situation was encoded for
+     * saving. The source of the event is the ByteBuffer of the encoded
+     * situation.
+     */
+    public static final String ACTION_CMD_ENCODED = "SituationEncoded";
+
+    /**
+     * The game the commands are applied on.
+     */
+    private final Game game;
+
+    /**
+     * The single thread applying all commands.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Flag which indicates that a move or flush is being processed and its
+     * snapshot was not yet published.
+     */
+    private final AtomicBoolean busy = new AtomicBoolean(false);
+
+    /**
+     * Guards the pending path query.
+     */
+    private final Object pathQueryLock = new Object();
+
+    /**
+     * The latest path query (from column, from row, to column, to row).
+     */
+    private int[] pathQuery = null;
+
+    /**
+     * Flag which indicates that a path query task is already queued.
+     */
+    private boolean pathQueryScheduled = false;
+
+    /**
+     * Flag which indicates that the finished game was recorded in the
+     * leaderboard, only accessed by the background thread.
+     */
+    private boolean recorded = false;
+
+    /**
+     * The latest published snapshot.
+     */
+    private GameSnapshot snapshot;
+
+    /**
+     * Creates a controller for the given game.
+     *
+     * @param game the game to control
+     */
+    public GameController(Game game) {
+        this.game = game;
+        this.snapshot = new GameSnapshot(game, null);
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AtomicaGameLogic");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the latest published snapshot. Must be called on the event
+     * dispatch thread.
+     *
+     * @return the latest published snapshot
+     */
+    public GameSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Indicates if a move or flush is being processed.
+     *
+     * @return true if a move or flush is being processed
+     */
+    public boolean isBusy() {
+        return busy.get();
+    }
+
+    /**
+     * Starts the game in the background.
+     */
+    public void start() {
+        submit(new Runnable() {
+            public void run() {
+                game.start();
+                publish(new GameSnapshot(game, null), false);
+            }
+        });
+    }
+
+    /**
+     * Moves the atom at the given origin to the given destination in the
+     * background. The request is rejected if another move is being processed.
+     *
+     * @param fromCol the column of the atom to move
+     * @param fromRow the row of the atom to move
+     * @param toCol   the column of the destination field
+     * @param toRow   the row of the destination field
+     * @return true if the move was accepted for processing
+     */
+    public boolean moveAtom(final int fromCol, final int fromRow,
+                            final int toCol, final int toRow) {
+        if (!busy.compareAndSet(false, true)) {
+            return false;
+        }
+
+        return submitBusy(new Runnable() {
+            public void run() {
+                MoveResult move = null;
+
+                // the request was based on the latest published snapshot, so
+                // it is validated against the current situation
+                AtomToken atom = game.queryAtomToken(fromCol, fromRow);
+                Field destination = game.getField(toCol, toRow);
+                if (atom != null && destination != null && !game.getIsGameOver()
+                        && game.moveAtomToken(atom, destination)) {
+                    move = game.getLastMoveResult();
+                }
+
+                publish(createSnapshot(move), true);
+            }
+        });
+    }
+
+    /**
+     * Lets all tokens fall down in the background. The request is rejected if
+     * a move is being processed.
+     *
+     * @return true if the request was accepted for processing
+     */
+    public boolean flushTokens() {
+        if (!busy.compareAndSet(false, true)) {
+            return false;
+        }
+
+        return submitBusy(new Runnable() {
+            public void run() {
+                game.flushTokens();
+                publish(createSnapshot(null), true);
+            }
+        });
+    }
+
+    /**
+     * Encodes the current game situation in the background, so it can be
+     * saved. Only the encoding runs on the thread of the game, the file is
+     * meant to be written by another thread. The given listener is called on
+     * the event dispatch thread with {@link #ACTION_CMD_ENCODED}, the source
+     * of the event being the ByteBuffer of the encoded situation.
+     *
+     * @param listener the listener receiving the encoded situation
+     * @return true if the request was accepted for processing
+     */
+    public boolean encodeSituation(final ActionListener listener) {
+        return submit(new Runnable() {
+            public void run() {
+                final ByteBuffer encoded = GameSituationCodec.encode(game
+                        .getSituation());
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        listener.actionPerformed(new ActionEvent(encoded, 0,
+                                ACTION_CMD_ENCODED));
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Requests the shortest path between the given fields. The answer is
+     * published as a Path, which is empty if there is no path. Only the latest
+     * of several pending queries is answered.
+     *
+     * @param fromCol the column of the starting field
+     * @param fromRow the row of the starting field
+     * @param toCol   the column of the destination field
+     * @param toRow   the row of the destination field
+     */
+    public void queryPath(int fromCol, int fromRow, int toCol, int toRow) {
+        synchronized (pathQueryLock) {
+            pathQuery = new int[]{fromCol, fromRow, toCol, toRow};
+            if (pathQueryScheduled) {
+                return;
+            }
+            pathQueryScheduled = true;
+        }
+
+        submit(new Runnable() {
+            public void run() {
+                int[] query;
+                synchronized (pathQueryLock) {
+                    query = pathQuery;
+                    pathQueryScheduled = false;
+                }
+
+                Path path = null;
+                Field from = game.getField(query[0], query[1]);
+                Field to = game.getField(query[2], query[3]);
+                if (from != null && to != null && from != to
+                        && from.isBlocked()) {
+                    path = game.findShortestPath(from, to);
+                }
+
+                publish(path != null ? path : new Path(), false);
+            }
+        });
+    }
+
+    /**
+     * Closes the game and stops the background thread afterwards. Further
+     * moves are rejected.
+     */
+    public void shutdown() {
+        busy.set(true);
+        submit(new Runnable() {
+            public void run() {
+                game.close();
+            }
+        });
+        executor.shutdown();
+    }
+
+    /**
+     * Waits until the game was closed and the background thread has stopped
+     * after {@link #shutdown()}.
+     *
+     * @param timeout the longest time to wait in milliseconds
+     * @return true if the background thread has stopped
+     */
+    public boolean awaitShutdown(long timeout) {
+        try {
+            return executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Takes a snapshot after a move or flush. A game which is over is
+     * recorded in the leaderboard the first time.
+     *
+     * @param move the move which led to this snapshot, might be null
+     * @return the snapshot
+     */
+    private GameSnapshot createSnapshot(MoveResult move) {
+        if (!game.getIsGameOver() || recorded) {
+            return new GameSnapshot(game, move);
+        }
+
+        recorded = true;
+        GameSettings settings = game.getSituation().getGameSettings();
+        LeaderboardStore store = LeaderboardStore.getInstance();
+        long rank = store.record(settings, game.getScore(),
+                game.getCurrentLevelNumber());
+        if (rank == 0) {
+            // the leaderboard is still read, the rank isn't shown
+            return new GameSnapshot(game, move);
+        }
+        Leaderboard leaderboard = store.getLeaderboard(settings);
+        return new GameSnapshot(game, move, rank, leaderboard.size());
+    }
+
+    /**
+     * Queues the given command.
+     *
+     * @param command the command to apply in the background
+     * @return true if the command was queued
+     */
+    private boolean submit(final Runnable command) {
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        command.run();
+                    } catch (RuntimeException e) {
+                        Logging.getLogger().log(java.util.logging.Level.SEVERE,
+                                "Failed to apply game command", e);
+                        busy.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Queues the given command which has set the busy flag.
+     *
+     * @param command the command to apply in the background
+     * @return true if the command was queued
+     */
+    private boolean submitBusy(Runnable command) {
+        if (!submit(command)) {
+            busy.set(false);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Notifies all observers on the event dispatch thread.
+     *
+     * @param result      either a GameSnapshot or a Path
+     * @param releaseBusy true if the busy flag shall be released after the
+     *                    observers were notified
+     */
+    private void publish(final Object result, final boolean releaseBusy) {
+        if (result instanceof GameSnapshot) {
+            AtomicaMetrics.boardChanged(((GameSnapshot) result).getSituation());
+        }
+
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                if (result instanceof GameSnapshot) {
+                    snapshot = (GameSnapshot) result;
+                }
+
+                try {
+                    setChanged();
+                    notifyObservers(result);
+                } finally {
+                    if (releaseBusy) {
+                        busy.set(false);
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,75 @@
+package com.geolud.atomica.logic;
+
+import com.geolud.atomica.objects.Token;
+
+/**
+ * Receives every change a Game applies on its situation. The methods are
+ * called on the thread changing the game, so implementations must return
+ * quickly and must not change the game.
+ * <p/>
+ * <p>
+ * A step is either starting the game, moving an atom or flushing the tokens.
+ * All changes of a step are reported before {@link #stepFinished(Game)}.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public interface GameEventListener {
+    /**
+     * Called when the game is started, before the tokens of the first round
+     * are placed.
+     *
+     * @param seed the seed of the random generator placing the tokens
+     * @param cols the number of columns of the board
+     * @param rows the number of rows of the board
+     */
+    void gameStarted(long seed, int cols, int rows);
+
+    /**
+     * Called when a token is placed on an empty field or replaces an
+     * indicator.
+     *
+     * @param col   the column of the field
+     * @param row   the row of the field
+     * @param token the placed token
+     */
+    void tokenPlaced(int col, int row, Token token);
+
+    /**
+     * Called when a token is moved to another field.
+     *
+     * @param fromCol the column of the previous field
+     * @param fromRow the row of the previous field
+     * @param toCol   the column of the new field
+     * @param toRow   the row of the new field
+     */
+    void tokenMoved(int fromCol, int fromRow, int toCol, int toRow);
+
+    /**
+     * Called when a token is removed from a field.
+     *
+     * @param col the column of the field
+     * @param row the row of the field
+     */
+    void tokenRemoved(int col, int row);
+
+    /**
+     * Called when the score or the level has changed.
+     *
+     * @param score       the new score
+     * @param levelNumber the number of the new level
+     */
+    void scoreChanged(int score, int levelNumber);
+
+    /**
+     * Called when all changes of a step were reported.
+     *
+     * @param game the game, which may be read but not changed
+     */
+    void stepFinished(Game game);
+
+    /**
+     * Called when the game is closed. No further events follow.
+     */
+    void gameClosed();
+}
@@ -0,0 +1,279 @@
+package com.geolud.atomica.logic;
+
+import com.geolud.atomica.objects.Board;
+import com.geolud.atomica.objects.DefaultGameSettings;
+import com.geolud.atomica.objects.EditorGameSettings;
+import com.geolud.atomica.objects.GameSettings;
+import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.objects.Level;
+import com.geolud.atomica.objects.SituationSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes a game situation into the compact binary save format and decodes it
+ * again. The format does not depend on the classes of the object model, so it
+ * keeps working when they are changed.
+ * <p/>
+ * <p>
+ * Layout (big endian):
+ * <ul>
+ * <li>int magic number <code>ATMC</code></li>
+ * <li>short format version</li>
+ * <li>byte settings kind (0 game, 1 editor)</li>
+ * <li>short columns, short rows</li>
+ * <li>int score, short current level number</li>
+ * <li>short number of levels, per level: int final score, byte number of
+ * colors</li>
+ * <li>one byte per field as encoded by SituationSnapshot</li>
+ * <li>int CRC32 checksum of all preceding bytes</li>
+ * </ul>
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class GameSituationCodec {
+    /**
+     * The magic number at the start of each file ("ATMC").
+     */
+    public static final int MAGIC = 0x41544D43;
+
+    /**
+     * The current version of the format.
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * The settings kind of situations played as game.
+     */
+    private static final byte KIND_GAME = 0;
+
+    /**
+     * The settings kind of situations created by the editor.
+     */
+    private static final byte KIND_EDITOR = 1;
+
+    /**
+     * The number of bytes preceding the level table.
+     */
+    private static final int HEADER_SIZE = 4 + 2 + 1 + 2 + 2 + 4 + 2 + 2;
+
+    /**
+     * The number of bytes per level.
+     */
+    private static final int LEVEL_SIZE = 4 + 1;
+
+    /**
+     * The number of bytes of the checksum.
+     */
+    private static final int CHECKSUM_SIZE = 4;
+
+    /**
+     * No instances, only static access.
+     */
+    private GameSituationCodec() {
+
+    }
+
+    /**
+     * Indicates if the given bytes start with the magic number of the format.
+     *
+     * @param buffer the bytes to check, its position is not changed
+     * @return true if the bytes start with the magic number
+     */
+    public static boolean isEncoded(ByteBuffer buffer) {
+        return buffer.remaining() >= 4
+                && buffer.getInt(buffer.position()) == MAGIC;
+    }
+
+    /**
+     * Encodes the given game situation.
+     *
+     * @param gameSituation the situation to encode
+     * @return a buffer ready for being read, containing the encoded situation
+     */
+    public static ByteBuffer encode(GameSituation gameSituation) {
+        boolean editor = gameSituation.getGameSettings()
+                instanceof EditorGameSettings;
+        SituationSnapshot snapshot = gameSituation.createSnapshot();
+
+        ArrayList<Level> levels = new ArrayList<Level>();
+        Level lastLevel = gameSituation.getLastLevel();
+        for (int i = 1; i <= lastLevel.getLevelNumber(); i++) {
+            levels.add(gameSituation.getLevel(i));
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + levels.size()
+                * LEVEL_SIZE + snapshot.getCellCount() + CHECKSUM_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.put(editor ? KIND_EDITOR : KIND_GAME);
+        buffer.putShort((short) snapshot.getCols());
+        buffer.putShort((short) snapshot.getRows());
+        buffer.putInt(snapshot.getScore());
+        buffer.putShort((short) snapshot.getLevelNumber());
+        buffer.putShort((short) levels.size());
+        for (Level level : levels) {
+            buffer.putInt(level.getScore());
+            buffer.put((byte) level.getNumberOfColors());
+        }
+        buffer.put(snapshot.copyCells());
+
+        buffer.putInt((int) checksum(buffer.array(), buffer.position()));
+        buffer.flip();
+
+        return buffer;
+    }
+
+    /**
+     * Decodes a game situation. The checksum is verified before anything is
+     * decoded.
+     *
+     * @param buffer the encoded situation, read from its position to its limit
+     * @return the decoded game situation
+     * @throws IOException if the bytes are no valid encoded situation
+     */
+    public static GameSituation decode(ByteBuffer buffer) throws IOException {
+        SituationSnapshot snapshot = decodeSnapshot(buffer);
+
+        int start = buffer.position();
+        boolean editor = buffer.get(start + 6) == KIND_EDITOR;
+        int levelCount = buffer.getShort(start + HEADER_SIZE - 2);
+        ArrayList<Level> levels = new ArrayList<Level>(levelCount);
+        for (int i = 0; i < levelCount; i++) {
+            int offset = start + HEADER_SIZE + i * LEVEL_SIZE;
+            int colors = buffer.get(offset + 4);
+            if (colors < Level.MIN_NUMBEROFCOLORS
+                    || colors > Level.MAX_NUMBEROFCOLORS) {
+                throw new IOException("Corrupt game situation level "
+                        + (i + 1));
+            }
+            levels.add(new Level(i + 1, buffer.getInt(offset), colors));
+        }
+
+        // creating settings resets the static base factor, which is not part
+        // of a saved situation
+        int baseFactor = GameSettings.getBaseFactor();
+        GameSettings settings = editor ? new EditorGameSettings()
+                : new DefaultGameSettings();
+        GameSettings.setBaseFactor(baseFactor);
+
+        settings.setLevels(levels);
+        settings.setCols(snapshot.getCols());
+        settings.setRows(snapshot.getRows());
+
+        GameSituation gameSituation = new GameSituation(settings);
+        gameSituation.setCurrentScore(snapshot.getScore());
+        gameSituation.setCurrentLevel(settings.getLevel(snapshot
+                .getLevelNumber()));
+
+        int cols = snapshot.getCols();
+        for (int cell = 0; cell < snapshot.getCellCount(); cell++) {
+            byte code = snapshot.getCell(cell);
+            if (code != SituationSnapshot.EMPTY) {
+                gameSituation.getField(cell % cols, cell / cols).placeToken(
+                        SituationSnapshot.decodeCell(code));
+            }
+        }
+
+        buffer.position(buffer.limit());
+        return gameSituation;
+    }
+
+    /**
+     * Decodes only the board, score and level number of an encoded situation
+     * without creating the object model. This is meant for listing many saved
+     * situations quickly. The position of the buffer is not changed.
+     *
+     * @param buffer the encoded situation, read from its position to its limit
+     * @return the snapshot of the encoded situation
+     * @throws IOException if the bytes are no valid encoded situation
+     */
+    public static SituationSnapshot decodeSnapshot(ByteBuffer buffer)
+            throws IOException {
+        ByteBuffer in = buffer.duplicate();
+        int start = in.position();
+        int length = in.remaining();
+        if (length < HEADER_SIZE + CHECKSUM_SIZE || in.getInt() != MAGIC) {
+            throw new IOException("Not an Atomica game situation");
+        }
+
+        short version = in.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported format version " + version);
+        }
+
+        in.get();
+        int cols = in.getShort();
+        int rows = in.getShort();
+        int score = in.getInt();
+        int levelNumber = in.getShort();
+        int levelCount = in.getShort();
+
+        int cellsOffset = HEADER_SIZE + levelCount * LEVEL_SIZE;
+        if (cols < Board.MIN_COLS || cols > Board.MAX_COLS
+                || rows < Board.MIN_ROWS || rows > Board.MAX_ROWS
+                || levelCount <= 0
+                || levelNumber <= 0 || levelNumber > levelCount
+                || length != cellsOffset + cols * rows + CHECKSUM_SIZE) {
+            throw new IOException("Corrupt game situation header");
+        }
+
+        int checksumOffset = length - CHECKSUM_SIZE;
+        if (in.getInt(start + checksumOffset) != (int) checksum(in, start,
+                checksumOffset)) {
+            throw new IOException("Game situation checksum mismatch");
+        }
+
+        byte[] cells = new byte[cols * rows];
+        in.position(start + cellsOffset);
+        in.get(cells);
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] < -Level.MAX_NUMBEROFCOLORS
+                    || cells[cell] > Level.MAX_NUMBEROFCOLORS) {
+                throw new IOException("Corrupt game situation field "
+                        + cell % cols + "," + cell / cols);
+            }
+        }
+
+        return new SituationSnapshot(cols, rows, cells, score, levelNumber);
+    }
+
+    /**
+     * Computes the CRC32 checksum of the first bytes of the given array.
+     *
+     * @param bytes  the array
+     * @param length the number of bytes to include
+     * @return the checksum
+     */
+    private static long checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+
+    /**
+     * Computes the CRC32 checksum of a range of the given buffer.
+     *
+     * @param buffer the buffer
+     * @param start  the absolute start position
+     * @param length the number of bytes to include
+     * @return the checksum
+     */
+    private static long checksum(ByteBuffer buffer, int start, int length) {
+        if (buffer.hasArray()) {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), buffer.arrayOffset() + start, length);
+            return crc.getValue();
+        }
+
+        byte[] bytes = new byte[length];
+        ByteBuffer range = buffer.duplicate();
+        range.position(start);
+        range.get(bytes);
+        return checksum(bytes, length);
+    }
+}
@@ -1,17 +1,34 @@
 package com.geolud.atomica.logic;
 
 import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.objects.SituationSnapshot;
+import com.geolud.atomica.util.flightrecorder.FlightEvents;
 import com.geolud.atomica.util.logging.Logging;
+import com.geolud.atomica.util.metrics.GameMetrics;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.prefs.Preferences;
 
 /**
  * Simple class for De-/Serialization of a <code>GameSituation</code> object
- * into/from a binary file.
+ * into/from a binary file. The file format is defined by the
+ * GameSituationCodec.
+ * <p/>
+ * <p>
+ * Files are read and written in chunks, so a TransferMonitor can follow the
+ * progress and cancel the transfer. These methods block and must not be
+ * called on the event dispatch thread.
+ * </p>
  *
  * @author Georg Ludewig
  */
@@ -19,7 +36,43 @@ public class GameSituationSerializer {
     /**
      * The file extension for a serialized game (.atomica).
      */
-    public static final String ATOMICA_FILEEXTENSION = "com/geolud/atomica";
+    public static final String ATOMICA_FILEEXTENSION = "atomica";
+
+    /**
+     * The first two bytes of a file written by Java serialization.
+     */
+    private static final short SERIALIZATION_MAGIC = (short) 0xACED;
+
+    /**
+     * The maximum size of a file to be loaded in bytes.
+     */
+    private static final long MAX_FILE_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The number of bytes read or written at once.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Follows the progress of reading or writing a file and may cancel it.
+     * The methods are called on the thread transferring the file.
+     */
+    public interface TransferMonitor {
+        /**
+         * Called after each chunk.
+         *
+         * @param done  the number of bytes transferred so far
+         * @param total the size of the file in bytes
+         */
+        void progressed(long done, long total);
+
+        /**
+         * Indicates if the transfer shall be canceled.
+         *
+         * @return true to cancel the transfer
+         */
+        boolean isCanceled();
+    }
 
     /**
      * Creates a GameSituationSerializer. Tries to read the last used path from
@@ -33,35 +86,82 @@ public class GameSituationSerializer {
 
     /**
      * Reads a GameSituation from a binary file at the given <code>path</code>.
+     * Files written by earlier versions using Java serialization are still
+     * supported.
      *
      * @param path the absolute path to binary file
-     * @return true if the deserializaion successful
+     * @return the deserialized game situation, null if loading failed
      */
     public GameSituation load(String path) {
         GameSituation gameSituation = null;
-        FileInputStream fs = null;
         try {
-            fs = new FileInputStream(path);
-            ObjectInputStream os = new ObjectInputStream(fs);
-            gameSituation = (GameSituation) os.readObject();
-            setLastPath(path);
+            gameSituation = load(path, null);
         } catch (Exception e) {
             Logging.getLogger().log(java.util.logging.Level.SEVERE,
-                    "Failed to save GameSituation");
+                    "Failed to load GameSituation", e);
         }
 
-        try {
-            if (fs != null) {
-                fs.close();
+        return gameSituation;
+    }
+
+    /**
+     * Reads a GameSituation from a binary file at the given <code>path</code>
+     * and reports the progress to the given monitor.
+     *
+     * @param path    the absolute path to binary file
+     * @param monitor the monitor following the progress, may be null
+     * @return the deserialized game situation
+     * @throws InterruptedIOException if the monitor canceled loading
+     * @throws IOException            if the file can't be read or has an
+     *                                unknown format
+     */
+    public GameSituation load(String path, TransferMonitor monitor)
+            throws IOException {
+        Object event = FlightEvents.beginFileTransfer();
+        ByteBuffer buffer = readFile(path, monitor);
+        FlightEvents.endFileTransfer(event, path, false, buffer.limit());
+
+        GameSituation gameSituation;
+        if (GameSituationCodec.isEncoded(buffer)) {
+            gameSituation = GameSituationCodec.decode(buffer);
+        } else if (buffer.remaining() >= 2
+                && buffer.getShort(0) == SERIALIZATION_MAGIC) {
+            try {
+                gameSituation = loadSerialized(buffer);
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown class " + e.getMessage());
             }
-        } catch (Exception e) {
-            Logging.getLogger().log(java.util.logging.Level.SEVERE,
-                    "Could not close File Handle");
+        } else {
+            throw new IOException("Unknown file format");
         }
+        setLastPath(path);
 
         return gameSituation;
     }
 
+    /**
+     * Reads only the board, score and level number of a GameSituation from a
+     * binary file at the given <code>path</code>. This is much faster than
+     * loading the whole situation, so it is meant for listing many files.
+     *
+     * @param path the absolute path to the binary file
+     * @return the snapshot of the stored situation
+     * @throws IOException if the file can't be read or has an unknown format
+     */
+    public SituationSnapshot loadSnapshot(String path) throws IOException {
+        ByteBuffer buffer = readFile(path, null);
+        if (GameSituationCodec.isEncoded(buffer)) {
+            return GameSituationCodec.decodeSnapshot(buffer);
+        }
+
+        GameSituation gameSituation = load(path);
+        if (gameSituation == null) {
+            throw new IOException("Failed to load " + path);
+        }
+
+        return gameSituation.createSnapshot();
+    }
+
     /**
      * Saves a GameSituation in a binary file at the given <code>path</code>.
      *
@@ -69,20 +169,147 @@ public class GameSituationSerializer {
      * @param path          the absolute path to the binary file
      */
     public void save(GameSituation gameSituation, String path) {
-        FileOutputStream fs = null;
         try {
-            fs = new FileOutputStream(path);
-            ObjectOutputStream os = new ObjectOutputStream(fs);
-            os.writeObject(gameSituation);
-            setLastPath(path);
+            save(GameSituationCodec.encode(gameSituation), path, null);
         } catch (Exception e) {
             Logging.getLogger().log(java.util.logging.Level.SEVERE,
-                    "Failed to save GameSituation");
+                    "Failed to save GameSituation", e);
+        }
+    }
+
+    /**
+     * Saves an encoded GameSituation in a binary file at the given
+     * <code>path</code> and reports the progress to the given monitor. The
+     * data is written into a temporary file first which then replaces the
+     * file, so a canceled or failed save leaves the previous file intact.
+     *
+     * @param encoded the situation encoded by the GameSituationCodec
+     * @param path    the absolute path to the binary file
+     * @param monitor the monitor following the progress, may be null
+     * @throws InterruptedIOException if the monitor canceled saving
+     * @throws IOException            if the file can't be written
+     */
+    public void save(ByteBuffer encoded, String path, TransferMonitor monitor)
+            throws IOException {
+        long startTime = GameMetrics.start();
+        Object event = FlightEvents.beginFileTransfer();
+        File file = new File(path).getAbsoluteFile();
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+
+        boolean written = false;
+        FileChannel channel = new FileOutputStream(temp).getChannel();
+        try {
+            ByteBuffer chunk = encoded.duplicate();
+            long total = encoded.remaining();
+            while (encoded.hasRemaining()) {
+                checkCanceled(monitor);
+                chunk.limit(Math.min(encoded.limit(), encoded.position()
+                        + CHUNK_SIZE));
+                chunk.position(encoded.position());
+                channel.write(chunk);
+                encoded.position(chunk.position());
+                if (monitor != null) {
+                    monitor.progressed(total - encoded.remaining(), total);
+                }
+            }
+            written = true;
+        } finally {
+            close(channel);
+            if (!written && !temp.delete()) {
+                Logging.getLogger().log(java.util.logging.Level.WARNING,
+                        "Could not delete " + temp);
+            }
+        }
+
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        setLastPath(path);
+        GameMetrics.stop(GameMetrics.SAVE, startTime);
+        FlightEvents.endFileTransfer(event, path, true, encoded.limit());
+    }
+
+    /**
+     * Reads the whole file at the given path into a buffer.
+     *
+     * @param path    the absolute path to the file
+     * @param monitor the monitor following the progress, may be null
+     * @return a buffer ready for being read, containing the file content
+     * @throws IOException if the file can't be read or reading was canceled
+     */
+    private ByteBuffer readFile(String path, TransferMonitor monitor)
+            throws IOException {
+        FileChannel channel = new FileInputStream(path).getChannel();
+        try {
+            long size = channel.size();
+            if (size > MAX_FILE_SIZE) {
+                throw new IOException("File too large: " + path);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            ByteBuffer chunk = buffer.duplicate();
+            while (buffer.hasRemaining()) {
+                checkCanceled(monitor);
+                chunk.limit(Math.min(buffer.limit(), buffer.position()
+                        + CHUNK_SIZE));
+                chunk.position(buffer.position());
+                if (channel.read(chunk) < 0) {
+                    break;
+                }
+                buffer.position(chunk.position());
+                if (monitor != null) {
+                    monitor.progressed(buffer.position(), size);
+                }
+            }
+            buffer.flip();
+            return buffer;
+        } finally {
+            close(channel);
+        }
+    }
+
+    /**
+     * Throws an exception if the given monitor canceled the transfer.
+     *
+     * @param monitor the monitor, may be null
+     * @throws InterruptedIOException if the transfer was canceled
+     */
+    private static void checkCanceled(TransferMonitor monitor)
+            throws InterruptedIOException {
+        if (monitor != null && monitor.isCanceled()) {
+            throw new InterruptedIOException("Canceled");
+        }
+    }
+
+    /**
+     * Reads a GameSituation written by Java serialization.
+     *
+     * @param buffer the file content
+     * @return the deserialized game situation
+     * @throws IOException            if the content can't be deserialized
+     * @throws ClassNotFoundException if the content refers to an unknown class
+     */
+    private GameSituation loadSerialized(ByteBuffer buffer) throws IOException,
+            ClassNotFoundException {
+        ObjectInputStream os = new ObjectInputStream(new ByteArrayInputStream(
+                buffer.array(), buffer.arrayOffset() + buffer.position(),
+                buffer.remaining()));
+        try {
+            return (GameSituation) os.readObject();
+        } finally {
+            os.close();
         }
+    }
 
+    /**
+     * Closes the given channel.
+     *
+     * @param channel the channel to close, might be null
+     */
+    private void close(FileChannel channel) {
         try {
-            if (fs != null) {
-                fs.close();
+            if (channel != null) {
+                channel.close();
             }
         } catch (Exception e) {
             Logging.getLogger().log(java.util.logging.Level.SEVERE,
@@ -0,0 +1,162 @@
+package com.geolud.atomica.logic;
+
+import com.geolud.atomica.objects.SituationSnapshot;
+
+/**
+ * Immutable state of a game published by the GameController after a command
+ * was applied. Besides the packed situation it holds everything the view
+ * displays, so the view never has to access the game itself.
+ *
+ * @author Georg Ludewig
+ */
+public class GameSnapshot {
+    /**
+     * The packed situation of the game.
+     */
+    private final SituationSnapshot situation;
+
+    /**
+     * The score required to reach the next level.
+     */
+    private final int scoresUntilNextLevel;
+
+    /**
+     * The number of molecules removed in the game.
+     */
+    private final int moleculeNumber;
+
+    /**
+     * Flag which indicates if the game is over.
+     */
+    private final boolean isGameOver;
+
+    /**
+     * The result of the move which led to this snapshot, null if the snapshot
+     * was not created by a move.
+     */
+    private final MoveResult move;
+
+    /**
+     * The rank of the finished game in its leaderboard, 0 if it was not
+     * recorded.
+     */
+    private final long leaderboardRank;
+
+    /**
+     * The number of games in the leaderboard of the finished game.
+     */
+    private final long leaderboardSize;
+
+    /**
+     * Creates a snapshot of the given game.
+     *
+     * @param game the game to take the snapshot of
+     * @param move the move which led to this snapshot, might be null
+     */
+    GameSnapshot(Game game, MoveResult move) {
+        this(game, move, 0, 0);
+    }
+
+    /**
+     * Creates a snapshot of the given finished game.
+     *
+     * @param game            the game to take the snapshot of
+     * @param move            the move which led to this snapshot, might be
+     *                        null
+     * @param leaderboardRank the rank of the game in its leaderboard
+     * @param leaderboardSize the number of games in the leaderboard
+     */
+    GameSnapshot(Game game, MoveResult move, long leaderboardRank,
+                 long leaderboardSize) {
+        this.situation = game.getSituation().createSnapshot();
+        this.scoresUntilNextLevel = game.calcScoresUntilNextLevel();
+        this.moleculeNumber = game.getMoleculeNumber();
+        this.isGameOver = game.getIsGameOver();
+        this.move = move;
+        this.leaderboardRank = leaderboardRank;
+        this.leaderboardSize = leaderboardSize;
+    }
+
+    /**
+     * Returns the packed situation of the game.
+     *
+     * @return the packed situation
+     */
+    public SituationSnapshot getSituation() {
+        return situation;
+    }
+
+    /**
+     * Returns the reached score.
+     *
+     * @return the reached score
+     */
+    public int getScore() {
+        return situation.getScore();
+    }
+
+    /**
+     * Returns the number of the current level.
+     *
+     * @return the number of the current level
+     */
+    public int getCurrentLevelNumber() {
+        return situation.getLevelNumber();
+    }
+
+    /**
+     * Returns the score required to reach the next level.
+     *
+     * @return the score required to reach the next level
+     */
+    public int getScoresUntilNextLevel() {
+        return scoresUntilNextLevel;
+    }
+
+    /**
+     * Returns the number of molecules removed in the game.
+     *
+     * @return the number of removed molecules
+     */
+    public int getMoleculeNumber() {
+        return moleculeNumber;
+    }
+
+    /**
+     * Checks if the game is over.
+     *
+     * @return true if the game is over
+     */
+    public boolean getIsGameOver() {
+        return isGameOver;
+    }
+
+    /**
+     * Returns the result of the move which led to this snapshot.
+     *
+     * @return the result of the move, null if the snapshot was not created by
+     * a move
+     */
+    public MoveResult getMove() {
+        return move;
+    }
+
+    /**
+     * Returns the rank of the finished game in the leaderboard of its
+     * settings.
+     *
+     * @return the rank starting at 1, 0 if the game was not recorded
+     */
+    public long getLeaderboardRank() {
+        return leaderboardRank;
+    }
+
+    /**
+     * Returns the number of games in the leaderboard of the finished game.
+     *
+     * @return the number of games, 0 if the game was not recorded
+     */
+    public long getLeaderboardSize() {
+        return leaderboardSize;
+    }
+}
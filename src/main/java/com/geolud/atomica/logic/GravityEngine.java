@@ -0,0 +1,113 @@
+package com.geolud.atomica.logic;
+
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.GameSituation;
+
+/**
+ * Lets the tokens of a game situation fall down. Each column is compacted in
+ * one pass from the bottom to the top, moving every token directly to the
+ * lowest free field below it. Only columns marked dirty are compacted, so
+ * after removing molecules just the columns which lost atoms are recomputed.
+ *
+ * @author Georg Ludewig
+ */
+class GravityEngine {
+    /**
+     * Applies the moves of the tokens, so they can be reported.
+     */
+    interface TokenMover {
+        /**
+         * Moves the token of the first field to the second one, which is
+         * free.
+         *
+         * @param from the field of the token
+         * @param to   the destination field
+         */
+        void moveToken(Field from, Field to);
+    }
+
+    /**
+     * The situation whose tokens fall.
+     */
+    private final GameSituation gameSituation;
+
+    /**
+     * Applies the moves.
+     */
+    private final TokenMover mover;
+
+    /**
+     * The columns which have to be compacted.
+     */
+    private final boolean[] dirty;
+
+    /**
+     * Creates an engine for the given situation.
+     *
+     * @param gameSituation the situation whose tokens fall
+     * @param mover         applies the moves of the tokens
+     */
+    GravityEngine(GameSituation gameSituation, TokenMover mover) {
+        this.gameSituation = gameSituation;
+        this.mover = mover;
+        this.dirty = new boolean[gameSituation.getCols()];
+    }
+
+    /**
+     * Marks a column to be compacted.
+     *
+     * @param col the column
+     */
+    void markDirty(int col) {
+        dirty[col] = true;
+    }
+
+    /**
+     * Marks all columns to be compacted.
+     */
+    void markAllDirty() {
+        for (int col = 0; col < dirty.length; col++) {
+            dirty[col] = true;
+        }
+    }
+
+    /**
+     * Compacts all dirty columns, which are clean afterwards.
+     *
+     * @return the number of moved tokens
+     */
+    int compact() {
+        int moved = 0;
+        for (int col = 0; col < dirty.length; col++) {
+            if (dirty[col]) {
+                dirty[col] = false;
+                moved += compactColumn(col);
+            }
+        }
+
+        return moved;
+    }
+
+    /**
+     * Moves the tokens of a column down onto each other, keeping their order.
+     *
+     * @param col the column
+     * @return the number of moved tokens
+     */
+    private int compactColumn(int col) {
+        int moved = 0;
+        int free = gameSituation.getRows() - 1;
+        for (int row = free; row >= 0; row--) {
+            Field field = gameSituation.getField(col, row);
+            if (field.getToken() != null) {
+                if (row != free) {
+                    mover.moveToken(field, gameSituation.getField(col, free));
+                    moved++;
+                }
+                free--;
+            }
+        }
+
+        return moved;
+    }
+}
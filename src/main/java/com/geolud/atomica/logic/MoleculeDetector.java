@@ -1,13 +1,28 @@
 package com.geolud.atomica.logic;
 
 import com.geolud.atomica.objects.AtomToken;
+import com.geolud.atomica.objects.Field;
 import com.geolud.atomica.objects.GameSituation;
 import com.geolud.atomica.objects.Molecule;
+import com.geolud.atomica.util.flightrecorder.FlightEvents;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 
 /**
  * The class is responsible for detecting all Molecules in a game situation.
+ * <p/>
+ * <p>
+ * Since the Game removes all Molecules right after detecting them, a new
+ * Molecule must contain a field changed since the last detection. So
+ * {@link #detectNewMolecules()} only starts the scan at atoms within the
+ * chunks of the situation changed since then and their neighbours above and
+ * to the left. A Molecule may still reach further to the left or up, e.g. if
+ * the situation was not detected after every change, so the scanned region
+ * grows by a chunk wherever a square of four equal atoms crosses its left or
+ * upper border. No Molecule then starts outside the region and reaches into
+ * it, and the scan finds the same Molecules as scanning the whole board.
+ * </p>
  *
  * @author Georg Ludewig
  */
@@ -22,12 +37,22 @@ public class MoleculeDetector {
      */
     private ArrayList<Molecule> detectedMolecules = null;
 
+    /**
+     * The cell indexes of the atoms of all detected Molecules.
+     */
+    private BitSet usedCells = null;
+
     /**
      * Keeps track of the biggest Molecule while detecting a Molecule for a
      * certain Atom.
      */
     private Molecule maxSizeMolecule;
 
+    /**
+     * The number of atoms scanned by the last detection.
+     */
+    private int scannedAtoms = 0;
+
     /**
      * Creates a MoleculeDetector for the given <code>gameSituation</code>.
      *
@@ -36,6 +61,7 @@ public class MoleculeDetector {
     public MoleculeDetector(GameSituation gameSituation) {
         this.gameSituation = gameSituation;
         detectedMolecules = new ArrayList<Molecule>();
+        usedCells = new BitSet();
     }
 
     /**
@@ -141,18 +167,191 @@ public class MoleculeDetector {
      * @return a list of all detected Molecules
      */
     public ArrayList<Molecule> detectMolecules() {
+        Object event = FlightEvents.beginMoleculeDetection();
         ArrayList<AtomToken> atoms = gameSituation.getAtoms();
+        scannedAtoms = atoms.size();
         for (AtomToken atom : atoms) {
             detectMolecule(atom);
-            if (maxSizeMolecule != null) {
-                detectedMolecules.add(maxSizeMolecule);
-                maxSizeMolecule = null;
+            addDetectedMolecule();
+        }
+
+        FlightEvents.endMoleculeDetection(event, gameSituation.getCols()
+                * gameSituation.getRows(), scannedAtoms, detectedMolecules
+                .size());
+        return detectedMolecules;
+    }
+
+    /**
+     * Scans the chunks of the game situation changed since the last call for
+     * Molecules and returns them in an ArrayList. Expects that all Molecules
+     * found by the previous call were removed. Clears the dirty chunks of the
+     * situation.
+     *
+     * @return a list of all detected Molecules
+     */
+    public ArrayList<Molecule> detectNewMolecules() {
+        Object event = FlightEvents.beginMoleculeDetection();
+        int cols = gameSituation.getCols();
+        int rows = gameSituation.getRows();
+        int chunkCols = gameSituation.getChunkCols();
+        int chunkRows = gameSituation.getChunkRows();
+
+        // a molecule starting in a chunk may reach into the chunks to the
+        // right and below it
+        boolean[] scan = new boolean[chunkCols * chunkRows];
+        int[] added = new int[chunkCols * chunkRows];
+        int addedCount = 0;
+        for (int cr = 0; cr < chunkRows; cr++) {
+            for (int cc = 0; cc < chunkCols; cc++) {
+                if (gameSituation.isChunkDirty(cc, cr)) {
+                    for (int dr = 0; dr <= Math.min(cr, 1); dr++) {
+                        for (int dc = 0; dc <= Math.min(cc, 1); dc++) {
+                            int chunk = (cr - dr) * chunkCols + cc - dc;
+                            if (!scan[chunk]) {
+                                scan[chunk] = true;
+                                added[addedCount++] = chunk;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        gameSituation.clearDirtyChunks();
+
+        // grow the region until no molecule crosses its left or upper border
+        while (addedCount > 0) {
+            int chunk = added[--addedCount];
+            int cc = chunk % chunkCols;
+            int cr = chunk / chunkCols;
+            int left = chunk - 1;
+            if (cc > 0 && !scan[left] && crossesColumn(cc
+                    * GameSituation.CHUNK_SIZE, cr * GameSituation.CHUNK_SIZE)) {
+                scan[left] = true;
+                added[addedCount++] = left;
+            }
+            int up = chunk - chunkCols;
+            if (cr > 0 && !scan[up] && crossesRow(cr
+                    * GameSituation.CHUNK_SIZE, cc * GameSituation.CHUNK_SIZE)) {
+                scan[up] = true;
+                added[addedCount++] = up;
+            }
+        }
+
+        // scan row by row, so the molecules are found in the same order as
+        // by a scan of the whole board
+        scannedAtoms = 0;
+        for (int row = 0; row < rows; row++) {
+            int chunkRow = row / GameSituation.CHUNK_SIZE;
+            for (int cc = 0; cc < chunkCols; cc++) {
+                if (!scan[chunkRow * chunkCols + cc]) {
+                    continue;
+                }
+
+                int minCol = cc * GameSituation.CHUNK_SIZE;
+                int maxCol = Math.min(cols, minCol + GameSituation.CHUNK_SIZE);
+                for (int col = minCol; col < maxCol; col++) {
+                    if (gameSituation.getCell(row * cols + col) > 0) {
+                        scannedAtoms++;
+                        detectMolecule(gameSituation.queryAtom(col, row));
+                        addDetectedMolecule();
+                    }
+                }
             }
         }
 
+        FlightEvents.endMoleculeDetection(event, cols * rows, scannedAtoms,
+                detectedMolecules.size());
         return detectedMolecules;
     }
 
+    /**
+     * Indicates if a square of four equal atoms lies across the border left
+     * of the given column, beside the rows of a chunk and the rows next to
+     * them.
+     *
+     * @param col    the first column right of the border
+     * @param minRow the first row of the chunk
+     * @return true if a square crosses the border
+     */
+    private boolean crossesColumn(int col, int minRow) {
+        int cols = gameSituation.getCols();
+        int maxRow = Math.min(gameSituation.getRows() - 1, minRow
+                + GameSituation.CHUNK_SIZE);
+        for (int row = Math.max(0, minRow - 1); row < maxRow; row++) {
+            int cell = row * cols + col;
+            if (isSquare(cell - 1, cols)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Indicates if a square of four equal atoms lies across the border above
+     * the given row, beside the columns of a chunk and the columns next to
+     * them.
+     *
+     * @param row    the first row below the border
+     * @param minCol the first column of the chunk
+     * @return true if a square crosses the border
+     */
+    private boolean crossesRow(int row, int minCol) {
+        int cols = gameSituation.getCols();
+        int maxCol = Math.min(cols - 1, minCol + GameSituation.CHUNK_SIZE);
+        for (int col = Math.max(0, minCol - 1); col < maxCol; col++) {
+            if (isSquare((row - 1) * cols + col, cols)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Indicates if the field with the given cell index and its neighbours to
+     * the right, below and below right hold atoms of the same color. The
+     * field must not be in the last column or row.
+     *
+     * @param cell the cell index of the upper left field
+     * @param cols the number of columns
+     * @return true if the four fields hold equal atoms
+     */
+    private boolean isSquare(int cell, int cols) {
+        byte code = gameSituation.getCell(cell);
+        return code > 0 && gameSituation.getCell(cell + 1) == code
+                && gameSituation.getCell(cell + cols) == code
+                && gameSituation.getCell(cell + cols + 1) == code;
+    }
+
+    /**
+     * Adds the Molecule found by the last call of detectMolecule to the
+     * detected ones, if there is one.
+     */
+    private void addDetectedMolecule() {
+        if (maxSizeMolecule == null) {
+            return;
+        }
+
+        int cols = gameSituation.getCols();
+        for (int i = 0; i < maxSizeMolecule.size(); i++) {
+            Field field = maxSizeMolecule.getAtom(i).getField();
+            usedCells.set(field.getRow() * cols + field.getCol());
+        }
+        detectedMolecules.add(maxSizeMolecule);
+        maxSizeMolecule = null;
+    }
+
+    /**
+     * Returns the number of atoms scanned by the last call of
+     * {@link #detectMolecules()}.
+     *
+     * @return the number of scanned atoms
+     */
+    public int getScannedAtoms() {
+        return scannedAtoms;
+    }
+
     /**
      * Tries to detect a Molecule with a bigger size than the given
      * <code>m</code> in south direction.
@@ -271,22 +470,15 @@ public class MoleculeDetector {
     }
 
     /**
-     * Checks whether the Atom is already in use by a Molecule or still
-     * available by looping through all detected Molecules.
+     * Checks whether the Atom is already in use by a detected Molecule.
      *
      * @param atom the atom to check
-     * @return true if not used, false if used by a molecule
+     * @return true if used by a molecule
      */
     private boolean isUsed(AtomToken atom) {
-        boolean isUsed = false;
-        for (Molecule m : detectedMolecules) {
-            if (m.contains(atom)) {
-                isUsed = true;
-                break;
-            }
-        }
-
-        return isUsed;
+        Field field = atom.getField();
+        return usedCells.get(field.getRow() * gameSituation.getCols()
+                + field.getCol());
     }
 
 }
@@ -0,0 +1,201 @@
+package com.geolud.atomica.logic;
+
+import com.geolud.atomica.logic.pathfinding.Path;
+
+/**
+ * Immutable description of what happened on the board when an atom was moved:
+ * the path the atom took, the atoms which were removed as molecules and the
+ * indicators which were transformed to atoms in a following round. It allows
+ * the view to animate a move after the model has already been changed.
+ *
+ * @author Georg Ludewig
+ */
+public class MoveResult {
+    /**
+     * The columns of the fields the atom passed, starting at its origin.
+     */
+    private final int[] pathCols;
+
+    /**
+     * The rows of the fields the atom passed, starting at its origin.
+     */
+    private final int[] pathRows;
+
+    /**
+     * The color index of the moved atom.
+     */
+    private final int colorIndex;
+
+    /**
+     * The columns of all removed atoms.
+     */
+    private final int[] removedCols;
+
+    /**
+     * The rows of all removed atoms.
+     */
+    private final int[] removedRows;
+
+    /**
+     * The color indices of all removed atoms.
+     */
+    private final int[] removedColors;
+
+    /**
+     * The columns of all indicators transformed to atoms.
+     */
+    private final int[] transformedCols;
+
+    /**
+     * The rows of all indicators transformed to atoms.
+     */
+    private final int[] transformedRows;
+
+    /**
+     * The color indices of all indicators transformed to atoms.
+     */
+    private final int[] transformedColors;
+
+    /**
+     * Creates a move result.
+     *
+     * @param path        the path the atom was moved along
+     * @param colorIndex  the color index of the moved atom
+     * @param removed     the atoms removed as molecules
+     * @param transformed the indicators transformed to atoms
+     */
+    MoveResult(Path path, int colorIndex, CellList removed,
+               CellList transformed) {
+        this.pathCols = new int[path.size()];
+        this.pathRows = new int[path.size()];
+        for (int i = 0; i < path.size(); i++) {
+            pathCols[i] = path.get(i).getCol();
+            pathRows[i] = path.get(i).getRow();
+        }
+
+        this.colorIndex = colorIndex;
+        this.removedCols = removed.copyCols();
+        this.removedRows = removed.copyRows();
+        this.removedColors = removed.copyColors();
+        this.transformedCols = transformed.copyCols();
+        this.transformedRows = transformed.copyRows();
+        this.transformedColors = transformed.copyColors();
+    }
+
+    /**
+     * Returns the color index of the moved atom.
+     *
+     * @return the color index of the moved atom
+     */
+    public int getColorIndex() {
+        return colorIndex;
+    }
+
+    /**
+     * Returns the number of fields of the path including origin and
+     * destination.
+     *
+     * @return the number of fields of the path
+     */
+    public int getPathLength() {
+        return pathCols.length;
+    }
+
+    /**
+     * Returns the column of the n-th field of the path.
+     *
+     * @param n the position within the path
+     * @return the column of the field
+     */
+    public int getPathCol(int n) {
+        return pathCols[n];
+    }
+
+    /**
+     * Returns the row of the n-th field of the path.
+     *
+     * @param n the position within the path
+     * @return the row of the field
+     */
+    public int getPathRow(int n) {
+        return pathRows[n];
+    }
+
+    /**
+     * Returns the number of atoms removed as molecules.
+     *
+     * @return the number of removed atoms
+     */
+    public int getRemovedCount() {
+        return removedCols.length;
+    }
+
+    /**
+     * Returns the column of the n-th removed atom.
+     *
+     * @param n the index of the removed atom
+     * @return the column of the removed atom
+     */
+    public int getRemovedCol(int n) {
+        return removedCols[n];
+    }
+
+    /**
+     * Returns the row of the n-th removed atom.
+     *
+     * @param n the index of the removed atom
+     * @return the row of the removed atom
+     */
+    public int getRemovedRow(int n) {
+        return removedRows[n];
+    }
+
+    /**
+     * Returns the color index of the n-th removed atom.
+     *
+     * @param n the index of the removed atom
+     * @return the color index of the removed atom
+     */
+    public int getRemovedColor(int n) {
+        return removedColors[n];
+    }
+
+    /**
+     * Returns the number of indicators transformed to atoms.
+     *
+     * @return the number of transformed indicators
+     */
+    public int getTransformedCount() {
+        return transformedCols.length;
+    }
+
+    /**
+     * Returns the column of the n-th transformed indicator.
+     *
+     * @param n the index of the transformed indicator
+     * @return the column of the transformed indicator
+     */
+    public int getTransformedCol(int n) {
+        return transformedCols[n];
+    }
+
+    /**
+     * Returns the row of the n-th transformed indicator.
+     *
+     * @param n the index of the transformed indicator
+     * @return the row of the transformed indicator
+     */
+    public int getTransformedRow(int n) {
+        return transformedRows[n];
+    }
+
+    /**
+     * Returns the color index of the n-th transformed indicator.
+     *
+     * @param n the index of the transformed indicator
+     * @return the color index of the transformed indicator
+     */
+    public int getTransformedColor(int n) {
+        return transformedColors[n];
+    }
+}
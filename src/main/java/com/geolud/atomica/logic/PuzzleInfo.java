@@ -0,0 +1,114 @@
+package com.geolud.atomica.logic;
+
+/**
+ * The metadata of a puzzle in a PuzzleLibrary. It is read from the index of
+ * the library, so listing puzzles does not require decoding them.
+ *
+ * @author Georg Ludewig
+ */
+public class PuzzleInfo {
+    /**
+     * The position of the puzzle in the library.
+     */
+    private final int index;
+
+    /**
+     * The number of columns of the board.
+     */
+    private final int cols;
+
+    /**
+     * The number of rows of the board.
+     */
+    private final int rows;
+
+    /**
+     * The number of colors of the current level.
+     */
+    private final int numberOfColors;
+
+    /**
+     * The number of atoms on the board.
+     */
+    private final int atomCount;
+
+    /**
+     * The hash of the board dimensions and tokens.
+     */
+    private final long positionHash;
+
+    /**
+     * Creates the metadata of a puzzle.
+     *
+     * @param index          the position of the puzzle in the library
+     * @param cols           the number of columns of the board
+     * @param rows           the number of rows of the board
+     * @param numberOfColors the number of colors of the current level
+     * @param atomCount      the number of atoms on the board
+     * @param positionHash   the hash of the board dimensions and tokens
+     */
+    PuzzleInfo(int index, int cols, int rows, int numberOfColors,
+               int atomCount, long positionHash) {
+        this.index = index;
+        this.cols = cols;
+        this.rows = rows;
+        this.numberOfColors = numberOfColors;
+        this.atomCount = atomCount;
+        this.positionHash = positionHash;
+    }
+
+    /**
+     * Returns the position of the puzzle in the library.
+     *
+     * @return the position of the puzzle
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the number of columns of the board.
+     *
+     * @return the number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Returns the number of rows of the board.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of colors of the current level.
+     *
+     * @return the number of colors
+     */
+    public int getNumberOfColors() {
+        return numberOfColors;
+    }
+
+    /**
+     * Returns the number of atoms on the board.
+     *
+     * @return the number of atoms
+     */
+    public int getAtomCount() {
+        return atomCount;
+    }
+
+    /**
+     * Returns the hash of the board dimensions and tokens. Equal positions
+     * have equal hashes.
+     *
+     * @return the position hash
+     */
+    public long getPositionHash() {
+        return positionHash;
+    }
+}
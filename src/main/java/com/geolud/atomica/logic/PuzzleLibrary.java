@@ -0,0 +1,455 @@
+package com.geolud.atomica.logic;
+
+import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.objects.SituationSnapshot;
+import com.geolud.atomica.util.hash.FnvHash;
+import com.geolud.atomica.util.logging.Logging;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.logging.Level;
+
+/**
+ * A library of many puzzles (game situations) in a single file. The file is
+ * mapped into memory, so any puzzle and its metadata can be accessed in
+ * constant time and is decoded only when it is requested.
+ * <p/>
+ * <p>
+ * Layout (big endian): a header (int magic number <code>ATLB</code>, short
+ * version, short reserved, int number of puzzles, int reserved), followed by
+ * an index with one entry of {@link #ENTRY_SIZE} bytes per puzzle (long data
+ * offset, int data length, short columns, short rows, byte number of colors,
+ * byte and short reserved, int number of atoms, long position hash) and the
+ * data of all puzzles as encoded by the GameSituationCodec.
+ * </p>
+ * <p>
+ * Added puzzles are kept in memory until {@link #save()} rewrites the file.
+ * The new file is written next to the old one and then moved over it, so the
+ * library is never left half written. The mapping of the old file is released
+ * before, since a mapped file can't be replaced on every platform.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class PuzzleLibrary {
+    /**
+     * The magic number at the start of each library ("ATLB").
+     */
+    private static final int MAGIC = 0x41544C42;
+
+    /**
+     * The current version of the format.
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * The size of the header in bytes.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * The size of an index entry in bytes.
+     */
+    private static final int ENTRY_SIZE = 32;
+
+    /**
+     * The file of the library.
+     */
+    private final File file;
+
+    /**
+     * The mapped file, null if the file does not exist yet.
+     */
+    private MappedByteBuffer map = null;
+
+    /**
+     * The number of puzzles in the mapped file.
+     */
+    private int mappedCount = 0;
+
+    /**
+     * The encoded puzzles added since the last save.
+     */
+    private final ArrayList<ByteBuffer> added = new ArrayList<ByteBuffer>();
+
+    /**
+     * The metadata of the puzzles added since the last save.
+     */
+    private final ArrayList<PuzzleInfo> addedInfos = new ArrayList<PuzzleInfo>();
+
+    /**
+     * Opens the library at the given path. If the file does not exist, an
+     * empty library is created which is written by the first save.
+     *
+     * @param path the path of the library file
+     * @throws IOException if the file exists but is no valid library
+     */
+    public PuzzleLibrary(String path) throws IOException {
+        this.file = new File(path);
+        if (file.exists()) {
+            mapFile();
+        }
+    }
+
+    /**
+     * Returns the path of the library file.
+     *
+     * @return the path of the library file
+     */
+    public String getPath() {
+        return file.getAbsolutePath();
+    }
+
+    /**
+     * Returns the number of puzzles.
+     *
+     * @return the number of puzzles
+     */
+    public int size() {
+        return mappedCount + added.size();
+    }
+
+    /**
+     * Indicates if puzzles were added since the last save.
+     *
+     * @return true if there are unsaved puzzles
+     */
+    public boolean isModified() {
+        return !added.isEmpty();
+    }
+
+    /**
+     * Returns the metadata of the puzzle at the given position without
+     * decoding the puzzle.
+     *
+     * @param index the position of the puzzle
+     * @return the metadata of the puzzle
+     */
+    public PuzzleInfo getInfo(int index) {
+        checkIndex(index);
+        if (index >= mappedCount) {
+            return addedInfos.get(index - mappedCount);
+        }
+
+        int entry = HEADER_SIZE + index * ENTRY_SIZE;
+        return new PuzzleInfo(index, map.getShort(entry + 12), map
+                .getShort(entry + 14), map.get(entry + 16), map
+                .getInt(entry + 20), map.getLong(entry + 24));
+    }
+
+    /**
+     * Decodes the board, score and level number of the puzzle at the given
+     * position.
+     *
+     * @param index the position of the puzzle
+     * @return the snapshot of the puzzle
+     * @throws IOException if the puzzle data is corrupt
+     */
+    public SituationSnapshot getSnapshot(int index) throws IOException {
+        return GameSituationCodec.decodeSnapshot(getEncoded(index));
+    }
+
+    /**
+     * Decodes the puzzle at the given position.
+     *
+     * @param index the position of the puzzle
+     * @return the decoded game situation
+     * @throws IOException if the puzzle data is corrupt
+     */
+    public GameSituation getSituation(int index) throws IOException {
+        return GameSituationCodec.decode(getEncoded(index));
+    }
+
+    /**
+     * Returns the position of the first puzzle with the given position hash.
+     *
+     * @param positionHash the position hash to look for
+     * @return the position of the puzzle, -1 if there is none
+     */
+    public int indexOf(long positionHash) {
+        for (int i = 0; i < mappedCount; i++) {
+            if (map.getLong(HEADER_SIZE + i * ENTRY_SIZE + 24) == positionHash) {
+                return i;
+            }
+        }
+        for (PuzzleInfo info : addedInfos) {
+            if (info.getPositionHash() == positionHash) {
+                return info.getIndex();
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Adds a puzzle to the end of the library. It is written by the next
+     * save.
+     *
+     * @param gameSituation the puzzle to add
+     * @return the position of the added puzzle
+     */
+    public int add(GameSituation gameSituation) {
+        SituationSnapshot snapshot = gameSituation.createSnapshot();
+
+        int atomCount = 0;
+        for (int i = 0; i < snapshot.getCellCount(); i++) {
+            if (SituationSnapshot.isAtomCell(snapshot.getCell(i))) {
+                atomCount++;
+            }
+        }
+
+        int index = size();
+        added.add(GameSituationCodec.encode(gameSituation));
+        addedInfos.add(new PuzzleInfo(index, snapshot.getCols(), snapshot
+                .getRows(), gameSituation.getCurrentLevel()
+                .getNumberOfColors(), atomCount, hash(snapshot)));
+
+        return index;
+    }
+
+    /**
+     * Removes the puzzle at the given position and rewrites the library file
+     * immediately, including all unsaved puzzles.
+     *
+     * @param index the position of the puzzle
+     * @throws IOException if the file can't be written
+     */
+    public void remove(int index) throws IOException {
+        checkIndex(index);
+        writeFile(index);
+    }
+
+    /**
+     * Writes all puzzles into the library file.
+     *
+     * @throws IOException if the file can't be written
+     */
+    public void save() throws IOException {
+        writeFile(-1);
+    }
+
+    /**
+     * Computes the position hash (64 bit FNV-1a) of the board dimensions and
+     * tokens of the given snapshot.
+     *
+     * @param snapshot the snapshot
+     * @return the position hash
+     */
+    public static long hash(SituationSnapshot snapshot) {
+        long hash = FnvHash.OFFSET_BASIS;
+        hash = FnvHash.add(hash, snapshot.getCols());
+        hash = FnvHash.add(hash, snapshot.getRows());
+        for (int i = 0; i < snapshot.getCellCount(); i++) {
+            hash = FnvHash.add(hash, snapshot.getCell(i) & 0xff);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Returns the encoded data of the puzzle at the given position.
+     *
+     * @param index the position of the puzzle
+     * @return a buffer containing only the encoded puzzle
+     */
+    private ByteBuffer getEncoded(int index) {
+        checkIndex(index);
+        if (index >= mappedCount) {
+            return added.get(index - mappedCount).duplicate();
+        }
+
+        int entry = HEADER_SIZE + index * ENTRY_SIZE;
+        int offset = (int) map.getLong(entry);
+        int length = map.getInt(entry + 8);
+
+        ByteBuffer data = map.duplicate();
+        data.position(offset);
+        data.limit(offset + length);
+        return data.slice();
+    }
+
+    /**
+     * Checks that a puzzle exists at the given position.
+     *
+     * @param index the position to check
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Invalid puzzle " + index);
+        }
+    }
+
+    /**
+     * Maps the library file and validates its header and index.
+     *
+     * @throws IOException if the file is no valid library
+     */
+    private void mapFile() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Puzzle library too large: " + file);
+            }
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel
+                    .size());
+        } finally {
+            raf.close();
+        }
+
+        if (map.limit() < HEADER_SIZE || map.getInt(0) != MAGIC) {
+            throw new IOException("Not an Atomica puzzle library: " + file);
+        }
+        if (map.getShort(4) != VERSION) {
+            throw new IOException("Unsupported puzzle library version "
+                    + map.getShort(4));
+        }
+
+        int count = map.getInt(8);
+        if (count < 0 || HEADER_SIZE + (long) count * ENTRY_SIZE > map.limit()) {
+            throw new IOException("Corrupt puzzle library index: " + file);
+        }
+        for (int i = 0; i < count; i++) {
+            int entry = HEADER_SIZE + i * ENTRY_SIZE;
+            long end = map.getLong(entry) + map.getInt(entry + 8);
+            if (map.getLong(entry) < 0 || end > map.limit()) {
+                throw new IOException("Corrupt puzzle library entry " + i);
+            }
+        }
+
+        mappedCount = count;
+    }
+
+    /**
+     * Releases the mapping of the library file, so it can be replaced. The
+     * mapped buffer is dropped and unmapped right away where the VM allows
+     * it, otherwise only when it is garbage collected.
+     */
+    private void unmapFile() {
+        MappedByteBuffer old = map;
+        map = null;
+        mappedCount = 0;
+        if (old == null) {
+            return;
+        }
+
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            try {
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+                        ByteBuffer.class);
+                java.lang.reflect.Field theUnsafe = unsafeClass
+                        .getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), old);
+            } catch (NoSuchMethodException e) {
+                // before Java 9 the buffer has a cleaner of its own
+                Method cleanerMethod = old.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(old);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            Logging.getLogger().log(Level.FINE,
+                    "Could not unmap " + file, e);
+        }
+    }
+
+    /**
+     * Writes all puzzles except the excluded one into a new file, which then
+     * replaces the library file. The new file is mapped afterwards.
+     *
+     * @param excluded the position of the puzzle to leave out, -1 for none
+     * @throws IOException if the file can't be written
+     */
+    private void writeFile(int excluded) throws IOException {
+        int count = size() - (excluded >= 0 ? 1 : 0);
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create directory " + dir);
+        }
+        File temp = new File(dir, file.getName() + ".tmp");
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + count
+                * ENTRY_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) 0);
+        header.putInt(count);
+        header.putInt(0);
+
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            FileChannel channel = out.getChannel();
+
+            // the data follows the index, so write it first and fill in the
+            // index afterwards
+            long offset = header.capacity();
+            channel.position(offset);
+            for (int i = 0; i < size(); i++) {
+                if (i == excluded) {
+                    continue;
+                }
+
+                ByteBuffer data = getEncoded(i);
+                int length = data.remaining();
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+
+                PuzzleInfo info = getInfo(i);
+                header.putLong(offset);
+                header.putInt(length);
+                header.putShort((short) info.getCols());
+                header.putShort((short) info.getRows());
+                header.put((byte) info.getNumberOfColors());
+                header.put((byte) 0);
+                header.putShort((short) 0);
+                header.putInt(info.getAtomCount());
+                header.putLong(info.getPositionHash());
+
+                offset += length;
+            }
+
+            header.flip();
+            channel.position(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        } finally {
+            out.close();
+        }
+
+        unmapFile();
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // keep the old library usable
+            temp.delete();
+            if (file.exists()) {
+                mapFile();
+            }
+            throw e;
+        }
+
+        added.clear();
+        addedInfos.clear();
+        mapFile();
+
+        Logging.getLogger().log(Level.INFO,
+                "Saved " + count + " puzzles to " + file);
+    }
+}
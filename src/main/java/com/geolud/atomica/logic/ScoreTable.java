@@ -0,0 +1,95 @@
+package com.geolud.atomica.logic;
+
+import com.geolud.atomica.objects.GameSettings;
+import com.geolud.atomica.objects.Level;
+import com.geolud.atomica.objects.ScoringRules;
+
+import java.util.ArrayList;
+
+/**
+ * The scoring rules of a game, evaluated once for every level, molecule size,
+ * combo and cascade length when the game starts, so scoring a molecule is
+ * three array lookups. Sizes, combos and cascades beyond the tables are
+ * passed to the rules, which only happens on very large boards.
+ *
+ * @author Georg Ludewig
+ */
+final class ScoreTable {
+    /**
+     * The number of molecule sizes in the table.
+     */
+    private static final int SIZES = 64;
+
+    /**
+     * The number of combo and cascade factors in the tables.
+     */
+    private static final int FACTORS = 32;
+
+    /**
+     * The rules the tables are built from.
+     */
+    private final ScoringRules rules;
+
+    /**
+     * The levels of the game, indexed by level number - 1.
+     */
+    private final ArrayList<Level> levels;
+
+    /**
+     * The base scores indexed by level number - 1 and molecule size.
+     */
+    private final int[][] moleculeScores;
+
+    /**
+     * The combo factors indexed by the number of molecules in the round.
+     */
+    private final int[] comboMultipliers = new int[FACTORS];
+
+    /**
+     * The cascade factors indexed by the link of the chain reaction.
+     */
+    private final int[] cascadeMultipliers = new int[FACTORS];
+
+    /**
+     * Builds the tables for the given settings.
+     *
+     * @param settings the settings of the game
+     */
+    ScoreTable(GameSettings settings) {
+        this.rules = settings.getScoringRules();
+        this.levels = new ArrayList<Level>(settings.getLevels());
+        this.moleculeScores = new int[levels.size()][SIZES];
+        for (int l = 0; l < levels.size(); l++) {
+            for (int size = 0; size < SIZES; size++) {
+                moleculeScores[l][size] = rules.getMoleculeScore(levels.get(l),
+                        size);
+            }
+        }
+        for (int i = 0; i < FACTORS; i++) {
+            comboMultipliers[i] = rules.getComboMultiplier(i);
+            cascadeMultipliers[i] = rules.getCascadeMultiplier(i);
+        }
+    }
+
+    /**
+     * Returns the score of a molecule.
+     *
+     * @param levelNumber the number of the level the molecule is removed in
+     * @param size        the number of atoms of the molecule
+     * @param molecules   the number of molecules removed in the round so far,
+     *                    including this one
+     * @param link        the link of the chain reaction which formed the
+     *                    molecule, starting with 1
+     * @return the score of the molecule
+     */
+    int getScore(int levelNumber, int size, int molecules, int link) {
+        int score = size < SIZES ? moleculeScores[levelNumber - 1][size]
+                : rules.getMoleculeScore(levels.get(levelNumber - 1), size);
+        score *= molecules < FACTORS ? comboMultipliers[molecules] : rules
+                .getComboMultiplier(molecules);
+        score *= link < FACTORS ? cascadeMultipliers[link] : rules
+                .getCascadeMultiplier(link);
+
+        return score;
+    }
+}
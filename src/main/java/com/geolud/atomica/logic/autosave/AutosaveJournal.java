@@ -0,0 +1,488 @@
+package com.geolud.atomica.logic.autosave;
+
+import com.geolud.atomica.logic.Game;
+import com.geolud.atomica.logic.GameEventListener;
+import com.geolud.atomica.logic.GameSituationCodec;
+import com.geolud.atomica.objects.SituationSnapshot;
+import com.geolud.atomica.objects.Token;
+import com.geolud.atomica.util.logging.Logging;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Autosaves a running game into a journal (see JournalFormat), so it can be
+ * resumed by the AutosaveRecovery after a crash. Register it at a Game by
+ * {@link Game#addGameEventListener(GameEventListener)} before starting it.
+ * <p/>
+ * <p>
+ * The changes of a step are encoded into a frame on the thread changing the
+ * game. Finished frames are appended by a background thread, which forces
+ * the journal to the disk at most every {@link #SYNC_INTERVAL} milliseconds,
+ * so all steps of an interval share one sync. Every
+ * {@link #CHECKPOINT_INTERVAL} steps the whole situation is written into a
+ * new checkpoint, which atomically replaces the old one, and the journal is
+ * started over. Neither the game nor the gui ever wait for the disk.
+ * </p>
+ * <p>
+ * When the game is over or closed regularly the autosave files are deleted,
+ * as there is nothing to resume. Closing the game waits until they are
+ * deleted, so a journal of the next game can't be deleted by mistake.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class AutosaveJournal implements GameEventListener {
+    /**
+     * The maximum time in milliseconds between appending a step and forcing
+     * it to the disk.
+     */
+    private static final long SYNC_INTERVAL = 250;
+
+    /**
+     * The number of steps between two checkpoints.
+     */
+    private static final int CHECKPOINT_INTERVAL = 64;
+
+    /**
+     * The initial size of the frame buffer in bytes.
+     */
+    private static final int FRAME_SIZE = 1024;
+
+    /**
+     * The maximum time in milliseconds closing the game waits for the writing
+     * thread.
+     */
+    private static final long CLOSE_TIMEOUT = 5000;
+
+    /**
+     * The checkpoint file.
+     */
+    private final File checkpointFile;
+
+    /**
+     * The journal file.
+     */
+    private final File journalFile;
+
+    /**
+     * The thread writing the files.
+     */
+    private final ScheduledExecutorService writer;
+
+    /**
+     * The payload of the current step.
+     */
+    private ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+
+    /**
+     * The number of columns of the board.
+     */
+    private int cols = 0;
+
+    /**
+     * The step number of the last checkpoint.
+     */
+    private int checkpointStep = 0;
+
+    /**
+     * Flag which indicates that the game is over and nothing is autosaved
+     * anymore.
+     */
+    private boolean finished = false;
+
+    /**
+     * The journal channel, only accessed by the writing thread.
+     */
+    private FileChannel channel = null;
+
+    /**
+     * Flag which indicates that appended steps were not forced to the disk
+     * yet, only accessed by the writing thread.
+     */
+    private boolean dirty = false;
+
+    /**
+     * Flag which indicates that writing failed, only accessed by the writing
+     * thread.
+     */
+    private boolean failed = false;
+
+    /**
+     * Creates a journal writing its files into the given directory. The
+     * directory is created by the first checkpoint.
+     *
+     * @param dir the directory of the autosave files
+     */
+    public AutosaveJournal(String dir) {
+        this.checkpointFile = new File(dir, JournalFormat.CHECKPOINT_FILE);
+        this.journalFile = new File(dir, JournalFormat.JOURNAL_FILE);
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                1, new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "AtomicaAutosave");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                sync();
+            }
+        }, SYNC_INTERVAL, SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+        this.writer = executor;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#gameStarted(long, int, int)
+     */
+    public void gameStarted(long seed, int cols, int rows) {
+        this.cols = cols;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#tokenPlaced(int, int,
+     * com.geolud.atomica.objects.Token)
+     */
+    public void tokenPlaced(int col, int row, Token token) {
+        ByteBuffer out = reserve(1 + 4 + 1);
+        out.put(JournalFormat.PLACE);
+        out.putInt(row * cols + col);
+        out.put(SituationSnapshot.encodeCell(token));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#tokenMoved(int, int, int,
+     * int)
+     */
+    public void tokenMoved(int fromCol, int fromRow, int toCol, int toRow) {
+        ByteBuffer out = reserve(1 + 4 + 4);
+        out.put(JournalFormat.MOVE);
+        out.putInt(fromRow * cols + fromCol);
+        out.putInt(toRow * cols + toCol);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#tokenRemoved(int, int)
+     */
+    public void tokenRemoved(int col, int row) {
+        ByteBuffer out = reserve(1 + 4);
+        out.put(JournalFormat.REMOVE);
+        out.putInt(row * cols + col);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#scoreChanged(int, int)
+     */
+    public void scoreChanged(int score, int levelNumber) {
+        ByteBuffer out = reserve(1 + 4 + 2);
+        out.put(JournalFormat.SCORE);
+        out.putInt(score);
+        out.putShort((short) levelNumber);
+    }
+
+    /**
+     * Hands the frame of the step over to the writing thread. The first step
+     * and every {@link #CHECKPOINT_INTERVAL} steps a checkpoint is handed over
+     * instead. When the game is over the autosave files are deleted.
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#stepFinished(com.geolud.atomica.logic.Game)
+     */
+    public void stepFinished(Game game) {
+        final int step = game.getStepCount() - 1;
+
+        if (finished) {
+            // nothing to resume anymore
+        } else if (game.getIsGameOver()) {
+            finished = true;
+            submit(new Runnable() {
+                public void run() {
+                    deleteFiles();
+                }
+            });
+        } else if (step == 0 || step - checkpointStep >= CHECKPOINT_INTERVAL) {
+            checkpointStep = step;
+            final ByteBuffer data = GameSituationCodec.encode(game
+                    .getSituation());
+            submit(new Runnable() {
+                public void run() {
+                    writeCheckpoint(step, data);
+                }
+            });
+        } else {
+            final ByteBuffer data = createFrame(step);
+            submit(new Runnable() {
+                public void run() {
+                    append(data);
+                }
+            });
+        }
+
+        frame.clear();
+    }
+
+    /**
+     * Deletes the autosave files, as a regularly closed game needs no
+     * recovery. Waits at most {@link #CLOSE_TIMEOUT} milliseconds until they
+     * are deleted.
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#gameClosed()
+     */
+    public void gameClosed() {
+        submit(new Runnable() {
+            public void run() {
+                deleteFiles();
+            }
+        });
+        writer.shutdown();
+
+        try {
+            if (!writer.awaitTermination(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                Logging.getLogger().log(Level.WARNING,
+                        "Timed out closing autosave journal " + journalFile);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the frame buffer with at least the given number of free bytes.
+     *
+     * @param size the number of bytes needed
+     * @return the frame buffer to encode into
+     */
+    private ByteBuffer reserve(int size) {
+        if (frame.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(frame.capacity()
+                    * 2, frame.position() + size));
+            frame.flip();
+            larger.put(frame);
+            frame = larger;
+        }
+
+        return frame;
+    }
+
+    /**
+     * Creates the complete frame of the current step.
+     *
+     * @param step the step number
+     * @return the frame ready for being written
+     */
+    private ByteBuffer createFrame(int step) {
+        int length = frame.position();
+        ByteBuffer out = ByteBuffer.allocate(JournalFormat.FRAME_OVERHEAD
+                + length);
+        out.putInt(step);
+        out.putInt(length);
+        out.put(frame.array(), 0, length);
+
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), 0, out.position());
+        out.putInt((int) crc.getValue());
+
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Hands a task over to the writing thread.
+     *
+     * @param task the task
+     */
+    private void submit(Runnable task) {
+        try {
+            writer.execute(task);
+        } catch (RejectedExecutionException e) {
+            Logging.getLogger().log(Level.WARNING,
+                    "Autosave already closed: " + journalFile);
+        }
+    }
+
+    /**
+     * Writes a checkpoint into a temporary file which then replaces the
+     * checkpoint file, and starts a new journal. A crash in between leaves
+     * journal steps which are older than the checkpoint and are skipped by
+     * the recovery. Called by the writing thread only.
+     *
+     * @param step the step number of the checkpoint
+     * @param data the encoded game situation
+     */
+    private void writeCheckpoint(int step, ByteBuffer data) {
+        if (failed) {
+            return;
+        }
+
+        try {
+            File dir = checkpointFile.getAbsoluteFile().getParentFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Could not create directory " + dir);
+            }
+
+            File temp = new File(dir, checkpointFile.getName() + ".tmp");
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                FileChannel tempChannel = out.getChannel();
+                writeFully(tempChannel, createHeader(
+                        JournalFormat.CHECKPOINT_MAGIC, step));
+                writeFully(tempChannel, data);
+                tempChannel.force(true);
+            } finally {
+                out.close();
+            }
+            Files.move(temp.toPath(), checkpointFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+            if (channel == null) {
+                channel = new RandomAccessFile(journalFile, "rw").getChannel();
+            }
+            channel.truncate(0);
+            channel.position(0);
+            writeFully(channel, createHeader(JournalFormat.JOURNAL_MAGIC, step));
+            dirty = true;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Appends a frame to the journal. Called by the writing thread only.
+     *
+     * @param data the frame
+     */
+    private void append(ByteBuffer data) {
+        if (failed || channel == null) {
+            return;
+        }
+
+        try {
+            writeFully(channel, data);
+            dirty = true;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Forces all appended steps to the disk. Called by the writing thread
+     * only.
+     */
+    private void sync() {
+        if (failed || !dirty || channel == null) {
+            return;
+        }
+
+        try {
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Stops autosaving after an error. Called by the writing thread only.
+     *
+     * @param e the error
+     */
+    private void fail(IOException e) {
+        failed = true;
+        Logging.getLogger().log(Level.SEVERE,
+                "Autosave failed, journal " + journalFile, e);
+    }
+
+    /**
+     * Closes the journal and deletes the autosave files, unless writing them
+     * failed. Called by the writing thread only.
+     */
+    private void deleteFiles() {
+        closeChannel();
+        if (!failed) {
+            delete(journalFile);
+            delete(checkpointFile);
+        }
+    }
+
+    /**
+     * Closes the journal. Called by the writing thread only.
+     */
+    private void closeChannel() {
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            Logging.getLogger().log(Level.SEVERE,
+                    "Could not close autosave journal " + journalFile);
+        }
+    }
+
+    /**
+     * Creates the header of a checkpoint or journal.
+     *
+     * @param magic the magic number
+     * @param step  the step number of the checkpoint
+     * @return the header ready for being written
+     */
+    private static ByteBuffer createHeader(int magic, int step) {
+        ByteBuffer header = ByteBuffer.allocate(JournalFormat.HEADER_SIZE);
+        header.putInt(magic);
+        header.putShort(JournalFormat.VERSION);
+        header.putInt(step);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Writes all remaining bytes of the buffer into the channel.
+     *
+     * @param channel the channel
+     * @param data    the bytes to write
+     * @throws IOException if writing fails
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer data)
+            throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    /**
+     * Deletes the given file if it exists.
+     *
+     * @param file the file
+     */
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            Logging.getLogger().log(Level.WARNING,
+                    "Could not delete autosave file " + file);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.geolud.atomica.logic.autosave;
+
+import com.geolud.atomica.logic.GameSituationCodec;
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.objects.SituationSnapshot;
+import com.geolud.atomica.objects.Token;
+import com.geolud.atomica.util.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Recovers a game from the autosave files written by the AutosaveJournal. The
+ * situation of the checkpoint is read and all complete steps of the journal
+ * following it are applied. A damaged end of the journal, as left by a crash
+ * while appending, is ignored.
+ * <p/>
+ * <p>
+ * The methods read from the disk and must not be called on the event
+ * dispatch thread.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public final class AutosaveRecovery {
+    /**
+     * No instances, only static access.
+     */
+    private AutosaveRecovery() {
+
+    }
+
+    /**
+     * Recovers the autosaved game in the given directory.
+     *
+     * @param dir the directory of the autosave files
+     * @return the recovered game situation, null if there is no autosaved game
+     * @throws IOException if the checkpoint can't be read
+     */
+    public static GameSituation recover(String dir) throws IOException {
+        File checkpointFile = new File(dir, JournalFormat.CHECKPOINT_FILE);
+        if (!checkpointFile.exists()) {
+            return null;
+        }
+
+        ByteBuffer checkpoint = ByteBuffer.wrap(Files.readAllBytes(checkpointFile
+                .toPath()));
+        if (checkpoint.remaining() < JournalFormat.HEADER_SIZE
+                || checkpoint.getInt() != JournalFormat.CHECKPOINT_MAGIC
+                || checkpoint.getShort() != JournalFormat.VERSION) {
+            throw new IOException("Not an autosave checkpoint: "
+                    + checkpointFile);
+        }
+        int step = checkpoint.getInt();
+        GameSituation gameSituation = GameSituationCodec.decode(checkpoint);
+
+        File journalFile = new File(dir, JournalFormat.JOURNAL_FILE);
+        if (journalFile.exists()) {
+            int applied = applyJournal(ByteBuffer.wrap(Files
+                    .readAllBytes(journalFile.toPath())), step, gameSituation);
+            Logging.getLogger().log(Level.INFO,
+                    "Recovered autosave of step " + (step + applied));
+        }
+
+        return gameSituation;
+    }
+
+    /**
+     * Deletes the autosave files in the given directory.
+     *
+     * @param dir the directory of the autosave files
+     */
+    public static void discard(String dir) {
+        File[] files = {new File(dir, JournalFormat.JOURNAL_FILE),
+                new File(dir, JournalFormat.CHECKPOINT_FILE)};
+        for (File file : files) {
+            if (file.exists() && !file.delete()) {
+                Logging.getLogger().log(Level.WARNING,
+                        "Could not delete autosave file " + file);
+            }
+        }
+    }
+
+    /**
+     * Applies the steps of the journal following the checkpoint on the given
+     * situation. Applying stops at the first incomplete, damaged or missing
+     * step.
+     *
+     * @param journal        the journal
+     * @param checkpointStep the step number of the checkpoint
+     * @param gameSituation  the situation of the checkpoint
+     * @return the number of applied steps
+     */
+    private static int applyJournal(ByteBuffer journal, int checkpointStep,
+                                    GameSituation gameSituation) {
+        if (journal.remaining() < JournalFormat.HEADER_SIZE
+                || journal.getInt() != JournalFormat.JOURNAL_MAGIC
+                || journal.getShort() != JournalFormat.VERSION) {
+            return 0;
+        }
+        journal.getInt();
+
+        int expected = checkpointStep + 1;
+        CRC32 crc = new CRC32();
+        while (journal.remaining() >= JournalFormat.FRAME_OVERHEAD) {
+            int start = journal.position();
+            int step = journal.getInt();
+            int length = journal.getInt();
+            if (length < 0 || length + 4 > journal.remaining()) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(journal.array(), start, 8 + length);
+            if (journal.getInt(start + 8 + length) != (int) crc.getValue()) {
+                break;
+            }
+
+            journal.limit(start + 8 + length);
+            if (step > checkpointStep) {
+                if (step != expected) {
+                    break;
+                }
+                applyFrame(journal, gameSituation);
+                expected++;
+            }
+            journal.limit(journal.capacity());
+            journal.position(start + JournalFormat.FRAME_OVERHEAD + length);
+        }
+
+        return expected - checkpointStep - 1;
+    }
+
+    /**
+     * Applies the records of a frame on the given situation.
+     *
+     * @param frame         the payload of the frame, read from its position to
+     *                      its limit
+     * @param gameSituation the situation
+     */
+    private static void applyFrame(ByteBuffer frame, GameSituation gameSituation) {
+        while (frame.hasRemaining()) {
+            byte type = frame.get();
+            switch (type) {
+                case JournalFormat.PLACE:
+                    getField(gameSituation, frame.getInt()).placeToken(
+                            SituationSnapshot.decodeCell(frame.get()));
+                    break;
+                case JournalFormat.MOVE:
+                    Field from = getField(gameSituation, frame.getInt());
+                    Token token = from.getToken();
+                    getField(gameSituation, frame.getInt()).placeToken(token);
+                    break;
+                case JournalFormat.REMOVE:
+                    getField(gameSituation, frame.getInt()).removeToken();
+                    break;
+                case JournalFormat.SCORE:
+                    gameSituation.setCurrentScore(frame.getInt());
+                    gameSituation.setCurrentLevel(gameSituation
+                            .getGameSettings().getLevel(frame.getShort()));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown journal record "
+                            + type);
+            }
+        }
+    }
+
+    /**
+     * Returns the field of the given cell index.
+     *
+     * @param gameSituation the situation
+     * @param cell          the cell index
+     * @return the field
+     */
+    private static Field getField(GameSituation gameSituation, int cell) {
+        int cols = gameSituation.getCols();
+        return gameSituation.getField(cell % cols, cell / cols);
+    }
+}
@@ -0,0 +1,85 @@
+package com.geolud.atomica.logic.autosave;
+
+/**
+ * Constants of the autosave files shared by the AutosaveJournal and the
+ * AutosaveRecovery.
+ * <p/>
+ * <p>
+ * The checkpoint file holds a whole game situation: a header (int magic
+ * number <code>ATCP</code>, short version, int step number) followed by the
+ * situation as encoded by the GameSituationCodec. It is replaced atomically.
+ * </p>
+ * <p>
+ * The journal file holds the steps following the checkpoint: a header (int
+ * magic number <code>ATJN</code>, short version, int step number of the
+ * checkpoint) followed by one frame per step (int step number, int payload
+ * length, the payload records, int CRC32 of all previous bytes of the
+ * frame). A frame which is incomplete or damaged ends the journal, so a
+ * crash while appending loses at most the last steps.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+final class JournalFormat {
+    /**
+     * The name of the checkpoint file.
+     */
+    static final String CHECKPOINT_FILE = "autosave.checkpoint";
+
+    /**
+     * The name of the journal file.
+     */
+    static final String JOURNAL_FILE = "autosave.journal";
+
+    /**
+     * The magic number at the start of a checkpoint ("ATCP").
+     */
+    static final int CHECKPOINT_MAGIC = 0x41544350;
+
+    /**
+     * The magic number at the start of a journal ("ATJN").
+     */
+    static final int JOURNAL_MAGIC = 0x41544A4E;
+
+    /**
+     * The current version of the format.
+     */
+    static final short VERSION = 1;
+
+    /**
+     * The size of the checkpoint and journal headers in bytes.
+     */
+    static final int HEADER_SIZE = 4 + 2 + 4;
+
+    /**
+     * The size of a frame without its payload in bytes.
+     */
+    static final int FRAME_OVERHEAD = 4 + 4 + 4;
+
+    /**
+     * Record of a placed token: int cell, byte cell code.
+     */
+    static final byte PLACE = 1;
+
+    /**
+     * Record of a moved token: int from cell, int to cell.
+     */
+    static final byte MOVE = 2;
+
+    /**
+     * Record of a removed token: int cell.
+     */
+    static final byte REMOVE = 3;
+
+    /**
+     * Record of a changed score: int score, short level number.
+     */
+    static final byte SCORE = 4;
+
+    /**
+     * No instances, only constants.
+     */
+    private JournalFormat() {
+
+    }
+}
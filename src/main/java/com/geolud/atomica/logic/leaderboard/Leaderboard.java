@@ -0,0 +1,93 @@
+package com.geolud.atomica.logic.leaderboard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The finished games of one settings profile, ranked by their score. A game
+ * ranks behind all games with a higher score, games with the same score share
+ * a rank. All scores are counted for the ranks, the details are only kept for
+ * the best games. Thread safe.
+ *
+ * @author Georg Ludewig
+ */
+public class Leaderboard {
+    /**
+     * The number of best games whose details are kept.
+     */
+    public static final int TOP_SIZE = 100;
+
+    /**
+     * Counts the scores of all games.
+     */
+    private final ScoreIndex index = new ScoreIndex();
+
+    /**
+     * The best games, ordered by descending score and, within a score, by
+     * the time they were added.
+     */
+    private final ArrayList<LeaderboardEntry> top = new ArrayList<LeaderboardEntry>();
+
+    /**
+     * Adds a finished game.
+     *
+     * @param entry the game
+     * @return the rank of the game, starting at 1
+     */
+    public synchronized long add(LeaderboardEntry entry) {
+        long rank = index.countAbove(entry.getScore()) + 1;
+        index.add(entry.getScore());
+
+        if (top.size() < TOP_SIZE
+                || top.get(TOP_SIZE - 1).getScore() < entry.getScore()) {
+            // behind all games with the same or a higher score
+            int low = 0;
+            int high = top.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (top.get(mid).getScore() >= entry.getScore()) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            top.add(low, entry);
+            if (top.size() > TOP_SIZE) {
+                top.remove(TOP_SIZE);
+            }
+        }
+
+        return rank;
+    }
+
+    /**
+     * Returns the rank a game with the given score would have.
+     *
+     * @param score the score
+     * @return the rank, starting at 1
+     */
+    public synchronized long getRank(int score) {
+        return index.countAbove(score) + 1;
+    }
+
+    /**
+     * Returns the number of games.
+     *
+     * @return the number of games
+     */
+    public synchronized long size() {
+        return index.size();
+    }
+
+    /**
+     * Returns the best games.
+     *
+     * @param count the maximum number of games, at most TOP_SIZE are
+     *              available
+     * @return the best games ordered by descending score
+     */
+    public synchronized List<LeaderboardEntry> getTop(int count) {
+        return new ArrayList<LeaderboardEntry>(top.subList(0, Math.min(count,
+                top.size())));
+    }
+}
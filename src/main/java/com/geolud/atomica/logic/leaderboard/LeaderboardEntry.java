@@ -0,0 +1,64 @@
+package com.geolud.atomica.logic.leaderboard;
+
+/**
+ * A finished game recorded in a leaderboard.
+ *
+ * @author Georg Ludewig
+ */
+public class LeaderboardEntry {
+    /**
+     * The final score.
+     */
+    private final int score;
+
+    /**
+     * The number of the level reached.
+     */
+    private final int levelNumber;
+
+    /**
+     * The time the game was finished in milliseconds since 1970.
+     */
+    private final long time;
+
+    /**
+     * Creates an entry.
+     *
+     * @param score       the final score
+     * @param levelNumber the number of the level reached
+     * @param time        the time the game was finished in milliseconds since
+     *                    1970
+     */
+    public LeaderboardEntry(int score, int levelNumber, long time) {
+        this.score = score;
+        this.levelNumber = levelNumber;
+        this.time = time;
+    }
+
+    /**
+     * Returns the final score.
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the number of the level reached.
+     *
+     * @return the level number
+     */
+    public int getLevelNumber() {
+        return levelNumber;
+    }
+
+    /**
+     * Returns the time the game was finished.
+     *
+     * @return the time in milliseconds since 1970
+     */
+    public long getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,480 @@
+package com.geolud.atomica.logic.leaderboard;
+
+import com.geolud.atomica.objects.GameSettings;
+import com.geolud.atomica.objects.ScoringRules;
+import com.geolud.atomica.objects.SquareScoringRules;
+import com.geolud.atomica.util.hash.FnvHash;
+import com.geolud.atomica.util.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the leaderboards of all settings profiles, a profile being the board
+ * size together with the level table. Every finished game is appended to a
+ * record file, which is <code>~/.atomica/leaderboard.dat</code> unless another
+ * file is given by the system property <code>atomica.leaderboard.file</code>.
+ * <p/>
+ * <p>
+ * The file is read in a background thread started by {@link #startLoading()},
+ * so the gui doesn't wait for millions of records; only the first query
+ * waits until they are read. The same thread appends the new records, so
+ * recording a game never waits for the disk. A game recorded while the file
+ * is read is queued behind it. {@link #close()} writes the queued records
+ * before the application exits.
+ * </p>
+ * <p>
+ * Layout (big endian): int magic number <code>ATSB</code>, short format
+ * version, followed by one record per game: long profile key, int score,
+ * short level number, long time in milliseconds since 1970, int CRC32 of the
+ * preceding bytes of the record. A damaged record ends the file and is cut
+ * off before the next record is appended.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class LeaderboardStore {
+    /**
+     * The system property for the leaderboard file.
+     */
+    public static final String PROPERTY_LEADERBOARD_FILE = "atomica.leaderboard.file";
+
+    /**
+     * The magic number at the start of the file ("ATSB").
+     */
+    private static final int MAGIC = 0x41545342;
+
+    /**
+     * The current version of the format.
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * The size of the header in bytes.
+     */
+    private static final int HEADER_SIZE = 4 + 2;
+
+    /**
+     * The size of a record in bytes.
+     */
+    private static final int RECORD_SIZE = 8 + 4 + 2 + 8 + 4;
+
+    /**
+     * The number of records read at once.
+     */
+    private static final int RECORDS_PER_READ = 4096;
+
+    /**
+     * The longest time in milliseconds to wait for the queued records when
+     * closing.
+     */
+    private static final long CLOSE_TIMEOUT = 5000;
+
+    /**
+     * The single instance.
+     */
+    private static LeaderboardStore instance = null;
+
+    /**
+     * Returns the single instance of the store.
+     *
+     * @return the leaderboard store
+     */
+    public static synchronized LeaderboardStore getInstance() {
+        if (instance == null) {
+            String path = System.getProperty(PROPERTY_LEADERBOARD_FILE);
+            if (path == null) {
+                instance = new LeaderboardStore(new File(new File(
+                        System.getProperty("user.home"), ".atomica"),
+                        "leaderboard.dat"));
+            } else {
+                instance = new LeaderboardStore(new File(path));
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Computes the key of the profile of the given settings, the 64 bit
+     * FNV-1a hash of the board size and the score and number of colors of
+     * every level. Scoring rules other than the default ones are part of the
+     * profile as well, so their scores are ranked separately while the keys
+     * of existing records stay valid.
+     *
+     * @param settings the settings
+     * @return the key of the profile
+     */
+    public static long getProfileKey(GameSettings settings) {
+        long hash = FnvHash.OFFSET_BASIS;
+        hash = FnvHash.add(hash, settings.getCols());
+        hash = FnvHash.add(hash, settings.getRows());
+        for (com.geolud.atomica.objects.Level level : settings.getLevels()) {
+            hash = FnvHash.add(hash, level.getScore());
+            hash = FnvHash.add(hash, level.getNumberOfColors());
+        }
+        ScoringRules rules = settings.getScoringRules();
+        if (!(rules instanceof SquareScoringRules)) {
+            hash = FnvHash.add(hash, rules.getClass().getName());
+        }
+
+        return hash;
+    }
+
+    /**
+     * The record file.
+     */
+    private final File file;
+
+    /**
+     * The thread reading and appending the records.
+     */
+    private final ExecutorService writer;
+
+    /**
+     * The leaderboards by the keys of their profiles, guarded by itself.
+     */
+    private final HashMap<Long, Leaderboard> leaderboards = new HashMap<Long, Leaderboard>();
+
+    /**
+     * Released when the file was read.
+     */
+    private final CountDownLatch loaded = new CountDownLatch(1);
+
+    /**
+     * Flag which indicates that loading was started.
+     */
+    private boolean loadingStarted = false;
+
+    /**
+     * Flag which indicates that the store was closed, guarded by the store.
+     */
+    private boolean closed = false;
+
+    /**
+     * The channel appending the records, only accessed by the writing thread.
+     * Null until the file was read or, if it didn't exist, the first record
+     * is appended.
+     */
+    private FileChannel channel = null;
+
+    /**
+     * Flag which indicates that the file can't be written, only accessed by
+     * the writing thread.
+     */
+    private boolean failed = false;
+
+    /**
+     * Creates a store for the given file.
+     *
+     * @param file the record file
+     */
+    LeaderboardStore(File file) {
+        this.file = file;
+        this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AtomicaLeaderboard");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts reading the file in a background thread. Calling it more than
+     * once or after closing has no effect.
+     */
+    public synchronized void startLoading() {
+        if (loadingStarted || closed) {
+            return;
+        }
+        loadingStarted = true;
+
+        writer.execute(new Runnable() {
+            public void run() {
+                try {
+                    load();
+                } finally {
+                    loaded.countDown();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the leaderboard of the profile of the given settings. Waits
+     * until the file was read.
+     *
+     * @param settings the settings of the games
+     * @return the leaderboard, empty if no game was recorded yet
+     */
+    public Leaderboard getLeaderboard(GameSettings settings) {
+        awaitLoaded();
+        return getLeaderboard(getProfileKey(settings));
+    }
+
+    /**
+     * Records a finished game. The record is appended to the file in the
+     * background. Never waits: while the file is read, the game is queued
+     * and added to its leaderboard after the file.
+     *
+     * @param settings    the settings of the game
+     * @param score       the final score
+     * @param levelNumber the number of the level reached
+     * @return the rank of the game within its profile, starting at 1, or 0
+     * if the file is still read and the rank is not yet known
+     */
+    public long record(GameSettings settings, int score, int levelNumber) {
+        startLoading();
+
+        final long profile = getProfileKey(settings);
+        final LeaderboardEntry entry = new LeaderboardEntry(score,
+                levelNumber, System.currentTimeMillis());
+        final boolean queued = loaded.getCount() > 0;
+        long rank = queued ? 0 : getLeaderboard(profile).add(entry);
+
+        try {
+            writer.execute(new Runnable() {
+                public void run() {
+                    if (queued) {
+                        getLeaderboard(profile).add(entry);
+                    }
+                    append(profile, entry);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Logging.getLogger().log(Level.WARNING,
+                    "Leaderboard already closed: " + file);
+        }
+
+        return rank;
+    }
+
+    /**
+     * Writes the queued records and closes the file. Waits at most a few
+     * seconds; records of games finished afterwards are not written.
+     * Calling it more than once has no effect.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!loadingStarted) {
+                // nothing will be read, so queries don't wait for it
+                loaded.countDown();
+            }
+
+            writer.execute(new Runnable() {
+                public void run() {
+                    closeChannel();
+                }
+            });
+            writer.shutdown();
+        }
+
+        try {
+            if (!writer.awaitTermination(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                Logging.getLogger().log(Level.WARNING,
+                        "Timed out writing leaderboard: " + file);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Blocks until the file was read.
+     */
+    private void awaitLoaded() {
+        startLoading();
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the leaderboard of a profile, creating it if it doesn't exist.
+     *
+     * @param profile the key of the profile
+     * @return the leaderboard
+     */
+    private Leaderboard getLeaderboard(long profile) {
+        synchronized (leaderboards) {
+            Leaderboard leaderboard = leaderboards.get(profile);
+            if (leaderboard == null) {
+                leaderboard = new Leaderboard();
+                leaderboards.put(profile, leaderboard);
+            }
+
+            return leaderboard;
+        }
+    }
+
+    /**
+     * Reads all records of the file into the leaderboards. A damaged record
+     * and everything following it is cut off. Called by the writing thread
+     * only.
+     */
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long records = 0;
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            channel = raf.getChannel();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC
+                    || header.getShort() != VERSION) {
+                throw new IOException("Not a leaderboard file: " + file);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE
+                    * RECORDS_PER_READ);
+            CRC32 crc = new CRC32();
+            long validEnd = HEADER_SIZE;
+            long cachedProfile = 0;
+            Leaderboard cached = null;
+            boolean damaged = false;
+            while (!damaged && channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    int offset = buffer.position();
+                    crc.reset();
+                    crc.update(buffer.array(), offset, RECORD_SIZE - 4);
+
+                    long profile = buffer.getLong();
+                    int score = buffer.getInt();
+                    int levelNumber = buffer.getShort();
+                    long time = buffer.getLong();
+                    if (buffer.getInt() != (int) crc.getValue()) {
+                        damaged = true;
+                        break;
+                    }
+
+                    if (cached == null || profile != cachedProfile) {
+                        cached = getLeaderboard(profile);
+                        cachedProfile = profile;
+                    }
+                    cached.add(new LeaderboardEntry(score, levelNumber, time));
+                    validEnd += RECORD_SIZE;
+                    records++;
+                }
+                buffer.compact();
+            }
+
+            if (channel.size() > validEnd) {
+                Logging.getLogger().log(Level.WARNING,
+                        "Cutting off damaged leaderboard records of " + file);
+                channel.truncate(validEnd);
+            }
+        } catch (IOException e) {
+            Logging.getLogger().log(Level.WARNING,
+                    "Could not read leaderboard: " + e.getMessage());
+            closeChannel();
+            failed = true;
+        }
+
+        Logging.getLogger().log(Level.INFO, "Read " + records
+                + " leaderboard records in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Appends a record to the file, which is created with the first record.
+     * Called by the writing thread only.
+     *
+     * @param profile the key of the profile
+     * @param entry   the finished game
+     */
+    private void append(long profile, LeaderboardEntry entry) {
+        if (failed) {
+            return;
+        }
+
+        try {
+            if (channel == null) {
+                File dir = file.getAbsoluteFile().getParentFile();
+                if (!dir.exists() && !dir.mkdirs()) {
+                    throw new IOException("Could not create directory " + dir);
+                }
+                channel = new RandomAccessFile(file, "rw").getChannel();
+                if (channel.size() == 0) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    header.putInt(MAGIC);
+                    header.putShort(VERSION);
+                    header.flip();
+                    writeFully(header, 0);
+                }
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            record.putLong(profile);
+            record.putInt(entry.getScore());
+            record.putShort((short) entry.getLevelNumber());
+            record.putLong(entry.getTime());
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 0, record.position());
+            record.putInt((int) crc.getValue());
+            record.flip();
+            writeFully(record, channel.size());
+        } catch (IOException e) {
+            Logging.getLogger().log(Level.WARNING,
+                    "Could not write leaderboard: " + e.getMessage());
+            closeChannel();
+            failed = true;
+        }
+    }
+
+    /**
+     * Writes the whole buffer at the given position of the file.
+     *
+     * @param buffer   the bytes to write
+     * @param position the position in the file
+     * @throws IOException if the file can't be written
+     */
+    private void writeFully(ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Closes the channel, ignoring errors.
+     */
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Logging.getLogger().log(Level.FINE,
+                        "Could not close leaderboard", e);
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.geolud.atomica.logic.leaderboard;
+
+/**
+ * Counts the scores of a leaderboard for rank queries. It is an indexable
+ * skip list of the distinct scores in descending order, each node holding
+ * the number of games with its score, so inserting a score and counting the
+ * games with a higher one take O(log n) and the memory depends on the number
+ * of distinct scores only.
+ * <p/>
+ * <p>
+ * The span of a node at a level is the number of games from the node
+ * (exclusive) to its successor at that level (inclusive). Not thread safe.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+final class ScoreIndex {
+    /**
+     * The maximum number of levels, enough for billions of distinct scores.
+     */
+    private static final int MAX_LEVEL = 16;
+
+    /**
+     * A distinct score with the number of games reaching it.
+     */
+    private static final class Node {
+        /**
+         * The score.
+         */
+        final int score;
+
+        /**
+         * The number of games with the score.
+         */
+        long count;
+
+        /**
+         * The successors at each level.
+         */
+        final Node[] next;
+
+        /**
+         * The spans to the successors at each level.
+         */
+        final long[] span;
+
+        /**
+         * Creates a node.
+         *
+         * @param score  the score
+         * @param levels the number of levels of the node
+         */
+        Node(int score, int levels) {
+            this.score = score;
+            this.next = new Node[levels];
+            this.span = new long[levels];
+        }
+    }
+
+    /**
+     * The node in front of all scores.
+     */
+    private final Node head = new Node(Integer.MAX_VALUE, MAX_LEVEL);
+
+    /**
+     * The nodes preceding the position of a score at each level, reused by
+     * every insertion.
+     */
+    private final Node[] update = new Node[MAX_LEVEL];
+
+    /**
+     * The number of games in front of the nodes in update, reused by every
+     * insertion.
+     */
+    private final long[] rank = new long[MAX_LEVEL];
+
+    /**
+     * The number of levels in use.
+     */
+    private int level = 1;
+
+    /**
+     * The number of games.
+     */
+    private long size = 0;
+
+    /**
+     * The state of the random generator choosing the levels of the nodes.
+     */
+    private int seed = 0x2545F491;
+
+    /**
+     * Returns the number of games.
+     *
+     * @return the number of games
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Counts the games with a higher score than the given one.
+     *
+     * @param score the score
+     * @return the number of games with a higher score
+     */
+    long countAbove(int score) {
+        long count = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && x.next[i].score > score) {
+                count += x.span[i];
+                x = x.next[i];
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Adds a game with the given score.
+     *
+     * @param score the score
+     */
+    void add(int score) {
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && x.next[i].score > score) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        Node existing = x.next[0];
+        if (existing != null && existing.score == score) {
+            existing.count++;
+            for (int i = 0; i < level; i++) {
+                if (update[i].next[i] != null) {
+                    update[i].span[i]++;
+                }
+            }
+            size++;
+            return;
+        }
+
+        int levels = randomLevel();
+        if (levels > level) {
+            for (int i = level; i < levels; i++) {
+                rank[i] = 0;
+                update[i] = head;
+            }
+            level = levels;
+        }
+
+        Node node = new Node(score, levels);
+        node.count = 1;
+        for (int i = 0; i < levels; i++) {
+            long before = rank[0] - rank[i];
+            node.next[i] = update[i].next[i];
+            node.span[i] = node.next[i] != null ? update[i].span[i] - before
+                    : 0;
+            update[i].next[i] = node;
+            update[i].span[i] = before + 1;
+        }
+        for (int i = levels; i < level; i++) {
+            if (update[i].next[i] != null) {
+                update[i].span[i]++;
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Chooses the number of levels of a new node, each further level with a
+     * probability of 1/4.
+     *
+     * @return the number of levels
+     */
+    private int randomLevel() {
+        // xorshift, cheaper than java.util.Random for millions of entries
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+
+        int levels = 1;
+        int bits = seed;
+        while (levels < MAX_LEVEL && (bits & 3) == 0) {
+            levels++;
+            bits >>>= 2;
+        }
+
+        return levels;
+    }
+}
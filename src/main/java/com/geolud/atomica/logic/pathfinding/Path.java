@@ -3,6 +3,7 @@ package com.geolud.atomica.logic.pathfinding;
 import com.geolud.atomica.objects.Field;
 
 import java.util.ArrayList;
+import java.util.Collections;
 
 /**
  * A Path represents a list of fields which define a way from a starting field
@@ -43,6 +44,23 @@ public class Path {
 
     }
 
+    /**
+     * Appends the given field to the path list.
+     *
+     * @param field the field to append
+     */
+    public void appendField(Field field) {
+        pathFields.add(field);
+    }
+
+    /**
+     * Reverses the order of the fields, e.g. after appending them from the
+     * destination back to the start.
+     */
+    public void reverse() {
+        Collections.reverse(pathFields);
+    }
+
     /**
      * Returns the number of fields defining the current path.
      *
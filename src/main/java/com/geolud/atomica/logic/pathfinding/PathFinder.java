@@ -2,48 +2,84 @@ package com.geolud.atomica.logic.pathfinding;
 
 import com.geolud.atomica.objects.Field;
 import com.geolud.atomica.objects.GameSituation;
-
-import java.util.ArrayList;
+import com.geolud.atomica.objects.SituationSnapshot;
+import com.geolud.atomica.util.flightrecorder.FlightEvents;
 
 /**
  * A path finder implementation that uses the AStar algorithm to determine a
  * path.
+ * <p/>
+ * <p>
+ * The search works on the packed fields of the situation. The state of the
+ * fields is kept in flat arrays indexed by <code>row * cols + col</code>,
+ * which are reused by all searches on boards of the same size, and the open
+ * fields in a binary heap. Since every step costs 1 and tokens move only
+ * horizontally and vertically, the manhattan distance is used as heuristic,
+ * which never overestimates, so no field has to be expanded twice. The
+ * search is not limited in depth and finds a shortest path on boards of any
+ * size.
+ * </p>
  *
  * @author Georg Ludewig
  */
 public class PathFinder {
     /**
-     * The maximum depth of search.
+     * The initial capacity of the heap of open fields.
      */
-    private static final int MAX_SEARCH_DISTANCE = 500;
+    private static final int INITIAL_HEAP_SIZE = 64;
 
     /**
-     * The Nodes to search through.
+     * The cost from the starting field to each field reached by the search.
      */
-    private Node[][] nodes = null;
+    private int[] cost = new int[0];
 
     /**
-     * The list of nodes that have been searched through.
+     * The previous field on the cheapest path to each field reached by the
+     * search.
      */
-    private ArrayList<Node> closed = null;
+    private int[] parent = new int[0];
 
     /**
-     * The list of nodes not yet searched.
+     * The number of the search which reached each field, so the arrays
+     * needn't be cleared for every search.
      */
-    private SortedNodeList open = null;
+    private int[] reached = new int[0];
 
     /**
-     * Holds the current GameSituation.
+     * The number of the search which expanded each field.
      */
-    private GameSituation gameSituation = null;
+    private int[] expanded = new int[0];
 
     /**
-     * Creates a PathFinder.
+     * The number of the current search.
      */
-    public PathFinder() {
-        open = new SortedNodeList();
-        closed = new ArrayList<Node>();
-    }
+    private int search = 0;
+
+    /**
+     * The open fields, a binary heap ordered by estimated total cost and
+     * preferring fields farther away from the start on ties.
+     */
+    private int[] heapCells = new int[INITIAL_HEAP_SIZE];
+
+    /**
+     * The estimated total costs of the open fields in the heap.
+     */
+    private int[] heapCosts = new int[INITIAL_HEAP_SIZE];
+
+    /**
+     * The costs from the starting field of the open fields in the heap.
+     */
+    private int[] heapSteps = new int[INITIAL_HEAP_SIZE];
+
+    /**
+     * The number of entries in the heap.
+     */
+    private int heapSize = 0;
+
+    /**
+     * The number of nodes expanded by the last search.
+     */
+    private int expandedNodes = 0;
 
     /**
      * Finds the shortest path from the starting field (fromField) to the
@@ -58,168 +94,280 @@ public class PathFinder {
                                  Field toField) {
         // first check if the destination field is already blocked or the same
         // as the starting field
+        expandedNodes = 0;
         if (toField.isBlocked() || fromField == toField) {
             return null;
         }
 
-        // initialize all nodes in accordance to the fields of the given
-        // GameSituation
-        initNodes(gameSituation);
+        Object event = FlightEvents.beginPathSearch();
 
-        int fromRow = fromField.getRow();
-        int fromCol = fromField.getCol();
-        int toRow = toField.getRow();
-        int toCol = toField.getCol();
+        int cols = gameSituation.getCols();
+        int rows = gameSituation.getRows();
+        int cells = cols * rows;
+        startSearch(cells);
 
-        Node fromNode = nodes[fromCol][fromRow];
-        Node toNode = nodes[toCol][toRow];
-
-        // Initial state: The closed list is empty. Only the starting
-        // node is in the open list and it's cost is zero
-        fromNode.setCost(0);
-        fromNode.setDepth(0);
-        closed.clear();
-        open.clear();
-        open.add(fromNode);
-        toNode.setParent(null);
-
-        int maxDepth = 0;
-        // while the destination field is not reached and the max search depth
-        // is not exceeded
-        while ((maxDepth < MAX_SEARCH_DISTANCE) && (open.size() != 0)) {
-            // get the first node in open list
-            Node current = open.first();
-            if (current == toNode) {
+        int toCol = toField.getCol();
+        int toRow = toField.getRow();
+        int from = fromField.getRow() * cols + fromField.getCol();
+        int to = toRow * cols + toCol;
+
+        // Initial state: only the starting field is open and its cost is zero
+        reach(from, 0, -1, getHeuristicCost(from, cols, toCol, toRow));
+
+        boolean found = false;
+        while (heapSize > 0) {
+            int current = poll();
+            if (expanded[current] == search) {
+                // a cheaper entry of the field was already expanded
+                continue;
+            }
+            if (current == to) {
+                found = true;
                 break;
             }
 
-            open.remove(current);
-            closed.add(current);
-
-            // search through all neighbours of the current node evaluating
-            // them as next nodes
-            for (int row = -1; row < 2; row++) {
-                for (int col = -1; col < 2; col++) {
-                    // current node
-                    if ((row == 0) && (col == 0)) {
-                        continue;
-                    }
-
-                    // no diagonal movement
-                    if ((row != 0) && (col != 0)) {
-                        continue;
-                    }
-
-                    int r = row + current.getRow();
-                    int c = col + current.getCol();
-
-                    // check if the destination field is a valid field to move
-                    // to
-                    if (isValidMove(fromCol, fromRow, c, r)) {
-                        // the cost to get to this node is the cost of the
-                        // current node plus the movement cost (1) to reach this
-                        // node.
-                        Node neighbour = nodes[c][r];
-                        float nextStepCost = current.getCost() + 1;
-
-                        // if the new cost for this node is lower than the
-                        // previous makes sure the node hasn't been
-                        // discarded. There might have been a better path
-                        // to get to this node so it needs to be re-evaluated
-                        if (nextStepCost < neighbour.getCost()) {
-                            if (open.contains(neighbour)) {
-                                open.remove(neighbour);
-                            }
-                            if (closed.contains(neighbour)) {
-                                closed.remove(neighbour);
-                            }
-                        }
-
-                        // if the node hasn't already been processed and
-                        // discarded then reset it's cost to current cost and
-                        // add it as a next possible step (i.e. to the open
-                        // list)
-                        if (!open.contains(neighbour)
-                                && !(closed.contains(neighbour))) {
-                            neighbour.setCost(nextStepCost);
-                            neighbour.setHeuristic(getHeuristicCost(neighbour,
-                                    toNode));
-                            maxDepth = Math.max(maxDepth, neighbour
-                                    .setParent(current));
-                            open.add(neighbour);
-                        }
-                    }
-                }
+            expanded[current] = search;
+            expandedNodes++;
+
+            // evaluate the horizontal and vertical neighbours as next fields
+            int col = current % cols;
+            int row = current / cols;
+            int nextCost = cost[current] + 1;
+            if (col > 0) {
+                evaluate(gameSituation, current - 1, current, nextCost, cols,
+                        toCol, toRow);
+            }
+            if (col < cols - 1) {
+                evaluate(gameSituation, current + 1, current, nextCost, cols,
+                        toCol, toRow);
+            }
+            if (row > 0) {
+                evaluate(gameSituation, current - cols, current, nextCost,
+                        cols, toCol, toRow);
+            }
+            if (row < rows - 1) {
+                evaluate(gameSituation, current + cols, current, nextCost,
+                        cols, toCol, toRow);
             }
         }
 
-        // if there is no path, the parent node of the destination node is null
-        if (toNode.getParent() == null) {
+        if (!found) {
+            FlightEvents.endPathSearch(event, cells, expandedNodes, 0);
             return null;
         }
 
-        // A valid Path was found. Create the path by adding its fields
+        // A valid Path was found. Create the path by walking back from the
+        // destination and reversing the fields once, as prepending each
+        // field would copy the list for every step
         Path path = new Path();
-        while (toNode != fromNode) {
-            path.prependField(toNode.getField());
-            toNode = toNode.getParent();
+        for (int cell = to; cell != -1; cell = parent[cell]) {
+            path.appendField(gameSituation.getField(cell % cols, cell / cols));
         }
-        path.prependField(fromNode.getField());
+        path.reverse();
 
+        FlightEvents.endPathSearch(event, cells, expandedNodes, path.size());
         return path;
     }
 
     /**
-     * Calculates the heuristic costs between the the given nodes.
+     * Returns the number of nodes expanded by the last call of
+     * {@link #findShortestPath(GameSituation, Field, Field)}.
      *
-     * @param from a starting node
-     * @param to   a destination node
+     * @return the number of expanded nodes
+     */
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * Prepares the arrays for a search on a board with the given number of
+     * fields.
+     *
+     * @param cells the number of fields of the board
+     */
+    private void startSearch(int cells) {
+        if (cost.length != cells) {
+            cost = new int[cells];
+            parent = new int[cells];
+            reached = new int[cells];
+            expanded = new int[cells];
+            search = 0;
+        }
+
+        // start over before the search number overflows
+        if (search == Integer.MAX_VALUE) {
+            for (int i = 0; i < cells; i++) {
+                reached[i] = 0;
+                expanded[i] = 0;
+            }
+            search = 0;
+        }
+
+        search++;
+        heapSize = 0;
+    }
+
+    /**
+     * Opens the given neighbour field if it isn't blocked by an atom and the
+     * new path to it is cheaper than a previous one.
+     *
+     * @param gameSituation the situation where to search
+     * @param cell          the neighbour field
+     * @param current       the field expanded
+     * @param nextCost      the cost to reach the neighbour via the current field
+     * @param cols          the number of columns of the board
+     * @param toCol         the column of the destination field
+     * @param toRow         the row of the destination field
+     */
+    private void evaluate(GameSituation gameSituation, int cell, int current,
+                          int nextCost, int cols, int toCol, int toRow) {
+        if (expanded[cell] == search
+                || SituationSnapshot.isAtomCell(gameSituation.getCell(cell))) {
+            return;
+        }
+        if (reached[cell] == search && cost[cell] <= nextCost) {
+            return;
+        }
+
+        reach(cell, nextCost, current, getHeuristicCost(cell, cols, toCol,
+                toRow));
+    }
+
+    /**
+     * Records the cost of a field and adds it to the open fields.
+     *
+     * @param cell      the field
+     * @param cellCost  the cost to reach the field
+     * @param from      the previous field, -1 for the starting field
+     * @param heuristic the estimated cost from the field to the destination
+     */
+    private void reach(int cell, int cellCost, int from, int heuristic) {
+        reached[cell] = search;
+        cost[cell] = cellCost;
+        parent[cell] = from;
+        push(cell, cellCost + heuristic, cellCost);
+    }
+
+    /**
+     * Calculates the heuristic costs between the given field and the
+     * destination field.
+     *
+     * @param cell  the field
+     * @param cols  the number of columns of the board
+     * @param toCol the column of the destination field
+     * @param toRow the row of the destination field
      * @return the heuristic costs
      */
-    private float getHeuristicCost(Node from, Node to) {
-        float dx = to.getCol() - from.getCol();
-        float dy = to.getRow() - from.getRow();
+    private int getHeuristicCost(int cell, int cols, int toCol, int toRow) {
+        return Math.abs(toCol - cell % cols) + Math.abs(toRow - cell / cols);
+    }
+
+    /**
+     * Indicates if the first heap entry has to be taken before the second.
+     *
+     * @param a the index of the first entry
+     * @param b the index of the second entry
+     * @return true if the first entry is cheaper
+     */
+    private boolean isBefore(int a, int b) {
+        if (heapCosts[a] != heapCosts[b]) {
+            return heapCosts[a] < heapCosts[b];
+        }
 
-        return (float) (Math.sqrt((dx * dx) + (dy * dy)));
+        // on equal estimates continue with the field nearer to the
+        // destination, which reaches it with fewer expansions
+        return heapSteps[a] > heapSteps[b];
     }
 
     /**
-     * Initialize all nodes in accordance to the fields of the given
-     * GameSituation.
+     * Adds a field to the heap of open fields.
      *
-     * @param gameSituation the initial GameSituation
+     * @param cell          the field
+     * @param estimatedCost the estimated total cost of a path via the field
+     * @param steps         the cost from the starting field to the field
      */
-    private void initNodes(GameSituation gameSituation) {
-        this.gameSituation = gameSituation;
-        this.nodes = new Node[gameSituation.getCols()][gameSituation.getRows()];
+    private void push(int cell, int estimatedCost, int steps) {
+        if (heapSize == heapCells.length) {
+            heapCells = grow(heapCells);
+            heapCosts = grow(heapCosts);
+            heapSteps = grow(heapSteps);
+        }
 
-        for (int row = 0; row < gameSituation.getRows(); row++) {
-            for (int col = 0; col < gameSituation.getCols(); col++) {
-                nodes[col][row] = new Node(gameSituation.getField(col, row));
+        int i = heapSize++;
+        heapCells[i] = cell;
+        heapCosts[i] = estimatedCost;
+        heapSteps[i] = steps;
+        while (i > 0) {
+            int up = (i - 1) / 2;
+            if (!isBefore(i, up)) {
+                break;
             }
+            swap(i, up);
+            i = up;
         }
     }
 
     /**
-     * Checks if the destination Field is a valid Field to move to.
+     * Removes the cheapest field from the heap of open fields.
      *
-     * @param fromCol the column of the starting field
-     * @param fromRow the row of the starting field
-     * @param toCol   the column of the destination field
-     * @param toRow   the row of the destination field
-     * @return true if the destination field is valid
-     */
-    private boolean isValidMove(int fromCol, int fromRow, int toCol, int toRow) {
-        Field toField = gameSituation.getField(toCol, toRow);
-        if (toField == null)
-            return false;
-
-        boolean invalid = false;
-        if ((fromRow != toRow) || (fromCol != toCol)) {
-            invalid = toField.isBlocked();
+     * @return the cheapest field
+     */
+    private int poll() {
+        int first = heapCells[0];
+        heapSize--;
+        heapCells[0] = heapCells[heapSize];
+        heapCosts[0] = heapCosts[heapSize];
+        heapSteps[0] = heapSteps[heapSize];
+
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= heapSize) {
+                break;
+            }
+            int child = left;
+            if (left + 1 < heapSize && isBefore(left + 1, left)) {
+                child = left + 1;
+            }
+            if (!isBefore(child, i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
         }
 
-        return !invalid;
+        return first;
     }
 
+    /**
+     * Swaps two entries of the heap.
+     *
+     * @param a the index of the first entry
+     * @param b the index of the second entry
+     */
+    private void swap(int a, int b) {
+        int cell = heapCells[a];
+        heapCells[a] = heapCells[b];
+        heapCells[b] = cell;
+
+        int c = heapCosts[a];
+        heapCosts[a] = heapCosts[b];
+        heapCosts[b] = c;
+
+        int steps = heapSteps[a];
+        heapSteps[a] = heapSteps[b];
+        heapSteps[b] = steps;
+    }
+
+    /**
+     * Returns a copy of the given heap array with twice its length.
+     *
+     * @param array the heap array
+     * @return the larger copy
+     */
+    private static int[] grow(int[] array) {
+        int[] larger = new int[array.length * 2];
+        System.arraycopy(array, 0, larger, 0, array.length);
+        return larger;
+    }
 }
@@ -0,0 +1,108 @@
+package com.geolud.atomica.logic.replay;
+
+/**
+ * Constants of the binary replay log format shared by the ReplayWriter and the
+ * ReplayReader.
+ * <p/>
+ * <p>
+ * A replay log starts with a header (int magic number <code>ATRP</code>,
+ * short version, long seed, short columns, short rows) followed by records.
+ * Each record starts with a byte defining its type and has a fixed size per
+ * type, except for keyframes whose size depends on the board size. Fields are
+ * addressed by their cell index <code>row * cols + col</code>.
+ * </p>
+ * <p>
+ * Each step of the game (start, move or flush) is terminated by a STEP record.
+ * Every {@link #KEYFRAME_INTERVAL} steps a KEYFRAME record with the whole
+ * board follows directly after the STEP record, so a position can be
+ * reconstructed without reading the log from its beginning.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+final class ReplayFormat {
+    /**
+     * The magic number at the start of each replay log ("ATRP").
+     */
+    static final int MAGIC = 0x41545250;
+
+    /**
+     * The current version of the format.
+     */
+    static final short VERSION = 1;
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 4 + 2 + 8 + 2 + 2;
+
+    /**
+     * The number of steps between two keyframes.
+     */
+    static final int KEYFRAME_INTERVAL = 16;
+
+    /**
+     * Record of a placed token: int cell, byte cell code.
+     */
+    static final byte PLACE = 1;
+
+    /**
+     * Record of a moved token: int from cell, int to cell.
+     */
+    static final byte MOVE = 2;
+
+    /**
+     * Record of a removed token: int cell.
+     */
+    static final byte REMOVE = 3;
+
+    /**
+     * Record of a changed score: int score, short level number.
+     */
+    static final byte SCORE = 4;
+
+    /**
+     * Record terminating a step: int step number, starting with 0 for the
+     * start of the game.
+     */
+    static final byte STEP = 5;
+
+    /**
+     * Record of the whole position after a step: int step number, int score,
+     * short level number, one byte per cell.
+     */
+    static final byte KEYFRAME = 6;
+
+    /**
+     * No instances, only constants.
+     */
+    private ReplayFormat() {
+
+    }
+
+    /**
+     * Returns the size of a record of the given type without its type byte.
+     *
+     * @param type  the type of the record
+     * @param cells the number of cells of the board
+     * @return the size of the record, -1 if the type is unknown
+     */
+    static int getRecordSize(byte type, int cells) {
+        switch (type) {
+            case PLACE:
+                return 4 + 1;
+            case MOVE:
+                return 4 + 4;
+            case REMOVE:
+                return 4;
+            case SCORE:
+                return 4 + 2;
+            case STEP:
+                return 4;
+            case KEYFRAME:
+                return 4 + 4 + 2 + cells;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.geolud.atomica.logic.replay;
+
+import com.geolud.atomica.objects.SituationSnapshot;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reconstructs the positions of a game recorded by the ReplayWriter. The log
+ * is mapped into memory and indexed by its keyframes once. A position is then
+ * reconstructed by seeking to the nearest keyframe at or before it and
+ * applying the recorded changes of the following steps.
+ * <p/>
+ * <p>
+ * A log which was cut off while writing is read up to its last complete
+ * record.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class ReplayReader {
+    /**
+     * The mapped replay log.
+     */
+    private final MappedByteBuffer log;
+
+    /**
+     * The seed of the random generator of the recorded game.
+     */
+    private final long seed;
+
+    /**
+     * The number of columns of the board.
+     */
+    private final int cols;
+
+    /**
+     * The number of rows of the board.
+     */
+    private final int rows;
+
+    /**
+     * The step numbers of all keyframes in ascending order.
+     */
+    private int[] keyframeSteps = new int[16];
+
+    /**
+     * The offsets of all keyframe records (after their type byte).
+     */
+    private int[] keyframeOffsets = new int[16];
+
+    /**
+     * The number of keyframes.
+     */
+    private int keyframeCount = 0;
+
+    /**
+     * The number of complete steps in the log.
+     */
+    private int stepCount = 0;
+
+    /**
+     * Opens and indexes the replay log at the given path.
+     *
+     * @param path the path of the replay log
+     * @throws IOException if the file can't be read or is no replay log
+     */
+    public ReplayReader(String path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            file.close();
+        }
+
+        if (log.limit() < ReplayFormat.HEADER_SIZE
+                || log.getInt(0) != ReplayFormat.MAGIC) {
+            throw new IOException("Not an Atomica replay log: " + path);
+        }
+        if (log.getShort(4) != ReplayFormat.VERSION) {
+            throw new IOException("Unsupported replay log version "
+                    + log.getShort(4));
+        }
+
+        seed = log.getLong(6);
+        cols = log.getShort(14);
+        rows = log.getShort(16);
+
+        buildIndex();
+    }
+
+    /**
+     * Returns the seed of the random generator of the recorded game.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the number of columns of the board.
+     *
+     * @return the number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Returns the number of rows of the board.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of recorded steps. Step 0 is the start of the game,
+     * each following step is a move or a flush.
+     *
+     * @return the number of recorded steps
+     */
+    public int getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Reconstructs the position after the given step.
+     *
+     * @param step the step number, between 0 and {@link #getStepCount()} - 1
+     * @return the position after the given step
+     */
+    public SituationSnapshot getPosition(int step) {
+        if (step < 0 || step >= stepCount) {
+            throw new IllegalArgumentException("Invalid step " + step);
+        }
+
+        // find the nearest keyframe at or before the step
+        int index = Arrays.binarySearch(keyframeSteps, 0, keyframeCount, step);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        if (index < 0) {
+            throw new IllegalStateException("No keyframe before step " + step);
+        }
+
+        int offset = keyframeOffsets[index];
+        int current = log.getInt(offset);
+        int score = log.getInt(offset + 4);
+        int levelNumber = log.getShort(offset + 8);
+        byte[] cells = new byte[cols * rows];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = log.get(offset + 10 + i);
+        }
+
+        // apply the changes of the following steps
+        int position = offset + ReplayFormat.getRecordSize(
+                ReplayFormat.KEYFRAME, cells.length);
+        while (current < step) {
+            byte type = log.get(position++);
+            switch (type) {
+                case ReplayFormat.PLACE:
+                    cells[log.getInt(position)] = log.get(position + 4);
+                    break;
+                case ReplayFormat.MOVE:
+                    int from = log.getInt(position);
+                    cells[log.getInt(position + 4)] = cells[from];
+                    cells[from] = SituationSnapshot.EMPTY;
+                    break;
+                case ReplayFormat.REMOVE:
+                    cells[log.getInt(position)] = SituationSnapshot.EMPTY;
+                    break;
+                case ReplayFormat.SCORE:
+                    score = log.getInt(position);
+                    levelNumber = log.getShort(position + 4);
+                    break;
+                case ReplayFormat.STEP:
+                    current = log.getInt(position);
+                    break;
+                default:
+                    break;
+            }
+            position += ReplayFormat.getRecordSize(type, cells.length);
+        }
+
+        return new SituationSnapshot(cols, rows, cells, score, levelNumber);
+    }
+
+    /**
+     * Scans all records once for counting the steps and indexing the
+     * keyframes.
+     */
+    private void buildIndex() {
+        int cells = cols * rows;
+        int position = ReplayFormat.HEADER_SIZE;
+        int limit = log.limit();
+
+        while (position < limit) {
+            byte type = log.get(position);
+            int size = ReplayFormat.getRecordSize(type, cells);
+            if (size < 0 || position + 1 + size > limit) {
+                // unknown or cut off record
+                break;
+            }
+
+            if (type == ReplayFormat.STEP) {
+                stepCount = log.getInt(position + 1) + 1;
+            } else if (type == ReplayFormat.KEYFRAME) {
+                addKeyframe(log.getInt(position + 1), position + 1);
+            }
+
+            position += 1 + size;
+        }
+    }
+
+    /**
+     * Adds a keyframe to the index.
+     *
+     * @param step   the step number of the keyframe
+     * @param offset the offset of the keyframe record
+     */
+    private void addKeyframe(int step, int offset) {
+        if (keyframeCount == keyframeSteps.length) {
+            keyframeSteps = Arrays.copyOf(keyframeSteps, keyframeCount * 2);
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframeCount * 2);
+        }
+
+        keyframeSteps[keyframeCount] = step;
+        keyframeOffsets[keyframeCount] = offset;
+        keyframeCount++;
+    }
+}
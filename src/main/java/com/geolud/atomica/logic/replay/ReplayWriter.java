@@ -0,0 +1,380 @@
+package com.geolud.atomica.logic.replay;
+
+import com.geolud.atomica.logic.Game;
+import com.geolud.atomica.logic.GameEventListener;
+import com.geolud.atomica.objects.SituationSnapshot;
+import com.geolud.atomica.objects.Token;
+import com.geolud.atomica.util.logging.Logging;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Records all events of a game into an append-only replay log (see
+ * ReplayFormat). Register it at a Game by
+ * {@link Game#addGameEventListener(GameEventListener)} before starting it.
+ * <p/>
+ * <p>
+ * The events are encoded into an in-memory batch on the thread changing the
+ * game. A batch is handed over to a background thread writing it to the file
+ * when it is full or when its oldest finished step is
+ * {@link #FLUSH_INTERVAL} milliseconds old, so the game never waits for the
+ * disk. The background thread checks the interval itself as well, so the
+ * last steps of an idle game are written too. Written batches are reused.
+ * </p>
+ * <p>
+ * Closing the game waits until all events are written.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class ReplayWriter implements GameEventListener {
+    /**
+     * The size of a batch in bytes.
+     */
+    private static final int BATCH_SIZE = 8192;
+
+    /**
+     * The maximum time in milliseconds a finished step stays in memory before
+     * it is written.
+     */
+    private static final long FLUSH_INTERVAL = 1000;
+
+    /**
+     * The maximum time in milliseconds closing the game waits for the pending
+     * events being written.
+     */
+    private static final long CLOSE_TIMEOUT = 5000;
+
+    /**
+     * The path of the replay log.
+     */
+    private final String path;
+
+    /**
+     * The thread writing the batches.
+     */
+    private final ScheduledExecutorService writer;
+
+    /**
+     * Written batches ready for being reused.
+     */
+    private final ConcurrentLinkedQueue<ByteBuffer> freeBatches = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    /**
+     * The batch events are currently encoded into, guarded by this writer.
+     */
+    private ByteBuffer batch = null;
+
+    /**
+     * The number of columns of the board.
+     */
+    private int cols = 0;
+
+    /**
+     * The number of cells of the board.
+     */
+    private int cells = 0;
+
+    /**
+     * The time the last batch was handed over in milliseconds.
+     */
+    private long lastFlush = 0;
+
+    /**
+     * Flag which indicates that events of an unfinished step were encoded.
+     */
+    private boolean stepOpen = false;
+
+    /**
+     * The file channel, only accessed by the writing thread.
+     */
+    private FileChannel channel = null;
+
+    /**
+     * Flag which indicates that writing failed, only accessed by the writing
+     * thread.
+     */
+    private boolean failed = false;
+
+    /**
+     * Creates a writer appending to the replay log at the given path. The file
+     * is created by the first write.
+     *
+     * @param path the path of the replay log
+     */
+    public ReplayWriter(String path) {
+        this.path = path;
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                1, new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "AtomicaReplayWriter");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                flushIdle();
+            }
+        }, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+        this.writer = executor;
+    }
+
+    /**
+     * Returns the path of the replay log.
+     *
+     * @return the path of the replay log
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#gameStarted(long, int, int)
+     */
+    public synchronized void gameStarted(long seed, int cols, int rows) {
+        this.cols = cols;
+        this.cells = cols * rows;
+
+        ByteBuffer out = reserve(ReplayFormat.HEADER_SIZE);
+        out.putInt(ReplayFormat.MAGIC);
+        out.putShort(ReplayFormat.VERSION);
+        out.putLong(seed);
+        out.putShort((short) cols);
+        out.putShort((short) rows);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#tokenPlaced(int, int,
+     * com.geolud.atomica.objects.Token)
+     */
+    public synchronized void tokenPlaced(int col, int row, Token token) {
+        ByteBuffer out = reserveRecord(ReplayFormat.PLACE);
+        out.putInt(row * cols + col);
+        out.put(SituationSnapshot.encodeCell(token));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#tokenMoved(int, int, int,
+     * int)
+     */
+    public synchronized void tokenMoved(int fromCol, int fromRow, int toCol, int toRow) {
+        ByteBuffer out = reserveRecord(ReplayFormat.MOVE);
+        out.putInt(fromRow * cols + fromCol);
+        out.putInt(toRow * cols + toCol);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#tokenRemoved(int, int)
+     */
+    public synchronized void tokenRemoved(int col, int row) {
+        ByteBuffer out = reserveRecord(ReplayFormat.REMOVE);
+        out.putInt(row * cols + col);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#scoreChanged(int, int)
+     */
+    public synchronized void scoreChanged(int score, int levelNumber) {
+        ByteBuffer out = reserveRecord(ReplayFormat.SCORE);
+        out.putInt(score);
+        out.putShort((short) levelNumber);
+    }
+
+    /**
+     * Terminates the step and adds a keyframe every
+     * {@link ReplayFormat#KEYFRAME_INTERVAL} steps.
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#stepFinished(com.geolud.atomica.logic.Game)
+     */
+    public synchronized void stepFinished(Game game) {
+        int step = game.getStepCount() - 1;
+
+        ByteBuffer out = reserveRecord(ReplayFormat.STEP);
+        out.putInt(step);
+
+        if (step % ReplayFormat.KEYFRAME_INTERVAL == 0) {
+            SituationSnapshot snapshot = game.getSituation().createSnapshot();
+            out = reserveRecord(ReplayFormat.KEYFRAME);
+            out.putInt(step);
+            out.putInt(snapshot.getScore());
+            out.putShort((short) snapshot.getLevelNumber());
+            out.put(snapshot.copyCells());
+        }
+
+        stepOpen = false;
+        long now = System.currentTimeMillis();
+        if (now - lastFlush >= FLUSH_INTERVAL) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all pending events and closes the file. Waits at most
+     * {@link #CLOSE_TIMEOUT} milliseconds until they are written.
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#gameClosed()
+     */
+    public void gameClosed() {
+        synchronized (this) {
+            flush();
+        }
+
+        try {
+            writer.execute(new Runnable() {
+                public void run() {
+                    closeChannel();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // already closed
+        }
+        writer.shutdown();
+
+        try {
+            if (!writer.awaitTermination(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                Logging.getLogger().log(Level.WARNING,
+                        "Timed out writing replay log " + path);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands the batch over to the writing thread if its finished steps have
+     * waited for {@link #FLUSH_INTERVAL} milliseconds and no step is being
+     * encoded. Called periodically by the writing thread.
+     */
+    private synchronized void flushIdle() {
+        if (!stepOpen
+                && System.currentTimeMillis() - lastFlush >= FLUSH_INTERVAL) {
+            flush();
+        }
+    }
+
+    /**
+     * Hands the current batch over to the writing thread. Called with the
+     * lock of this writer held.
+     */
+    private void flush() {
+        lastFlush = System.currentTimeMillis();
+        if (batch == null || batch.position() == 0) {
+            return;
+        }
+
+        final ByteBuffer pending = batch;
+        batch = null;
+        pending.flip();
+
+        try {
+            writer.execute(new Runnable() {
+                public void run() {
+                    write(pending);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Logging.getLogger().log(Level.WARNING,
+                    "Replay log already closed: " + path);
+        }
+    }
+
+    /**
+     * Returns the batch with space for a record of the given type and puts
+     * the type byte.
+     *
+     * @param type the type of the record
+     * @return the batch to encode the record into
+     */
+    private ByteBuffer reserveRecord(byte type) {
+        ByteBuffer out = reserve(1 + ReplayFormat.getRecordSize(type, cells));
+        out.put(type);
+        return out;
+    }
+
+    /**
+     * Returns a batch with at least the given number of free bytes. A full
+     * batch is handed over to the writing thread.
+     *
+     * @param size the number of bytes needed
+     * @return the batch to encode into
+     */
+    private ByteBuffer reserve(int size) {
+        stepOpen = true;
+        if (batch != null && batch.remaining() < size) {
+            flush();
+        }
+
+        if (batch == null) {
+            ByteBuffer free = freeBatches.poll();
+            if (free == null || free.capacity() < size) {
+                free = ByteBuffer.allocate(Math.max(BATCH_SIZE, size));
+            }
+            free.clear();
+            batch = free;
+        }
+
+        return batch;
+    }
+
+    /**
+     * Writes a batch to the file. Called by the writing thread only.
+     *
+     * @param data the batch to write
+     */
+    private void write(ByteBuffer data) {
+        if (!failed) {
+            try {
+                if (channel == null) {
+                    channel = new FileOutputStream(path, true).getChannel();
+                }
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            } catch (IOException e) {
+                failed = true;
+                Logging.getLogger().log(Level.SEVERE,
+                        "Failed to write replay log " + path, e);
+            }
+        }
+
+        if (data.capacity() == BATCH_SIZE) {
+            freeBatches.offer(data);
+        }
+    }
+
+    /**
+     * Closes the file. Called by the writing thread only.
+     */
+    private void closeChannel() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            Logging.getLogger().log(Level.SEVERE,
+                    "Could not close replay log " + path);
+        }
+    }
+}
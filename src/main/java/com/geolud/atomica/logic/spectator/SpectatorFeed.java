@@ -0,0 +1,440 @@
+package com.geolud.atomica.logic.spectator;
+
+import com.geolud.atomica.logic.Game;
+import com.geolud.atomica.logic.GameEventListener;
+import com.geolud.atomica.objects.SituationSnapshot;
+import com.geolud.atomica.objects.Token;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Broadcasts a running game to any number of spectators. Register it at a
+ * Game by {@link Game#addGameEventListener(GameEventListener)} before
+ * starting it, spectators join by {@link #subscribe()}.
+ * <p/>
+ * <p>
+ * The fields reported changed by the events of a step are read again when the
+ * step is finished, and those which really differ are encoded into a delta
+ * frame (see SpectatorFormat), so a step costs in the number of its changes,
+ * not in the size of the board. Only the first step of a game reads the whole
+ * board, as a loaded situation may hold tokens before it is started. The frame is encoded once and handed to every
+ * subscription as a read-only view of the same buffer, so a spectator costs
+ * no encoding. A spectator joining receives a keyframe of the current
+ * situation first.
+ * </p>
+ * <p>
+ * The game never waits for a spectator: the frames are queued per
+ * subscription, and a slow spectator gets a single keyframe instead of the
+ * frames it missed or is dropped (see Subscription).
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class SpectatorFeed implements GameEventListener {
+    /**
+     * The maximum number of waiting frames of a subscription unless another
+     * one is given.
+     */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * The maximum number of waiting frames of a subscription.
+     */
+    private final int capacity;
+
+    /**
+     * The subscriptions, guarded by themselves.
+     */
+    private final ArrayList<Subscription> subscriptions = new ArrayList<Subscription>();
+
+    /**
+     * The number of columns of the board.
+     */
+    private int cols = 0;
+
+    /**
+     * The number of rows of the board.
+     */
+    private int rows = 0;
+
+    /**
+     * The encoded fields of the last step, null until the game is started.
+     * Changed by the thread changing the game while holding the
+     * subscriptions, so that thread may read it without.
+     */
+    private byte[] cells = null;
+
+    /**
+     * Flag which indicates that the first step of the game was finished,
+     * guarded by the subscriptions.
+     */
+    private boolean stepped = false;
+
+    /**
+     * The number of the last step, guarded by the subscriptions.
+     */
+    private int step = 0;
+
+    /**
+     * The score after the last step, guarded by the subscriptions.
+     */
+    private int score = 0;
+
+    /**
+     * The level number after the last step, guarded by the subscriptions.
+     */
+    private int levelNumber = 0;
+
+    /**
+     * The keyframe of the last step, null until it is needed. Guarded by the
+     * subscriptions.
+     */
+    private ByteBuffer keyframe = null;
+
+    /**
+     * Flag which indicates that the game was closed, guarded by the
+     * subscriptions.
+     */
+    private boolean closed = false;
+
+    /**
+     * The buffer the deltas are encoded into, only used by the thread
+     * changing the game.
+     */
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+
+    /**
+     * The indexes of the fields reported changed during the current step,
+     * duplicates included. Only used by the thread changing the game.
+     */
+    private int[] changed = new int[64];
+
+    /**
+     * The number of used entries of changed.
+     */
+    private int changedCount = 0;
+
+    /**
+     * The new encoded fields of the changed indexes, filled when the step is
+     * finished. Only used by the thread changing the game.
+     */
+    private byte[] changedCells = new byte[64];
+
+    /**
+     * Creates a feed with the default capacity of the subscriptions.
+     */
+    public SpectatorFeed() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a feed.
+     *
+     * @param capacity the maximum number of waiting frames of a subscription
+     */
+    public SpectatorFeed(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a spectator. The subscription starts with a keyframe of the
+     * current situation if the game has been started.
+     *
+     * @return the subscription of the spectator
+     */
+    public Subscription subscribe() {
+        Subscription subscription = new Subscription(capacity);
+        synchronized (subscriptions) {
+            if (stepped) {
+                subscription.offer(getKeyframe());
+            }
+            if (closed) {
+                subscription.finish(createHeader(SpectatorFormat.END, 0));
+            } else {
+                subscriptions.add(subscription);
+            }
+        }
+
+        return subscription;
+    }
+
+    /**
+     * Returns the number of subscriptions, including cancelled ones not yet
+     * forgotten.
+     *
+     * @return the number of subscriptions
+     */
+    public int getSubscriberCount() {
+        synchronized (subscriptions) {
+            return subscriptions.size();
+        }
+    }
+
+    /**
+     * Forgets the fields of a previous game, whose board may have had
+     * another size.
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#gameStarted(long, int, int)
+     */
+    public void gameStarted(long seed, int cols, int rows) {
+        synchronized (subscriptions) {
+            this.cols = cols;
+            this.rows = rows;
+            cells = new byte[cols * rows];
+            stepped = false;
+            keyframe = null;
+        }
+        changedCount = 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#tokenPlaced(int, int,
+     * com.geolud.atomica.objects.Token)
+     */
+    public void tokenPlaced(int col, int row, Token token) {
+        addChanged(col, row);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#tokenMoved(int, int, int,
+     * int)
+     */
+    public void tokenMoved(int fromCol, int fromRow, int toCol, int toRow) {
+        addChanged(fromCol, fromRow);
+        addChanged(toCol, toRow);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#tokenRemoved(int, int)
+     */
+    public void tokenRemoved(int col, int row) {
+        addChanged(col, row);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#scoreChanged(int, int)
+     */
+    public void scoreChanged(int score, int levelNumber) {
+        // the score is sent with every frame
+    }
+
+    /**
+     * Encodes the fields changed by the step and hands the frame to all
+     * subscriptions. The first step is sent as keyframe.
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#stepFinished(com.geolud.atomica.logic.Game)
+     */
+    public void stepFinished(Game game) {
+        if (cells == null) {
+            // not started while listening
+            return;
+        }
+
+        boolean first;
+        synchronized (subscriptions) {
+            first = !stepped;
+        }
+        int changes = 0;
+        if (first) {
+            changedCount = 0;
+        } else {
+            changes = collectChanges(game);
+        }
+
+        synchronized (subscriptions) {
+            if (first) {
+                for (int i = 0; i < cells.length; i++) {
+                    cells[i] = SituationSnapshot.encodeCell(game.queryToken(i
+                            % cols, i / cols));
+                }
+                stepped = true;
+            } else {
+                for (int i = 0; i < changes; i++) {
+                    cells[changed[i]] = changedCells[i];
+                }
+            }
+            step = game.getStepCount();
+            score = game.getScore();
+            levelNumber = game.getCurrentLevelNumber();
+            keyframe = null;
+
+            if (subscriptions.isEmpty()) {
+                return;
+            }
+
+            ByteBuffer delta = first ? null : encodeDelta(changes);
+            Iterator<Subscription> it = subscriptions.iterator();
+            while (it.hasNext()) {
+                Subscription subscription = it.next();
+                ByteBuffer frame = delta != null ? delta.duplicate()
+                        : getKeyframe();
+                if (!subscription.offer(frame)) {
+                    subscription.resync(getKeyframe());
+                }
+                if (subscription.isClosed()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the end frame and closes all subscriptions.
+     *
+     * @see com.geolud.atomica.logic.GameEventListener#gameClosed()
+     */
+    public void gameClosed() {
+        synchronized (subscriptions) {
+            closed = true;
+            ByteBuffer end = createHeader(SpectatorFormat.END, 0);
+            for (Subscription subscription : subscriptions) {
+                subscription.finish(end.duplicate());
+            }
+            subscriptions.clear();
+        }
+    }
+
+    /**
+     * Returns a view of the keyframe of the last step, which is encoded when
+     * it is needed first. Must be called while holding the subscriptions.
+     *
+     * @return the keyframe
+     */
+    private ByteBuffer getKeyframe() {
+        if (keyframe == null) {
+            ByteBuffer out = createHeader(SpectatorFormat.KEYFRAME, 2 + 2
+                    + cells.length);
+            out.putShort((short) cols);
+            out.putShort((short) rows);
+            out.put(cells);
+            out.flip();
+            keyframe = out.asReadOnlyBuffer();
+        }
+
+        return keyframe.duplicate();
+    }
+
+    /**
+     * Creates a frame holding the header of the last step.
+     *
+     * @param kind    the kind of the frame
+     * @param content the number of bytes following the header
+     * @return the frame, ready for reading if there is no content and for
+     * writing the content otherwise
+     */
+    private ByteBuffer createHeader(byte kind, int content) {
+        ByteBuffer out = ByteBuffer.allocate(SpectatorFormat.HEADER_SIZE
+                + content);
+        out.put(kind);
+        out.putInt(step);
+        out.putInt(score);
+        out.putShort((short) levelNumber);
+        if (content == 0) {
+            out.flip();
+            return out.asReadOnlyBuffer();
+        }
+
+        return out;
+    }
+
+    /**
+     * Remembers a field changed by the current step.
+     *
+     * @param col the column of the field
+     * @param row the row of the field
+     */
+    private void addChanged(int col, int row) {
+        if (cells == null) {
+            return;
+        }
+        if (changedCount == changed.length) {
+            changed = Arrays.copyOf(changed, changedCount * 2);
+        }
+        changed[changedCount++] = row * cols + col;
+    }
+
+    /**
+     * Reads the fields reported changed by the step and keeps those which
+     * really differ from the last step, in ascending order at the start of
+     * changed with their new values in changedCells.
+     *
+     * @param game the game
+     * @return the number of fields which differ
+     */
+    private int collectChanges(Game game) {
+        Arrays.sort(changed, 0, changedCount);
+        if (changedCells.length < changedCount) {
+            changedCells = new byte[changed.length];
+        }
+
+        int changes = 0;
+        int last = -1;
+        for (int i = 0; i < changedCount; i++) {
+            int index = changed[i];
+            if (index == last) {
+                continue;
+            }
+            last = index;
+
+            byte cell = SituationSnapshot.encodeCell(game.queryToken(index
+                    % cols, index / cols));
+            if (cell != cells[index]) {
+                changed[changes] = index;
+                changedCells[changes] = cell;
+                changes++;
+            }
+        }
+        changedCount = 0;
+
+        return changes;
+    }
+
+    /**
+     * Encodes the fields which differ from the previous step. Must be called
+     * while holding the subscriptions.
+     *
+     * @param changes the number of fields which differ, found by
+     *                collectChanges
+     * @return a read-only view of the delta frame
+     */
+    private ByteBuffer encodeDelta(int changes) {
+        // at most 5 bytes for each number and one for each field
+        int maxSize = SpectatorFormat.HEADER_SIZE + 5 + changes * (5 + 1);
+        if (scratch.capacity() < maxSize) {
+            scratch = ByteBuffer.allocate(Math.max(maxSize,
+                    scratch.capacity() * 2));
+        }
+
+        ByteBuffer out = scratch;
+        out.clear();
+        out.put(SpectatorFormat.DELTA);
+        out.putInt(step);
+        out.putInt(score);
+        out.putShort((short) levelNumber);
+        SpectatorFormat.putVarInt(out, changes);
+        int last = -1;
+        for (int i = 0; i < changes; i++) {
+            SpectatorFormat.putVarInt(out, changed[i] - last - 1);
+            out.put(changedCells[i]);
+            last = changed[i];
+        }
+
+        // the frame is shared, so it is copied out of the scratch buffer
+        ByteBuffer frame = ByteBuffer.allocate(out.position());
+        out.flip();
+        frame.put(out);
+        frame.flip();
+        return frame.asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,83 @@
+package com.geolud.atomica.logic.spectator;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Constants of the frames sent by the SpectatorFeed and read by the
+ * SpectatorView.
+ * <p/>
+ * <p>
+ * Every frame starts with a header (byte kind, int step number, int score,
+ * short level number), big endian. A keyframe continues with short columns,
+ * short rows and one byte per field as encoded by SituationSnapshot. A delta
+ * continues with the number of changed fields, followed by one pair per
+ * changed field: the number of unchanged fields since the previous changed
+ * one and the new byte of the field. Numbers of a delta are written as
+ * variable length integers of 7 bits per byte, the lowest bits first, so a
+ * typical move takes a few bytes per changed field. The end frame has no
+ * further content.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public final class SpectatorFormat {
+    /**
+     * Kind of a frame holding all fields.
+     */
+    public static final byte KEYFRAME = 1;
+
+    /**
+     * Kind of a frame holding the fields changed by a step.
+     */
+    public static final byte DELTA = 2;
+
+    /**
+     * Kind of the frame sent when the game was closed.
+     */
+    public static final byte END = 3;
+
+    /**
+     * The size of the header of a frame in bytes.
+     */
+    static final int HEADER_SIZE = 1 + 4 + 4 + 2;
+
+    /**
+     * No instances, only constants.
+     */
+    private SpectatorFormat() {
+
+    }
+
+    /**
+     * Writes a variable length integer.
+     *
+     * @param out   the buffer to write into
+     * @param value the non-negative value
+     */
+    static void putVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Reads a variable length integer.
+     *
+     * @param in the buffer to read from
+     * @return the value
+     */
+    static int getVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return value;
+    }
+}
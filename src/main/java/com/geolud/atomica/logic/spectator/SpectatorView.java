@@ -0,0 +1,153 @@
+package com.geolud.atomica.logic.spectator;
+
+import com.geolud.atomica.objects.SituationSnapshot;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * The situation of a game as seen by a spectator, rebuilt from the frames of
+ * a SpectatorFeed. Not thread safe.
+ *
+ * @author Georg Ludewig
+ */
+public class SpectatorView {
+    /**
+     * The number of columns of the board.
+     */
+    private int cols = 0;
+
+    /**
+     * The number of rows of the board.
+     */
+    private int rows = 0;
+
+    /**
+     * The encoded fields, null until a keyframe was applied.
+     */
+    private byte[] cells = null;
+
+    /**
+     * The number of the step of the last applied frame.
+     */
+    private int step = 0;
+
+    /**
+     * The score of the last applied frame.
+     */
+    private int score = 0;
+
+    /**
+     * The level number of the last applied frame.
+     */
+    private int levelNumber = 0;
+
+    /**
+     * Flag which indicates that the end frame was applied.
+     */
+    private boolean ended = false;
+
+    /**
+     * Applies a frame. The position of the frame is left unchanged.
+     *
+     * @param frame the frame
+     * @throws IOException if the frame is damaged or doesn't follow the
+     *                     previous one
+     */
+    public void apply(ByteBuffer frame) throws IOException {
+        ByteBuffer in = frame.duplicate();
+        try {
+            byte kind = in.get();
+            int frameStep = in.getInt();
+            int frameScore = in.getInt();
+            int frameLevel = in.getShort();
+
+            if (kind == SpectatorFormat.KEYFRAME) {
+                int frameCols = in.getShort();
+                int frameRows = in.getShort();
+                byte[] frameCells = new byte[frameCols * frameRows];
+                in.get(frameCells);
+                cols = frameCols;
+                rows = frameRows;
+                cells = frameCells;
+            } else if (kind == SpectatorFormat.DELTA) {
+                if (cells == null) {
+                    throw new IOException("Delta without keyframe");
+                }
+                if (frameStep != step + 1) {
+                    throw new IOException("Missed step " + (step + 1));
+                }
+                int changes = SpectatorFormat.getVarInt(in);
+                int cell = -1;
+                for (int i = 0; i < changes; i++) {
+                    cell += SpectatorFormat.getVarInt(in) + 1;
+                    cells[cell] = in.get();
+                }
+            } else if (kind == SpectatorFormat.END) {
+                ended = true;
+                return;
+            } else {
+                throw new IOException("Unknown frame " + kind);
+            }
+
+            step = frameStep;
+            score = frameScore;
+            levelNumber = frameLevel;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated frame", e);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Invalid field in frame", e);
+        }
+    }
+
+    /**
+     * Indicates if a keyframe was applied, so the situation is known.
+     *
+     * @return true if the situation is known
+     */
+    public boolean isValid() {
+        return cells != null;
+    }
+
+    /**
+     * Indicates if the game was closed.
+     *
+     * @return true if the end frame was applied
+     */
+    public boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * Returns the number of the step last applied.
+     *
+     * @return the step number
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Returns the current score.
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Creates a snapshot of the current situation, e.g. for painting it.
+     *
+     * @return the snapshot, null if no keyframe was applied yet
+     */
+    public SituationSnapshot createSnapshot() {
+        if (cells == null) {
+            return null;
+        }
+
+        return new SituationSnapshot(cols, rows, cells.clone(), score,
+                levelNumber);
+    }
+}
@@ -0,0 +1,174 @@
+package com.geolud.atomica.logic.spectator;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The frames of a SpectatorFeed waiting to be taken by one spectator. The
+ * queue is bounded: when it is full, the waiting frames are replaced by a
+ * single keyframe of the current situation. A spectator which still hasn't
+ * taken that keyframe when the queue is full again is dropped, and its
+ * subscription is closed.
+ * <p/>
+ * <p>
+ * The frames are read-only views of buffers shared by all spectators.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class Subscription {
+    /**
+     * The maximum number of waiting frames.
+     */
+    private final int capacity;
+
+    /**
+     * The waiting frames.
+     */
+    private final ArrayDeque<ByteBuffer> frames;
+
+    /**
+     * The keyframe which replaced the waiting frames and was not yet taken,
+     * null if there is none.
+     */
+    private ByteBuffer resyncFrame = null;
+
+    /**
+     * The number of times the waiting frames were replaced by a keyframe.
+     */
+    private int coalescedCount = 0;
+
+    /**
+     * Flag which indicates that no further frames are added.
+     */
+    private boolean closed = false;
+
+    /**
+     * Creates an empty subscription.
+     *
+     * @param capacity the maximum number of waiting frames
+     */
+    Subscription(int capacity) {
+        this.capacity = capacity;
+        this.frames = new ArrayDeque<ByteBuffer>(Math.min(capacity, 16));
+    }
+
+    /**
+     * Takes the next frame without waiting.
+     *
+     * @return the next frame, null if there is none
+     */
+    public synchronized ByteBuffer poll() {
+        ByteBuffer frame = frames.poll();
+        if (frame != null && frame == resyncFrame) {
+            resyncFrame = null;
+        }
+
+        return frame;
+    }
+
+    /**
+     * Takes the next frame, waiting for it at most the given time.
+     *
+     * @param timeout the longest time to wait
+     * @param unit    the unit of the timeout
+     * @return the next frame, null if there was none in time or the
+     * subscription is closed and all frames were taken
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public synchronized ByteBuffer take(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        long remaining;
+        while (frames.isEmpty() && !closed
+                && (remaining = end - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        return poll();
+    }
+
+    /**
+     * Indicates if the subscription was closed, because the game was closed,
+     * the spectator was dropped or cancelled it. Frames waiting before it was
+     * closed can still be taken.
+     *
+     * @return true if no further frames are added
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the number of times the waiting frames were replaced by a
+     * keyframe because the spectator was too slow.
+     *
+     * @return the number of coalescings
+     */
+    public synchronized int getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Ends the subscription. The feed forgets it with its next frame.
+     */
+    public synchronized void cancel() {
+        closed = true;
+        frames.clear();
+        notifyAll();
+    }
+
+    /**
+     * Adds a frame if there is room for it.
+     *
+     * @param frame the frame
+     * @return false if the queue is full
+     */
+    synchronized boolean offer(ByteBuffer frame) {
+        if (closed) {
+            return true;
+        }
+        if (frames.size() >= capacity) {
+            return false;
+        }
+
+        frames.add(frame);
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Replaces the waiting frames by the given keyframe, or drops the
+     * spectator if the previous replacement was not yet taken.
+     *
+     * @param keyframe the keyframe of the current situation
+     */
+    synchronized void resync(ByteBuffer keyframe) {
+        if (resyncFrame != null) {
+            cancel();
+            return;
+        }
+
+        frames.clear();
+        frames.add(keyframe);
+        resyncFrame = keyframe;
+        coalescedCount++;
+        notifyAll();
+    }
+
+    /**
+     * Adds the last frame and closes the subscription. If the queue is full
+     * the spectator misses the end of the game, but still sees the
+     * subscription closed.
+     *
+     * @param frame the end frame
+     */
+    synchronized void finish(ByteBuffer frame) {
+        if (!closed && frames.size() < capacity) {
+            frames.add(frame);
+        }
+        closed = true;
+        notifyAll();
+    }
+}
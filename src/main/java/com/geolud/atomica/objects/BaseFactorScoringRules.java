@@ -0,0 +1,60 @@
+package com.geolud.atomica.objects;
+
+/**
+ * Scores molecules by the base factor of the settings and the number of
+ * colors of the level: a molecule of 4 atoms scores (colors - 2) * base
+ * factor, larger ones size / 3 times as much. Combos multiply the score by
+ * the number of molecules removed in the round and chain reactions by the
+ * number of their link.
+ *
+ * @author Georg Ludewig
+ */
+public class BaseFactorScoringRules implements ScoringRules {
+    /**
+     * The generated id for serialization.
+     */
+    private static final long serialVersionUID = 3391870584722961405L;
+
+    /**
+     * The size of the smallest molecule.
+     */
+    private static final int MIN_SIZE = 4;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.geolud.atomica.objects.ScoringRules#getMoleculeScore(com.geolud.atomica.objects.Level,
+     *      int)
+     */
+    public int getMoleculeScore(Level level, int size) {
+        if (size < MIN_SIZE) {
+            return 0;
+        }
+
+        int score = (level.getNumberOfColors() - 2)
+                * GameSettings.getBaseFactor();
+        if (size > MIN_SIZE) {
+            score = (int) ((double) size / 3 * score);
+        }
+
+        return score;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.geolud.atomica.objects.ScoringRules#getComboMultiplier(int)
+     */
+    public int getComboMultiplier(int molecules) {
+        return Math.max(molecules, 1);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.geolud.atomica.objects.ScoringRules#getCascadeMultiplier(int)
+     */
+    public int getCascadeMultiplier(int link) {
+        return Math.max(link, 1);
+    }
+}
@@ -24,14 +24,16 @@ public class Board implements Serializable {
     public static final int MIN_COLS = 3;
 
     /**
-     * The maximum number of rows a board can have.
+     * The maximum number of rows a board can have. Boards with more rows than
+     * fit on the screen are scrolled.
      */
-    public static final int MAX_ROWS = 30;
+    public static final int MAX_ROWS = 1000;
 
     /**
-     * The maximum number of columns a board can have.
+     * The maximum number of columns a board can have. Boards with more
+     * columns than fit on the screen are scrolled.
      */
-    public static final int MAX_COLS = 30;
+    public static final int MAX_COLS = 1000;
 
     /**
      * The default number of rows.
@@ -87,7 +89,7 @@ public class Board implements Serializable {
      * @param cols the new number of columns
      */
     public void setCols(int cols) {
-        assert (cols > MAX_COLS && cols < MIN_COLS);
+        assert (cols >= MIN_COLS && cols <= MAX_COLS);
         this.cols = cols;
     }
 
@@ -105,7 +107,7 @@ public class Board implements Serializable {
      * @param rows the new number of rows
      */
     public void setRows(int rows) {
-        assert (rows > MAX_ROWS && rows < MIN_ROWS);
+        assert (rows >= MIN_ROWS && rows <= MAX_ROWS);
         this.rows = rows;
     }
 
@@ -31,6 +31,12 @@ public class Field implements Serializable {
      */
     private Token token = null;
 
+    /**
+     * The situation the field belongs to, which keeps a packed copy of all
+     * fields. Null for fields outside of a situation.
+     */
+    private transient GameSituation situation = null;
+
     /**
      * Creates a field for the given position.
      *
@@ -84,6 +90,10 @@ public class Field implements Serializable {
             token.setField(null);
         }
         token = null;
+
+        if (situation != null) {
+            situation.updateCell(this);
+        }
     }
 
     /**
@@ -105,5 +115,18 @@ public class Field implements Serializable {
 
         // assure the token knows its field
         token.setField(this);
+
+        if (situation != null) {
+            situation.updateCell(this);
+        }
+    }
+
+    /**
+     * Assigns the field to the situation which keeps a packed copy of it.
+     *
+     * @param situation the situation the field belongs to
+     */
+    void setSituation(GameSituation situation) {
+        this.situation = situation;
     }
 }
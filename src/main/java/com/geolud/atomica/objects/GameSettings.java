@@ -72,6 +72,12 @@ public abstract class GameSettings extends Observable implements Serializable,
      */
     protected ArrayList<Level> levels;
 
+    /**
+     * The rules for scoring molecules, null in settings saved before they
+     * existed.
+     */
+    private ScoringRules scoringRules;
+
     /**
      * Default constructor. Sets the base factor and the board size to their
      * default value.
@@ -80,6 +86,7 @@ public abstract class GameSettings extends Observable implements Serializable,
         levels = new ArrayList<Level>();
         board = new Board();
         baseFactor = DEFAULT_BASEFACTOR;
+        scoringRules = new SquareScoringRules();
     }
 
     /**
@@ -92,6 +99,7 @@ public abstract class GameSettings extends Observable implements Serializable,
         this.board.setCols(gameSettings.getCols());
         this.board.setRows(gameSettings.getRows());
         this.levels = (ArrayList<Level>) gameSettings.getLevels().clone();
+        this.scoringRules = gameSettings.getScoringRules();
 
         setChanged();
         notifyObservers();
@@ -176,6 +184,19 @@ public abstract class GameSettings extends Observable implements Serializable,
         board.setCols(cols);
     }
 
+    /**
+     * Returns the rules for scoring molecules.
+     *
+     * @return the scoring rules, SquareScoringRules unless others were set
+     */
+    public ScoringRules getScoringRules() {
+        if (scoringRules == null) {
+            scoringRules = new SquareScoringRules();
+        }
+
+        return scoringRules;
+    }
+
     /**
      * Sets the default settings. Since DefaultGameSettings and
      * EditorGameSettings have their own default settings this method is to
@@ -186,6 +207,25 @@ public abstract class GameSettings extends Observable implements Serializable,
         notifyObservers();
     }
 
+    /**
+     * Replaces all levels. The level numbers are expected to start with 1 and
+     * to follow the order of the list.
+     *
+     * @param levels the new levels
+     */
+    public void setLevels(ArrayList<Level> levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Sets the rules for scoring molecules of games started afterwards.
+     *
+     * @param scoringRules the new scoring rules
+     */
+    public void setScoringRules(ScoringRules scoringRules) {
+        this.scoringRules = scoringRules;
+    }
+
     /**
      * Sets the number of rows of the board.
      *
@@ -1,5 +1,7 @@
 package com.geolud.atomica.objects;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -7,6 +9,15 @@ import java.util.ArrayList;
  * This class holds information about a certain game situation, like the
  * arrangement of tokens on the board. It is used for displaying the situation
  * on the UI as well as for calculations.
+ * <p/>
+ * <p>
+ * Besides the fields it keeps a packed copy of the board with one byte per
+ * field in the encoding of SituationSnapshot, updated by the fields whenever
+ * a token is placed or removed. Queries scan the packed copy instead of the
+ * fields, so they stay fast on large boards. The board is further divided
+ * into chunks of CHUNK_SIZE * CHUNK_SIZE fields, which are marked dirty when
+ * one of their fields changes.
+ * </p>
  *
  * @author Georg Ludewig
  */
@@ -21,6 +32,11 @@ public class GameSituation implements Serializable {
      */
     public static final int INDICATORS_IN_ROUND = 5;
 
+    /**
+     * The number of columns and rows of a chunk.
+     */
+    public static final int CHUNK_SIZE = 32;
+
     /**
      * The game settings of the game situation keeping the board size, the base
      * factor and the levels to go through.
@@ -42,6 +58,43 @@ public class GameSituation implements Serializable {
      */
     private Field[][] fields;
 
+    /**
+     * The encoded tokens of all fields, indexed by
+     * <code>row * cols + col</code>.
+     */
+    private transient byte[] cells;
+
+    /**
+     * The number of tokens in each row.
+     */
+    private transient int[] rowTokens;
+
+    /**
+     * The number of indicators in each row.
+     */
+    private transient int[] rowIndicators;
+
+    /**
+     * The number of atoms on the board.
+     */
+    private transient int atomCount;
+
+    /**
+     * The number of indicators on the board.
+     */
+    private transient int indicatorCount;
+
+    /**
+     * The number of chunks in a row of chunks.
+     */
+    private transient int chunkCols;
+
+    /**
+     * The chunks changed since the flags were cleared, indexed by
+     * <code>chunkRow * chunkCols + chunkCol</code>.
+     */
+    private transient boolean[] dirtyChunks;
+
     /**
      * Creates an game situation considering the given settings. Initializes all
      * fields where the board size is defined in the given settings.
@@ -78,16 +131,17 @@ public class GameSituation implements Serializable {
      * @return all tokens which are in the game situation
      */
     public ArrayList<AtomToken> getAtoms() {
-        ArrayList<AtomToken> atoms = new ArrayList<AtomToken>();
-
-        int rows = gameSettings.getRows();
-        int cols = gameSettings.getCols();
+        ArrayList<AtomToken> atoms = new ArrayList<AtomToken>(atomCount);
 
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                AtomToken atom = queryAtom(c, r);
-                if (atom != null)
-                    atoms.add(atom);
+        int cols = fields.length;
+        for (int row = 0; row < rowTokens.length; row++) {
+            if (rowTokens[row] == rowIndicators[row]) {
+                continue;
+            }
+            for (int col = 0, cell = row * cols; col < cols; col++, cell++) {
+                if (cells[cell] > 0) {
+                    atoms.add((AtomToken) fields[col][row].getToken());
+                }
             }
         }
 
@@ -128,28 +182,144 @@ public class GameSituation implements Serializable {
      * @return all empty fields
      */
     public ArrayList<Field> getEmptyFields(boolean allowIndicators) {
-        ArrayList<Field> emptyFields = new ArrayList<Field>();
+        ArrayList<Field> emptyFields = new ArrayList<Field>(
+                getEmptyCount(allowIndicators));
 
-        int rows = gameSettings.getRows();
-        int cols = gameSettings.getCols();
-
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                Field field = fields[c][r];
-                Token token = field.getToken();
-                if (token == null) {
-                    emptyFields.add(field);
-                } else if (allowIndicators) {
-                    if (token.getClass() == IndicatorToken.class) {
-                        emptyFields.add(field);
-                    }
-                }
+        int cols = fields.length;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (isEmpty(cells[cell], allowIndicators)) {
+                emptyFields.add(fields[cell % cols][cell / cols]);
             }
         }
 
         return emptyFields;
     }
 
+    /**
+     * Returns the number of empty fields in the situation.
+     *
+     * @param allowIndicators indicates if fields with indicators are considered as empty
+     * @return the number of empty fields
+     */
+    public int getEmptyCount(boolean allowIndicators) {
+        int empty = cells.length - atomCount - indicatorCount;
+        if (allowIndicators) {
+            empty += indicatorCount;
+        }
+
+        return empty;
+    }
+
+    /**
+     * Returns the empty field with the given index, which is the same as
+     * <code>getEmptyFields(allowIndicators).get(n)</code> without collecting
+     * all empty fields.
+     *
+     * @param n               the index of the empty field
+     * @param allowIndicators indicates if fields with indicators are considered as empty
+     * @return the empty field with the given index
+     */
+    public Field getEmptyField(int n, boolean allowIndicators) {
+        int cols = fields.length;
+
+        // skip the rows with less empty fields than left to count
+        int row = 0;
+        int rowEmpty = cols - rowTokens[0]
+                + (allowIndicators ? rowIndicators[0] : 0);
+        while (n >= rowEmpty) {
+            n -= rowEmpty;
+            row++;
+            rowEmpty = cols - rowTokens[row]
+                    + (allowIndicators ? rowIndicators[row] : 0);
+        }
+
+        for (int col = 0, cell = row * cols; ; col++, cell++) {
+            if (isEmpty(cells[cell], allowIndicators) && n-- == 0) {
+                return fields[col][row];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of atoms in the situation.
+     *
+     * @return the number of atoms
+     */
+    public int getAtomCount() {
+        return atomCount;
+    }
+
+    /**
+     * Returns the number of indicators in the situation.
+     *
+     * @return the number of indicators
+     */
+    public int getIndicatorCount() {
+        return indicatorCount;
+    }
+
+    /**
+     * Returns the encoded token of the field with the given cell index, as
+     * defined by SituationSnapshot.
+     *
+     * @param cell the cell index of the field (<code>row * cols + col</code>)
+     * @return the cell code of the field
+     */
+    public byte getCell(int cell) {
+        return cells[cell];
+    }
+
+    /**
+     * Returns the number of chunks in a row of chunks.
+     *
+     * @return the number of chunk columns
+     */
+    public int getChunkCols() {
+        return chunkCols;
+    }
+
+    /**
+     * Returns the number of chunks in a column of chunks.
+     *
+     * @return the number of chunk rows
+     */
+    public int getChunkRows() {
+        return dirtyChunks.length / chunkCols;
+    }
+
+    /**
+     * Indicates if a field of the given chunk changed since the flags were
+     * cleared. All chunks are dirty after the fields were initialized.
+     *
+     * @param chunkCol the column of the chunk
+     * @param chunkRow the row of the chunk
+     * @return true if the chunk changed
+     */
+    public boolean isChunkDirty(int chunkCol, int chunkRow) {
+        return dirtyChunks[chunkRow * chunkCols + chunkCol];
+    }
+
+    /**
+     * Marks all chunks as unchanged.
+     */
+    public void clearDirtyChunks() {
+        for (int i = 0; i < dirtyChunks.length; i++) {
+            dirtyChunks[i] = false;
+        }
+    }
+
+    /**
+     * Indicates if the given cell code stands for an empty field.
+     *
+     * @param code            the cell code
+     * @param allowIndicators indicates if fields with indicators are considered as empty
+     * @return true if the field is empty
+     */
+    private static boolean isEmpty(byte code, boolean allowIndicators) {
+        return code == SituationSnapshot.EMPTY
+                || (allowIndicators && code < 0);
+    }
+
     /**
      * Returns the field at the given position.
      *
@@ -176,22 +346,34 @@ public class GameSituation implements Serializable {
      * @return all indicators
      */
     public ArrayList<IndicatorToken> getIndicators() {
-        ArrayList<IndicatorToken> indicators = new ArrayList<IndicatorToken>();
+        ArrayList<IndicatorToken> indicators = new ArrayList<IndicatorToken>(
+                indicatorCount);
 
-        int cols = gameSettings.getCols();
-        int rows = gameSettings.getRows();
-
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                IndicatorToken atom = queryIndicatorToken(c, r);
-                if (atom != null)
-                    indicators.add(atom);
+        int cols = fields.length;
+        for (int row = 0; row < rowIndicators.length; row++) {
+            if (rowIndicators[row] == 0) {
+                continue;
+            }
+            for (int col = 0, cell = row * cols; col < cols; col++, cell++) {
+                if (cells[cell] < 0) {
+                    indicators.add((IndicatorToken) fields[col][row]
+                            .getToken());
+                }
             }
         }
 
         return indicators;
     }
 
+    /**
+     * Returns the game settings the situation was initialized with.
+     *
+     * @return the game settings
+     */
+    public GameSettings getGameSettings() {
+        return gameSettings;
+    }
+
     /**
      * Returns the last level defined by the game settings.
      *
@@ -235,16 +417,18 @@ public class GameSituation implements Serializable {
      * @return all tokens of the situation
      */
     public ArrayList<Token> getTokens() {
-        ArrayList<Token> tokens = new ArrayList<Token>();
-
-        int rows = gameSettings.getRows();
-        int cols = gameSettings.getCols();
+        ArrayList<Token> tokens = new ArrayList<Token>(atomCount
+                + indicatorCount);
 
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                Token token = queryToken(c, r);
-                if (token != null)
-                    tokens.add(token);
+        int cols = fields.length;
+        for (int row = 0; row < rowTokens.length; row++) {
+            if (rowTokens[row] == 0) {
+                continue;
+            }
+            for (int col = 0, cell = row * cols; col < cols; col++, cell++) {
+                if (cells[cell] != SituationSnapshot.EMPTY) {
+                    tokens.add(fields[col][row].getToken());
+                }
             }
         }
 
@@ -266,6 +450,87 @@ public class GameSituation implements Serializable {
                 fields[c][r] = newField;
             }
         }
+
+        initCells();
+    }
+
+    /**
+     * Builds the packed copy of the fields and assigns the fields to the
+     * situation. All chunks are marked dirty.
+     */
+    private void initCells() {
+        int cols = fields.length;
+        int rows = cols > 0 ? fields[0].length : 0;
+
+        cells = new byte[cols * rows];
+        rowTokens = new int[rows];
+        rowIndicators = new int[rows];
+        atomCount = 0;
+        indicatorCount = 0;
+        chunkCols = (cols + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int chunkRows = (rows + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        dirtyChunks = new boolean[chunkCols * chunkRows];
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                fields[c][r].setSituation(this);
+                updateCell(fields[c][r]);
+            }
+        }
+        for (int i = 0; i < dirtyChunks.length; i++) {
+            dirtyChunks[i] = true;
+        }
+    }
+
+    /**
+     * Restores the packed copy of the fields after deserialization.
+     *
+     * @param in the stream to read from
+     * @throws IOException            if the stream can't be read
+     * @throws ClassNotFoundException if a class of the stream is unknown
+     */
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        initCells();
+    }
+
+    /**
+     * Updates the packed copy of the given field after its token changed.
+     * Called by the field.
+     *
+     * @param field the changed field
+     */
+    void updateCell(Field field) {
+        int col = field.getCol();
+        int row = field.getRow();
+        int cell = row * fields.length + col;
+        byte old = cells[cell];
+        byte code = SituationSnapshot.encodeCell(field.getToken());
+        if (old == code) {
+            return;
+        }
+
+        if (old > 0) {
+            atomCount--;
+        } else if (old < 0) {
+            indicatorCount--;
+            rowIndicators[row]--;
+        }
+        if (code > 0) {
+            atomCount++;
+        } else if (code < 0) {
+            indicatorCount++;
+            rowIndicators[row]++;
+        }
+        if (old == SituationSnapshot.EMPTY) {
+            rowTokens[row]++;
+        } else if (code == SituationSnapshot.EMPTY) {
+            rowTokens[row]--;
+        }
+
+        cells[cell] = code;
+        dirtyChunks[(row / CHUNK_SIZE) * chunkCols + col / CHUNK_SIZE] = true;
     }
 
     /**
@@ -301,22 +566,6 @@ public class GameSituation implements Serializable {
         return atom;
     }
 
-    /**
-     * Returns the indicator at the given position if there is one.
-     *
-     * @param col the column of the field
-     * @param row the row of the field
-     * @return the indicator at the given position, null if there is non
-     */
-    private IndicatorToken queryIndicatorToken(int col, int row) {
-        Token token = queryToken(col, row);
-
-        if (token == null || token.getClass() != IndicatorToken.class)
-            return null;
-
-        return (IndicatorToken) token;
-    }
-
     /**
      * Returns the token at the given position if there is one.
      *
@@ -337,6 +586,20 @@ public class GameSituation implements Serializable {
         return token;
     }
 
+    /**
+     * Creates an immutable copy of the situation with the tokens packed into
+     * one byte per field.
+     *
+     * @return an immutable copy of the situation
+     */
+    public SituationSnapshot createSnapshot() {
+        int cols = gameSettings.getCols();
+        int rows = gameSettings.getRows();
+
+        return new SituationSnapshot(cols, rows, cells.clone(), score,
+                currentLevel.getLevelNumber());
+    }
+
     /**
      * Sets a new number of columns and reinitializes the fields. Removes also
      * all tokens.
@@ -0,0 +1,48 @@
+package com.geolud.atomica.objects;
+
+import java.io.Serializable;
+
+/**
+ * Defines how removed molecules are scored. The score of a molecule is its
+ * base score, multiplied by a combo factor for the number of molecules found
+ * in the same round and by a cascade factor for the link of the chain
+ * reaction which formed it.
+ * <p/>
+ * <p>
+ * The rules are queried once per level, molecule size, combo and cascade
+ * length when a game starts, so they should only depend on their arguments
+ * and the settings of the game.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public interface ScoringRules extends Serializable {
+    /**
+     * Returns the base score of a molecule.
+     *
+     * @param level the level the molecule is removed in
+     * @param size  the number of atoms of the molecule
+     * @return the base score
+     */
+    int getMoleculeScore(Level level, int size);
+
+    /**
+     * Returns the factor for the number of molecules removed in the same
+     * round.
+     *
+     * @param molecules the number of molecules removed in the round so far,
+     *                  including the scored one
+     * @return the combo factor
+     */
+    int getComboMultiplier(int molecules);
+
+    /**
+     * Returns the factor for the link of a chain reaction.
+     *
+     * @param link 1 for molecules formed by a move or the first fall of the
+     *             tokens, 2 for molecules formed by tokens falling after
+     *             those were removed, and so on
+     * @return the cascade factor
+     */
+    int getCascadeMultiplier(int link);
+}
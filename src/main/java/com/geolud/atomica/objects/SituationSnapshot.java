@@ -0,0 +1,212 @@
+package com.geolud.atomica.objects;
+
+/**
+ * Immutable copy of a game situation. The tokens are packed into one byte per
+ * field (cell), so a snapshot can be handed to another thread, compared or
+ * written to a file cheaply. It is used by the view for painting a game
+ * situation which is changed by the game logic in the background.
+ * <p/>
+ * <p>
+ * A cell is encoded as 0 if the field is empty, as <code>color + 1</code> if
+ * an atom takes place on it and as <code>-(color + 1)</code> if an indicator
+ * takes place on it. The cells are indexed by <code>row * cols + col</code>.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class SituationSnapshot {
+    /**
+     * The code of an empty cell.
+     */
+    public static final byte EMPTY = 0;
+
+    /**
+     * Returns the cell code for the given token.
+     *
+     * @param token the token, might be null
+     * @return the cell code of the token
+     */
+    public static byte encodeCell(Token token) {
+        if (token == null) {
+            return EMPTY;
+        } else if (token.getClass() == IndicatorToken.class) {
+            return (byte) -(token.getColorIndex() + 1);
+        }
+
+        return (byte) (token.getColorIndex() + 1);
+    }
+
+    /**
+     * Creates a new token for the given cell code.
+     *
+     * @param code the cell code
+     * @return a new token, null if the cell is empty
+     */
+    public static Token decodeCell(byte code) {
+        if (code > 0) {
+            return new AtomToken(code - 1);
+        } else if (code < 0) {
+            return new IndicatorToken(-code - 1);
+        }
+
+        return null;
+    }
+
+    /**
+     * Indicates if the given cell code stands for an atom.
+     *
+     * @param code the cell code
+     * @return true if the code stands for an atom
+     */
+    public static boolean isAtomCell(byte code) {
+        return code > 0;
+    }
+
+    /**
+     * Indicates if the given cell code stands for an indicator.
+     *
+     * @param code the cell code
+     * @return true if the code stands for an indicator
+     */
+    public static boolean isIndicatorCell(byte code) {
+        return code < 0;
+    }
+
+    /**
+     * Returns the color index of the token encoded by the given cell code.
+     *
+     * @param code the cell code
+     * @return the color index, -1 if the cell is empty
+     */
+    public static int getCellColorIndex(byte code) {
+        return code > 0 ? code - 1 : -code - 1;
+    }
+
+    /**
+     * The number of columns.
+     */
+    private final int cols;
+
+    /**
+     * The number of rows.
+     */
+    private final int rows;
+
+    /**
+     * The packed tokens of all fields.
+     */
+    private final byte[] cells;
+
+    /**
+     * The reached score.
+     */
+    private final int score;
+
+    /**
+     * The number of the current level.
+     */
+    private final int levelNumber;
+
+    /**
+     * Creates a snapshot. The given cells are taken over and must not be
+     * changed afterwards.
+     *
+     * @param cols        the number of columns
+     * @param rows        the number of rows
+     * @param cells       the packed tokens of all fields
+     * @param score       the reached score
+     * @param levelNumber the number of the current level
+     */
+    public SituationSnapshot(int cols, int rows, byte[] cells, int score,
+                             int levelNumber) {
+        if (cells.length != cols * rows) {
+            throw new IllegalArgumentException("Invalid number of cells "
+                    + cells.length);
+        }
+
+        this.cols = cols;
+        this.rows = rows;
+        this.cells = cells;
+        this.score = score;
+        this.levelNumber = levelNumber;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return the number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of cells.
+     *
+     * @return the number of cells
+     */
+    public int getCellCount() {
+        return cells.length;
+    }
+
+    /**
+     * Returns the cell code at the given cell index.
+     *
+     * @param cell the cell index
+     * @return the cell code
+     */
+    public byte getCell(int cell) {
+        return cells[cell];
+    }
+
+    /**
+     * Returns the cell code at the given position.
+     *
+     * @param col the column of the field
+     * @param row the row of the field
+     * @return the cell code, EMPTY if the position is outside of the board
+     */
+    public byte getCell(int col, int row) {
+        if (col < 0 || row < 0 || col >= cols || row >= rows) {
+            return EMPTY;
+        }
+
+        return cells[row * cols + col];
+    }
+
+    /**
+     * Returns a copy of all cell codes.
+     *
+     * @return a copy of all cell codes
+     */
+    public byte[] copyCells() {
+        return cells.clone();
+    }
+
+    /**
+     * Returns the reached score.
+     *
+     * @return the reached score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the number of the current level.
+     *
+     * @return the number of the current level
+     */
+    public int getLevelNumber() {
+        return levelNumber;
+    }
+}
@@ -0,0 +1,43 @@
+package com.geolud.atomica.objects;
+
+/**
+ * The default scoring: a molecule scores the square of its size, multiplied
+ * by the number of molecules removed in the same round. Chain reactions are
+ * not rewarded.
+ *
+ * @author Georg Ludewig
+ */
+public class SquareScoringRules implements ScoringRules {
+    /**
+     * The generated id for serialization.
+     */
+    private static final long serialVersionUID = -4176502294016553870L;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.geolud.atomica.objects.ScoringRules#getMoleculeScore(com.geolud.atomica.objects.Level,
+     *      int)
+     */
+    public int getMoleculeScore(Level level, int size) {
+        return size * size;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.geolud.atomica.objects.ScoringRules#getComboMultiplier(int)
+     */
+    public int getComboMultiplier(int molecules) {
+        return Math.max(molecules, 1);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.geolud.atomica.objects.ScoringRules#getCascadeMultiplier(int)
+     */
+    public int getCascadeMultiplier(int link) {
+        return 1;
+    }
+}
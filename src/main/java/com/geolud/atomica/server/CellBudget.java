@@ -0,0 +1,90 @@
+package com.geolud.atomica.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the memory the games of a server may take by their number of fields.
+ * A single board may not exceed a maximum number of fields, and all boards of
+ * all sessions together may not exceed a total. A session acquires the fields
+ * of a board before starting its game and releases them when the game is
+ * replaced or closed. Thread safe.
+ *
+ * @author Georg Ludewig
+ */
+public class CellBudget {
+    /**
+     * The maximum number of fields of a single board.
+     */
+    private final int maxBoardCells;
+
+    /**
+     * The maximum number of fields of all boards together.
+     */
+    private final long maxTotalCells;
+
+    /**
+     * The number of fields of all running games.
+     */
+    private final AtomicLong usedCells = new AtomicLong();
+
+    /**
+     * Creates a budget.
+     *
+     * @param maxBoardCells the maximum number of fields of a single board
+     * @param maxTotalCells the maximum number of fields of all boards together
+     */
+    public CellBudget(int maxBoardCells, long maxTotalCells) {
+        this.maxBoardCells = maxBoardCells;
+        this.maxTotalCells = maxTotalCells;
+    }
+
+    /**
+     * Returns the maximum number of fields of a single board.
+     *
+     * @return the maximum number of fields of a board
+     */
+    public int getMaxBoardCells() {
+        return maxBoardCells;
+    }
+
+    /**
+     * Returns the number of fields of all running games.
+     *
+     * @return the number of fields in use
+     */
+    public long getUsedCells() {
+        return usedCells.get();
+    }
+
+    /**
+     * Acquires the fields of a board, if neither the board nor all boards
+     * together get too large.
+     *
+     * @param cells the number of fields of the board
+     * @return true if the fields were acquired
+     */
+    public boolean acquire(int cells) {
+        if (cells > maxBoardCells) {
+            return false;
+        }
+
+        while (true) {
+            long used = usedCells.get();
+            if (used + cells > maxTotalCells) {
+                return false;
+            }
+            if (usedCells.compareAndSet(used, used + cells)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases the fields of a board acquired before.
+     *
+     * @param cells the number of fields of the board
+     */
+    public void release(int cells) {
+        usedCells.addAndGet(-cells);
+    }
+}
@@ -0,0 +1,128 @@
+package com.geolud.atomica.server;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * The state of a client connection of the GameServer: its channel, the
+ * partially received command line, the answers waiting to be written and the
+ * hosted session. The buffers are only touched by the selector thread, the
+ * session only by its serial executor.
+ *
+ * @author Georg Ludewig
+ */
+class Connection {
+    /**
+     * The maximum length of a command line in bytes, including the line
+     * terminator.
+     */
+    static final int MAX_LINE_LENGTH = 128;
+
+    /**
+     * The channel of the client.
+     */
+    final SocketChannel channel;
+
+    /**
+     * The hosted session.
+     */
+    final GameSession session;
+
+    /**
+     * Applies the commands of the session one after another.
+     */
+    final SerialExecutor executor;
+
+    /**
+     * The answers waiting to be written by the selector thread.
+     */
+    final ConcurrentLinkedQueue<ByteBuffer> output = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    /**
+     * The key of the channel at the selector.
+     */
+    SelectionKey key = null;
+
+    /**
+     * The received bytes of the current command line, created when the
+     * first byte arrives and dropped again after a complete line, so idle
+     * connections hold no buffer.
+     */
+    private ByteBuffer input = null;
+
+    /**
+     * Flag which indicates that the connection is closed as soon as the
+     * pending answers are written.
+     */
+    volatile boolean closing = false;
+
+    /**
+     * Creates a connection for the given channel.
+     *
+     * @param channel  the channel of the client
+     * @param id       the id of the hosted session
+     * @param workers  the shared executor running the commands
+     * @param budget   the budget limiting the size of the boards
+     * @param sessions the open sessions of the server by their ids
+     */
+    Connection(SocketChannel channel, long id, Executor workers,
+               CellBudget budget, ConcurrentMap<Long, GameSession> sessions) {
+        this.channel = channel;
+        this.session = new GameSession(id, budget, sessions);
+        this.executor = new SerialExecutor(workers);
+    }
+
+    /**
+     * Returns the buffer receiving the current command line.
+     *
+     * @return the input buffer
+     */
+    ByteBuffer getInput() {
+        if (input == null) {
+            input = ByteBuffer.allocate(MAX_LINE_LENGTH);
+        }
+
+        return input;
+    }
+
+    /**
+     * Removes the complete command lines from the input buffer.
+     *
+     * @param lines receives the command lines without line terminators
+     * @return false if the buffer is full without a complete line
+     */
+    boolean takeLines(List<String> lines) {
+        ByteBuffer buffer = getInput();
+        int start = 0;
+        int end = buffer.position();
+        byte[] bytes = buffer.array();
+        for (int i = 0; i < end; i++) {
+            if (bytes[i] == '\n') {
+                int length = i - start;
+                if (length > 0 && bytes[i - 1] == '\r') {
+                    length--;
+                }
+                lines.add(new String(bytes, start, length,
+                        StandardCharsets.US_ASCII));
+                start = i + 1;
+            }
+        }
+
+        if (start == end) {
+            input = null;
+            return true;
+        }
+        if (start > 0) {
+            System.arraycopy(bytes, start, bytes, 0, end - start);
+            buffer.position(end - start);
+        }
+
+        return buffer.hasRemaining();
+    }
+}
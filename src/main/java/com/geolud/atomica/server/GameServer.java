@@ -0,0 +1,541 @@
+package com.geolud.atomica.server;
+
+import com.geolud.atomica.logic.leaderboard.LeaderboardStore;
+import com.geolud.atomica.util.logging.Logging;
+import com.geolud.atomica.util.metrics.AtomicaMetrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Hosts many games at once, one GameSession per client connected over TCP on
+ * the local host. The line based protocol is described at GameSession.
+ * <p/>
+ * <p>
+ * A single thread serves all connections by a selector and a small pool of
+ * worker threads applies the commands. Each session has a SerialExecutor, so
+ * its commands are applied one after another in the order they arrived, while
+ * an idle session holds neither a thread nor a buffer. A client sending
+ * commands faster than they are applied is not read from until its queue has
+ * shrunk.
+ * </p>
+ * <p>
+ * The server is started by <code>main</code> and configured by the system
+ * properties <code>atomica.server.port</code>,
+ * <code>atomica.server.workers</code>,
+ * <code>atomica.server.sessions</code> (the maximum number of sessions),
+ * <code>atomica.server.boardCells</code> (the maximum number of fields of a
+ * board) and <code>atomica.server.totalCells</code> (the maximum number of
+ * fields of all boards together).
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class GameServer implements Runnable {
+    /**
+     * The system property for the port to listen on.
+     */
+    public static final String PROPERTY_PORT = "atomica.server.port";
+
+    /**
+     * The system property for the number of worker threads.
+     */
+    public static final String PROPERTY_WORKERS = "atomica.server.workers";
+
+    /**
+     * The system property for the maximum number of sessions.
+     */
+    public static final String PROPERTY_SESSIONS = "atomica.server.sessions";
+
+    /**
+     * The system property for the maximum number of fields of a board.
+     */
+    public static final String PROPERTY_BOARD_CELLS = "atomica.server.boardCells";
+
+    /**
+     * The system property for the maximum number of fields of all boards
+     * together.
+     */
+    public static final String PROPERTY_TOTAL_CELLS = "atomica.server.totalCells";
+
+    /**
+     * The port listened on unless another one is configured.
+     */
+    public static final int DEFAULT_PORT = 7878;
+
+    /**
+     * The maximum number of sessions unless another one is configured.
+     */
+    public static final int DEFAULT_SESSIONS = 50000;
+
+    /**
+     * The maximum number of fields of a board unless another one is
+     * configured (200 x 200).
+     */
+    public static final int DEFAULT_BOARD_CELLS = 40000;
+
+    /**
+     * The maximum number of fields of all boards together unless another one
+     * is configured.
+     */
+    public static final long DEFAULT_TOTAL_CELLS = 10000000L;
+
+    /**
+     * The number of queued commands of a session at which its connection is
+     * no longer read from.
+     */
+    private static final int MAX_QUEUED_COMMANDS = 32;
+
+    /**
+     * The number of connections waiting to be accepted by the operating
+     * system.
+     */
+    private static final int BACKLOG = 1024;
+
+    /**
+     * The selector serving all connections.
+     */
+    private final Selector selector;
+
+    /**
+     * The channel accepting the connections.
+     */
+    private final ServerSocketChannel serverChannel;
+
+    /**
+     * The threads applying the commands.
+     */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * The maximum number of sessions.
+     */
+    private final int maxSessions;
+
+    /**
+     * The budget limiting the size of the boards of all sessions.
+     */
+    private final CellBudget cellBudget;
+
+    /**
+     * The open sessions by their ids, so a session can follow the game of
+     * another one.
+     */
+    private final ConcurrentHashMap<Long, GameSession> sessions = new ConcurrentHashMap<Long, GameSession>();
+
+    /**
+     * The connections with answers to write or a queue to check, handed from
+     * the workers to the selector thread.
+     */
+    private final ConcurrentLinkedQueue<Connection> pending = new ConcurrentLinkedQueue<Connection>();
+
+    /**
+     * Flag which indicates that the selector was woken up for the pending
+     * connections.
+     */
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+
+    /**
+     * The number of open sessions.
+     */
+    private volatile int sessionCount = 0;
+
+    /**
+     * The id of the next session.
+     */
+    private long nextSessionId = 1;
+
+    /**
+     * Flag which indicates that the server is running.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Creates a server listening on the given port of the local host, which
+     * limits the boards by the default cell budget.
+     *
+     * @param port        the port to listen on, 0 for any free port
+     * @param threads     the number of worker threads
+     * @param maxSessions the maximum number of sessions
+     * @throws IOException if the port can't be listened on
+     */
+    public GameServer(int port, int threads, int maxSessions)
+            throws IOException {
+        this(port, threads, maxSessions, new CellBudget(DEFAULT_BOARD_CELLS,
+                DEFAULT_TOTAL_CELLS));
+    }
+
+    /**
+     * Creates a server listening on the given port of the local host.
+     *
+     * @param port        the port to listen on, 0 for any free port
+     * @param threads     the number of worker threads
+     * @param maxSessions the maximum number of sessions
+     * @param cellBudget  the budget limiting the size of the boards
+     * @throws IOException if the port can't be listened on
+     */
+    public GameServer(int port, int threads, int maxSessions,
+                      CellBudget cellBudget) throws IOException {
+        this.maxSessions = maxSessions;
+        this.cellBudget = cellBudget;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                BACKLOG);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        workers = new ThreadPoolExecutor(threads, threads, 0,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "AtomicaServerWorker");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the number of open sessions.
+     *
+     * @return the number of sessions
+     */
+    public int getSessionCount() {
+        return sessionCount;
+    }
+
+    /**
+     * Starts serving the connections in a background thread.
+     */
+    public void start() {
+        Thread thread = new Thread(this, "AtomicaServer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the server. All connections are closed.
+     */
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Serves the connections until the server is closed.
+     */
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                wakeupPending.set(false);
+                processPending();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys()
+                        .iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                read(connection);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(connection);
+                            }
+                        } catch (IOException e) {
+                            close(connection);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Logging.getLogger().log(Level.SEVERE, "Game server failed", e);
+        } catch (ClosedSelectorException e) {
+            // closed concurrently, nothing left to serve
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Accepts all waiting connections.
+     *
+     * @throws IOException if the server channel fails
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            if (sessionCount >= maxSessions) {
+                channel.write(encode("ERR server full"));
+                channel.close();
+                continue;
+            }
+
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel, nextSessionId++,
+                    workers, cellBudget, sessions);
+            sessions.put(connection.session.getId(), connection.session);
+            connection.key = channel.register(selector, SelectionKey.OP_READ,
+                    connection);
+            sessionCount++;
+        }
+    }
+
+    /**
+     * Reads from a connection and queues the complete commands.
+     *
+     * @param connection the connection to read from
+     * @throws IOException if the channel fails
+     */
+    private void read(final Connection connection) throws IOException {
+        if (connection.channel.read(connection.getInput()) < 0) {
+            close(connection);
+            return;
+        }
+
+        ArrayList<String> lines = new ArrayList<String>(1);
+        boolean complete = connection.takeLines(lines);
+        for (final String line : lines) {
+            submit(connection, new Runnable() {
+                public void run() {
+                    send(connection, connection.session.execute(line),
+                            connection.session.isClosed());
+                }
+            });
+        }
+
+        if (!complete) {
+            // the line can't be received, so the client is sent away after
+            // the answers to its previous commands
+            connection.key.interestOps(0);
+            submit(connection, new Runnable() {
+                public void run() {
+                    send(connection, "ERR line too long", true);
+                }
+            });
+        } else if (connection.executor.getQueuedCount() >= MAX_QUEUED_COMMANDS) {
+            connection.key.interestOps(connection.key.interestOps()
+                    & ~SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Queues a task at the serial executor of a connection.
+     *
+     * @param connection the connection
+     * @param task       the task
+     */
+    private void submit(Connection connection, Runnable task) {
+        try {
+            connection.executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // the server is shutting down
+        }
+    }
+
+    /**
+     * Hands an answer to the selector thread for writing. Called by the
+     * workers.
+     *
+     * @param connection the connection to write to
+     * @param answer     the answer without line terminator
+     * @param last       true if the connection shall be closed afterwards
+     */
+    private void send(Connection connection, String answer, boolean last) {
+        connection.output.add(encode(answer));
+        if (last) {
+            connection.closing = true;
+        }
+        pending.add(connection);
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Writes the answers handed over by the workers and resumes reading from
+     * connections whose queue has shrunk.
+     */
+    private void processPending() {
+        Connection connection;
+        while ((connection = pending.poll()) != null) {
+            SelectionKey key = connection.key;
+            if (!key.isValid()) {
+                continue;
+            }
+
+            try {
+                write(connection);
+            } catch (IOException e) {
+                close(connection);
+                continue;
+            }
+
+            if (key.isValid() && !connection.closing
+                    && (key.interestOps() & SelectionKey.OP_READ) == 0
+                    && connection.executor.getQueuedCount() < MAX_QUEUED_COMMANDS) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    /**
+     * Writes as many pending answers to a connection as possible. Closes the
+     * connection if it is closing and all answers are written.
+     *
+     * @param connection the connection to write to
+     * @throws IOException if the channel fails
+     */
+    private void write(Connection connection) throws IOException {
+        SelectionKey key = connection.key;
+        ByteBuffer buffer;
+        while ((buffer = connection.output.peek()) != null) {
+            connection.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            connection.output.poll();
+        }
+
+        if (connection.closing) {
+            close(connection);
+        } else if ((key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Closes a connection. Its session is closed after its queued commands.
+     *
+     * @param connection the connection to close
+     */
+    private void close(final Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            Logging.getLogger().log(Level.FINE, "Could not close connection",
+                    e);
+        }
+        sessionCount--;
+        sessions.remove(connection.session.getId());
+
+        submit(connection, new Runnable() {
+            public void run() {
+                connection.session.close();
+            }
+        });
+    }
+
+    /**
+     * Closes all connections, the server channel and the selector and stops
+     * the workers.
+     */
+    private void shutdown() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    close((Connection) key.attachment());
+                }
+            }
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            Logging.getLogger().log(Level.WARNING,
+                    "Could not close game server", e);
+        } catch (ClosedSelectorException e) {
+            // already closed
+        }
+        workers.shutdown();
+    }
+
+    /**
+     * Encodes an answer with line terminator.
+     *
+     * @param answer the answer
+     * @return the buffer holding the encoded answer
+     */
+    private static ByteBuffer encode(String answer) {
+        return ByteBuffer.wrap((answer + "\n")
+                .getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Starts a game server configured by the system properties and serves
+     * the connections until the process is stopped. The leaderboard is
+     * written when the process is stopped.
+     *
+     * @param args not used
+     * @throws IOException if the port can't be listened on
+     */
+    public static void main(String[] args) throws IOException {
+        int port = Integer.getInteger(PROPERTY_PORT, DEFAULT_PORT);
+        int threads = Integer.getInteger(PROPERTY_WORKERS, Runtime
+                .getRuntime().availableProcessors());
+        int sessions = Integer.getInteger(PROPERTY_SESSIONS, DEFAULT_SESSIONS);
+        CellBudget budget = new CellBudget(Integer.getInteger(
+                PROPERTY_BOARD_CELLS, DEFAULT_BOARD_CELLS), Long.getLong(
+                PROPERTY_TOTAL_CELLS, DEFAULT_TOTAL_CELLS));
+
+        GameServer server = new GameServer(port, threads, sessions, budget);
+        Logging.getLogger().log(Level.INFO, "Atomica server listening on port "
+                + server.getPort() + " with " + threads + " workers");
+
+        // the engine logs every round, which doesn't scale to many sessions
+        Logging.getLogger().setLevel(Level.WARNING);
+        LeaderboardStore.getInstance().startLoading();
+        Runtime.getRuntime().addShutdownHook(new Thread("AtomicaLeaderboardClose") {
+            public void run() {
+                LeaderboardStore.getInstance().close();
+            }
+        });
+        AtomicaMetrics.register();
+        server.run();
+    }
+}
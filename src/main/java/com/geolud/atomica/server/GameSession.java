@@ -0,0 +1,424 @@
+package com.geolud.atomica.server;
+
+import com.geolud.atomica.logic.Game;
+import com.geolud.atomica.logic.leaderboard.LeaderboardStore;
+import com.geolud.atomica.logic.spectator.SpectatorFeed;
+import com.geolud.atomica.logic.spectator.Subscription;
+import com.geolud.atomica.objects.AtomToken;
+import com.geolud.atomica.objects.Board;
+import com.geolud.atomica.objects.DefaultGameSettings;
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.SituationSnapshot;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A game hosted by the server for one client. It interprets the commands of
+ * the line based protocol and answers each with exactly one line. A session
+ * is not thread safe, its commands must be executed one after another, e.g. by
+ * a SerialExecutor.
+ * <p/>
+ * <p>
+ * Commands (words separated by blanks):
+ * <ul>
+ * <li><code>NEW [cols rows [seed]]</code> starts a new game, answered by
+ * <code>OK cols rows seed</code></li>
+ * <li><code>MOVE fromCol fromRow toCol toRow</code> moves an atom, answered
+ * by the status</li>
+ * <li><code>FLUSH</code> lets all tokens fall down, answered by the
+ * status</li>
+ * <li><code>STATUS</code> is answered by
+ * <code>OK score level molecules gameOver steps</code>, gameOver being 0 or
+ * 1</li>
+ * <li><code>BOARD</code> is answered by <code>BOARD cols rows cells</code>,
+ * the cells row by row as <code>.</code> for an empty field,
+ * <code>A</code>, <code>B</code>, ... for the atoms and <code>a</code>,
+ * <code>b</code>, ... for the indicators of the colors</li>
+ * <li><code>SPECTATE id</code> follows the game of the session with the
+ * given id, answered by <code>OK id</code></li>
+ * <li><code>FRAMES</code> is answered by <code>FRAMES count frames</code>,
+ * the frames of the followed game received since the previous
+ * <code>FRAMES</code> in hex digits separated by blanks, as described at
+ * SpectatorFormat. After the end frame the game is no longer followed.</li>
+ * <li><code>QUIT</code> is answered by <code>BYE</code> and ends the
+ * session</li>
+ * </ul>
+ * A rejected command is answered by <code>ERR message</code>. A finished game
+ * is recorded in the leaderboard. A new game is rejected if its board exceeds
+ * the CellBudget of the server.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class GameSession {
+    /**
+     * The answer to a command ending the session.
+     */
+    public static final String BYE = "BYE";
+
+    /**
+     * The digits of the frames sent to spectators.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The id of the session, unique within the server.
+     */
+    private final long id;
+
+    /**
+     * The budget limiting the size of the boards.
+     */
+    private final CellBudget budget;
+
+    /**
+     * The open sessions of the server by their ids, to find the games to
+     * follow.
+     */
+    private final ConcurrentMap<Long, GameSession> sessions;
+
+    /**
+     * The number of fields of the hosted game acquired from the budget.
+     */
+    private int cells = 0;
+
+    /**
+     * The hosted game, null until the first game is started.
+     */
+    private Game game = null;
+
+    /**
+     * The feed broadcasting the hosted game to the sessions following it,
+     * null while there is no game.
+     */
+    private volatile SpectatorFeed feed = null;
+
+    /**
+     * The subscription to the followed game, null if no game is followed.
+     */
+    private Subscription subscription = null;
+
+    /**
+     * Flag which indicates that the session was ended.
+     */
+    private boolean closed = false;
+
+    /**
+     * Flag which indicates that the finished game was recorded in the
+     * leaderboard.
+     */
+    private boolean recorded = false;
+
+    /**
+     * Creates a session without a game.
+     *
+     * @param id       the id of the session
+     * @param budget   the budget limiting the size of the boards
+     * @param sessions the open sessions of the server by their ids
+     */
+    public GameSession(long id, CellBudget budget,
+                       ConcurrentMap<Long, GameSession> sessions) {
+        this.id = id;
+        this.budget = budget;
+        this.sessions = sessions;
+    }
+
+    /**
+     * Returns the id of the session.
+     *
+     * @return the id of the session
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the hosted game.
+     *
+     * @return the hosted game, null if no game was started
+     */
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * Indicates if the session was ended by a <code>QUIT</code> or by
+     * closing it.
+     *
+     * @return true if the session was ended
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Executes the given command.
+     *
+     * @param line the command without line terminator
+     * @return the answer without line terminator
+     */
+    public String execute(String line) {
+        if (closed) {
+            return "ERR session closed";
+        }
+
+        String[] words = line.trim().split(" +");
+        String command = words[0].toUpperCase();
+        try {
+            if ("NEW".equals(command)) {
+                return startGame(words);
+            } else if ("MOVE".equals(command)) {
+                return moveAtom(words);
+            } else if ("FLUSH".equals(command)) {
+                return flushTokens();
+            } else if ("STATUS".equals(command)) {
+                return game == null ? "ERR no game" : getStatus();
+            } else if ("BOARD".equals(command)) {
+                return game == null ? "ERR no game" : getBoard();
+            } else if ("SPECTATE".equals(command)) {
+                return spectate(words);
+            } else if ("FRAMES".equals(command)) {
+                return takeFrames();
+            } else if ("QUIT".equals(command)) {
+                close();
+                return BYE;
+            }
+        } catch (NumberFormatException e) {
+            return "ERR invalid number " + e.getMessage();
+        }
+
+        return "ERR unknown command " + command;
+    }
+
+    /**
+     * Ends the session and closes its game.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        closeGame();
+        if (subscription != null) {
+            subscription.cancel();
+            subscription = null;
+        }
+    }
+
+    /**
+     * Closes the hosted game, if any, and releases its fields.
+     */
+    private void closeGame() {
+        if (game != null) {
+            game.close();
+            game = null;
+            feed = null;
+            budget.release(cells);
+            cells = 0;
+        }
+    }
+
+    /**
+     * Starts a new game replacing the current one.
+     *
+     * @param words the words of the command
+     * @return the answer
+     */
+    private String startGame(String[] words) {
+        if (words.length != 1 && words.length != 3 && words.length != 4) {
+            return "ERR usage NEW [cols rows [seed]]";
+        }
+
+        int cols = Board.DEF_COLS;
+        int rows = Board.DEF_ROWS;
+        if (words.length > 1) {
+            cols = Integer.parseInt(words[1]);
+            rows = Integer.parseInt(words[2]);
+        }
+        if (cols < Board.MIN_COLS || cols > Board.MAX_COLS
+                || rows < Board.MIN_ROWS || rows > Board.MAX_ROWS) {
+            return "ERR invalid board size";
+        }
+        long seed = words.length == 4 ? Long.parseLong(words[3])
+                : new Random().nextLong();
+
+        // the current game is kept if the new board doesn't fit
+        if (!budget.acquire(cols * rows)) {
+            return "ERR board too large";
+        }
+        closeGame();
+        cells = cols * rows;
+
+        DefaultGameSettings settings = new DefaultGameSettings();
+        settings.setCols(cols);
+        settings.setRows(rows);
+
+        game = new Game(settings);
+        game.setSeed(seed);
+        feed = new SpectatorFeed();
+        game.addGameEventListener(feed);
+        recorded = false;
+        game.start();
+
+        return "OK " + cols + " " + rows + " " + seed;
+    }
+
+    /**
+     * Moves an atom.
+     *
+     * @param words the words of the command
+     * @return the answer
+     */
+    private String moveAtom(String[] words) {
+        if (words.length != 5) {
+            return "ERR usage MOVE fromCol fromRow toCol toRow";
+        }
+        if (game == null) {
+            return "ERR no game";
+        }
+        if (game.getIsGameOver()) {
+            return "ERR game over";
+        }
+
+        AtomToken atom = game.queryAtomToken(Integer.parseInt(words[1]),
+                Integer.parseInt(words[2]));
+        Field destination = game.getField(Integer.parseInt(words[3]),
+                Integer.parseInt(words[4]));
+        if (atom == null || destination == null
+                || !game.moveAtomToken(atom, destination)) {
+            return "ERR illegal move";
+        }
+
+        recordGameOver();
+        return getStatus();
+    }
+
+    /**
+     * Lets all tokens fall down.
+     *
+     * @return the answer
+     */
+    private String flushTokens() {
+        if (game == null) {
+            return "ERR no game";
+        }
+        if (game.getIsGameOver()) {
+            return "ERR game over";
+        }
+
+        game.flushTokens();
+        recordGameOver();
+        return getStatus();
+    }
+
+    /**
+     * Follows the game of another session, replacing the followed game.
+     *
+     * @param words the words of the command
+     * @return the answer
+     */
+    private String spectate(String[] words) {
+        if (words.length != 2) {
+            return "ERR usage SPECTATE id";
+        }
+
+        long spectated = Long.parseLong(words[1]);
+        GameSession session = sessions.get(spectated);
+        SpectatorFeed spectatedFeed = session != null ? session.feed : null;
+        if (spectatedFeed == null) {
+            return "ERR no game " + spectated;
+        }
+
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        subscription = spectatedFeed.subscribe();
+        return "OK " + spectated;
+    }
+
+    /**
+     * Takes the waiting frames of the followed game.
+     *
+     * @return the answer
+     */
+    private String takeFrames() {
+        if (subscription == null) {
+            return "ERR no game followed";
+        }
+
+        StringBuilder answer = new StringBuilder(64);
+        int count = 0;
+        ByteBuffer frame;
+        while ((frame = subscription.poll()) != null) {
+            answer.append(' ');
+            while (frame.hasRemaining()) {
+                int b = frame.get() & 0xff;
+                answer.append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xf]);
+            }
+            count++;
+        }
+        if (subscription.isClosed()) {
+            // all frames were taken, the end frame included
+            subscription = null;
+        }
+
+        return "FRAMES " + count + answer;
+    }
+
+    /**
+     * Records the game in the leaderboard the first time it is over.
+     */
+    private void recordGameOver() {
+        if (game.getIsGameOver() && !recorded) {
+            recorded = true;
+            LeaderboardStore.getInstance().record(
+                    game.getSituation().getGameSettings(), game.getScore(),
+                    game.getCurrentLevelNumber());
+        }
+    }
+
+    /**
+     * Returns the status of the game.
+     *
+     * @return the answer
+     */
+    private String getStatus() {
+        return "OK " + game.getScore() + " " + game.getCurrentLevelNumber()
+                + " " + game.getMoleculeNumber() + " "
+                + (game.getIsGameOver() ? 1 : 0) + " " + game.getStepCount();
+    }
+
+    /**
+     * Returns the tokens of the board.
+     *
+     * @return the answer
+     */
+    private String getBoard() {
+        SituationSnapshot snapshot = game.getSituation().createSnapshot();
+        int cols = snapshot.getCols();
+        int rows = snapshot.getRows();
+
+        StringBuilder answer = new StringBuilder(16 + cols * rows);
+        answer.append("BOARD ").append(cols).append(' ').append(rows)
+                .append(' ');
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                byte cell = snapshot.getCell(col, row);
+                if (SituationSnapshot.isAtomCell(cell)) {
+                    answer.append((char) ('A' + SituationSnapshot
+                            .getCellColorIndex(cell)));
+                } else if (SituationSnapshot.isIndicatorCell(cell)) {
+                    answer.append((char) ('a' + SituationSnapshot
+                            .getCellColorIndex(cell)));
+                } else {
+                    answer.append('.');
+                }
+            }
+        }
+
+        return answer.toString();
+    }
+}
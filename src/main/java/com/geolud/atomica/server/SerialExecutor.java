@@ -0,0 +1,139 @@
+package com.geolud.atomica.server;
+
+import com.geolud.atomica.util.logging.Logging;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+
+/**
+ * Runs the tasks given to it one after another in the order they were given,
+ * borrowing a thread of a shared executor only while tasks are queued. So any
+ * number of sessions can apply their commands serially without a thread of
+ * their own, and an idle session costs just this object.
+ * <p/>
+ * <p>
+ * After a batch of tasks the thread is handed back to the shared executor, so
+ * a busy session can't starve the others.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class SerialExecutor implements Executor {
+    /**
+     * The maximum number of tasks run before the thread is handed back.
+     */
+    private static final int BATCH_SIZE = 16;
+
+    /**
+     * The shared executor providing the threads.
+     */
+    private final Executor executor;
+
+    /**
+     * The queued tasks, created with the first task.
+     */
+    private ArrayDeque<Runnable> tasks = null;
+
+    /**
+     * Flag which indicates that the tasks are being run or that running them
+     * is scheduled at the shared executor.
+     */
+    private boolean active = false;
+
+    /**
+     * Drains the queued tasks on a thread of the shared executor.
+     */
+    private final Runnable drain = new Runnable() {
+        public void run() {
+            runBatch();
+        }
+    };
+
+    /**
+     * Creates a serial executor borrowing the threads of the given executor.
+     *
+     * @param executor the shared executor
+     */
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Queues the given task. It is run after all tasks queued before.
+     *
+     * @param task the task to run
+     * @throws java.util.concurrent.RejectedExecutionException if the shared
+     *                                                         executor rejects
+     *                                                         the task
+     */
+    public void execute(Runnable task) {
+        synchronized (this) {
+            if (tasks == null) {
+                tasks = new ArrayDeque<Runnable>(4);
+            }
+            tasks.add(task);
+            if (active) {
+                return;
+            }
+            active = true;
+        }
+
+        schedule();
+    }
+
+    /**
+     * Returns the number of tasks waiting to be run.
+     *
+     * @return the number of queued tasks
+     */
+    public synchronized int getQueuedCount() {
+        return tasks == null ? 0 : tasks.size();
+    }
+
+    /**
+     * Schedules draining the tasks at the shared executor.
+     */
+    private void schedule() {
+        try {
+            executor.execute(drain);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                tasks.clear();
+                active = false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs up to a batch of tasks and schedules the remaining ones again.
+     */
+    private void runBatch() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.poll();
+                if (task == null) {
+                    active = false;
+                    return;
+                }
+            }
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Logging.getLogger().log(Level.SEVERE, "Failed to run task", e);
+            }
+        }
+
+        synchronized (this) {
+            if (tasks.isEmpty()) {
+                active = false;
+                return;
+            }
+        }
+
+        schedule();
+    }
+}
@@ -2,6 +2,11 @@ package com.geolud.atomica.ui;
 
 import com.geolud.atomica.logic.Editor;
 import com.geolud.atomica.logic.Game;
+import com.geolud.atomica.logic.GameController;
+import com.geolud.atomica.logic.autosave.AutosaveJournal;
+import com.geolud.atomica.logic.autosave.AutosaveRecovery;
+import com.geolud.atomica.logic.leaderboard.LeaderboardStore;
+import com.geolud.atomica.logic.replay.ReplayWriter;
 import com.geolud.atomica.objects.Application;
 import com.geolud.atomica.objects.GameSituation;
 import com.geolud.atomica.objects.Help;
@@ -13,11 +18,14 @@ import com.geolud.atomica.ui.util.components.AtomicaPanel;
 import com.geolud.atomica.ui.util.language.Language;
 import com.geolud.atomica.ui.util.language.LanguageItem;
 import com.geolud.atomica.util.logging.Logging;
+import com.geolud.atomica.util.metrics.AtomicaMetrics;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.util.logging.Level;
 
@@ -47,6 +55,11 @@ public class ApplicationFrame extends javax.swing.JFrame implements
      */
     private JPanel activePanel = null;
 
+    /**
+     * The controller of the displayed game, null if no game is displayed.
+     */
+    private GameController gameController = null;
+
     /**
      * Action command which indicates that a new game shall be started.
      */
@@ -72,6 +85,24 @@ public class ApplicationFrame extends javax.swing.JFrame implements
      */
     private static String ACTION_CMD_HELP = "Help";
 
+    /**
+     * The system property naming the directory to record replay logs of all
+     * games into.
+     */
+    private static final String PROPERTY_REPLAY_DIR = "atomica.replay.dir";
+
+    /**
+     * The system property naming the directory of the autosave files. The
+     * default is <code>~/.atomica/autosave</code>.
+     */
+    private static final String PROPERTY_AUTOSAVE_DIR = "atomica.autosave.dir";
+
+    /**
+     * The maximum time in milliseconds to wait for a game being closed, so
+     * its replay log and autosave files are complete.
+     */
+    private static final long CLOSE_GAME_TIMEOUT = 10000;
+
     /**
      * Action command which indicates that a language shall be selected.
      */
@@ -147,15 +178,20 @@ public class ApplicationFrame extends javax.swing.JFrame implements
             labelPanel.setPreferredSize(new Dimension(100, 120));
             mainPanel.add(labelPanel, BorderLayout.NORTH);
 
-            // add the title text/image with name of the application
-            JLabel titleLabel = null;
-            Image img = ImageLoader.getInstance().getTitleHeaderImage();
-            if (img != null) {
-                Image imgScaled = img.getScaledInstance(250, 55, Image.SCALE_SMOOTH);
-                titleLabel = new JLabel(new ImageIcon(imgScaled));
-            } else {
-                titleLabel = new JLabel(Language.getString("com/geolud/atomica"));
-            }
+            // add the title text/image with name of the application. the
+            // text is replaced by the image as soon as it is available
+            final JLabel titleLabel = new JLabel(Language
+                    .getString("com/geolud/atomica"));
+            ImageLoader.getInstance().whenLoaded(new Runnable() {
+                public void run() {
+                    Image img = ImageLoader.getInstance()
+                            .getTitleHeaderImage();
+                    if (img != null) {
+                        titleLabel.setText(null);
+                        titleLabel.setIcon(new ImageIcon(img));
+                    }
+                }
+            });
             labelPanel.add(titleLabel);
 
 
@@ -303,8 +339,50 @@ public class ApplicationFrame extends javax.swing.JFrame implements
      * @param args optional arguments - not considered
      */
     public static void main(String[] args) {
+        // decode all images in the background while the gui is set up
+        ImageLoader.getInstance().startLoading();
+        LeaderboardStore.getInstance().startLoading();
+        AtomicaMetrics.register();
+
         Application app = new Application();
-        ApplicationFrame.startGUI(app);
+        ApplicationFrame.startGUI(app, recoverAutosave());
+    }
+
+    /**
+     * Recovers the game which was running when the application terminated
+     * last time. Must not be called on the event dispatch thread.
+     *
+     * @return the recovered game situation, null if there is none
+     */
+    private static GameSituation recoverAutosave() {
+        String dir = getAutosaveDir();
+        try {
+            return AutosaveRecovery.recover(dir);
+        } catch (IOException e) {
+            Logging.getLogger().log(Level.WARNING,
+                    "Could not recover autosave: " + e.getMessage());
+        } catch (RuntimeException e) {
+            Logging.getLogger().log(Level.WARNING,
+                    "Could not recover autosave", e);
+        }
+
+        AutosaveRecovery.discard(dir);
+        return null;
+    }
+
+    /**
+     * Returns the directory of the autosave files.
+     *
+     * @return the directory of the autosave files
+     */
+    private static String getAutosaveDir() {
+        String dir = System.getProperty(PROPERTY_AUTOSAVE_DIR);
+        if (dir == null) {
+            dir = new File(new File(System.getProperty("user.home"),
+                    ".atomica"), "autosave").getAbsolutePath();
+        }
+
+        return dir;
     }
 
     /**
@@ -314,6 +392,18 @@ public class ApplicationFrame extends javax.swing.JFrame implements
      * @param app the application settings to start the gui with
      */
     public static void startGUI(final Application app) {
+        startGUI(app, null);
+    }
+
+    /**
+     * Creates and displays a new ApplicationFrame instance with the settings
+     * given by <code>app</code> and offers to resume the given recovered game.
+     *
+     * @param app       the application settings to start the gui with
+     * @param recovered the recovered game situation, may be null
+     */
+    private static void startGUI(final Application app,
+                                 final GameSituation recovered) {
         // start the gui asynchrony
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
@@ -321,6 +411,9 @@ public class ApplicationFrame extends javax.swing.JFrame implements
                 ApplicationFrame appFrame = new ApplicationFrame(app);
                 appFrame.setLocationRelativeTo(null);
                 appFrame.setVisible(true);
+                if (recovered != null) {
+                    appFrame.offerResume(recovered);
+                }
             }
         });
     }
@@ -336,6 +429,19 @@ public class ApplicationFrame extends javax.swing.JFrame implements
         frame.dispose();
     }
 
+    /**
+     * Closes the displayed game and the leaderboard before disposing the
+     * frame, so their files are written before the application exits.
+     *
+     * @see java.awt.Window#dispose()
+     */
+    @Override
+    public void dispose() {
+        closeGame();
+        LeaderboardStore.getInstance().close();
+        super.dispose();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -426,6 +532,7 @@ public class ApplicationFrame extends javax.swing.JFrame implements
      */
     private void onQuitGame() {
         Logging.getLogger().log(Level.INFO, "Quit Game");
+        closeGame();
         setTitle(Language.getString("com/geolud/atomica"));
         setActivePanel(getMainPanel());
     }
@@ -467,19 +574,17 @@ public class ApplicationFrame extends javax.swing.JFrame implements
 
     /**
      * Lets the user select a file of a serialized game situation. Starts the
-     * game.
+     * game as soon as it is loaded.
      */
     private void onLoadGame() {
         Logging.getLogger().log(Level.INFO, "Load Game");
         GameSituationSerializerUI serializer = new GameSituationSerializerUI(
                 this);
-        GameSituation gameSituation = serializer.load();
-        if (gameSituation != null) {
-            Game game = new Game(gameSituation);
-            GamePanel gamePanel = new GamePanel(game, this);
-            game.start();
-            setActivePanel(gamePanel);
-        }
+        serializer.load(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                startGame(new Game((GameSituation) e.getSource()));
+            }
+        });
     }
 
     /**
@@ -487,12 +592,85 @@ public class ApplicationFrame extends javax.swing.JFrame implements
      */
     private void onNewGame() {
         Logging.getLogger().log(Level.INFO, "New Game");
-        Game game = new Game(app.getGameSettings());
-        GamePanel gamePanel = new GamePanel(game, this);
-        game.start();
+        startGame(new Game(app.getGameSettings()));
+    }
+
+    /**
+     * Asks the user whether to resume the recovered game. If not, the
+     * autosave files are deleted before any new game can write its own.
+     *
+     * @param recovered the recovered game situation
+     */
+    private void offerResume(GameSituation recovered) {
+        Object[] options = {Language.getString("yes"),
+                Language.getString("no")};
+        int ret = JOptionPane.showOptionDialog(this, Language
+                        .getString("shallResumeGame"), Language.getString("atomica"),
+                JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE, null,
+                options, options[0]);
+
+        if (ret == JOptionPane.YES_OPTION) {
+            Logging.getLogger().log(Level.INFO, "Resume Game");
+            startGame(new Game(recovered));
+        } else {
+            AutosaveRecovery.discard(getAutosaveDir());
+        }
+    }
+
+    /**
+     * Displays the game panel and starts the given game.
+     *
+     * @param game the game to start
+     */
+    private void startGame(Game game) {
+        closeGame();
+        GameController controller = createController(game);
+        gameController = controller;
+        GamePanel gamePanel = new GamePanel(controller, this);
+        controller.start();
         setActivePanel(gamePanel);
     }
 
+    /**
+     * Closes the displayed game and waits until its listeners have written
+     * their files.
+     */
+    private void closeGame() {
+        if (gameController == null) {
+            return;
+        }
+
+        gameController.shutdown();
+        if (!gameController.awaitShutdown(CLOSE_GAME_TIMEOUT)) {
+            Logging.getLogger().log(Level.WARNING, "Timed out closing game");
+        }
+        gameController = null;
+    }
+
+    /**
+     * Creates the controller for the given game. The game is autosaved, and if
+     * the system property <code>atomica.replay.dir</code> names a directory,
+     * it is recorded into a replay log there.
+     *
+     * @param game the game to control
+     * @return the controller of the game
+     */
+    private GameController createController(Game game) {
+        game.addGameEventListener(new AutosaveJournal(getAutosaveDir()));
+
+        String replayDir = System.getProperty(PROPERTY_REPLAY_DIR);
+        if (replayDir != null) {
+            File replayFile = new File(replayDir, "atomica-"
+                    + System.currentTimeMillis() + ".replay");
+            game.addGameEventListener(new ReplayWriter(replayFile
+                    .getAbsolutePath()));
+            Logging.getLogger().log(Level.INFO,
+                    "Recording replay log " + replayFile);
+        }
+
+        return new GameController(game);
+    }
+
     /**
      * Lets the user select a language.
      */
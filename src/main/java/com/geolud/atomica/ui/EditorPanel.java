@@ -18,6 +18,7 @@ import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Observable;
 import java.util.Observer;
@@ -196,6 +197,16 @@ public class EditorPanel extends AtomicaPanel implements Observer {
                 }
             });
             bottomPanel.add(saveButton);
+
+            // Library Button
+            final AtomicaButton libraryButton = new AtomicaButton();
+            libraryButton.setText(Language.getString("puzzleLibrary"));
+            libraryButton.addActionListener(new ActionListener() {
+                public void actionPerformed(final ActionEvent e) {
+                    openLibrary();
+                }
+            });
+            bottomPanel.add(libraryButton);
         }
 
         return bottomPanel;
@@ -218,6 +229,9 @@ public class EditorPanel extends AtomicaPanel implements Observer {
             // group the toggle buttons.
             tokenButtonsGroup = new ButtonGroup();
 
+            // the icons of the buttons are built from the token images
+            ImageLoader.getInstance().awaitLoaded();
+
             // for each color two buttons will be initialized. one for the atom
             // and one for the indicator.
             for (int i = 0; i < Level.MAX_NUMBEROFCOLORS; i++) {
@@ -451,12 +465,34 @@ public class EditorPanel extends AtomicaPanel implements Observer {
 
     /**
      * Opens a JFileChooser for selecting a file containing a serialized game
-     * situation and loads that situation into the editor.
+     * situation and loads that situation into the editor in the background.
      */
     private void loadGame() {
         GameSituationSerializerUI serializer = new GameSituationSerializerUI(
                 this);
-        editor.setSituation(serializer.load());
+        serializer.load(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                editor.setSituation((GameSituation) e.getSource());
+            }
+        });
+    }
+
+    /**
+     * Opens the puzzle library for loading puzzles into the editor and adding
+     * the current situation to it.
+     */
+    private void openLibrary() {
+        try {
+            PuzzleLibraryDialog dialog = new PuzzleLibraryDialog(editor,
+                    (Frame) SwingUtilities.getWindowAncestor(this));
+            dialog.setLocationRelativeTo(this);
+            dialog.setVisible(true);
+        } catch (IOException e) {
+            Logging.getLogger().log(java.util.logging.Level.SEVERE,
+                    "Failed to open puzzle library: " + e.getMessage());
+            JOptionPane.showMessageDialog(this, e.getMessage(), Language
+                    .getString("puzzleLibrary"), JOptionPane.ERROR_MESSAGE);
+        }
     }
 
     /**
@@ -473,11 +509,12 @@ public class EditorPanel extends AtomicaPanel implements Observer {
 
     /**
      * Opens a JFileChooser for saving the current game situation into a file.
+     * The file is written in the background.
      */
     private void saveGame() {
         GameSituationSerializerUI serializer = new GameSituationSerializerUI(
                 this);
-        serializer.save(editor.getSituation());
+        serializer.save(editor.getSituation(), null);
     }
 
     /**
@@ -1,12 +1,15 @@
 package com.geolud.atomica.ui;
 
-import com.geolud.atomica.logic.Game;
+import com.geolud.atomica.logic.GameController;
+import com.geolud.atomica.logic.GameSnapshot;
 import com.geolud.atomica.ui.util.GameSituationSerializerUI;
 import com.geolud.atomica.ui.util.ImageLoader;
 import com.geolud.atomica.ui.util.board.GameBoardPanel;
 import com.geolud.atomica.ui.util.components.AtomicaButton;
 import com.geolud.atomica.ui.util.components.AtomicaDisplay;
 import com.geolud.atomica.ui.util.components.AtomicaPanel;
+import com.geolud.atomica.ui.util.diagnostics.PaintDiagnostics;
+import com.geolud.atomica.ui.util.diagnostics.PaintStats;
 import com.geolud.atomica.ui.util.language.Language;
 
 import javax.swing.*;
@@ -14,6 +17,8 @@ import javax.swing.border.MatteBorder;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.nio.ByteBuffer;
+import java.text.MessageFormat;
 import java.util.Observable;
 import java.util.Observer;
 
@@ -51,9 +56,14 @@ public class GamePanel extends AtomicaPanel implements Observer {
     private AtomicaButton flushButton;
 
     /**
-     * The game object holding the current game situation.
+     * The controller applying all commands on the game in the background.
      */
-    private Game game = null;
+    private GameController controller = null;
+
+    /**
+     * Indicates if the game over message was already displayed.
+     */
+    private boolean gameOverNotified = false;
 
     /**
      * The game board panel responsible for interaction and displaying the game
@@ -67,19 +77,26 @@ public class GamePanel extends AtomicaPanel implements Observer {
      */
     private ActionListener parentAL = null;
 
+    /**
+     * The paint statistics shared by all game panels. Null until the
+     * constructor has run.
+     */
+    private PaintStats paintStats = null;
+
     // /////////// VIEW SECTION /////////////
 
     /**
-     * Creates a game panel by the given game.
+     * Creates a game panel by the given game controller.
      */
-    public GamePanel(Game game, ActionListener al) {
+    public GamePanel(GameController controller, ActionListener al) {
         super();
 
-        this.game = game;
+        this.controller = controller;
         this.parentAL = al;
+        this.paintStats = PaintDiagnostics.getStats("GamePanel");
 
-        // register at the model as observer
-        game.addObserver(this);
+        // register at the controller as observer
+        controller.addObserver(this);
 
         setLayout(new BorderLayout());
 
@@ -140,7 +157,7 @@ public class GamePanel extends AtomicaPanel implements Observer {
      */
     private Component getGameBoardPanel() {
         if (gameBoardPanel == null) {
-            gameBoardPanel = new GameBoardPanel(this.game);
+            gameBoardPanel = new GameBoardPanel(this.controller);
             gameBoardPanel.setPreferredSize(new Dimension(250, 300));
         }
 
@@ -210,7 +227,7 @@ public class GamePanel extends AtomicaPanel implements Observer {
         flushButton.setText(Language.getString("flush"));
         flushButton.addActionListener(new ActionListener() {
             public void actionPerformed(final ActionEvent e) {
-                game.flushTokens();
+                controller.flushTokens();
             }
 
         });
@@ -220,43 +237,70 @@ public class GamePanel extends AtomicaPanel implements Observer {
     }
 
     /**
-     * Overwritten for displaying the background image.
+     * Overwritten for displaying the background image. Its duration is
+     * recorded for the paint diagnostics.
      *
      * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
      */
     @Override
     protected void paintComponent(Graphics g) {
+        long start = paintStats.beginPaint();
         g.drawImage(ImageLoader.getInstance().getBackgroundImage(), 0, 0,
                 getWidth(), getHeight(), null);
         super.paintComponent(g);
+        paintStats.endPaint(start);
     }
 
     /**
-     * Due to the observer pattern this method is used to receive notifications
-     * from the model (Game) for updating the view. It updates the text fields
-     * for displaying the current level, score and score until next level. It
-     * also forces the game board panel to repaint. In case the game is over a
-     * message box will be displayed.
+     * Counts the repaint request for the paint diagnostics.
+     *
+     * @see javax.swing.JComponent#repaint(long, int, int, int, int)
+     */
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        if (paintStats != null) {
+            paintStats.repaintRequested();
+        }
+
+        super.repaint(tm, x, y, width, height);
+    }
+
+    /**
+     * Due to the observer pattern this method is used to receive the snapshots
+     * published by the controller for updating the view. It updates the text
+     * fields for displaying the current level, score and score until next
+     * level. In case the game is over a message box will be displayed once.
      *
      * @see java.util.Observer#update(java.util.Observable, java.lang.Object)
      */
     @Override
     public void update(Observable o, Object arg) {
-        levelTextField.setText(Integer.toString(game.getCurrentLevelNumber()));
-        scoresTextField.setText(Integer.toString(game.getScore()));
-        scoresUntilNextLevelTextField.setText(Integer.toString(game
-                .calcScoresUntilNextLevel()));
+        if (!(arg instanceof GameSnapshot)) {
+            return;
+        }
 
-        if (game.getMoleculeNumber() >= 3) {
+        GameSnapshot snapshot = (GameSnapshot) arg;
+        levelTextField.setText(Integer.toString(snapshot
+                .getCurrentLevelNumber()));
+        scoresTextField.setText(Integer.toString(snapshot.getScore()));
+        scoresUntilNextLevelTextField.setText(Integer.toString(snapshot
+                .getScoresUntilNextLevel()));
+
+        if (snapshot.getMoleculeNumber() >= 3) {
             flushButton.setEnabled(true);
         } else {
             flushButton.setEnabled(false);
         }
 
-        repaint();
-
-        if (game.getIsGameOver()) {
-            JOptionPane.showMessageDialog(this, Language.getString("gameOver"),
+        if (snapshot.getIsGameOver() && !gameOverNotified) {
+            gameOverNotified = true;
+            String message = Language.getString("gameOver");
+            if (snapshot.getLeaderboardRank() > 0) {
+                message += "\n" + MessageFormat.format(Language
+                        .getString("leaderboardRank"), snapshot
+                        .getLeaderboardRank(), snapshot.getLeaderboardSize());
+            }
+            JOptionPane.showMessageDialog(this, message,
                     Language.getString("com/geolud/atomica"),
                     JOptionPane.INFORMATION_MESSAGE);
         }
@@ -278,6 +322,7 @@ public class GamePanel extends AtomicaPanel implements Observer {
 
         // YES
         if (ret == JOptionPane.YES_OPTION) {
+            controller.shutdown();
             parentAL.actionPerformed(new ActionEvent(this, 0,
                     ACTION_CMD_QUITGAME));
         }
@@ -286,11 +331,20 @@ public class GamePanel extends AtomicaPanel implements Observer {
 
     /**
      * Opens a JFileChooser for selecting a path. Saves the current game
-     * situation at that location in a file.
+     * situation at that location in a file. The situation is encoded by the
+     * controller, so it is not changed meanwhile, and written on the file
+     * thread of the serializer, which displays the progress and a failure.
      */
     private void saveGame() {
-        GameSituationSerializerUI serializer = new GameSituationSerializerUI(
-                this);
-        serializer.save(game.getSituation());
+        final GameSituationSerializerUI serializer =
+                new GameSituationSerializerUI(this);
+        final String path = serializer.selectSavePath();
+        if (path != null) {
+            controller.encodeSituation(new ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    serializer.save((ByteBuffer) e.getSource(), path, null);
+                }
+            });
+        }
     }
 }
@@ -0,0 +1,296 @@
+package com.geolud.atomica.ui;
+
+import com.geolud.atomica.logic.Editor;
+import com.geolud.atomica.logic.PuzzleInfo;
+import com.geolud.atomica.logic.PuzzleLibrary;
+import com.geolud.atomica.ui.util.ImageLoader;
+import com.geolud.atomica.ui.util.components.AtomicaButton;
+import com.geolud.atomica.ui.util.components.AtomicaPanel;
+import com.geolud.atomica.ui.util.language.Language;
+import com.geolud.atomica.util.logging.Logging;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.logging.Level;
+
+/**
+ * A dialog listing all puzzles of the puzzle library. It lets the user open a
+ * puzzle in the editor, add the situation of the editor to the library and
+ * remove puzzles from it. The list only formats the visible entries, which
+ * are read from the index of the library, so it stays fast for thousands of
+ * puzzles.
+ * <p/>
+ * <p>
+ * The library file is located at <code>~/.atomica/puzzles.atlib</code> unless
+ * another path is given by the system property <code>atomica.library</code>.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+@SuppressWarnings("serial")
+public class PuzzleLibraryDialog extends JDialog {
+    /**
+     * The system property for the path of the library file.
+     */
+    public static final String PROPERTY_LIBRARY = "atomica.library";
+
+    /**
+     * The editor to open puzzles in.
+     */
+    private Editor editor = null;
+
+    /**
+     * The puzzle library.
+     */
+    private PuzzleLibrary library = null;
+
+    /**
+     * The list displaying the puzzles.
+     */
+    private JList<String> puzzleList = null;
+
+    /**
+     * The model of the list, reading the entries from the library.
+     */
+    private LibraryListModel listModel = null;
+
+    // /////////// VIEW SECTION /////////////
+
+    /**
+     * Creates the dialog.
+     *
+     * @param editor the editor to open puzzles in
+     * @param owner  the owner of the dialog
+     * @throws IOException if the library file can't be read
+     */
+    public PuzzleLibraryDialog(Editor editor, Frame owner) throws IOException {
+        super(owner, true);
+
+        this.editor = editor;
+        this.library = new PuzzleLibrary(getLibraryPath());
+
+        setSize(450, 400);
+        setTitle(Language.getString("puzzleLibrary"));
+        setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+
+        AtomicaPanel backgroundPanel = new AtomicaPanel() {
+            @Override
+            protected void paintComponent(java.awt.Graphics g) {
+                g.drawImage(ImageLoader.getInstance().getBackgroundImage(), 0,
+                        0, getWidth(), getHeight(), null);
+                super.paintComponent(g);
+            }
+        };
+        backgroundPanel.setLayout(new BorderLayout());
+        add(backgroundPanel);
+
+        backgroundPanel.add(new JScrollPane(getPuzzleList()),
+                BorderLayout.CENTER);
+        backgroundPanel.add(getBottomPanel(), BorderLayout.SOUTH);
+    }
+
+    /**
+     * Returns the path of the library file.
+     *
+     * @return the path of the library file
+     */
+    private static String getLibraryPath() {
+        String path = System.getProperty(PROPERTY_LIBRARY);
+        if (path == null) {
+            path = new File(new File(System.getProperty("user.home"),
+                    ".atomica"), "puzzles.atlib").getAbsolutePath();
+        }
+
+        return path;
+    }
+
+    /**
+     * Returns the list displaying the puzzles. A double click opens a puzzle.
+     *
+     * @return the list displaying the puzzles
+     */
+    private JList<String> getPuzzleList() {
+        if (puzzleList == null) {
+            listModel = new LibraryListModel();
+            puzzleList = new JList<String>(listModel);
+            puzzleList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+
+            // all entries have the same height, so the list does not need to
+            // format all of them for computing its size
+            puzzleList.setPrototypeCellValue(MessageFormat.format(Language
+                    .getString("puzzleEntry"), 9999, 30, 30, 12, 900));
+
+            puzzleList.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    if (e.getClickCount() == 2) {
+                        openPuzzle();
+                    }
+                }
+            });
+        }
+
+        return puzzleList;
+    }
+
+    /**
+     * Returns the bottom panel holding the buttons.
+     *
+     * @return the bottom panel
+     */
+    private AtomicaPanel getBottomPanel() {
+        AtomicaPanel bottomPanel = new AtomicaPanel();
+        final FlowLayout flowLayout = new FlowLayout();
+        flowLayout.setVgap(10);
+        flowLayout.setHgap(10);
+        flowLayout.setAlignment(FlowLayout.RIGHT);
+        bottomPanel.setLayout(flowLayout);
+
+        AtomicaButton addButton = new AtomicaButton();
+        addButton.setText(Language.getString("addToLibrary"));
+        addButton.addActionListener(new ActionListener() {
+            public void actionPerformed(final ActionEvent e) {
+                addPuzzle();
+            }
+        });
+        bottomPanel.add(addButton);
+
+        AtomicaButton removeButton = new AtomicaButton();
+        removeButton.setText(Language.getString("removeFromLibrary"));
+        removeButton.addActionListener(new ActionListener() {
+            public void actionPerformed(final ActionEvent e) {
+                removePuzzle();
+            }
+        });
+        bottomPanel.add(removeButton);
+
+        AtomicaButton openButton = new AtomicaButton();
+        openButton.setText(Language.getString("loadGame"));
+        openButton.addActionListener(new ActionListener() {
+            public void actionPerformed(final ActionEvent e) {
+                openPuzzle();
+            }
+        });
+        bottomPanel.add(openButton);
+
+        AtomicaButton closeButton = new AtomicaButton();
+        closeButton.setText(Language.getString("close"));
+        closeButton.addActionListener(new ActionListener() {
+            public void actionPerformed(final ActionEvent e) {
+                dispose();
+            }
+        });
+        bottomPanel.add(closeButton);
+
+        return bottomPanel;
+    }
+
+    // /////////// CONTROLLER SECTION /////////////
+
+    /**
+     * Adds the situation of the editor to the library and saves it. A puzzle
+     * which is already in the library is not added again.
+     */
+    private void addPuzzle() {
+        int index = library.indexOf(PuzzleLibrary.hash(editor.getSituation()
+                .createSnapshot()));
+        if (index < 0) {
+            index = library.add(editor.getSituation());
+            try {
+                library.save();
+            } catch (IOException e) {
+                showError(e);
+            }
+            listModel.changed();
+        }
+
+        puzzleList.setSelectedIndex(index);
+        puzzleList.ensureIndexIsVisible(index);
+    }
+
+    /**
+     * Removes the selected puzzle from the library.
+     */
+    private void removePuzzle() {
+        int index = puzzleList.getSelectedIndex();
+        if (index < 0) {
+            return;
+        }
+
+        try {
+            library.remove(index);
+        } catch (IOException e) {
+            showError(e);
+        }
+        listModel.changed();
+    }
+
+    /**
+     * Opens the selected puzzle in the editor and closes the dialog.
+     */
+    private void openPuzzle() {
+        int index = puzzleList.getSelectedIndex();
+        if (index < 0) {
+            return;
+        }
+
+        try {
+            editor.setSituation(library.getSituation(index));
+            dispose();
+        } catch (IOException e) {
+            showError(e);
+        }
+    }
+
+    /**
+     * Logs the given error and displays it in a message box.
+     *
+     * @param e the error
+     */
+    private void showError(IOException e) {
+        Logging.getLogger().log(Level.SEVERE,
+                "Puzzle library " + library.getPath() + ": " + e.getMessage());
+        JOptionPane.showMessageDialog(this, e.getMessage(), Language
+                .getString("puzzleLibrary"), JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * List model reading the entries from the index of the library on demand.
+     */
+    private class LibraryListModel extends AbstractListModel<String> {
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.swing.ListModel#getSize()
+         */
+        public int getSize() {
+            return library.size();
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.swing.ListModel#getElementAt(int)
+         */
+        public String getElementAt(int index) {
+            PuzzleInfo info = library.getInfo(index);
+            return MessageFormat.format(Language.getString("puzzleEntry"),
+                    index + 1, info.getCols(), info.getRows(), info
+                            .getNumberOfColors(), info.getAtomCount());
+        }
+
+        /**
+         * Notifies the list that the library has changed.
+         */
+        void changed() {
+            fireContentsChanged(this, 0, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -1,20 +1,72 @@
 package com.geolud.atomica.ui.util;
 
+import com.geolud.atomica.logic.GameSituationCodec;
 import com.geolud.atomica.logic.GameSituationSerializer;
+import com.geolud.atomica.logic.GameSituationSerializer.TransferMonitor;
 import com.geolud.atomica.objects.GameSituation;
 import com.geolud.atomica.ui.util.language.Language;
+import com.geolud.atomica.ui.util.thumbnail.ThumbnailAccessory;
+import com.geolud.atomica.util.logging.Logging;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.io.File;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
 
 /**
- * Lets the user load and save a game situation by a JFileChooser.
+ * Lets the user load and save a game situation by a JFileChooser. The load
+ * dialog previews the selected file by a thumbnail.
+ * <p/>
+ * <p>
+ * The file is read or written by a background thread, so the window stays
+ * responsive for large files or slow network drives. If the transfer takes
+ * longer than half a second a progress dialog is displayed which lets the
+ * user cancel it. The result is delivered on the event dispatch thread to an
+ * ActionListener, whose event source is the loaded game situation.
+ * </p>
  *
  * @author Georg Ludewig
  */
 public class GameSituationSerializerUI {
+    /**
+     * Action command which indicates that a game situation was loaded. The
+     * source of the event is the game situation.
+     */
+    public static final String ACTION_CMD_LOADED = "GameSituationLoaded";
+
+    /**
+     * Action command which indicates that a game situation was saved. The
+     * source of the event is the path of the file.
+     */
+    public static final String ACTION_CMD_SAVED = "GameSituationSaved";
+
+    /**
+     * The interval in milliseconds the progress dialog is updated in.
+     */
+    private static final int PROGRESS_INTERVAL = 100;
+
+    /**
+     * The thread reading and writing files, shared by all instances so
+     * transfers don't compete for the disk.
+     */
+    private static final ExecutorService FILE_EXECUTOR = Executors
+            .newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "AtomicaFileTransfer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     /**
      * The parent component.
      */
@@ -37,11 +89,13 @@ public class GameSituationSerializerUI {
     }
 
     /**
-     * Opens a JFileChooser for selecting a game situation and deserializes it.
+     * Opens a JFileChooser for selecting a game situation and deserializes it
+     * in the background. When it is loaded the given listener is called with
+     * {@link #ACTION_CMD_LOADED}. Nothing is reported if the user cancels.
      *
-     * @return the deserialized game situation
+     * @param al the listener receiving the loaded game situation
      */
-    public GameSituation load() {
+    public void load(final ActionListener al) {
         // Create a File Filter
         FileNameExtensionFilter filter = new FileNameExtensionFilter(Language
                 .getString("atomicaGameSituation"),
@@ -52,26 +106,84 @@ public class GameSituationSerializerUI {
         fc.setDialogTitle(Language.getString("loadGameSituation"));
         fc.setFileFilter(filter);
         fc.setCurrentDirectory(new File(gameSituationSerializer.getLastPath()));
-
-
-        GameSituation gameSituation = null;
+        fc.setAccessory(new ThumbnailAccessory(fc));
 
         // In response to a button click:
-        if (JFileChooser.APPROVE_OPTION == fc.showOpenDialog(parent)) {
-            gameSituation = gameSituationSerializer.load(fc.getSelectedFile()
-                    .getAbsolutePath());
+        if (JFileChooser.APPROVE_OPTION != fc.showOpenDialog(parent)) {
+            return;
         }
 
-        return gameSituation;
+        final String path = fc.getSelectedFile().getAbsolutePath();
+        execute(new TransferWorker(Language.getString("loadGameSituation"),
+                path) {
+            @Override
+            protected Object transfer() throws Exception {
+                return gameSituationSerializer.load(path, this);
+            }
+
+            @Override
+            protected void finished(Object result) {
+                al.actionPerformed(new ActionEvent(result, 0,
+                        ACTION_CMD_LOADED));
+            }
+        });
     }
 
     /**
      * Opens a JFileChooser for selecting a path. Stores the given game
-     * situation at that path.
+     * situation at that path in the background. The situation is encoded
+     * before this method returns, so it may be changed afterwards. When it is
+     * saved the given listener is called with {@link #ACTION_CMD_SAVED}.
      *
      * @param gameSituation the situation to be serialized
+     * @param al            the listener informed about the saved file, may be
+     *                      null
+     */
+    public void save(GameSituation gameSituation, final ActionListener al) {
+        final String path = selectSavePath();
+        if (path == null) {
+            return;
+        }
+
+        save(GameSituationCodec.encode(gameSituation), path, al);
+    }
+
+    /**
+     * Stores an encoded game situation at the given path in the background.
+     * When it is saved the given listener is called with
+     * {@link #ACTION_CMD_SAVED}.
+     *
+     * @param encoded the encoded situation, as returned by
+     *                {@link GameSituationCodec#encode(GameSituation)}
+     * @param path    the path of the file
+     * @param al      the listener informed about the saved file, may be null
+     */
+    public void save(final ByteBuffer encoded, final String path,
+                     final ActionListener al) {
+        execute(new TransferWorker(Language.getString("saveGameSituation"),
+                path) {
+            @Override
+            protected Object transfer() throws Exception {
+                gameSituationSerializer.save(encoded, path, this);
+                return path;
+            }
+
+            @Override
+            protected void finished(Object result) {
+                if (al != null) {
+                    al.actionPerformed(new ActionEvent(result, 0,
+                            ACTION_CMD_SAVED));
+                }
+            }
+        });
+    }
+
+    /**
+     * Opens a JFileChooser for selecting a path to save a game situation at.
+     *
+     * @return the selected path or null if the user canceled
      */
-    public void save(GameSituation gameSituation) {
+    public String selectSavePath() {
         // Create a File Filter
         FileNameExtensionFilter filter = new FileNameExtensionFilter(Language
                 .getString("atomicaGameSituation"),
@@ -85,9 +197,154 @@ public class GameSituationSerializerUI {
 
         // In response to a button click:
         if (JFileChooser.APPROVE_OPTION == fc.showSaveDialog(parent)) {
-            gameSituationSerializer.save(gameSituation, fc.getSelectedFile()
-                    .getAbsolutePath());
+            return fc.getSelectedFile().getAbsolutePath();
         }
+
+        return null;
+    }
+
+    /**
+     * Starts the given worker on the file thread and displays its progress.
+     *
+     * @param worker the worker
+     */
+    private void execute(final TransferWorker worker) {
+        final ProgressMonitor progressMonitor = new ProgressMonitor(parent,
+                worker.title, worker.path, 0, 100);
+
+        // the progress monitor can only be polled for its cancel button
+        final Timer timer = new Timer(PROGRESS_INTERVAL, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (progressMonitor.isCanceled()) {
+                    worker.canceled = true;
+                } else {
+                    progressMonitor.setProgress(worker.percent);
+                }
+            }
+        });
+        worker.whenDone = new Runnable() {
+            public void run() {
+                timer.stop();
+                progressMonitor.close();
+            }
+        };
+
+        timer.start();
+        FILE_EXECUTOR.execute(worker);
     }
 
+    /**
+     * Transfers a file on the file thread and delivers the result on the
+     * event dispatch thread. Errors are displayed in a message box.
+     */
+    private abstract class TransferWorker extends SwingWorker<Object, Void>
+            implements TransferMonitor {
+        /**
+         * The title of the progress dialog and error messages.
+         */
+        private final String title;
+
+        /**
+         * The path of the transferred file.
+         */
+        private final String path;
+
+        /**
+         * The progress in percent, written by the file thread.
+         */
+        private volatile int percent = 0;
+
+        /**
+         * Flag which indicates that the user canceled the transfer.
+         */
+        private volatile boolean canceled = false;
+
+        /**
+         * Called on the event dispatch thread when the transfer has ended.
+         */
+        private Runnable whenDone = null;
+
+        /**
+         * Creates a worker transferring the given file.
+         *
+         * @param title the title of the progress dialog
+         * @param path  the path of the file
+         */
+        TransferWorker(String title, String path) {
+            this.title = title;
+            this.path = path;
+        }
+
+        /**
+         * Transfers the file. Called on the file thread.
+         *
+         * @return the result delivered to {@link #finished(Object)}
+         * @throws Exception if the transfer failed
+         */
+        protected abstract Object transfer() throws Exception;
+
+        /**
+         * Delivers the result of a successful transfer. Called on the event
+         * dispatch thread.
+         *
+         * @param result the result of {@link #transfer()}
+         */
+        protected abstract void finished(Object result);
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.swing.SwingWorker#doInBackground()
+         */
+        @Override
+        protected Object doInBackground() throws Exception {
+            return transfer();
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.swing.SwingWorker#done()
+         */
+        @Override
+        protected void done() {
+            whenDone.run();
+            try {
+                finished(get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof InterruptedIOException) {
+                    Logging.getLogger().log(Level.INFO,
+                            "Canceled transfer of " + path);
+                    return;
+                }
+
+                Logging.getLogger().log(Level.SEVERE,
+                        "Failed to transfer " + path, cause);
+                JOptionPane.showMessageDialog(parent, path + ":\n"
+                        + cause.getMessage(), title, JOptionPane.ERROR_MESSAGE);
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see com.geolud.atomica.logic.GameSituationSerializer.TransferMonitor#progressed(long,
+         * long)
+         */
+        public void progressed(long done, long total) {
+            percent = total > 0 ? (int) (done * 100 / total) : 100;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see com.geolud.atomica.logic.GameSituationSerializer.TransferMonitor#isCanceled()
+         */
+        public boolean isCanceled() {
+            return canceled;
+        }
+    }
 }
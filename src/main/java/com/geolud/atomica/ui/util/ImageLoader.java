@@ -6,25 +6,48 @@ import com.geolud.atomica.objects.Token;
 import com.geolud.atomica.ui.ApplicationFrame;
 import com.geolud.atomica.util.logging.Logging;
 
+import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.net.URL;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
 import java.util.logging.Level;
 
 /**
  * Responsible for loading all images of the ui. This includes the token images
  * as well as the field and background image. Implemented as singleton.
+ * <p/>
+ * <p>
+ * All images are packed into a single sprite atlas (<code>atlas.png</code>)
+ * described by an index (<code>atlas.properties</code>). The atlas is decoded
+ * once in a background thread at startup and sliced into sub images. Until the
+ * decoding is finished all getters return null, so painting never has to wait
+ * for it. As soon as the images are available all windows get repainted.
+ * </p>
  *
  * @author Georg Ludewig
  */
 public class ImageLoader {
+    /**
+     * The path of the sprite atlas image.
+     */
+    private static final String ATLAS_IMAGE_PATH = "/images/atlas.png";
+
+    /**
+     * The path of the sprite atlas index, mapping each image name to its
+     * bounds (x,y,width,height) within the atlas.
+     */
+    private static final String ATLAS_INDEX_PATH = "/images/atlas.properties";
+
     /**
      * Returns the only instance of the ImageLoader (due to singleton pattern).
      *
      * @return the only instance
      */
-    public static ImageLoader getInstance() {
+    public static synchronized ImageLoader getInstance() {
         if (instance == null) {
             instance = new ImageLoader();
         }
@@ -35,32 +58,48 @@ public class ImageLoader {
     /**
      * List of all atom images.
      */
-    private ArrayList<Image> atomImages = null;
+    private volatile ArrayList<Image> atomImages = null;
 
     /**
      * List of all indicator images.
      */
-    private ArrayList<Image> indicatorImages = null;
+    private volatile ArrayList<Image> indicatorImages = null;
 
     /**
      * The image displaying a field.
      */
-    private Image fieldImage = null;
+    private volatile Image fieldImage = null;
 
     /**
      * The image displaying the background.
      */
-    private Image backgroundImage = null;
+    private volatile Image backgroundImage = null;
 
     /**
      * The image displaying the delete cursor.
      */
-    private Image deleteCursorImage = null;
+    private volatile Image deleteCursorImage = null;
 
     /**
      * The image displaying the title header in the main menu.
      */
-    private Image titleHeaderImage = null;
+    private volatile Image titleHeaderImage = null;
+
+    /**
+     * Released as soon as the atlas was decoded (successfully or not).
+     */
+    private final CountDownLatch loaded = new CountDownLatch(1);
+
+    /**
+     * Tasks to be run on the event dispatch thread as soon as the images are
+     * available.
+     */
+    private final ArrayList<Runnable> loadedCallbacks = new ArrayList<Runnable>();
+
+    /**
+     * Indicates if the background loading was already started.
+     */
+    private boolean loadingStarted = false;
 
     /**
      * The only instance.
@@ -75,111 +114,110 @@ public class ImageLoader {
     }
 
     /**
-     * Returns all atom images. At first call all atom images are being loaded
-     * into memory.
+     * Starts decoding the sprite atlas in a background thread. Calling it more
+     * than once has no effect.
+     */
+    public synchronized void startLoading() {
+        if (loadingStarted) {
+            return;
+        }
+        loadingStarted = true;
+
+        Thread loader = new Thread(new Runnable() {
+            public void run() {
+                loadAtlas();
+            }
+        }, "AtomicaImageLoader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Blocks until all images are available. Only meant for code which can't
+     * do without the images like building icons, never for painting.
+     */
+    public void awaitLoaded() {
+        startLoading();
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Indicates if the images are available.
+     *
+     * @return true if the sprite atlas was decoded
+     */
+    public boolean isLoaded() {
+        return loaded.getCount() == 0;
+    }
+
+    /**
+     * Runs the given task on the event dispatch thread as soon as the images
+     * are available. If they already are, it is run directly when called on
+     * the event dispatch thread.
      *
-     * @return all atom images
-     */
-    private ArrayList<Image> getAtomImages() {
-        if (atomImages == null) {
-            atomImages = new ArrayList<Image>();
-            atomImages.add(loadImage("/images/Atom1.png"));
-            atomImages.add(loadImage("/images/Atom2.png"));
-            atomImages.add(loadImage("/images/Atom3.png"));
-            atomImages.add(loadImage("/images/Atom4.png"));
-            atomImages.add(loadImage("/images/Atom5.png"));
-            atomImages.add(loadImage("/images/Atom6.png"));
-            atomImages.add(loadImage("/images/Atom7.png"));
-            atomImages.add(loadImage("/images/Atom8.png"));
-            atomImages.add(loadImage("/images/Atom9.png"));
-            atomImages.add(loadImage("/images/Atom10.png"));
-            atomImages.add(loadImage("/images/Atom11.png"));
-            atomImages.add(loadImage("/images/Atom12.png"));
+     * @param callback the task to run
+     */
+    public void whenLoaded(Runnable callback) {
+        synchronized (loadedCallbacks) {
+            if (!isLoaded()) {
+                loadedCallbacks.add(callback);
+                return;
+            }
+        }
+
+        if (SwingUtilities.isEventDispatchThread()) {
+            callback.run();
+        } else {
+            SwingUtilities.invokeLater(callback);
         }
-        return atomImages;
     }
 
     /**
-     * Returns the background image. At first call it is loaded into memory.
+     * Returns the background image. Returns null until the atlas is decoded.
      *
      * @return the background image
      */
     public Image getBackgroundImage() {
-        if (backgroundImage == null) {
-            backgroundImage = loadImage("/images/Background.png");
-        }
-
         return backgroundImage;
     }
 
     /**
-     * Returns the image for displaying the delete cursor. At first call it is
-     * loaded into memory.
+     * Returns the image for displaying the delete cursor. Returns null until
+     * the atlas is decoded.
      *
      * @return the delete cursor image
      */
     public Image getDeleteCursorImage() {
-        if (deleteCursorImage == null) {
-            deleteCursorImage = loadImage("/images/DeleteCursor.png");
-        }
-
         return deleteCursorImage;
     }
 
     /**
-     * Returns the image for displaying a field. At first call it is loaded from
-     * the resources.
+     * Returns the image for displaying a field. Returns null until the atlas
+     * is decoded.
      *
      * @return the image for displaying a field
      */
     public Image getFieldImage() {
-        if (fieldImage == null) {
-            fieldImage = loadImage("/images/Field.png");
-        }
-
         return fieldImage;
     }
 
     /**
-     * Returns all indicator images. At first call all indicator images are
-     * being loaded from the resources.
-     *
-     * @return all indicator images
-     */
-    private ArrayList<Image> getIndicatorImages() {
-        if (indicatorImages == null) {
-            indicatorImages = new ArrayList<Image>();
-            indicatorImages.add(loadImage("/images/Indicator1.png"));
-            indicatorImages.add(loadImage("/images/Indicator2.png"));
-            indicatorImages.add(loadImage("/images/Indicator3.png"));
-            indicatorImages.add(loadImage("/images/Indicator4.png"));
-            indicatorImages.add(loadImage("/images/Indicator5.png"));
-            indicatorImages.add(loadImage("/images/Indicator6.png"));
-            indicatorImages.add(loadImage("/images/Indicator7.png"));
-            indicatorImages.add(loadImage("/images/Indicator8.png"));
-            indicatorImages.add(loadImage("/images/Indicator9.png"));
-            indicatorImages.add(loadImage("/images/Indicator10.png"));
-            indicatorImages.add(loadImage("/images/Indicator11.png"));
-            indicatorImages.add(loadImage("/images/Indicator12.png"));
-        }
-        return indicatorImages;
-    }
-
-    /**
-     * Returns the image for displaying the header in the main menu.
+     * Returns the image for displaying the header in the main menu. Returns
+     * null until the atlas is decoded.
      *
      * @return the image for displaying the header in the main menu
      */
     public Image getTitleHeaderImage() {
-        if (titleHeaderImage == null) {
-            titleHeaderImage = loadImage("/images/AtomicaTitleHeader.png");
-        }
-
         return titleHeaderImage;
     }
 
     /**
-     * Returns the image for the given token.
+     * Returns the image for the given token. Returns null until the atlas is
+     * decoded.
      *
      * @param token the token the image is wanted for
      * @return the image for the given token
@@ -187,30 +225,113 @@ public class ImageLoader {
     public Image getTokenImage(Token token) {
         Image img = null;
         if (token.getClass() == AtomToken.class) {
-            img = getAtomImages().get(token.getColorIndex());
+            img = getAtomImage(token.getColorIndex());
         } else if (token.getClass() == IndicatorToken.class) {
-            img = getIndicatorImages().get(token.getColorIndex());
+            img = getIndicatorImage(token.getColorIndex());
         }
 
         return img;
     }
 
     /**
-     * Loads an image from the given path.
+     * Returns the atom image for the given color index. Returns null until the
+     * atlas is decoded.
      *
-     * @param path the path of the image
-     * @return the image at the given path
+     * @param colorIndex the color identifier of the atom
+     * @return the atom image for the given color
      */
-    private Image loadImage(String path) {
-        Image img = null;
+    public Image getAtomImage(int colorIndex) {
+        ArrayList<Image> images = atomImages;
+        return images == null ? null : images.get(colorIndex);
+    }
+
+    /**
+     * Returns the indicator image for the given color index. Returns null until
+     * the atlas is decoded.
+     *
+     * @param colorIndex the color identifier of the indicator
+     * @return the indicator image for the given color
+     */
+    public Image getIndicatorImage(int colorIndex) {
+        ArrayList<Image> images = indicatorImages;
+        return images == null ? null : images.get(colorIndex);
+    }
+
+    /**
+     * Decodes the sprite atlas and slices it into the sub images. Afterwards
+     * all registered callbacks are invoked and all windows are repainted.
+     */
+    private void loadAtlas() {
         try {
-            URL url;
-            url = ApplicationFrame.class.getResource(path);
-            img = new ImageIcon(url).getImage();
-        } catch (RuntimeException e) {
-            Logging.getLogger().log(Level.SEVERE, "Failed to load " + path);
+            Properties index = new Properties();
+            InputStream in = ApplicationFrame.class
+                    .getResourceAsStream(ATLAS_INDEX_PATH);
+            try {
+                index.load(in);
+            } finally {
+                in.close();
+            }
+
+            BufferedImage atlas = ImageIO.read(ApplicationFrame.class
+                    .getResource(ATLAS_IMAGE_PATH));
+
+            ArrayList<Image> atoms = new ArrayList<Image>();
+            ArrayList<Image> indicators = new ArrayList<Image>();
+            for (int i = 1; i <= com.geolud.atomica.objects.Level.MAX_NUMBEROFCOLORS; i++) {
+                atoms.add(slice(atlas, index, "Atom" + i));
+                indicators.add(slice(atlas, index, "Indicator" + i));
+            }
+
+            fieldImage = slice(atlas, index, "Field");
+            deleteCursorImage = slice(atlas, index, "DeleteCursor");
+            backgroundImage = slice(atlas, index, "Background");
+            titleHeaderImage = slice(atlas, index, "AtomicaTitleHeader");
+            atomImages = atoms;
+            indicatorImages = indicators;
+        } catch (Exception e) {
+            Logging.getLogger().log(Level.SEVERE,
+                    "Failed to load " + ATLAS_IMAGE_PATH);
         }
 
-        return img;
+        ArrayList<Runnable> callbacks;
+        synchronized (loadedCallbacks) {
+            loaded.countDown();
+            callbacks = new ArrayList<Runnable>(loadedCallbacks);
+            loadedCallbacks.clear();
+        }
+
+        for (Runnable callback : callbacks) {
+            SwingUtilities.invokeLater(callback);
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                for (Window window : Window.getWindows()) {
+                    window.repaint();
+                }
+            }
+        });
+    }
+
+    /**
+     * Cuts the image with the given name out of the atlas.
+     *
+     * @param atlas the decoded atlas image
+     * @param index the atlas index
+     * @param name  the name of the image
+     * @return the sub image or null if the index does not contain the name
+     */
+    private Image slice(BufferedImage atlas, Properties index, String name) {
+        String bounds = index.getProperty(name);
+        if (bounds == null) {
+            Logging.getLogger().log(Level.SEVERE,
+                    "Missing atlas entry " + name);
+            return null;
+        }
+
+        String[] values = bounds.split(",");
+        return atlas.getSubimage(Integer.parseInt(values[0].trim()),
+                Integer.parseInt(values[1].trim()),
+                Integer.parseInt(values[2].trim()),
+                Integer.parseInt(values[3].trim()));
     }
 }
@@ -0,0 +1,484 @@
+package com.geolud.atomica.ui.util.board;
+
+import com.geolud.atomica.logic.MoveResult;
+import com.geolud.atomica.ui.util.ImageLoader;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Arrays;
+
+/**
+ * Animates a move on a game board after the model has already been changed.
+ * The moved atom slides along its path, afterwards transformed indicators fade
+ * into atoms and removed molecules fade out.
+ * <p/>
+ * <p>
+ * The animation is driven by a single <code>javax.swing.Timer</code>. The
+ * state advances in fixed time steps and is interpolated between two steps
+ * when painting, so the speed does not depend on the timer accuracy. Only the
+ * dirty bounds of the sprite and the effects are repainted and no objects are
+ * created per frame.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+class BoardAnimator implements ActionListener {
+    /**
+     * The duration of a fixed time step in nanoseconds (60 steps per second).
+     */
+    private static final long STEP_NANOS = 1000000000L / 60;
+
+    /**
+     * The maximum time the animation catches up after a stall.
+     */
+    private static final long MAX_FRAME_NANOS = 250000000L;
+
+    /**
+     * The number of steps the atom needs to pass one field.
+     */
+    private static final int STEPS_PER_FIELD = 4;
+
+    /**
+     * The number of steps for transforming indicators and removing molecules.
+     */
+    private static final int EFFECT_STEPS = 15;
+
+    /**
+     * Phase in which the atom moves along its path.
+     */
+    private static final int PHASE_MOVE = 1;
+
+    /**
+     * Phase in which indicators are transformed to atoms.
+     */
+    private static final int PHASE_TRANSFORM = 2;
+
+    /**
+     * Phase in which removed molecules fade out.
+     */
+    private static final int PHASE_REMOVE = 4;
+
+    /**
+     * Marks a cell whose indicator was transformed to an atom.
+     */
+    private static final int TRANSFORMED = 8;
+
+    /**
+     * Precomputed composites for fading, so no composite is created per frame.
+     */
+    private static final AlphaComposite[] ALPHAS = new AlphaComposite[17];
+
+    static {
+        for (int i = 0; i < ALPHAS.length; i++) {
+            ALPHAS[i] = AlphaComposite.getInstance(AlphaComposite.SRC_OVER,
+                    (float) i / (ALPHAS.length - 1));
+        }
+    }
+
+    /**
+     * The board being animated.
+     */
+    private final GameBoardPanel board;
+
+    /**
+     * The clock driving the animation.
+     */
+    private final Timer timer;
+
+    /**
+     * The move which is animated, null if no animation is running.
+     */
+    private MoveResult move = null;
+
+    /**
+     * The current phase.
+     */
+    private int phase = 0;
+
+    /**
+     * The number of steps of the current phase.
+     */
+    private int phaseSteps = 0;
+
+    /**
+     * The number of steps done in the current phase.
+     */
+    private int step = 0;
+
+    /**
+     * Elapsed time not yet consumed by a step.
+     */
+    private long accumulator = 0;
+
+    /**
+     * The time of the last timer tick.
+     */
+    private long lastTick = 0;
+
+    /**
+     * For each cell the phases during which the token of the model must not be
+     * painted. Only reallocated when the number of cells changes.
+     */
+    private int[] hiddenInPhase = new int[0];
+
+    /**
+     * The indexes of the cells marked in hiddenInPhase by the running
+     * animation, so a move costs in the number of its fields, not of the
+     * board.
+     */
+    private int[] touchedCells = new int[16];
+
+    /**
+     * The number of used entries of touchedCells.
+     */
+    private int touchedCount = 0;
+
+    /**
+     * The cell index of the destination field.
+     */
+    private int destinationCell = -1;
+
+    /**
+     * The screen bounds of the sprite at the last paint.
+     */
+    private int spriteX, spriteY, spriteWidth, spriteHeight;
+
+    /**
+     * The screen bounds enclosing all transformed and removed fields.
+     */
+    private int effectX, effectY, effectWidth, effectHeight;
+
+    /**
+     * Creates an animator for the given board.
+     *
+     * @param board the board to animate
+     */
+    BoardAnimator(GameBoardPanel board) {
+        this.board = board;
+        this.timer = new Timer(1000 / 60, this);
+        this.timer.setCoalesce(true);
+    }
+
+    /**
+     * Starts animating the given move. A running animation is finished first.
+     *
+     * @param move the move to animate
+     */
+    void start(MoveResult move) {
+        finish();
+        if (move == null || move.getPathLength() < 2) {
+            return;
+        }
+
+        this.move = move;
+
+        int cells = board.getCellCount();
+        if (hiddenInPhase.length != cells) {
+            hiddenInPhase = new int[cells];
+        }
+
+        int last = move.getPathLength() - 1;
+        destinationCell = board.getCellIndex(move.getPathCol(last),
+                move.getPathRow(last));
+        hide(destinationCell, PHASE_MOVE);
+
+        for (int i = 0; i < move.getTransformedCount(); i++) {
+            hide(board.getCellIndex(move.getTransformedCol(i), move
+                    .getTransformedRow(i)), PHASE_MOVE | PHASE_TRANSFORM
+                    | TRANSFORMED);
+        }
+        for (int i = 0; i < move.getRemovedCount(); i++) {
+            hide(board.getCellIndex(move.getRemovedCol(i), move
+                    .getRemovedRow(i)), PHASE_MOVE | PHASE_TRANSFORM
+                    | PHASE_REMOVE);
+        }
+
+        computeEffectBounds();
+        enterPhase(PHASE_MOVE, last * STEPS_PER_FIELD);
+
+        lastTick = System.nanoTime();
+        accumulator = 0;
+        timer.start();
+    }
+
+    /**
+     * Stops a running animation and repaints the board in its final state.
+     */
+    void finish() {
+        if (move == null) {
+            return;
+        }
+
+        timer.stop();
+        move = null;
+        phase = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            hiddenInPhase[touchedCells[i]] = 0;
+        }
+        touchedCount = 0;
+        board.repaint();
+    }
+
+    /**
+     * Indicates if an animation is running.
+     *
+     * @return true if an animation is running
+     */
+    boolean isRunning() {
+        return move != null;
+    }
+
+    /**
+     * Indicates if the token of the model at the given cell must not be
+     * painted, since the animation paints it instead.
+     *
+     * @param cell the cell index
+     * @return true if the token must not be painted
+     */
+    boolean isHidden(int cell) {
+        return cell < hiddenInPhase.length && (hiddenInPhase[cell] & phase) != 0;
+    }
+
+    /**
+     * Advances the animation by the elapsed time in fixed steps and repaints
+     * the dirty bounds.
+     *
+     * @see java.awt.event.ActionListener#actionPerformed(java.awt.event.ActionEvent)
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        if (move == null) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        accumulator += Math.min(now - lastTick, MAX_FRAME_NANOS);
+        lastTick = now;
+
+        while (accumulator >= STEP_NANOS && move != null) {
+            accumulator -= STEP_NANOS;
+            step++;
+            if (step >= phaseSteps) {
+                nextPhase();
+            }
+        }
+
+        if (move == null) {
+            return;
+        }
+
+        if (phase == PHASE_MOVE) {
+            // the old and the new bounds of the sprite are dirty
+            board.repaint(spriteX, spriteY, spriteWidth, spriteHeight);
+            updateSpriteBounds();
+            board.repaint(spriteX, spriteY, spriteWidth, spriteHeight);
+        } else {
+            // the view may have been scrolled or zoomed since the last tick,
+            // so the old and the new bounds of the effects are dirty
+            board.repaint(effectX, effectY, effectWidth, effectHeight);
+            computeEffectBounds();
+            board.repaint(effectX, effectY, effectWidth, effectHeight);
+        }
+    }
+
+    /**
+     * Paints the sprite and the effects of the current phase on top of the
+     * board.
+     *
+     * @param g2 the Graphic2D object to paint to
+     */
+    void paint(Graphics2D g2) {
+        if (move == null) {
+            return;
+        }
+
+        ImageLoader images = ImageLoader.getInstance();
+        Composite composite = g2.getComposite();
+        int fade = (int) (getPhaseProgress() * (ALPHAS.length - 1));
+
+        // removed atoms stay visible until their phase fades them out. the
+        // sprite stands in for a removed destination atom only while moving
+        for (int i = 0; i < move.getRemovedCount(); i++) {
+            int cell = board.getCellIndex(move.getRemovedCol(i),
+                    move.getRemovedRow(i));
+            if ((phase == PHASE_MOVE && cell == destinationCell)
+                    || (phase != PHASE_REMOVE && isTransformed(cell))) {
+                continue;
+            }
+
+            g2.setComposite(phase == PHASE_REMOVE ? ALPHAS[ALPHAS.length - 1
+                    - fade] : ALPHAS[ALPHAS.length - 1]);
+            board.paintTokenImage(images.getAtomImage(move
+                    .getRemovedColor(i)), cell, g2);
+        }
+
+        // transformed indicators fade into atoms
+        if (phase != PHASE_REMOVE) {
+            for (int i = 0; i < move.getTransformedCount(); i++) {
+                int cell = board.getCellIndex(move.getTransformedCol(i), move
+                        .getTransformedRow(i));
+                int color = move.getTransformedColor(i);
+                if (phase == PHASE_TRANSFORM) {
+                    g2.setComposite(ALPHAS[ALPHAS.length - 1 - fade]);
+                    board.paintTokenImage(images.getIndicatorImage(color),
+                            cell, g2);
+                    g2.setComposite(ALPHAS[fade]);
+                    board.paintTokenImage(images.getAtomImage(color), cell,
+                            g2);
+                } else {
+                    g2.setComposite(ALPHAS[ALPHAS.length - 1]);
+                    board.paintTokenImage(images.getIndicatorImage(color),
+                            cell, g2);
+                }
+            }
+        }
+
+        g2.setComposite(composite);
+
+        if (phase == PHASE_MOVE) {
+            updateSpriteBounds();
+            Image img = images.getAtomImage(move.getColorIndex());
+            if (img != null) {
+                g2.drawImage(img, spriteX, spriteY, spriteWidth, spriteHeight,
+                        null);
+            }
+        }
+    }
+
+    /**
+     * Returns the interpolated progress of the current phase between 0 and 1.
+     *
+     * @return the progress of the current phase
+     */
+    private double getPhaseProgress() {
+        double alpha = (double) accumulator / STEP_NANOS;
+        return Math.min(1.0, (step + alpha) / phaseSteps);
+    }
+
+    /**
+     * Computes the screen bounds of the sprite at the interpolated position
+     * on the path.
+     */
+    private void updateSpriteBounds() {
+        int segments = move.getPathLength() - 1;
+        double position = getPhaseProgress() * segments;
+        int segment = Math.min((int) position, segments - 1);
+        double fraction = position - segment;
+
+        int cell1 = board.getCellIndex(move.getPathCol(segment), move
+                .getPathRow(segment));
+        int cell2 = board.getCellIndex(move.getPathCol(segment + 1), move
+                .getPathRow(segment + 1));
+
+        int x1 = board.getCellCenterX(cell1);
+        int y1 = board.getCellCenterY(cell1);
+        int x2 = board.getCellCenterX(cell2);
+        int y2 = board.getCellCenterY(cell2);
+
+        spriteWidth = board.getTokenWidth();
+        spriteHeight = board.getTokenHeight();
+        spriteX = (int) (x1 + (x2 - x1) * fraction) - spriteWidth / 2;
+        spriteY = (int) (y1 + (y2 - y1) * fraction) - spriteHeight / 2;
+    }
+
+    /**
+     * Computes the screen bounds enclosing all transformed and removed fields.
+     */
+    private void computeEffectBounds() {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+
+        for (int i = 0; i < touchedCount; i++) {
+            int cell = touchedCells[i];
+            if ((hiddenInPhase[cell] & (PHASE_TRANSFORM | PHASE_REMOVE)) == 0) {
+                continue;
+            }
+            minX = Math.min(minX, board.getCellX(cell));
+            minY = Math.min(minY, board.getCellY(cell));
+            maxX = Math.max(maxX, board.getCellX(cell)
+                    + board.getCellWidth(cell));
+            maxY = Math.max(maxY, board.getCellY(cell)
+                    + board.getCellHeight(cell));
+        }
+
+        if (minX > maxX) {
+            effectX = effectY = effectWidth = effectHeight = 0;
+        } else {
+            effectX = minX;
+            effectY = minY;
+            effectWidth = maxX - minX;
+            effectHeight = maxY - minY;
+        }
+    }
+
+    /**
+     * Switches to the phase following the current one, skipping phases
+     * without anything to animate.
+     */
+    private void nextPhase() {
+        if (phase == PHASE_MOVE) {
+            // the sprite is not painted anymore
+            board.repaint(spriteX, spriteY, spriteWidth, spriteHeight);
+            board.repaint(board.getCellX(destinationCell), board
+                    .getCellY(destinationCell), board
+                    .getCellWidth(destinationCell), board
+                    .getCellHeight(destinationCell));
+
+            if (move.getTransformedCount() > 0) {
+                enterPhase(PHASE_TRANSFORM, EFFECT_STEPS);
+                return;
+            }
+        }
+
+        if (phase != PHASE_REMOVE && move.getRemovedCount() > 0) {
+            enterPhase(PHASE_REMOVE, EFFECT_STEPS);
+            return;
+        }
+
+        finish();
+    }
+
+    /**
+     * Enters the given phase.
+     *
+     * @param newPhase the phase to enter
+     * @param steps    the number of steps of the phase
+     */
+    private void enterPhase(int newPhase, int steps) {
+        phase = newPhase;
+        phaseSteps = Math.max(1, steps);
+        step = 0;
+    }
+
+    /**
+     * Marks the token of the model at the given cell as hidden during the
+     * given phases and remembers the cell for clearing it.
+     *
+     * @param cell   the cell index
+     * @param phases the phases, possibly together with TRANSFORMED
+     */
+    private void hide(int cell, int phases) {
+        if (hiddenInPhase[cell] == 0) {
+            if (touchedCount == touchedCells.length) {
+                touchedCells = Arrays.copyOf(touchedCells,
+                        touchedCount * 2);
+            }
+            touchedCells[touchedCount++] = cell;
+        }
+        hiddenInPhase[cell] |= phases;
+    }
+
+    /**
+     * Indicates if the indicator at the given cell was transformed to an atom.
+     *
+     * @param cell the cell index
+     * @return true if the indicator was transformed
+     */
+    private boolean isTransformed(int cell) {
+        return (hiddenInPhase[cell] & TRANSFORMED) != 0;
+    }
+}
@@ -1,16 +1,22 @@
 package com.geolud.atomica.ui.util.board;
 
-import com.geolud.atomica.objects.Field;
-import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.objects.SituationSnapshot;
 import com.geolud.atomica.objects.Token;
 import com.geolud.atomica.ui.util.ImageLoader;
 import com.geolud.atomica.ui.util.components.AtomicaPanel;
+import com.geolud.atomica.ui.util.diagnostics.DiagnosticsOverlay;
+import com.geolud.atomica.ui.util.diagnostics.PaintDiagnostics;
+import com.geolud.atomica.ui.util.diagnostics.PaintStats;
+import com.geolud.atomica.util.flightrecorder.FlightEvents;
+import com.geolud.atomica.util.metrics.GameMetrics;
 
+import javax.swing.SwingUtilities;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
-import java.util.HashMap;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
 
 /**
  * Abstract base class for the user interface of a game board. Since it is used
@@ -21,8 +27,16 @@ import java.util.HashMap;
  * <p>
  * Considering the current game situation with the arrangement of indicator and
  * atom tokens on the fields, it paints them proportional to the current panel
- * size. It provides an easy access to the screen bounds of certain field
- * object.
+ * size. It paints an immutable snapshot of the situation, so the situation
+ * itself can be changed by another thread. It provides an easy access to the
+ * screen bounds of certain field object.
+ * </p>
+ * <p>
+ * Fields of scrollable panels are never painted smaller than MIN_FIELD_SIZE,
+ * so large boards don't fit into the panel. The panel then shows a part of the board, which is
+ * scrolled by the mouse wheel (horizontally while shift is pressed) or by
+ * dragging with the middle mouse button. The mouse wheel zooms while control
+ * is pressed. Only the fields within the panel are painted.
  * </p>
  *
  * @author Georg Ludewig
@@ -35,41 +49,177 @@ public abstract class BoardPanel extends AtomicaPanel {
     static private final double SCALE = 0.96;
 
     /**
-     * The game situation containing the board size and the placement of the
-     * tokens.
+     * The snapshot of the game situation containing the board size and the
+     * placement of the tokens.
+     */
+    protected SituationSnapshot snapshot = null;
+
+    /**
+     * The size of a token relative to the size of its field.
+     */
+    static private final double TOKEN_SCALE = 0.65;
+
+    /**
+     * The horizontal offset of the board in screen coordinates.
+     */
+    static private final int BOARD_X = 10;
+
+    /**
+     * The vertical offset of the board in screen coordinates.
+     */
+    static private final int BOARD_Y = 5;
+
+    /**
+     * The minimum width and height of a field in screen coordinates.
+     */
+    static private final int MIN_FIELD_SIZE = 16;
+
+    /**
+     * The maximum zoom factor.
+     */
+    static private final double MAX_ZOOM = 8;
+
+    /**
+     * The factor the zoom changes by with each step of the mouse wheel.
+     */
+    static private final double ZOOM_STEP = 1.25;
+
+    /**
+     * The number of fields scrolled with each step of the mouse wheel.
+     */
+    static private final int SCROLL_FIELDS = 3;
+
+    /**
+     * The x position of each column of the board without scrolling.
+     */
+    private int[] colX = new int[0];
+
+    /**
+     * The y position of each row of the board without scrolling.
+     */
+    private int[] rowY = new int[0];
+
+    /**
+     * The zoom factor, 1 if the board is fitted into the panel.
+     */
+    private double zoom = 1;
+
+    /**
+     * The horizontal scroll position in screen coordinates.
+     */
+    private int viewX = 0;
+
+    /**
+     * The vertical scroll position in screen coordinates.
+     */
+    private int viewY = 0;
+
+    /**
+     * The position where dragging with the middle mouse button started or
+     * last moved the board, null if the board isn't dragged.
+     */
+    private Point panStart = null;
+
+    /**
+     * The width of a single field in screen coordinates.
+     */
+    private int fieldWidth = 0;
+
+    /**
+     * The height of a single field in screen coordinates.
+     */
+    private int fieldHeight = 0;
+
+    /**
+     * The offset of a token within its field in screen coordinates.
+     */
+    private int tokenOffsetX = 0;
+
+    /**
+     * The offset of a token within its field in screen coordinates.
+     */
+    private int tokenOffsetY = 0;
+
+    /**
+     * The width of a token in screen coordinates.
      */
-    protected GameSituation gameSituation = null;
+    private int tokenWidth = 0;
 
     /**
-     * A map providing easy access to the screen bounds of certain field.
+     * The height of a token in screen coordinates.
      */
-    private HashMap<Field, Rectangle> fieldsScreenBounds = null;
+    private int tokenHeight = 0;
 
     /**
-     * The size of the painting game board in screen coordinates.
+     * The panel width the current layout was computed for.
      */
-    private Rectangle board = new Rectangle(0, 0, 0, 0);
+    private int layoutWidth = -1;
 
     /**
-     * A field holding the current position of the mouse cursor.
+     * The panel height the current layout was computed for.
      */
-    protected Field cursorPositionField;
+    private int layoutHeight = -1;
+
+    /**
+     * The number of columns the current layout was computed for.
+     */
+    private int layoutCols = -1;
+
+    /**
+     * The number of rows the current layout was computed for.
+     */
+    private int layoutRows = -1;
+
+    /**
+     * The zoom factor the current layout was computed for.
+     */
+    private double layoutZoom = -1;
+
+    /**
+     * Reused for querying the clip bounds while painting.
+     */
+    private final Rectangle clip = new Rectangle();
+
+    /**
+     * The cell index of the current position of the mouse cursor, -1 if the
+     * cursor is not on the board.
+     */
+    protected int cursorCell = -1;
+
+    /**
+     * The paint statistics shared by all boards of the same class. Null until
+     * the constructor has run.
+     */
+    private PaintStats paintStats = null;
 
     // /////////// VIEW SECTION /////////////
 
     /**
-     * Initializes the board with the given game situation.
+     * Initializes the board with the given snapshot of a game situation.
      *
-     * @param gameSituation a game situation
+     * @param snapshot a snapshot of a game situation
      */
-    public BoardPanel(GameSituation gameSituation) {
+    public BoardPanel(SituationSnapshot snapshot) {
         super();
-        this.gameSituation = gameSituation;
-        this.fieldsScreenBounds = new HashMap<Field, Rectangle>();
+        this.snapshot = snapshot;
+        this.paintStats = PaintDiagnostics.getStats(getClass().getSimpleName());
+
+        DiagnosticsOverlay.install(this);
 
         addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (SwingUtilities.isMiddleMouseButton(e)) {
+                    panStart = e.getPoint();
+                }
+            }
+
             @Override
             public void mouseReleased(MouseEvent e) {
+                if (panStart != null) {
+                    panStart = null;
+                    return;
+                }
                 handleMouseReleased(e.getX(), e.getY());
             }
 
@@ -84,6 +234,11 @@ public abstract class BoardPanel extends AtomicaPanel {
         addMouseMotionListener(new MouseMotionListener() {
             @Override
             public void mouseDragged(MouseEvent e) {
+                if (panStart != null) {
+                    scrollBy(panStart.x - e.getX(), panStart.y - e.getY());
+                    panStart = e.getPoint();
+                    return;
+                }
                 handleMouseDragged(e.getX(), e.getY());
             }
 
@@ -92,58 +247,330 @@ public abstract class BoardPanel extends AtomicaPanel {
                 handleMouseMoved(e.getX(), e.getY());
             }
         });
+        addMouseWheelListener(new MouseWheelListener() {
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                handleMouseWheelMoved(e);
+            }
+        });
+    }
+
+    /**
+     * Replaces the displayed snapshot and repaints the board.
+     *
+     * @param snapshot the new snapshot to display
+     */
+    public void setSnapshot(SituationSnapshot snapshot) {
+        this.snapshot = snapshot;
+        repaint();
+    }
+
+    /**
+     * Returns the cell index of the given position which is used to access
+     * the screen geometry of a field.
+     *
+     * @param col the column of the field
+     * @param row the row of the field
+     * @return the cell index of the field
+     */
+    final protected int getCellIndex(int col, int row) {
+        return row * snapshot.getCols() + col;
+    }
+
+    /**
+     * Returns the cell index of the field at the given pixel position.
+     *
+     * @param x the pixels x position
+     * @param y the pixels y position
+     * @return the cell index, -1 if the position is outside of the board
+     */
+    final protected int getCellFromPixel(int x, int y) {
+        int col = getColFromPixel(x);
+        int row = getRowFromPixel(y);
+        if (col < 0 || row < 0) {
+            return -1;
+        }
+
+        return getCellIndex(col, row);
+    }
+
+    /**
+     * Returns the x position of the field with the given cell index.
+     *
+     * @param cell the cell index of the field
+     * @return the x position in screen coordinates
+     */
+    final protected int getCellX(int cell) {
+        return colX[cell % layoutCols] - viewX;
+    }
+
+    /**
+     * Returns the y position of the field with the given cell index.
+     *
+     * @param cell the cell index of the field
+     * @return the y position in screen coordinates
+     */
+    final protected int getCellY(int cell) {
+        return rowY[cell / layoutCols] - viewY;
+    }
+
+    /**
+     * Returns the width of the field with the given cell index.
+     *
+     * @param cell the cell index of the field
+     * @return the width in screen coordinates
+     */
+    final protected int getCellWidth(int cell) {
+        return fieldWidth;
+    }
+
+    /**
+     * Returns the height of the field with the given cell index.
+     *
+     * @param cell the cell index of the field
+     * @return the height in screen coordinates
+     */
+    final protected int getCellHeight(int cell) {
+        return fieldHeight;
+    }
+
+    /**
+     * Returns the horizontal center of the field with the given cell index.
+     *
+     * @param cell the cell index of the field
+     * @return the horizontal center in screen coordinates
+     */
+    final protected int getCellCenterX(int cell) {
+        return getCellX(cell) + fieldWidth / 2;
+    }
+
+    /**
+     * Returns the vertical center of the field with the given cell index.
+     *
+     * @param cell the cell index of the field
+     * @return the vertical center in screen coordinates
+     */
+    final protected int getCellCenterY(int cell) {
+        return getCellY(cell) + fieldHeight / 2;
+    }
+
+    /**
+     * Returns the number of fields of the current layout.
+     *
+     * @return the number of fields
+     */
+    final protected int getCellCount() {
+        updateLayout();
+        return layoutCols * layoutRows;
+    }
+
+    /**
+     * Returns the width of a token in screen coordinates.
+     *
+     * @return the width of a token
+     */
+    final protected int getTokenWidth() {
+        return tokenWidth;
     }
 
     /**
-     * Returns the screen bounds of the given field.
+     * Returns the height of a token in screen coordinates.
      *
-     * @param field the field to get the screen bounds from
-     * @return the screen bounds of the given field
+     * @return the height of a token
      */
-    final protected Rectangle getBounds(Field field) {
-        return fieldsScreenBounds.get(field);
+    final protected int getTokenHeight() {
+        return tokenHeight;
     }
 
     /**
      * Returns the field column on the board for the pixel x position.
      *
      * @param x the pixels x position
-     * @return the field column on the board for the pixel x position
+     * @return the field column on the board for the pixel x position, -1 if it
+     * is outside of the board
      */
     protected int getColFromPixel(int x) {
-        int col = -1;
-
-        try {
-            int fieldWidth = (int) (board.getWidth() / gameSituation.getCols());
-            col = (int) ((x - board.getX()) / fieldWidth);
-        } catch (ArithmeticException e) {
-            col = -1;
+        updateLayout();
+        int boardX = x - BOARD_X + viewX;
+        if (fieldWidth <= 0 || boardX < 0) {
+            return -1;
         }
 
-        return col;
+        int col = boardX / fieldWidth;
+        return col < layoutCols ? col : -1;
     }
 
     /**
      * Returns the field row on the board for the pixel y position.
      *
      * @param y the pixels y position
-     * @return the field row on the board for the pixel y position
+     * @return the field row on the board for the pixel y position, -1 if it is
+     * outside of the board
      */
     protected int getRowFromPixel(int y) {
-        int row = -1;
-        try {
-            int fieldHeight = (int) (board.getHeight() / gameSituation
-                    .getRows());
-            row = (int) ((y - board.getY()) / fieldHeight);
-        } catch (ArithmeticException e) {
-            row = -1;
+        updateLayout();
+        int boardY = y - BOARD_Y + viewY;
+        if (fieldHeight <= 0 || boardY < 0) {
+            return -1;
+        }
+
+        int row = boardY / fieldHeight;
+        return row < layoutRows ? row : -1;
+    }
+
+    /**
+     * Computes the screen geometry of all fields if the size of the panel,
+     * the size of the board or the zoom has changed since the last call.
+     */
+    protected void updateLayout() {
+        int cols = snapshot.getCols();
+        int rows = snapshot.getRows();
+        int panelWidth = getWidth();
+        int panelHeight = getHeight();
+
+        if (panelWidth == layoutWidth && panelHeight == layoutHeight
+                && cols == layoutCols && rows == layoutRows
+                && zoom == layoutZoom) {
+            return;
+        }
+
+        layoutWidth = panelWidth;
+        layoutHeight = panelHeight;
+        layoutCols = cols;
+        layoutRows = rows;
+        layoutZoom = zoom;
+
+        fieldHeight = (int) ((panelHeight / rows) * SCALE);
+        fieldWidth = (int) ((panelWidth / cols) * SCALE);
+
+        // boards too large for the panel are scrolled instead of shrunk
+        if (isScrollable() && panelWidth > 0 && panelHeight > 0) {
+            fieldHeight = (int) (Math.max(fieldHeight, MIN_FIELD_SIZE) * zoom);
+            fieldWidth = (int) (Math.max(fieldWidth, MIN_FIELD_SIZE) * zoom);
+        }
+
+        tokenOffsetX = (int) ((fieldWidth * (1 - TOKEN_SCALE)) / 2);
+        tokenOffsetY = (int) ((fieldHeight * (1 - TOKEN_SCALE)) / 2);
+        tokenWidth = (int) (fieldWidth * TOKEN_SCALE);
+        tokenHeight = (int) (fieldHeight * TOKEN_SCALE);
+
+        if (colX.length != cols) {
+            colX = new int[cols];
+        }
+        if (rowY.length != rows) {
+            rowY = new int[rows];
+        }
+        for (int col = 0; col < cols; col++) {
+            colX[col] = col * fieldWidth + BOARD_X;
         }
+        for (int row = 0; row < rows; row++) {
+            rowY[row] = row * fieldHeight + BOARD_Y;
+        }
+
+        scrollBy(0, 0);
+    }
 
-        return row;
+    /**
+     * Indicates if the fields are kept at least MIN_FIELD_SIZE in size and the
+     * board can be scrolled and zoomed. Panels which are not interactive
+     * override this to always fit the whole board into the panel.
+     *
+     * @return true, if the board can be scrolled and zoomed
+     */
+    protected boolean isScrollable() {
+        return true;
+    }
+
+    /**
+     * Scrolls the board by the given distance, keeping it within the panel.
+     *
+     * @param dx the horizontal distance in screen coordinates
+     * @param dy the vertical distance in screen coordinates
+     */
+    private void scrollBy(int dx, int dy) {
+        int maxX = Math.max(0, layoutCols * fieldWidth + 2 * BOARD_X
+                - layoutWidth);
+        int maxY = Math.max(0, layoutRows * fieldHeight + 2 * BOARD_Y
+                - layoutHeight);
+        int x = Math.max(0, Math.min(maxX, viewX + dx));
+        int y = Math.max(0, Math.min(maxY, viewY + dy));
+        if (x != viewX || y != viewY) {
+            viewX = x;
+            viewY = y;
+            repaint();
+        }
+    }
+
+    /**
+     * Scrolls the board or, while control is pressed, zooms it keeping the
+     * field under the mouse cursor in place.
+     *
+     * @param e the mouse wheel event
+     */
+    private void handleMouseWheelMoved(MouseWheelEvent e) {
+        if (!isScrollable()) {
+            return;
+        }
+
+        updateLayout();
+        int rotation = e.getWheelRotation();
+        if (e.isControlDown()) {
+            double newZoom = zoom * Math.pow(ZOOM_STEP, -rotation);
+            newZoom = Math.max(1, Math.min(MAX_ZOOM, newZoom));
+            if (newZoom == zoom || fieldWidth <= 0 || fieldHeight <= 0) {
+                return;
+            }
+
+            int boardX = e.getX() - BOARD_X + viewX;
+            int boardY = e.getY() - BOARD_Y + viewY;
+            int oldWidth = fieldWidth;
+            int oldHeight = fieldHeight;
+            zoom = newZoom;
+            updateLayout();
+            scrollBy((int) ((long) boardX * fieldWidth / oldWidth) - boardX,
+                    (int) ((long) boardY * fieldHeight / oldHeight) - boardY);
+            repaint();
+        } else if (e.isShiftDown()) {
+            scrollBy(rotation * SCROLL_FIELDS * fieldWidth, 0);
+        } else {
+            scrollBy(0, rotation * SCROLL_FIELDS * fieldHeight);
+        }
+    }
+
+    /**
+     * Measures the duration of painting the board including all subclass
+     * decorations. The diagnostics overlay is painted on top if enabled.
+     *
+     * @see javax.swing.JComponent#paint(java.awt.Graphics)
+     */
+    @Override
+    public void paint(Graphics g) {
+        long start = paintStats.beginPaint();
+        long startTime = GameMetrics.start();
+        super.paint(g);
+        GameMetrics.stop(GameMetrics.PAINT, startTime);
+        paintStats.endPaint(start);
+
+        DiagnosticsOverlay.paint(this, paintStats, g);
+    }
+
+    /**
+     * Counts the repaint request for the paint diagnostics. All variants of
+     * repaint end up here.
+     *
+     * @see javax.swing.JComponent#repaint(long, int, int, int, int)
+     */
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        if (paintStats != null) {
+            paintStats.repaintRequested();
+        }
+
+        super.repaint(tm, x, y, width, height);
     }
 
     /**
      * Paints all fields and tokens considering the current size of the panel.
+     * Only the fields intersecting the clip bounds are painted.
      *
      * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
      */
@@ -151,72 +578,80 @@ public abstract class BoardPanel extends AtomicaPanel {
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        int cols = gameSituation.getCols();
-        int rows = gameSituation.getRows();
-
-        int height = (int) ((this.getHeight() / rows) * SCALE);
-        int width = (int) ((this.getWidth() / cols) * SCALE);
+        updateLayout();
+        if (fieldWidth <= 0 || fieldHeight <= 0) {
+            return;
+        }
 
-        board.setBounds(10, 5, width * cols, height * rows);
+        Object event = FlightEvents.beginBoardPaint();
+        int cols = layoutCols;
+        int rows = layoutRows;
+
+        // restrict painting to the fields within the clip bounds
+        int minCol = 0;
+        int maxCol = cols - 1;
+        int minRow = 0;
+        int maxRow = rows - 1;
+        if (g.getClipBounds(clip) == null) {
+            clip.setBounds(0, 0, getWidth(), getHeight());
+        }
+        minCol = Math.max(0, (clip.x - BOARD_X + viewX) / fieldWidth);
+        maxCol = Math.min(cols - 1, (clip.x + clip.width - BOARD_X + viewX)
+                / fieldWidth);
+        minRow = Math.max(0, (clip.y - BOARD_Y + viewY) / fieldHeight);
+        maxRow = Math.min(rows - 1, (clip.y + clip.height - BOARD_Y + viewY)
+                / fieldHeight);
 
         Graphics2D g2 = (Graphics2D) g;
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                 RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
 
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
-                int x = (int) ((col * width) + board.getX());
-                int y = (int) ((row * height) + board.getY());
+        Image fieldImage = ImageLoader.getInstance().getFieldImage();
 
-                Field field = gameSituation.getField(col, row);
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                int cell = row * cols + col;
 
-                paintField(field, x, y, width, height, g2);
-                paintFieldHighLight(field, g2);
+                paintField(fieldImage, cell, g2);
+                paintFieldHighLight(cell, g2);
 
-                Token token = field.getToken();
-                if (token != null) {
-                    paintToken(field, token, g2);
+                byte code = snapshot.getCell(cell);
+                if (code != SituationSnapshot.EMPTY) {
+                    paintToken(cell, code, g2);
                 }
 
-                paintCursor(field, g2);
+                paintCursor(cell, g2);
             }
         }
+
+        FlightEvents.endBoardPaint(event, this, cols * rows);
     }
 
     /**
      * This method is called by paintComponent to allow a subclass painting a
      * cursor at the given field.
      *
-     * @param field the field where to paint a cursor image
-     * @param g2    the Graphics2D object
+     * @param cell the cell index of the field where to paint a cursor image
+     * @param g2   the Graphics2D object
      */
-    protected void paintCursor(Field field, Graphics2D g2) {
+    protected void paintCursor(int cell, Graphics2D g2) {
 
     }
 
     /**
-     * Paints a field at the given position (x,y,width,height). The image of the
-     * field is received by using the ImageLoader class.
+     * Paints the field with the given cell index. The image of the field is
+     * received by using the ImageLoader class.
      *
-     * @param field  the field which is about to be displayed
-     * @param x      the x position of the field on screen
-     * @param y      the y position of the field on screen
-     * @param width  the weight of the field on screen
-     * @param height the height of the field on screen
-     * @param g2     the Graphic2D object to paint to
-     */
-    private void paintField(Field field, int x, int y, int width, int height,
-                            Graphics2D g2) {
-        Rectangle rect = fieldsScreenBounds.get(field);
-        if (rect == null) {
-            rect = new Rectangle();
-            fieldsScreenBounds.put(field, rect);
-        }
-        rect.setBounds(x, y, width, height);
-
-        Image img = ImageLoader.getInstance().getFieldImage();
+     * @param img  the image of a field, might be null while not yet loaded
+     * @param cell the cell index of the field which is about to be displayed
+     * @param g2   the Graphic2D object to paint to
+     */
+    private void paintField(Image img, int cell, Graphics2D g2) {
         if (img != null) {
-            g2.drawImage(img, x, y, width, height, null);
+            g2.drawImage(img, getCellX(cell), getCellY(cell), fieldWidth,
+                    fieldHeight, null);
         }
     }
 
@@ -224,37 +659,72 @@ public abstract class BoardPanel extends AtomicaPanel {
      * This method is called by paintComponent to allow a subclass painting a
      * field highlight on the given field.
      *
-     * @param field the field where to paint a highlight
+     * @param cell the cell index of the field where to paint a highlight
+     * @param g2   the Graphic2D object to paint to
+     */
+    protected void paintFieldHighLight(int cell, Graphics2D g2) {
+
+    }
+
+    /**
+     * Fills the bounds of the field with the given cell index.
+     *
+     * @param cell  the cell index of the field
+     * @param paint the paint to fill the field with
      * @param g2    the Graphic2D object to paint to
      */
-    protected void paintFieldHighLight(Field field, Graphics2D g2) {
+    final protected void fillCell(int cell, Paint paint, Graphics2D g2) {
+        g2.setPaint(paint);
+        g2.fillRect(getCellX(cell), getCellY(cell), fieldWidth, fieldHeight);
+    }
 
+    /**
+     * Paints the image of the token with the given cell code at the screen
+     * position of the field with the given cell index.
+     *
+     * @param cell the cell index of the field where to paint the token
+     * @param code the cell code of the token to display
+     * @param g2   the Graphic2D object to paint to
+     */
+    protected void paintToken(int cell, byte code, Graphics2D g2) {
+        int colorIndex = SituationSnapshot.getCellColorIndex(code);
+        if (SituationSnapshot.isAtomCell(code)) {
+            paintTokenImage(ImageLoader.getInstance().getAtomImage(colorIndex),
+                    cell, g2);
+        } else if (SituationSnapshot.isIndicatorCell(code)) {
+            paintTokenImage(ImageLoader.getInstance().getIndicatorImage(
+                    colorIndex), cell, g2);
+        }
     }
 
     /**
-     * Paints the image of the given token at the screen position of the given
-     * field.
+     * Paints the image of the given token at the screen position of the field
+     * with the given cell index.
      *
-     * @param field the field where to paint the token
+     * @param cell  the cell index of the field where to paint the token
      * @param token the token to display
      * @param g2    the Graphic2D object to paint to
      */
-    protected void paintToken(Field field, Token token, Graphics2D g2) {
-        if (field == null || token == null)
+    final protected void paintToken(int cell, Token token, Graphics2D g2) {
+        if (token == null)
             return;
 
-        int x = (int) (getBounds(field).getX() + (int) ((getBounds(field)
-                .getWidth() * (1 - 0.65)) / 2));
-        int y = (int) (getBounds(field).getY() + (int) ((getBounds(field)
-                .getHeight() * (1 - 0.65)) / 2));
-        int width = (int) (getBounds(field).getWidth() * 0.65);
-        int height = (int) (getBounds(field).getHeight() * 0.65);
+        paintTokenImage(ImageLoader.getInstance().getTokenImage(token), cell,
+                g2);
+    }
 
-        Image img = ImageLoader.getInstance().getTokenImage(token);
+    /**
+     * Paints the given image in token size at the screen position of the field
+     * with the given cell index.
+     *
+     * @param img  the image to paint, might be null while not yet loaded
+     * @param cell the cell index of the field where to paint the image
+     * @param g2   the Graphic2D object to paint to
+     */
+    final protected void paintTokenImage(Image img, int cell, Graphics2D g2) {
         if (img != null) {
-            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g2.drawImage(img, x, y, width, height, null);
+            g2.drawImage(img, getCellX(cell) + tokenOffsetX, getCellY(cell)
+                    + tokenOffsetY, tokenWidth, tokenHeight, null);
         }
     }
 
@@ -272,11 +742,11 @@ public abstract class BoardPanel extends AtomicaPanel {
     }
 
     /**
-     * Releases the current cursorPostionField so that this field is not
+     * Releases the current cursor position so that no field is
      * highlighted after a repaint.
      */
     private void handleMouseExited() {
-        cursorPositionField = null;
+        cursorCell = -1;
         repaint();
     }
 
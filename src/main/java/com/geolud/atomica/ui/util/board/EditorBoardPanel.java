@@ -3,6 +3,7 @@ package com.geolud.atomica.ui.util.board;
 import com.geolud.atomica.logic.Editor;
 import com.geolud.atomica.logic.Editor.EditorMode;
 import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.SituationSnapshot;
 import com.geolud.atomica.objects.Token;
 import com.geolud.atomica.ui.util.ImageLoader;
 
@@ -18,6 +19,16 @@ import java.util.Observer;
  */
 @SuppressWarnings("serial")
 public class EditorBoardPanel extends BoardPanel implements Observer {
+    /**
+     * The color for highlighting the field of the token to move.
+     */
+    private static final Color SELECTION_COLOR = new Color(0, 255, 255, 100);
+
+    /**
+     * The color for highlighting the field at the mouse position.
+     */
+    private static final Color CURSOR_COLOR = new Color(0, 255, 0, 50);
+
     /**
      * The editor object as reference to the model holding the game situation.
      */
@@ -29,7 +40,7 @@ public class EditorBoardPanel extends BoardPanel implements Observer {
      * @param editor an editor object
      */
     public EditorBoardPanel(Editor editor) {
-        super(editor.getSituation());
+        super(editor.getSituation().createSnapshot());
         this.editor = editor;
         this.editor.addObserver(this);
     }
@@ -40,102 +51,82 @@ public class EditorBoardPanel extends BoardPanel implements Observer {
      * token which is about being moved or added will be painted. When the
      * editor is in DELETE mode a delete image will be shown on cursor position.
      *
-     * @see com.geolud.atomica.ui.util.board.BoardPanel#paintCursor(com.geolud.atomica.objects.Field,
+     * @see com.geolud.atomica.ui.util.board.BoardPanel#paintCursor(int,
      * java.awt.Graphics2D)
      */
     @Override
-    protected void paintCursor(Field field, Graphics2D g2) {
-        super.paintCursor(field, g2);
+    protected void paintCursor(int cell, Graphics2D g2) {
+        super.paintCursor(cell, g2);
 
-        if (cursorPositionField != field) {
+        if (cursorCell != cell) {
             return;
         }
 
+        boolean isEmpty = snapshot.getCell(cell) == SituationSnapshot.EMPTY;
+
         if (editor.getMode() == EditorMode.DELETE) {
-            paintDeleteCursor(field, g2);
+            paintTokenImage(ImageLoader.getInstance().getDeleteCursorImage(),
+                    cell, g2);
         } else if (editor.getMode() == EditorMode.ADD) {
-            if (field.getToken() == null) {
+            if (isEmpty) {
                 Token token2Add = editor.getToken2Add();
-                paintToken(field, token2Add, g2);
+                paintToken(cell, token2Add, g2);
             }
         } else if (editor.getMode() == EditorMode.MOVE) {
-            if (field.getToken() == null) {
+            if (isEmpty) {
                 Token token2Move = editor.getToken2Move();
-                paintToken(field, token2Move, g2);
+                paintToken(cell, token2Move, g2);
             }
         }
     }
 
-    /**
-     * Paints a delete cursor at the given field position.
-     *
-     * @param field the field where to paint the delete cursor
-     * @param g2    the Graphic2D object
-     */
-    private void paintDeleteCursor(Field field, Graphics2D g2) {
-        if (field == null) {
-            return;
-        }
-
-        Rectangle fieldBounds = getBounds(field);
-
-        int x = (int) (fieldBounds.getX() + (int) ((fieldBounds.getWidth() * (1 - 0.65)) / 2));
-        int y = (int) (fieldBounds.getY() + (int) ((fieldBounds.getHeight() * (1 - 0.65)) / 2));
-        int width = (int) (fieldBounds.getWidth() * 0.65);
-        int height = (int) (fieldBounds.getHeight() * 0.65);
-
-        Image img = ImageLoader.getInstance().getDeleteCursorImage();
-        if (img != null) {
-            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g2.drawImage(img, x, y, width, height, null);
-        }
-    }
-
     /**
      * Paints field highlights if a token on the board is selected to be moved.
      * A highlight will be painted on the field of the selected token as well as
      * on the field of the current mouse position.
      *
-     * @see com.geolud.atomica.ui.util.board.BoardPanel#paintFieldHighLight(com.geolud.atomica.objects.Field,
+     * @see com.geolud.atomica.ui.util.board.BoardPanel#paintFieldHighLight(int,
      * java.awt.Graphics2D)
      */
     @Override
-    protected void paintFieldHighLight(Field field, Graphics2D g2) {
-        super.paintFieldHighLight(field, g2);
-
-        Rectangle fieldBounds = getBounds(field);
+    protected void paintFieldHighLight(int cell, Graphics2D g2) {
+        super.paintFieldHighLight(cell, g2);
 
         // 1. paint a highlight on the field of the selected token
-        if (field.getToken() == editor.getToken2Move()
-                && field.getToken() != null) {
-            g2.setPaint(new Color(0, 255, 255, 100));
-            g2
-                    .fillRect((int) fieldBounds.getX(), (int) fieldBounds
-                                    .getY(), (int) fieldBounds.getWidth(),
-                            (int) fieldBounds.getHeight());
+        if (cell == getToken2MoveCell()) {
+            fillCell(cell, SELECTION_COLOR, g2);
         }
         // 2. paint a highlight on the field of the current mouse position
-        else if (cursorPositionField == field) {
-            g2.setPaint(new Color(0, 255, 0, 50));
-            g2
-                    .fillRect((int) fieldBounds.getX(), (int) fieldBounds
-                                    .getY(), (int) fieldBounds.getWidth(),
-                            (int) fieldBounds.getHeight());
+        else if (cursorCell == cell) {
+            fillCell(cell, CURSOR_COLOR, g2);
         }
     }
 
+    /**
+     * Returns the cell index of the token which is about being moved.
+     *
+     * @return the cell index, -1 if no token is about being moved
+     */
+    private int getToken2MoveCell() {
+        Token token2Move = editor.getToken2Move();
+        if (token2Move == null || token2Move.getField() == null) {
+            return -1;
+        }
+
+        Field field = token2Move.getField();
+        return getCellIndex(field.getCol(), field.getRow());
+    }
+
     /**
      * Due to observer pattern this method receives notification from the model
-     * (Editor). It takes the current game situation from the editor and
-     * repaints it.
+     * (Editor). It takes a snapshot of the current game situation from the
+     * editor and repaints it.
      *
      * @see java.util.Observer#update(java.util.Observable, java.lang.Object)
      */
     @Override
     public void update(Observable o, Object arg) {
-        this.gameSituation = editor.getSituation();
-        repaint();
+        setSnapshot(editor.getSituation().createSnapshot());
     }
 
     // /////////// CONTROLLER SECTION /////////////
@@ -158,15 +149,14 @@ public class EditorBoardPanel extends BoardPanel implements Observer {
     }
 
     /**
-     * Sets the current cursorPostionField so that this field is highlighted
+     * Sets the current cursor position so that this field is highlighted
      * after a repaint.
      *
      * @see com.geolud.atomica.ui.util.board.BoardPanel#handleMouseMoved(int, int)
      */
     @Override
     protected void handleMouseMoved(int x, int y) {
-        cursorPositionField = editor.getField(getColFromPixel(x),
-                getRowFromPixel(y));
+        cursorCell = getCellFromPixel(x, y);
         repaint();
     }
 
@@ -1,45 +1,91 @@
 package com.geolud.atomica.ui.util.board;
 
-import com.geolud.atomica.logic.Game;
+import com.geolud.atomica.logic.GameController;
+import com.geolud.atomica.logic.GameSnapshot;
 import com.geolud.atomica.logic.pathfinding.Path;
-import com.geolud.atomica.objects.AtomToken;
 import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.SituationSnapshot;
 
 import java.awt.*;
+import java.util.Observable;
+import java.util.Observer;
 
 /**
  * Displays the game board when playing a game. It allows user interaction by
  * moving atoms to an empty field and will also display the shortest path.
+ * <p/>
+ * <p>
+ * The game itself is changed by the GameController in the background. The
+ * panel only paints the published snapshots and sends the moves and path
+ * queries to the controller.
+ * </p>
  *
  * @author Georg Ludewig
  */
 @SuppressWarnings("serial")
-public class GameBoardPanel extends BoardPanel {
+public class GameBoardPanel extends BoardPanel implements Observer {
     /**
-     * The game object as reference to the model holding the game situation.
+     * The color for highlighting the field of the selected atom.
      */
-    private Game game = null;
+    private static final Color SELECTION_COLOR = new Color(0, 255, 255, 100);
 
     /**
-     * The token which is selected and about being moved.
+     * The color for highlighting the field at the mouse position.
      */
-    protected AtomToken token2Move = null;
+    private static final Color CURSOR_COLOR = new Color(0, 255, 0, 50);
+
+    /**
+     * The dashed stroke for painting the shortest path.
+     */
+    private static final BasicStroke PATH_STROKE = new BasicStroke(3.0f,
+            BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f,
+            new float[]{10.0f}, 0.0f);
+
+    /**
+     * The controller applying the moves on the game.
+     */
+    private GameController controller = null;
+
+    /**
+     * The latest snapshot of the game.
+     */
+    private GameSnapshot gameSnapshot = null;
+
+    /**
+     * The cell index of the atom which is selected and about being moved, -1
+     * if no atom is selected.
+     */
+    protected int token2MoveCell = -1;
+
+    /**
+     * The shortest path between the selected atom and the cursor position
+     * received from the controller.
+     */
+    private Path shortestPath = null;
+
+    /**
+     * Animates the moves on the board.
+     */
+    private BoardAnimator animator = null;
 
     // /////////// VIEW SECTION /////////////
 
     /**
-     * Creates a panel with the given game as model.
+     * Creates a panel with the given game controller as model.
      *
-     * @param game a game object
+     * @param controller the controller of a game
      */
-    public GameBoardPanel(Game game) {
-        super(game.getSituation());
-        this.game = game;
+    public GameBoardPanel(GameController controller) {
+        super(controller.getSnapshot().getSituation());
+        this.controller = controller;
+        this.gameSnapshot = controller.getSnapshot();
+        this.animator = new BoardAnimator(this);
+        this.controller.addObserver(this);
     }
 
     /*
      * (non-Javadoc)
-     * 
+     *
      * @see com.geolud.atomica.ui.util.board.BoardPanel#paintComponent(java.awt.Graphics)
      */
     @Override
@@ -48,6 +94,22 @@ public class GameBoardPanel extends BoardPanel {
 
         Graphics2D g2 = (Graphics2D) g;
         paintShortestPath(g2);
+        animator.paint(g2);
+    }
+
+    /**
+     * Skips the tokens which are currently painted by the animation.
+     *
+     * @see com.geolud.atomica.ui.util.board.BoardPanel#paintToken(int, byte,
+     * java.awt.Graphics2D)
+     */
+    @Override
+    protected void paintToken(int cell, byte code, Graphics2D g2) {
+        if (animator.isHidden(cell)) {
+            return;
+        }
+
+        super.paintToken(cell, code, g2);
     }
 
     /**
@@ -55,90 +117,108 @@ public class GameBoardPanel extends BoardPanel {
      * A highlight will be painted on the field of the selected token as well as
      * on the field of the current mouse position.
      *
-     * @see com.geolud.atomica.ui.util.board.BoardPanel#paintFieldHighLight(com.geolud.atomica.objects.Field,
+     * @see com.geolud.atomica.ui.util.board.BoardPanel#paintFieldHighLight(int,
      * java.awt.Graphics2D)
      */
     @Override
-    protected void paintFieldHighLight(Field field, Graphics2D g2) {
-        super.paintFieldHighLight(field, g2);
-
-        Rectangle fieldBounds = getBounds(field);
-
-        if (field.getToken() == token2Move && field.getToken() != null) {
-            g2.setPaint(new Color(0, 255, 255, 100));
-            g2
-                    .fillRect((int) fieldBounds.getX(), (int) fieldBounds
-                                    .getY(), (int) fieldBounds.getWidth(),
-                            (int) fieldBounds.getHeight());
-        } else if (cursorPositionField == field) {
-            g2.setPaint(new Color(0, 255, 0, 50));
-            g2
-                    .fillRect((int) fieldBounds.getX(), (int) fieldBounds
-                                    .getY(), (int) fieldBounds.getWidth(),
-                            (int) fieldBounds.getHeight());
+    protected void paintFieldHighLight(int cell, Graphics2D g2) {
+        super.paintFieldHighLight(cell, g2);
+
+        if (cell == token2MoveCell) {
+            fillCell(cell, SELECTION_COLOR, g2);
+        } else if (cursorCell == cell) {
+            fillCell(cell, CURSOR_COLOR, g2);
         }
     }
 
     /**
      * Paints the shortest path between the selected atom and the destination
-     * field.
+     * field. The path is only painted if it was received for the current
+     * selection and cursor position.
      *
      * @param g2 the Graphic2D object
      */
     void paintShortestPath(Graphics2D g2) {
-        if (token2Move == null)
+        if (token2MoveCell < 0 || cursorCell < 0
+                || cursorCell == token2MoveCell)
             return;
 
-        Field activeField = token2Move.getField();
-        if (activeField == null || cursorPositionField == null
-                || cursorPositionField == activeField)
+        Path path = shortestPath;
+        if (path == null || path.size() < 2) {
             return;
+        }
 
-        Path path = game.findShortestPath(activeField, cursorPositionField);
-        if (path == null || path.size() < 2) {
+        Field first = path.get(0);
+        Field last = path.get(path.size() - 1);
+        if (getCellIndex(first.getCol(), first.getRow()) != token2MoveCell
+                || getCellIndex(last.getCol(), last.getRow()) != cursorCell) {
             return;
         }
 
         g2.setColor(Color.BLACK);
-        float dash[] =
-                {10.0f};
-        BasicStroke stroke = new BasicStroke(3.0f, BasicStroke.CAP_BUTT,
-                BasicStroke.JOIN_MITER, 10.0f, dash, 0.0f);
-        g2.setStroke(stroke);
+        g2.setStroke(PATH_STROKE);
+
+        int cell1 = token2MoveCell;
+        for (int i = 1; i < path.size(); i++) {
+            Field field = path.get(i);
+            int cell2 = getCellIndex(field.getCol(), field.getRow());
 
-        for (int i = 0; i < path.size() - 1; i++) {
-            Field field1 = path.get(i);
-            Field field2 = path.get(i + 1);
+            g2.drawLine(getCellCenterX(cell1), getCellCenterY(cell1),
+                    getCellCenterX(cell2), getCellCenterY(cell2));
 
-            Rectangle bounds1 = getBounds(field1);
-            Rectangle bounds2 = getBounds(field2);
+            cell1 = cell2;
+        }
+    }
 
-            int x1 = (int) bounds1.getCenterX();
-            int y1 = (int) bounds1.getCenterY();
-            int x2 = (int) bounds2.getCenterX();
-            int y2 = (int) bounds2.getCenterY();
+    /**
+     * Due to observer pattern this method receives the snapshots and paths
+     * published by the controller on the event dispatch thread. A new snapshot
+     * is displayed and the move which led to it is animated.
+     *
+     * @see java.util.Observer#update(java.util.Observable, java.lang.Object)
+     */
+    @Override
+    public void update(Observable o, Object arg) {
+        if (arg instanceof GameSnapshot) {
+            gameSnapshot = (GameSnapshot) arg;
+            setSnapshot(gameSnapshot.getSituation());
 
-            g2.drawLine(x1, y1, x2, y2);
+            if (gameSnapshot.getMove() != null) {
+                animator.start(gameSnapshot.getMove());
+            }
+        } else if (arg instanceof Path) {
+            shortestPath = (Path) arg;
+            repaint();
         }
     }
 
     // /////////// CONTROLLER SECTION /////////////
 
     /**
-     * Sets the current cursorPostionField so that this field is highlighted
+     * Sets the current cursor position so that this field is highlighted
      * after a repaint. It also indicates the destination field when painting
-     * the shortest path. If the game is over this method wont set that field so
-     * it wont be highlighted.
+     * the shortest path, which is requested from the controller. If the game
+     * is over this method wont set that field so it wont be highlighted.
      *
      * @see com.geolud.atomica.ui.util.board.BoardPanel#handleMouseMoved(int, int)
      */
     @Override
     protected void handleMouseMoved(int x, int y) {
-        if (game.getIsGameOver())
+        if (gameSnapshot.getIsGameOver())
+            return;
+
+        int cell = getCellFromPixel(x, y);
+        if (cell == cursorCell) {
             return;
+        }
+        cursorCell = cell;
 
-        cursorPositionField = game.getField(getColFromPixel(x),
-                getRowFromPixel(y));
+        if (token2MoveCell >= 0 && cursorCell >= 0
+                && cursorCell != token2MoveCell) {
+            int cols = snapshot.getCols();
+            controller.queryPath(token2MoveCell % cols, token2MoveCell / cols,
+                    cursorCell % cols, cursorCell / cols);
+        }
 
         repaint();
     }
@@ -146,32 +226,42 @@ public class GameBoardPanel extends BoardPanel {
     /**
      * Releasing the mouse indicates that either a new atom was selected to
      * being moved or an already selected atom shall be placed on a destination
-     * field. According to that this method sets the new token or calls the
-     * model (Game) about moving the token.
+     * field. According to that this method sets the new selection or sends the
+     * move to the controller. The controller rejects a move while the previous
+     * one is still being processed.
      *
      * @see com.geolud.atomica.ui.util.board.BoardPanel#handleMouseReleased(int, int)
      */
     @Override
     protected void handleMouseReleased(int x, int y) {
-        if (game.getIsGameOver())
+        if (gameSnapshot.getIsGameOver())
             return;
 
+        // a new input completes a running animation
+        animator.finish();
+
         int col = getColFromPixel(x);
         int row = getRowFromPixel(y);
+        if (col < 0 || row < 0) {
+            return;
+        }
 
-        AtomToken atom = game.queryAtomToken(col, row);
+        int cell = getCellIndex(col, row);
 
         // if an atom on position (x,y) exists, it becomes active
-        if (atom != null) {
-            token2Move = atom;
-        } else if (token2Move != null) {
+        if (SituationSnapshot.isAtomCell(snapshot.getCell(cell))) {
+            token2MoveCell = cell;
+            shortestPath = null;
+            repaint();
+        } else if (token2MoveCell >= 0) {
             // no atom on position (x,y)
-            Field field = game.getField(col, row);
-            if (field != null) {
-                game.moveAtomToken(token2Move, field);
-            }
+            int cols = snapshot.getCols();
+            controller.moveAtom(token2MoveCell % cols, token2MoveCell / cols,
+                    col, row);
 
-            token2Move = null;
+            token2MoveCell = -1;
+            shortestPath = null;
+            repaint();
         }
 
     }
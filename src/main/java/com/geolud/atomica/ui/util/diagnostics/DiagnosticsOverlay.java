@@ -0,0 +1,275 @@
+package com.geolud.atomica.ui.util.diagnostics;
+
+import com.geolud.atomica.util.metrics.GameMetrics;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+
+/**
+ * Paints the paint diagnostics into the top right corner of a component. For
+ * every registered component it shows the repaint requests versus the actual
+ * paints, the frames per second and the average and maximum paint duration.
+ * Below follow the latency of the event dispatch thread and a histogram of the
+ * paint durations of the component the overlay is painted on.
+ * <p/>
+ * <p>
+ * The overlay is only painted on the event dispatch thread, so it reuses its
+ * buffers instead of allocating them for every paint.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class DiagnosticsOverlay {
+    /**
+     * The upper bounds of the histogram buckets in milliseconds. The last
+     * bucket collects all longer paints.
+     */
+    private static final int[] BUCKET_BOUNDS = {1, 2, 4, 8, 16, 33};
+
+    /**
+     * The labels of the histogram buckets.
+     */
+    private static final String[] BUCKET_LABELS = {"<1", "<2", "<4", "<8",
+            "<16", "<33", ">33"};
+
+    /**
+     * The width of the overlay in screen coordinates.
+     */
+    private static final int WIDTH = 280;
+
+    /**
+     * The height of a text line in screen coordinates.
+     */
+    private static final int LINE_HEIGHT = 13;
+
+    /**
+     * The height of the histogram in screen coordinates.
+     */
+    private static final int HISTOGRAM_HEIGHT = 40;
+
+    /**
+     * The background color of the overlay.
+     */
+    private static final Color BACKGROUND_COLOR = new Color(0, 0, 0, 170);
+
+    /**
+     * The color of the histogram bars.
+     */
+    private static final Color BAR_COLOR = new Color(0, 255, 0, 200);
+
+    /**
+     * The font of the overlay.
+     */
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+
+    /**
+     * The action name of the key binding toggling the diagnostics.
+     */
+    private static final String ACTION_TOGGLE = "toggleDiagnostics";
+
+    /**
+     * The action name of the key binding dumping the game metrics.
+     */
+    private static final String ACTION_DUMP_METRICS = "dumpGameMetrics";
+
+    /**
+     * Buffer for copying samples.
+     */
+    private static final long[] samples = new long[PaintStats.getCapacity()];
+
+    /**
+     * Buffer for counting the samples per histogram bucket.
+     */
+    private static final int[] buckets = new int[BUCKET_LABELS.length];
+
+    /**
+     * Reused for formatting the text lines.
+     */
+    private static final StringBuilder line = new StringBuilder();
+
+    /**
+     * No instances, only static access.
+     */
+    private DiagnosticsOverlay() {
+
+    }
+
+    /**
+     * Binds the key F12 of the window containing the given component to
+     * toggling the diagnostics and Shift+F12 to writing the game metrics into
+     * the log.
+     *
+     * @param component the component showing the overlay
+     */
+    public static void install(JComponent component) {
+        component.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+                KeyStroke.getKeyStroke(KeyEvent.VK_F12, 0), ACTION_TOGGLE);
+        component.getActionMap().put(ACTION_TOGGLE, new AbstractAction() {
+            private static final long serialVersionUID = 1L;
+
+            public void actionPerformed(ActionEvent e) {
+                PaintDiagnostics.toggle();
+            }
+        });
+        component.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+                KeyStroke.getKeyStroke(KeyEvent.VK_F12, KeyEvent.SHIFT_DOWN_MASK),
+                ACTION_DUMP_METRICS);
+        component.getActionMap().put(ACTION_DUMP_METRICS,
+                new AbstractAction() {
+                    private static final long serialVersionUID = 1L;
+
+                    public void actionPerformed(ActionEvent e) {
+                        GameMetrics.dump();
+                    }
+                });
+    }
+
+    /**
+     * Paints the overlay if the diagnostics are enabled.
+     *
+     * @param component the component to paint the overlay on
+     * @param stats     the paint statistics of that component
+     * @param g         the graphics object of that component
+     */
+    public static void paint(JComponent component, PaintStats stats,
+                             Graphics g) {
+        if (!PaintDiagnostics.isEnabled()) {
+            return;
+        }
+
+        ArrayList<PaintStats> allStats = PaintDiagnostics.getAllStats();
+        int lines = allStats.size() + 2;
+        int height = lines * LINE_HEIGHT + HISTOGRAM_HEIGHT + LINE_HEIGHT + 8;
+        int x = component.getWidth() - WIDTH - 4;
+        int y = 4;
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.setColor(BACKGROUND_COLOR);
+            g2.fillRect(x, y, WIDTH, height);
+            g2.setFont(FONT);
+            g2.setColor(Color.WHITE);
+
+            int textY = y + LINE_HEIGHT;
+            for (PaintStats s : allStats) {
+                g2.drawString(formatStats(s), x + 4, textY);
+                textY += LINE_HEIGHT;
+            }
+            g2.drawString(formatLatency(), x + 4, textY);
+            textY += LINE_HEIGHT;
+
+            line.setLength(0);
+            line.append("paint ms of ").append(stats.getName());
+            g2.drawString(line.toString(), x + 4, textY);
+
+            paintHistogram(stats, g2, x + 4, textY + 4, WIDTH - 8);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * Formats a line describing the given paint statistics.
+     *
+     * @param stats the paint statistics
+     * @return the formatted line
+     */
+    private static String formatStats(PaintStats stats) {
+        int count = stats.getDurations().copyLatest(samples);
+        long sum = 0;
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            sum += samples[i];
+            max = Math.max(max, samples[i]);
+        }
+
+        line.setLength(0);
+        line.append(stats.getName()).append(' ')
+                .append(stats.getRepaintRequests()).append('/')
+                .append(stats.getPaints()).append(' ')
+                .append(stats.getFramesPerSecond(samples)).append("fps ");
+        appendMillis(count == 0 ? 0 : sum / count);
+        line.append('/');
+        appendMillis(max);
+        line.append("ms");
+
+        return line.toString();
+    }
+
+    /**
+     * Formats a line describing the latency of the event dispatch thread.
+     *
+     * @return the formatted line
+     */
+    private static String formatLatency() {
+        int count = PaintDiagnostics.getEdtLatencies().copyLatest(samples);
+        long sum = 0;
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            sum += samples[i];
+            max = Math.max(max, samples[i]);
+        }
+
+        line.setLength(0);
+        line.append("EDT latency ");
+        appendMillis(count == 0 ? 0 : sum / count);
+        line.append('/');
+        appendMillis(max);
+        line.append("ms");
+
+        return line.toString();
+    }
+
+    /**
+     * Appends the given nanoseconds as milliseconds with one decimal place.
+     *
+     * @param nanos the nanoseconds to append
+     */
+    private static void appendMillis(long nanos) {
+        long tenths = nanos / 100000;
+        line.append(tenths / 10).append('.').append(tenths % 10);
+    }
+
+    /**
+     * Paints a histogram of the paint durations of the given statistics.
+     *
+     * @param stats the paint statistics
+     * @param g2    the graphics object to paint to
+     * @param x     the left position of the histogram
+     * @param y     the top position of the histogram
+     * @param width the width of the histogram
+     */
+    private static void paintHistogram(PaintStats stats, Graphics2D g2, int x,
+                                       int y, int width) {
+        int count = stats.getDurations().copyLatest(samples);
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            long millis = samples[i] / 1000000;
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS.length
+                    && millis >= BUCKET_BOUNDS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket]++;
+        }
+
+        int barWidth = width / buckets.length;
+        for (int i = 0; i < buckets.length; i++) {
+            int barHeight = count == 0 ? 0 : buckets[i] * HISTOGRAM_HEIGHT
+                    / count;
+            int barX = x + i * barWidth;
+
+            g2.setColor(BAR_COLOR);
+            g2.fillRect(barX + 1, y + HISTOGRAM_HEIGHT - barHeight,
+                    barWidth - 2, barHeight);
+            g2.setColor(Color.WHITE);
+            g2.drawString(BUCKET_LABELS[i], barX + 2, y + HISTOGRAM_HEIGHT
+                    + LINE_HEIGHT - 2);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.geolud.atomica.ui.util.diagnostics;
+
+import com.geolud.atomica.util.logging.Logging;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.logging.Level;
+
+/**
+ * Central switch and registry of the paint diagnostics. The diagnostics are
+ * disabled by default and can be enabled at startup by the system property
+ * <code>atomica.diagnostics=true</code> or at runtime by
+ * {@link #toggle()}, which is bound to the key F12.
+ * <p/>
+ * <p>
+ * While enabled, the paint statistics of the registered components are
+ * recorded and the latency of the event dispatch thread is measured by a
+ * background thread posting a probe to the event queue every
+ * {@link #PROBE_INTERVAL} milliseconds. All windows are repainted once a
+ * second, so the overlay stays up to date when nothing else changes.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class PaintDiagnostics {
+    /**
+     * The system property for enabling the diagnostics at startup.
+     */
+    public static final String PROPERTY_ENABLED = "atomica.diagnostics";
+
+    /**
+     * The interval of the event dispatch thread latency probes in
+     * milliseconds.
+     */
+    public static final int PROBE_INTERVAL = 100;
+
+    /**
+     * Indicates if the diagnostics are enabled.
+     */
+    private static volatile boolean enabled = Boolean
+            .getBoolean(PROPERTY_ENABLED);
+
+    /**
+     * All paint statistics, one per component name.
+     */
+    private static final ArrayList<PaintStats> stats = new ArrayList<PaintStats>();
+
+    /**
+     * The latency of the latest event dispatch thread probes in nanoseconds.
+     */
+    private static final SampleRing edtLatencies = new SampleRing(64);
+
+    /**
+     * The thread posting the latency probes, null while disabled.
+     */
+    private static Thread probeThread = null;
+
+    /**
+     * Repaints all windows once a second while enabled.
+     */
+    private static final Timer refreshTimer = new Timer(1000,
+            new ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    repaintWindows();
+                }
+            });
+
+    static {
+        if (enabled) {
+            startProbe();
+        }
+    }
+
+    /**
+     * No instances, only static access.
+     */
+    private PaintDiagnostics() {
+
+    }
+
+    /**
+     * Indicates if the diagnostics are enabled.
+     *
+     * @return true if the diagnostics are enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the diagnostics. Enabling discards all previous
+     * measurements. All windows get repainted for showing or hiding the
+     * overlay.
+     *
+     * @param enable true for enabling the diagnostics
+     */
+    public static synchronized void setEnabled(boolean enable) {
+        if (enable == enabled) {
+            return;
+        }
+
+        if (enable) {
+            for (PaintStats s : getAllStats()) {
+                s.reset();
+            }
+            edtLatencies.clear();
+            enabled = true;
+            startProbe();
+        } else {
+            enabled = false;
+            refreshTimer.stop();
+            probeThread.interrupt();
+            probeThread = null;
+        }
+
+        Logging.getLogger().log(Level.INFO,
+                "Paint diagnostics " + (enable ? "enabled" : "disabled"));
+
+        repaintWindows();
+    }
+
+    /**
+     * Switches the diagnostics on or off.
+     */
+    public static void toggle() {
+        setEnabled(!enabled);
+    }
+
+    /**
+     * Returns the paint statistics for the component with the given name.
+     * The statistics are created on the first call.
+     *
+     * @param name the name of the component
+     * @return the paint statistics of the component
+     */
+    public static PaintStats getStats(String name) {
+        synchronized (stats) {
+            for (PaintStats s : stats) {
+                if (s.getName().equals(name)) {
+                    return s;
+                }
+            }
+
+            PaintStats s = new PaintStats(name);
+            stats.add(s);
+            return s;
+        }
+    }
+
+    /**
+     * Returns all paint statistics.
+     *
+     * @return a copy of the list of all paint statistics
+     */
+    public static ArrayList<PaintStats> getAllStats() {
+        synchronized (stats) {
+            return new ArrayList<PaintStats>(stats);
+        }
+    }
+
+    /**
+     * Returns the latency of the latest event dispatch thread probes in
+     * nanoseconds.
+     *
+     * @return the ring buffer of the latencies
+     */
+    public static SampleRing getEdtLatencies() {
+        return edtLatencies;
+    }
+
+    /**
+     * Repaints all windows.
+     */
+    private static void repaintWindows() {
+        for (Window window : Window.getWindows()) {
+            window.repaint();
+        }
+    }
+
+    /**
+     * Starts the thread posting the latency probes and the refresh timer.
+     */
+    private static void startProbe() {
+        refreshTimer.start();
+        probeThread = new Thread(new Runnable() {
+            public void run() {
+                while (enabled && !Thread.currentThread().isInterrupted()) {
+                    final long posted = System.nanoTime();
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            edtLatencies.add(System.nanoTime() - posted);
+                        }
+                    });
+
+                    try {
+                        Thread.sleep(PROBE_INTERVAL);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "AtomicaEdtProbe");
+        probeThread.setDaemon(true);
+        probeThread.start();
+    }
+}
@@ -0,0 +1,162 @@
+package com.geolud.atomica.ui.util.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Paint statistics of a single component. It counts the repaint requests as
+ * well as the actual paints and records the duration and start time of each
+ * paint. Measuring only takes place while the diagnostics are enabled. All
+ * components of the same kind share one instance, so a component being
+ * replaced by a new one continues its statistics.
+ *
+ * @author Georg Ludewig
+ */
+public class PaintStats {
+    /**
+     * The number of paints to keep samples for.
+     */
+    private static final int CAPACITY = 256;
+
+    /**
+     * The name of the measured component as displayed in the overlay.
+     */
+    private final String name;
+
+    /**
+     * The duration of the latest paints in nanoseconds.
+     */
+    private final SampleRing durations = new SampleRing(CAPACITY);
+
+    /**
+     * The start time of the latest paints in nanoseconds.
+     */
+    private final SampleRing startTimes = new SampleRing(CAPACITY);
+
+    /**
+     * The number of repaint requests. Repaints may be requested by any thread.
+     */
+    private final AtomicLong repaintRequests = new AtomicLong();
+
+    /**
+     * The number of actual paints.
+     */
+    private final AtomicLong paints = new AtomicLong();
+
+    /**
+     * Creates the statistics for the component with the given name. Use
+     * {@link PaintDiagnostics#getStats(String)} for receiving an instance.
+     *
+     * @param name the name of the measured component
+     */
+    PaintStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the measured component.
+     *
+     * @return the name of the measured component
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Counts a repaint request.
+     */
+    public void repaintRequested() {
+        if (PaintDiagnostics.isEnabled()) {
+            repaintRequests.incrementAndGet();
+        }
+    }
+
+    /**
+     * Has to be called before painting.
+     *
+     * @return the start time to pass to {@link #endPaint(long)}, 0 if the
+     * diagnostics are disabled
+     */
+    public long beginPaint() {
+        return PaintDiagnostics.isEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Has to be called after painting. Records the duration of the paint.
+     *
+     * @param startTime the value returned by {@link #beginPaint()}
+     */
+    public void endPaint(long startTime) {
+        if (startTime == 0) {
+            return;
+        }
+
+        durations.add(System.nanoTime() - startTime);
+        startTimes.add(startTime);
+        paints.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of repaint requests since the diagnostics were
+     * enabled.
+     *
+     * @return the number of repaint requests
+     */
+    public long getRepaintRequests() {
+        return repaintRequests.get();
+    }
+
+    /**
+     * Returns the number of actual paints since the diagnostics were enabled.
+     *
+     * @return the number of paints
+     */
+    public long getPaints() {
+        return paints.get();
+    }
+
+    /**
+     * Returns the durations of the latest paints in nanoseconds.
+     *
+     * @return the ring buffer of the durations
+     */
+    public SampleRing getDurations() {
+        return durations;
+    }
+
+    /**
+     * Returns the number of paints started within the last second.
+     *
+     * @param buffer a buffer for copying the start times, should have a length
+     *               of at least {@link #getCapacity()}
+     * @return the frames per second
+     */
+    public int getFramesPerSecond(long[] buffer) {
+        long since = System.nanoTime() - 1000000000L;
+        int count = startTimes.copyLatest(buffer);
+        int frames = 0;
+        while (frames < count && buffer[frames] - since > 0) {
+            frames++;
+        }
+
+        return frames;
+    }
+
+    /**
+     * Returns the number of paints samples are kept for.
+     *
+     * @return the number of samples
+     */
+    public static int getCapacity() {
+        return CAPACITY;
+    }
+
+    /**
+     * Discards all measurements.
+     */
+    void reset() {
+        durations.clear();
+        startTimes.clear();
+        repaintRequests.set(0);
+        paints.set(0);
+    }
+}
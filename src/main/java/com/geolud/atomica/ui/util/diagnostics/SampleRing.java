@@ -0,0 +1,99 @@
+package com.geolud.atomica.ui.util.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free ring buffer holding the latest samples of a measurement. Samples
+ * can be added by any thread without blocking, older samples get overwritten.
+ * <p/>
+ * <p>
+ * Reading is not synchronized with writing, so a sample being overwritten
+ * while copying may already belong to a newer round. This is acceptable for
+ * displaying statistics.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class SampleRing {
+    /**
+     * The samples, indexed by the write position masked with the capacity.
+     */
+    private final AtomicLongArray samples;
+
+    /**
+     * The total number of samples ever added. Determines the next write
+     * position.
+     */
+    private final AtomicLong written = new AtomicLong();
+
+    /**
+     * The capacity minus one, used for masking the write position.
+     */
+    private final int mask;
+
+    /**
+     * Creates a ring buffer holding the given number of samples.
+     *
+     * @param capacity the number of samples to hold, must be a power of two
+     */
+    public SampleRing(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+
+        this.samples = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Adds a sample, overwriting the oldest one if the buffer is full.
+     *
+     * @param sample the sample to add
+     */
+    public void add(long sample) {
+        long index = written.getAndIncrement();
+        samples.set((int) (index & mask), sample);
+    }
+
+    /**
+     * Returns the number of samples the buffer can hold.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the total number of samples ever added.
+     *
+     * @return the total number of samples
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * Copies the latest samples into the given array, the newest one first.
+     *
+     * @param target the array to copy to
+     * @return the number of copied samples
+     */
+    public int copyLatest(long[] target) {
+        long end = written.get();
+        int count = (int) Math.min(end, Math.min(target.length, mask + 1));
+        for (int i = 0; i < count; i++) {
+            target[i] = samples.get((int) ((end - 1 - i) & mask));
+        }
+
+        return count;
+    }
+
+    /**
+     * Discards all samples.
+     */
+    public void clear() {
+        written.set(0);
+    }
+}
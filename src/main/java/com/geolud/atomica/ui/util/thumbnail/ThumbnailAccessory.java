@@ -0,0 +1,101 @@
+package com.geolud.atomica.ui.util.thumbnail;
+
+import com.geolud.atomica.logic.GameSituationSerializer;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+
+/**
+ * Accessory of a JFileChooser previewing the selected saved game situation.
+ * The thumbnails of all saved game situations of the displayed directory are
+ * requested in the background as soon as the directory is entered.
+ *
+ * @author Georg Ludewig
+ */
+@SuppressWarnings("serial")
+public class ThumbnailAccessory extends JComponent implements
+        PropertyChangeListener {
+    /**
+     * The space around the thumbnail in pixels.
+     */
+    private static final int MARGIN = 5;
+
+    /**
+     * The file currently selected, null if none.
+     */
+    private File selectedFile = null;
+
+    /**
+     * Creates the accessory and registers it at the given file chooser.
+     *
+     * @param fc the file chooser
+     */
+    public ThumbnailAccessory(JFileChooser fc) {
+        setPreferredSize(new Dimension(ThumbnailCache.THUMBNAIL_SIZE + 2
+                * MARGIN, ThumbnailCache.THUMBNAIL_SIZE + 2 * MARGIN));
+        fc.addPropertyChangeListener(this);
+        prefetch(fc.getCurrentDirectory());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+     */
+    public void propertyChange(PropertyChangeEvent e) {
+        String property = e.getPropertyName();
+        if (JFileChooser.DIRECTORY_CHANGED_PROPERTY.equals(property)) {
+            ThumbnailCache.getInstance().cancelPending();
+            selectedFile = null;
+            prefetch((File) e.getNewValue());
+            repaint();
+        } else if (JFileChooser.SELECTED_FILE_CHANGED_PROPERTY
+                .equals(property)) {
+            selectedFile = (File) e.getNewValue();
+            if (selectedFile != null) {
+                ThumbnailCache.getInstance().request(selectedFile,
+                        new Runnable() {
+                            public void run() {
+                                repaint();
+                            }
+                        });
+            }
+            repaint();
+        }
+    }
+
+    /**
+     * Requests the thumbnails of the given directory.
+     *
+     * @param dir the directory, may be null
+     */
+    private void prefetch(File dir) {
+        if (dir != null) {
+            ThumbnailCache.getInstance().prefetch(dir,
+                    GameSituationSerializer.ATOMICA_FILEEXTENSION);
+        }
+    }
+
+    /**
+     * Paints the thumbnail of the selected file centered, if it is available.
+     *
+     * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (selectedFile == null) {
+            return;
+        }
+
+        BufferedImage thumbnail = ThumbnailCache.getInstance().getCached(
+                selectedFile);
+        if (thumbnail != null) {
+            g.drawImage(thumbnail, (getWidth() - thumbnail.getWidth()) / 2,
+                    (getHeight() - thumbnail.getHeight()) / 2, null);
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package com.geolud.atomica.ui.util.thumbnail;
+
+import com.geolud.atomica.logic.GameSituationSerializer;
+import com.geolud.atomica.objects.SituationSnapshot;
+import com.geolud.atomica.util.hash.FnvHash;
+import com.geolud.atomica.util.logging.Logging;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Provides thumbnails of saved game situations. A thumbnail is identified by
+ * the path, the modification time and the size of its file, so a changed file
+ * gets a new thumbnail.
+ * <p/>
+ * <p>
+ * Thumbnails are kept in memory for the most recently used files and are
+ * stored as PNG images in a cache directory, which is
+ * <code>~/.atomica/thumbnails</code> unless another directory is given by the
+ * system property <code>atomica.thumbnail.dir</code>. Missing thumbnails are
+ * rendered in parallel by a small pool of background threads, so browsing
+ * large directories never blocks the gui.
+ * </p>
+ * <p>
+ * The image of a file is named by the hash of its path, so the thumbnail of
+ * a changed file replaces the previous one. The whole key is stored in a text
+ * chunk of the image and compared when reading it, so neither an outdated
+ * thumbnail nor the one of another file with the same hash is displayed. The
+ * least recently used images are deleted when there are more than
+ * {@link #DISK_ENTRIES}.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class ThumbnailCache {
+    /**
+     * The system property for the directory of the cached thumbnails.
+     */
+    public static final String PROPERTY_THUMBNAIL_DIR = "atomica.thumbnail.dir";
+
+    /**
+     * The maximum width and height of a thumbnail in pixels.
+     */
+    public static final int THUMBNAIL_SIZE = 160;
+
+    /**
+     * The maximum number of thumbnails kept in memory.
+     */
+    private static final int MEMORY_ENTRIES = 128;
+
+    /**
+     * The maximum number of thumbnails kept in the cache directory.
+     */
+    private static final int DISK_ENTRIES = 1024;
+
+    /**
+     * The number of stored thumbnails after which the cache directory is
+     * checked for its size.
+     */
+    private static final int PRUNE_INTERVAL = 64;
+
+    /**
+     * The keyword of the PNG text chunk holding the key of a thumbnail.
+     */
+    private static final String KEY_KEYWORD = "AtomicaThumbnailKey";
+
+    /**
+     * The name of the native PNG metadata format of ImageIO.
+     */
+    private static final String PNG_METADATA_FORMAT = "javax_imageio_png_1.0";
+
+    /**
+     * The single instance.
+     */
+    private static ThumbnailCache instance = null;
+
+    /**
+     * Returns the single instance of the cache.
+     *
+     * @return the thumbnail cache
+     */
+    public static synchronized ThumbnailCache getInstance() {
+        if (instance == null) {
+            instance = new ThumbnailCache();
+        }
+
+        return instance;
+    }
+
+    /**
+     * The directory of the cached thumbnails.
+     */
+    private final File cacheDir;
+
+    /**
+     * The most recently used thumbnails by their keys.
+     */
+    private final Map<String, BufferedImage> memory = new LinkedHashMap<String, BufferedImage>(
+            16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+            return size() > MEMORY_ENTRIES;
+        }
+    };
+
+    /**
+     * The keys of the thumbnails which are requested but not yet available.
+     */
+    private final ConcurrentHashMap<String, Boolean> pending = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * The threads rendering the thumbnails.
+     */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * The number of thumbnails stored since the cache directory was checked
+     * for its size.
+     */
+    private final AtomicInteger storedCount = new AtomicInteger();
+
+    /**
+     * Creates the cache.
+     */
+    private ThumbnailCache() {
+        String dir = System.getProperty(PROPERTY_THUMBNAIL_DIR);
+        if (dir == null) {
+            cacheDir = new File(new File(System.getProperty("user.home"),
+                    ".atomica"), "thumbnails");
+        } else {
+            cacheDir = new File(dir);
+        }
+
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime()
+                .availableProcessors() - 1));
+        workers = new ThreadPoolExecutor(threads, threads, 5,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "AtomicaThumbnails");
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the thumbnail of the given file if it is in memory. Never
+     * blocks.
+     *
+     * @param file the file of a saved game situation
+     * @return the thumbnail, null if it is not in memory
+     */
+    public BufferedImage getCached(File file) {
+        synchronized (memory) {
+            return memory.get(getKey(file));
+        }
+    }
+
+    /**
+     * Requests the thumbnail of the given file. If it is not in memory, it is
+     * read from the cache directory or rendered in the background. The given
+     * task is run on the event dispatch thread when the thumbnail is in
+     * memory, but not if it can't be created.
+     *
+     * @param file      the file of a saved game situation
+     * @param whenReady the task to run when the thumbnail is available, may
+     *                  be null
+     */
+    public void request(final File file, final Runnable whenReady) {
+        final String key = getKey(file);
+        synchronized (memory) {
+            if (memory.containsKey(key)) {
+                if (whenReady != null) {
+                    SwingUtilities.invokeLater(whenReady);
+                }
+                return;
+            }
+        }
+
+        if (pending.putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+
+        workers.execute(new Runnable() {
+            public void run() {
+                try {
+                    BufferedImage thumbnail = loadOrRender(file, key);
+                    synchronized (memory) {
+                        memory.put(key, thumbnail);
+                    }
+                    if (whenReady != null) {
+                        SwingUtilities.invokeLater(whenReady);
+                    }
+                } catch (Exception e) {
+                    Logging.getLogger().log(Level.INFO,
+                            "No thumbnail for " + file + ": " + e.getMessage());
+                } finally {
+                    pending.remove(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Requests the thumbnails of all files in the given directory with the
+     * given extension in the background, so they are ready when the user
+     * selects one of them. The directory is listed by a worker.
+     *
+     * @param dir       the directory
+     * @param extension the file extension of saved game situations
+     */
+    public void prefetch(final File dir, final String extension) {
+        workers.execute(new Runnable() {
+            public void run() {
+                File[] files = dir.listFiles();
+                if (files == null) {
+                    return;
+                }
+                for (File file : files) {
+                    if (file.isFile()
+                            && file.getName().endsWith("." + extension)) {
+                        request(file, null);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Discards all requests which are not yet being processed, for example
+     * because another directory is displayed.
+     */
+    public void cancelPending() {
+        workers.getQueue().clear();
+        pending.clear();
+    }
+
+    /**
+     * Reads the thumbnail of a file from the cache directory. If it is
+     * missing or belongs to another key, it is rendered and stored there.
+     * Called by the workers only.
+     *
+     * @param file the file of a saved game situation
+     * @param key  the key of the thumbnail
+     * @return the thumbnail
+     * @throws IOException if the file can't be read
+     */
+    private BufferedImage loadOrRender(File file, String key)
+            throws IOException {
+        File cacheFile = new File(cacheDir, Long.toHexString(hash(file
+                .getAbsolutePath())) + ".png");
+        if (cacheFile.exists()) {
+            BufferedImage thumbnail = read(cacheFile, key);
+            if (thumbnail != null) {
+                // the modification time orders the images for pruning
+                cacheFile.setLastModified(System.currentTimeMillis());
+                return thumbnail;
+            }
+        }
+
+        SituationSnapshot snapshot = new GameSituationSerializer()
+                .loadSnapshot(file.getAbsolutePath());
+        BufferedImage thumbnail = new ThumbnailRenderer().render(snapshot,
+                THUMBNAIL_SIZE);
+
+        try {
+            if (cacheDir.exists() || cacheDir.mkdirs()) {
+                File temp = new File(cacheDir, cacheFile.getName() + "."
+                        + Thread.currentThread().getId());
+                write(thumbnail, key, temp);
+                if (cacheFile.exists() && !cacheFile.delete()) {
+                    Logging.getLogger().log(Level.WARNING,
+                            "Could not delete " + cacheFile);
+                }
+                if (!temp.renameTo(cacheFile) && !temp.delete()) {
+                    Logging.getLogger().log(Level.WARNING,
+                            "Could not delete " + temp);
+                }
+                if (storedCount.incrementAndGet() % PRUNE_INTERVAL == 1) {
+                    prune();
+                }
+            }
+        } catch (IOException e) {
+            Logging.getLogger().log(Level.WARNING,
+                    "Could not store thumbnail of " + file, e);
+        }
+
+        return thumbnail;
+    }
+
+    /**
+     * Reads a cached thumbnail if it was stored for the given key.
+     *
+     * @param cacheFile the image file
+     * @param key       the expected key of the thumbnail
+     * @return the thumbnail, null if it was stored for another key or can't
+     * be decoded
+     * @throws IOException if the file can't be read
+     */
+    private static BufferedImage read(File cacheFile, String key)
+            throws IOException {
+        ImageInputStream in = ImageIO.createImageInputStream(cacheFile);
+        if (in == null) {
+            return null;
+        }
+
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true);
+                if (!key.equals(getStoredKey(reader.getImageMetadata(0)))) {
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the key stored in the text chunk of a PNG image.
+     *
+     * @param metadata the metadata of the image
+     * @return the stored key, null if there is none
+     */
+    private static String getStoredKey(IIOMetadata metadata) {
+        if (metadata == null) {
+            return null;
+        }
+
+        Node root = metadata.getAsTree(PNG_METADATA_FORMAT);
+        for (Node chunk = root.getFirstChild(); chunk != null; chunk = chunk
+                .getNextSibling()) {
+            if (!"iTXt".equals(chunk.getNodeName())) {
+                continue;
+            }
+            for (Node entry = chunk.getFirstChild(); entry != null; entry = entry
+                    .getNextSibling()) {
+                IIOMetadataNode node = (IIOMetadataNode) entry;
+                if (KEY_KEYWORD.equals(node.getAttribute("keyword"))) {
+                    return node.getAttribute("text");
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes a thumbnail as PNG image, storing its key in a text chunk.
+     *
+     * @param thumbnail the thumbnail
+     * @param key       the key of the thumbnail
+     * @param file      the image file
+     * @throws IOException if the file can't be written
+     */
+    private static void write(BufferedImage thumbnail, String key, File file)
+            throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        IIOMetadata metadata = writer.getDefaultImageMetadata(
+                ImageTypeSpecifier.createFromRenderedImage(thumbnail), param);
+
+        // the key is written as UTF-8, since paths are not restricted to
+        // latin-1
+        IIOMetadataNode entry = new IIOMetadataNode("iTXtEntry");
+        entry.setAttribute("keyword", KEY_KEYWORD);
+        entry.setAttribute("compressionFlag", "FALSE");
+        entry.setAttribute("compressionMethod", "0");
+        entry.setAttribute("languageTag", "");
+        entry.setAttribute("translatedKeyword", "");
+        entry.setAttribute("text", key);
+        IIOMetadataNode chunk = new IIOMetadataNode("iTXt");
+        chunk.appendChild(entry);
+        IIOMetadataNode root = new IIOMetadataNode(PNG_METADATA_FORMAT);
+        root.appendChild(chunk);
+        metadata.mergeTree(PNG_METADATA_FORMAT, root);
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not delete " + file);
+        }
+        ImageOutputStream out = ImageIO.createImageOutputStream(file);
+        if (out == null) {
+            throw new IOException("Could not create " + file);
+        }
+        try {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(thumbnail, null, metadata), param);
+        } finally {
+            writer.dispose();
+            out.close();
+        }
+    }
+
+    /**
+     * Deletes the least recently used images while there are more than
+     * {@link #DISK_ENTRIES} in the cache directory. Called by the workers
+     * only.
+     */
+    private void prune() {
+        File[] files = cacheDir.listFiles();
+        if (files == null || files.length <= DISK_ENTRIES) {
+            return;
+        }
+
+        final long[] times = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            times[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return times[a] < times[b] ? -1 : times[a] > times[b] ? 1 : 0;
+            }
+        });
+
+        for (int i = 0; i < files.length - DISK_ENTRIES; i++) {
+            File file = files[order[i]];
+            if (!file.delete()) {
+                Logging.getLogger().log(Level.WARNING,
+                        "Could not delete " + file);
+            }
+        }
+    }
+
+    /**
+     * Returns the key of the thumbnail of the given file, consisting of its
+     * path, modification time and size.
+     *
+     * @param file the file
+     * @return the key of the thumbnail
+     */
+    private static String getKey(File file) {
+        return file.getAbsolutePath() + '|' + file.lastModified() + '|'
+                + file.length();
+    }
+
+    /**
+     * Computes the 64 bit FNV-1a hash of the given path, used as name of the
+     * cached image.
+     *
+     * @param path the path of a saved game situation
+     * @return the hash of the path
+     */
+    private static long hash(String path) {
+        return FnvHash.add(FnvHash.OFFSET_BASIS, path);
+    }
+}
@@ -0,0 +1,79 @@
+package com.geolud.atomica.ui.util.thumbnail;
+
+import com.geolud.atomica.objects.SituationSnapshot;
+import com.geolud.atomica.ui.util.ImageLoader;
+import com.geolud.atomica.ui.util.board.BoardPanel;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Renders a snapshot of a game situation into a small image by the same paint
+ * logic as the BoardPanel. It needs no display, so thumbnails can be rendered
+ * by background threads: each renderer is a board which is never shown and
+ * only accessed by the thread using it.
+ *
+ * @author Georg Ludewig
+ */
+@SuppressWarnings("serial")
+public class ThumbnailRenderer extends BoardPanel {
+
+    /**
+     * Creates a renderer.
+     */
+    public ThumbnailRenderer() {
+        super(new SituationSnapshot(1, 1, new byte[1], 0, 1));
+    }
+
+    /**
+     * Renders the given snapshot into an image which fits into a square of
+     * the given size and keeps the proportions of the board. Blocks until the
+     * images of the tokens are available.
+     *
+     * @param snapshot the snapshot to render
+     * @param size     the maximum width and height of the image in pixels
+     * @return the rendered image
+     */
+    public BufferedImage render(SituationSnapshot snapshot, int size) {
+        ImageLoader.getInstance().awaitLoaded();
+
+        int cols = snapshot.getCols();
+        int rows = snapshot.getRows();
+        int width = cols >= rows ? size : Math.max(1, size * cols / rows);
+        int height = rows >= cols ? size : Math.max(1, size * rows / cols);
+
+        this.snapshot = snapshot;
+        setSize(width, height);
+        updateLayout();
+
+        // crop the margin around the board
+        int last = getCellCount() - 1;
+        int x = getCellX(0);
+        int y = getCellY(0);
+        int imageWidth = Math.max(1, getCellX(last) + getCellWidth(last) - x);
+        int imageHeight = Math.max(1, getCellY(last) + getCellHeight(last) - y);
+
+        BufferedImage image = new BufferedImage(imageWidth, imageHeight,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        try {
+            g2.translate(-x, -y);
+            g2.setClip(x, y, imageWidth, imageHeight);
+            paintComponent(g2);
+        } finally {
+            g2.dispose();
+        }
+
+        return image;
+    }
+
+    /**
+     * A thumbnail always shows the whole board within the requested size.
+     *
+     * @return false
+     */
+    @Override
+    protected boolean isScrollable() {
+        return false;
+    }
+}
@@ -0,0 +1,45 @@
+package com.geolud.atomica.util.flightrecorder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of painting a board on the event dispatch thread.
+ *
+ * @author Georg Ludewig
+ */
+@Name("com.geolud.atomica.BoardPaint")
+@Label("Board Paint")
+@Description("Painting the fields and tokens of a board")
+@Category({"Atomica", "GUI"})
+@Enabled(false)
+@StackTrace(false)
+class BoardPaintEvent extends jdk.jfr.Event {
+    /**
+     * The class of the painted board.
+     */
+    @Label("Board")
+    String board;
+
+    /**
+     * The number of fields of the board.
+     */
+    @Label("Board Size")
+    int boardSize;
+
+    /**
+     * The width of the board in pixels.
+     */
+    @Label("Width")
+    int width;
+
+    /**
+     * The height of the board in pixels.
+     */
+    @Label("Height")
+    int height;
+}
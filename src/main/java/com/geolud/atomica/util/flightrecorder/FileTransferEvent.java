@@ -0,0 +1,41 @@
+package com.geolud.atomica.util.flightrecorder;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of loading or saving a game situation.
+ *
+ * @author Georg Ludewig
+ */
+@Name("com.geolud.atomica.FileTransfer")
+@Label("Game File Transfer")
+@Description("Loading or saving a game situation")
+@Category({"Atomica", "Files"})
+@Enabled(false)
+@StackTrace(false)
+class FileTransferEvent extends jdk.jfr.Event {
+    /**
+     * The path of the file.
+     */
+    @Label("Path")
+    String path;
+
+    /**
+     * True if the file was written, false if it was read.
+     */
+    @Label("Save")
+    boolean save;
+
+    /**
+     * The number of bytes transferred.
+     */
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,264 @@
+package com.geolud.atomica.util.flightrecorder;
+
+import java.awt.Component;
+
+/**
+ * Emits the flight recorder events of the game engine. The events correlate
+ * the work of the engine with garbage collections and stalls of the event
+ * dispatch thread in a recording. They are disabled by default and enabled
+ * by the settings file <code>src/main/jfr/atomica.jfc</code>, which can be
+ * combined with the settings of the JDK.
+ * <p/>
+ * <p>
+ * Each measured operation calls a <code>begin</code> method before and the
+ * matching <code>end</code> method after its work, passing the returned
+ * object. On virtual machines without flight recorder the event classes are
+ * never loaded and the methods do nothing; otherwise a disabled event costs a
+ * small allocation the JIT compiler usually removes.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public final class FlightEvents {
+    /**
+     * Indicates if the virtual machine supports flight recorder events.
+     */
+    private static final boolean AVAILABLE = isFlightRecorderPresent();
+
+    /**
+     * No instances, only static access.
+     */
+    private FlightEvents() {
+
+    }
+
+    /**
+     * Indicates if the virtual machine supports flight recorder events.
+     *
+     * @return true if the events can be recorded
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Starts timing a path search.
+     *
+     * @return the event to pass to {@link #endPathSearch}, null if events are
+     * not supported
+     */
+    public static Object beginPathSearch() {
+        if (!AVAILABLE) {
+            return null;
+        }
+
+        PathSearchEvent event = new PathSearchEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends timing a path search and records it if enabled.
+     *
+     * @param event         the object returned by {@link #beginPathSearch()}
+     * @param boardSize     the number of fields of the board
+     * @param nodesExpanded the number of nodes expanded
+     * @param pathLength    the number of fields of the path, 0 if none
+     */
+    public static void endPathSearch(Object event, int boardSize,
+                                     int nodesExpanded, int pathLength) {
+        if (event == null) {
+            return;
+        }
+
+        PathSearchEvent e = (PathSearchEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.boardSize = boardSize;
+            e.nodesExpanded = nodesExpanded;
+            e.pathLength = pathLength;
+            e.commit();
+        }
+    }
+
+    /**
+     * Starts timing a molecule detection.
+     *
+     * @return the event to pass to {@link #endMoleculeDetection}, null if
+     * events are not supported
+     */
+    public static Object beginMoleculeDetection() {
+        if (!AVAILABLE) {
+            return null;
+        }
+
+        MoleculeDetectionEvent event = new MoleculeDetectionEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends timing a molecule detection and records it if enabled.
+     *
+     * @param event          the object returned by
+     *                       {@link #beginMoleculeDetection()}
+     * @param boardSize      the number of fields of the board
+     * @param atomsScanned   the number of atoms scanned
+     * @param moleculesFound the number of molecules found
+     */
+    public static void endMoleculeDetection(Object event, int boardSize,
+                                            int atomsScanned, int moleculesFound) {
+        if (event == null) {
+            return;
+        }
+
+        MoleculeDetectionEvent e = (MoleculeDetectionEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.boardSize = boardSize;
+            e.atomsScanned = atomsScanned;
+            e.moleculesFound = moleculesFound;
+            e.commit();
+        }
+    }
+
+    /**
+     * Starts timing a new round.
+     *
+     * @return the event to pass to {@link #endRound}, null if events are not
+     * supported
+     */
+    public static Object beginRound() {
+        if (!AVAILABLE) {
+            return null;
+        }
+
+        RoundEvent event = new RoundEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends timing a new round and records it if enabled.
+     *
+     * @param event                 the object returned by
+     *                              {@link #beginRound()}
+     * @param boardSize             the number of fields of the board
+     * @param transformedIndicators the number of indicators turned into
+     *                              atoms
+     * @param step                  the number of the step of the game
+     */
+    public static void endRound(Object event, int boardSize,
+                                int transformedIndicators, int step) {
+        if (event == null) {
+            return;
+        }
+
+        RoundEvent e = (RoundEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.boardSize = boardSize;
+            e.transformedIndicators = transformedIndicators;
+            e.step = step;
+            e.commit();
+        }
+    }
+
+    /**
+     * Starts timing loading or saving a game situation.
+     *
+     * @return the event to pass to {@link #endFileTransfer}, null if events
+     * are not supported
+     */
+    public static Object beginFileTransfer() {
+        if (!AVAILABLE) {
+            return null;
+        }
+
+        FileTransferEvent event = new FileTransferEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends timing loading or saving a game situation and records it if
+     * enabled.
+     *
+     * @param event the object returned by {@link #beginFileTransfer()}
+     * @param path  the path of the file
+     * @param save  true if the file was written
+     * @param bytes the number of bytes transferred
+     */
+    public static void endFileTransfer(Object event, String path,
+                                       boolean save, long bytes) {
+        if (event == null) {
+            return;
+        }
+
+        FileTransferEvent e = (FileTransferEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.path = path;
+            e.save = save;
+            e.bytes = bytes;
+            e.commit();
+        }
+    }
+
+    /**
+     * Starts timing a paint of a board.
+     *
+     * @return the event to pass to {@link #endBoardPaint}, null if events are
+     * not supported
+     */
+    public static Object beginBoardPaint() {
+        if (!AVAILABLE) {
+            return null;
+        }
+
+        BoardPaintEvent event = new BoardPaintEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends timing a paint of a board and records it if enabled.
+     *
+     * @param event     the object returned by {@link #beginBoardPaint()}
+     * @param board     the painted board
+     * @param boardSize the number of fields of the board
+     */
+    public static void endBoardPaint(Object event, Component board,
+                                     int boardSize) {
+        if (event == null) {
+            return;
+        }
+
+        BoardPaintEvent e = (BoardPaintEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.board = board.getClass().getSimpleName();
+            e.boardSize = boardSize;
+            e.width = board.getWidth();
+            e.height = board.getHeight();
+            e.commit();
+        }
+    }
+
+    /**
+     * Checks if the flight recorder API is present.
+     *
+     * @return true if the class <code>jdk.jfr.Event</code> can be loaded
+     */
+    private static boolean isFlightRecorderPresent() {
+        try {
+            Class.forName("jdk.jfr.Event", false,
+                    FlightEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.geolud.atomica.util.flightrecorder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a scan of the board for molecules.
+ *
+ * @author Georg Ludewig
+ */
+@Name("com.geolud.atomica.MoleculeDetection")
+@Label("Molecule Detection")
+@Description("Scan of the board for molecules")
+@Category({"Atomica", "Engine"})
+@Enabled(false)
+@StackTrace(false)
+class MoleculeDetectionEvent extends jdk.jfr.Event {
+    /**
+     * The number of fields of the board.
+     */
+    @Label("Board Size")
+    int boardSize;
+
+    /**
+     * The number of atoms scanned.
+     */
+    @Label("Atoms Scanned")
+    int atomsScanned;
+
+    /**
+     * The number of molecules found.
+     */
+    @Label("Molecules Found")
+    int moleculesFound;
+}
@@ -0,0 +1,39 @@
+package com.geolud.atomica.util.flightrecorder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a search for the shortest path between two fields.
+ *
+ * @author Georg Ludewig
+ */
+@Name("com.geolud.atomica.PathSearch")
+@Label("Path Search")
+@Description("Search for the shortest path of an atom")
+@Category({"Atomica", "Engine"})
+@Enabled(false)
+@StackTrace(false)
+class PathSearchEvent extends jdk.jfr.Event {
+    /**
+     * The number of fields of the board.
+     */
+    @Label("Board Size")
+    int boardSize;
+
+    /**
+     * The number of nodes expanded by the search.
+     */
+    @Label("Nodes Expanded")
+    int nodesExpanded;
+
+    /**
+     * The number of fields of the path, 0 if there is none.
+     */
+    @Label("Path Length")
+    int pathLength;
+}
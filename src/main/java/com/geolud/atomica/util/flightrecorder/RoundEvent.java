@@ -0,0 +1,40 @@
+package com.geolud.atomica.util.flightrecorder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of starting a new round, which turns the indicators
+ * into atoms and places new indicators.
+ *
+ * @author Georg Ludewig
+ */
+@Name("com.geolud.atomica.Round")
+@Label("Round")
+@Description("Start of a new round")
+@Category({"Atomica", "Engine"})
+@Enabled(false)
+@StackTrace(false)
+class RoundEvent extends jdk.jfr.Event {
+    /**
+     * The number of fields of the board.
+     */
+    @Label("Board Size")
+    int boardSize;
+
+    /**
+     * The number of indicators turned into atoms.
+     */
+    @Label("Transformed Indicators")
+    int transformedIndicators;
+
+    /**
+     * The number of the step of the game.
+     */
+    @Label("Step")
+    int step;
+}
@@ -0,0 +1,54 @@
+package com.geolud.atomica.util.hash;
+
+/**
+ * Computes 64 bit FNV-1a hashes, which are fast and spread small keys well
+ * but are no protection against deliberate collisions. A hash starts with
+ * {@link #OFFSET_BASIS} and every value is mixed in by one of the add
+ * methods, so a hash of several values needs no array or string of them.
+ *
+ * @author Georg Ludewig
+ */
+public final class FnvHash {
+    /**
+     * The initial value of a hash.
+     */
+    public static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /**
+     * The prime every step is multiplied with.
+     */
+    private static final long PRIME = 0x100000001b3L;
+
+    /**
+     * No instances, only static access.
+     */
+    private FnvHash() {
+    }
+
+    /**
+     * Mixes the given value into a hash.
+     *
+     * @param hash  the hash so far
+     * @param value the value
+     * @return the new hash
+     */
+    public static long add(long hash, int value) {
+        return (hash ^ value) * PRIME;
+    }
+
+    /**
+     * Mixes the characters of the given string into a hash, one after the
+     * other.
+     *
+     * @param hash the hash so far
+     * @param text the string
+     * @return the new hash
+     */
+    public static long add(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash = add(hash, text.charAt(i));
+        }
+
+        return hash;
+    }
+}
@@ -0,0 +1,247 @@
+package com.geolud.atomica.util.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Handler which passes the records to other handlers on a background thread,
+ * so formatting and writing never delay the thread logging. The records are
+ * kept in a bounded lock-free queue. If it is full, warnings and errors wait
+ * for room while all other records are dropped; their number is logged as
+ * soon as the queue is empty again.
+ * <p/>
+ * <p>
+ * The source class and method of a record are determined from the stack of
+ * the logging thread before the record is queued, so the records are
+ * formatted as if logged directly.
+ * </p>
+ * <p>
+ * While the queue is empty the writer sleeps until a record is queued, and
+ * the target handlers are only flushed after records were written, so an
+ * idle application causes no work at all.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class AsyncHandler extends Handler {
+    /**
+     * The longest time the writer sleeps while the queue is empty in
+     * nanoseconds. It is woken up as soon as a record is queued, so this only
+     * limits the effect of a missed wake-up.
+     */
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The maximum time {@link #close()} waits for the queue to be written in
+     * milliseconds.
+     */
+    private static final long CLOSE_TIMEOUT = 1000;
+
+    /**
+     * The handlers writing the records.
+     */
+    private final Handler[] targets;
+
+    /**
+     * The queued records.
+     */
+    private final RecordRing queue;
+
+    /**
+     * The number of records dropped since the last report.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * The thread writing the records.
+     */
+    private final Thread writer;
+
+    /**
+     * Flag which indicates that the handler was closed.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Flag which indicates that the writer is about to sleep or sleeping, so
+     * it must be woken up when a record is queued.
+     */
+    private volatile boolean sleeping = false;
+
+    /**
+     * Creates the handler and starts its writer thread.
+     *
+     * @param capacity the number of records which can be queued
+     * @param targets  the handlers writing the records
+     */
+    public AsyncHandler(int capacity, Handler... targets) {
+        this.targets = targets.clone();
+        this.queue = new RecordRing(capacity);
+        this.writer = new Thread(new Runnable() {
+            public void run() {
+                write();
+            }
+        }, "AtomicaLogWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.logging.Handler#publish(java.util.logging.LogRecord)
+     */
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+
+        // determine the caller on the logging thread
+        record.getSourceMethodName();
+
+        if (queue.offer(record)) {
+            wakeWriter();
+            return;
+        }
+
+        // warnings and errors wait for room, all others are dropped
+        if (record.getLevel().intValue() < Level.WARNING.intValue()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        while (!queue.offer(record) && !closed) {
+            LockSupport.unpark(writer);
+            Thread.yield();
+        }
+        wakeWriter();
+    }
+
+    /**
+     * Waits until all queued records are written and flushes the target
+     * handlers.
+     *
+     * @see java.util.logging.Handler#flush()
+     */
+    @Override
+    public void flush() {
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+        while (!queue.isEmpty() && writer.isAlive()
+                && System.currentTimeMillis() < deadline) {
+            LockSupport.unpark(writer);
+            Thread.yield();
+        }
+
+        for (Handler target : targets) {
+            target.flush();
+        }
+    }
+
+    /**
+     * Writes all queued records, stops the writer thread and closes the target
+     * handlers.
+     *
+     * @see java.util.logging.Handler#close()
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Handler target : targets) {
+            target.close();
+        }
+    }
+
+    /**
+     * Passes the queued records to the target handlers until the handler is
+     * closed. Run by the writer thread.
+     */
+    private void write() {
+        boolean written = false;
+        while (true) {
+            LogRecord record = queue.poll();
+            if (record != null) {
+                publishToTargets(record);
+                written = true;
+                continue;
+            }
+
+            if (reportDropped() || written) {
+                for (Handler target : targets) {
+                    target.flush();
+                }
+                written = false;
+            }
+
+            if (closed && queue.isEmpty()) {
+                return;
+            }
+
+            // the queue is checked again after announcing the sleep, so a
+            // record queued meanwhile either is seen or wakes the writer
+            sleeping = true;
+            if (queue.isEmpty() && !closed) {
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+
+    /**
+     * Wakes up the writer if it is sleeping.
+     */
+    private void wakeWriter() {
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Logs the number of dropped records, if any.
+     *
+     * @return true if a record was written
+     */
+    private boolean reportDropped() {
+        long count = dropped.getAndSet(0);
+        if (count > 0) {
+            LogRecord record = new LogRecord(Level.WARNING, count
+                    + " log records dropped");
+            record.setSourceClassName(AsyncHandler.class.getName());
+            record.setSourceMethodName("publish");
+            publishToTargets(record);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Passes a record to all target handlers.
+     *
+     * @param record the record
+     */
+    private void publishToTargets(LogRecord record) {
+        for (Handler target : targets) {
+            try {
+                target.publish(record);
+            } catch (RuntimeException e) {
+                reportError(null, e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+}
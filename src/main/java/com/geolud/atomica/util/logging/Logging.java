@@ -1,48 +1,132 @@
 package com.geolud.atomica.util.logging;
 
+import java.io.File;
 import java.util.logging.ConsoleHandler;
+import java.util.logging.FileHandler;
+import java.util.logging.Handler;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Wrapper class to handle logging. Holds a java.util.logging.Logger instance.
+ * <p/>
+ * <p>
+ * The records are written asynchronously by an AsyncHandler to the console
+ * and to rotating log files in <code>~/.atomica/logs</code>, unless another
+ * directory is given by the system property <code>atomica.log.dir</code>.
+ * Logging from the game logic therefore never waits for formatting or disk
+ * access. Messages which are expensive to build should be guarded by
+ * {@link #isLoggable(Level)}.
+ * </p>
  *
  * @author Georg Ludewig
  */
 public class Logging {
     /**
-     * The only instance of a logger class.
+     * The system property for the directory of the log files.
      */
-    private static Logger logger = null;
+    public static final String PROPERTY_LOG_DIR = "atomica.log.dir";
 
     /**
-     * Returns the only instance of the logger. If no instance exist, a new
-     * instance will be created and initialized.
+     * The number of records which can be queued.
+     */
+    private static final int QUEUE_CAPACITY = 4096;
+
+    /**
+     * The maximum size of a log file in bytes.
+     */
+    private static final int FILE_LIMIT = 1024 * 1024;
+
+    /**
+     * The number of log files kept.
+     */
+    private static final int FILE_COUNT = 5;
+
+    /**
+     * Holds the only instance of the logger, which is created when the holder
+     * is initialized by the first call of {@link Logging#getLogger()}.
+     */
+    private static class Holder {
+        /**
+         * The only instance of a logger class.
+         */
+        static final Logger LOGGER = createLogger();
+    }
+
+    /**
+     * No instances, only static access.
+     */
+    private Logging() {
+
+    }
+
+    /**
+     * Returns the only instance of the logger. It is created and initialized
+     * on the first call, which may come from any thread.
      *
      * @return the only instance of the logger
      */
     public static Logger getLogger() {
-        if (logger == null) {
-            logger = Logger.getLogger("AtomicaLogging");
-
-            // set handler for file logging
-            try {
-                logger.setUseParentHandlers(false);
-
-                // set handler for console logging
-                ConsoleHandler ch = new ConsoleHandler();
-                ch.setFormatter(new SingleLineFormatter());
-                logger.addHandler(ch);
-
-                // FileHandler fh;
-                // fh = new FileHandler( "com.geolud.atomica.log" );
-                // fh.setFormatter(new SimpleFormatter());
-                // logger.addHandler(fh);
-            } catch (Exception e) {
-                System.out
-                        .println("Initializing ConsoleHandler for Logging failed.");
+        return Holder.LOGGER;
+    }
+
+    /**
+     * Indicates if a message of the given level would be logged.
+     *
+     * @param level the level of the message
+     * @return true if the message would be logged
+     */
+    public static boolean isLoggable(Level level) {
+        return Holder.LOGGER.isLoggable(level);
+    }
+
+    /**
+     * Creates the logger and its handlers. The log files are left out if they
+     * can't be created. The queued records are written when the virtual
+     * machine shuts down, as the LogManager then closes all handlers.
+     *
+     * @return the logger
+     */
+    private static Logger createLogger() {
+        Logger logger = Logger.getLogger("AtomicaLogging");
+        logger.setUseParentHandlers(false);
+
+        // set handler for console logging
+        ConsoleHandler ch = new ConsoleHandler();
+        ch.setFormatter(new SingleLineFormatter());
+
+        // set handler for file logging
+        FileHandler fh = null;
+        try {
+            File dir = getLogDir();
+            if (dir.isDirectory() || dir.mkdirs()) {
+                fh = new FileHandler(new File(dir, "atomica%g.log").getPath(),
+                        FILE_LIMIT, FILE_COUNT, true);
+                fh.setFormatter(new SingleLineFormatter());
             }
+        } catch (Exception e) {
+            System.out.println("Initializing FileHandler for Logging failed.");
         }
 
+        Handler[] targets = fh != null ? new Handler[]{ch, fh}
+                : new Handler[]{ch};
+        logger.addHandler(new AsyncHandler(QUEUE_CAPACITY, targets));
+
         return logger;
     }
+
+    /**
+     * Returns the directory of the log files.
+     *
+     * @return the directory
+     */
+    private static File getLogDir() {
+        String dir = System.getProperty(PROPERTY_LOG_DIR);
+        if (dir != null) {
+            return new File(dir);
+        }
+
+        return new File(new File(System.getProperty("user.home"), ".atomica"),
+                "logs");
+    }
 }
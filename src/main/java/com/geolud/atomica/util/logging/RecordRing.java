@@ -0,0 +1,95 @@
+package com.geolud.atomica.util.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.LogRecord;
+
+/**
+ * Bounded lock-free queue of log records, written by any number of threads and
+ * read by a single thread. A writer claims a slot by advancing the tail and
+ * then publishes its record into the slot; the reader takes the record at the
+ * head as soon as it is published. A full queue rejects new records instead of
+ * blocking the writer.
+ *
+ * @author Georg Ludewig
+ */
+class RecordRing {
+    /**
+     * The slots, a record is published by setting its slot.
+     */
+    private final AtomicReferenceArray<LogRecord> slots;
+
+    /**
+     * The number of slots, a power of two.
+     */
+    private final int capacity;
+
+    /**
+     * The position of the next slot to be claimed by a writer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The position of the next slot to be read, written by the reader only.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Creates an empty queue.
+     *
+     * @param minCapacity the minimum number of records the queue can hold,
+     *                    rounded up to a power of two
+     */
+    RecordRing(int minCapacity) {
+        int size = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+        capacity = size;
+        slots = new AtomicReferenceArray<LogRecord>(size);
+    }
+
+    /**
+     * Adds a record. May be called by any thread.
+     *
+     * @param record the record
+     * @return false if the queue is full
+     */
+    boolean offer(LogRecord record) {
+        while (true) {
+            long position = tail.get();
+            if (position - head.get() >= capacity) {
+                return false;
+            }
+            if (tail.compareAndSet(position, position + 1)) {
+                slots.lazySet((int) (position & (capacity - 1)), record);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest record. Must only be called by the reader.
+     *
+     * @return the record, null if the queue is empty or the oldest record is
+     * not yet published
+     */
+    LogRecord poll() {
+        long position = head.get();
+        int slot = (int) (position & (capacity - 1));
+        LogRecord record = slots.get(slot);
+        if (record == null) {
+            return null;
+        }
+
+        slots.lazySet(slot, null);
+        head.lazySet(position + 1);
+        return record;
+    }
+
+    /**
+     * Indicates if all claimed slots have been read.
+     *
+     * @return true if the queue is empty
+     */
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+}
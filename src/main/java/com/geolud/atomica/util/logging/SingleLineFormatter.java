@@ -1,5 +1,6 @@
 package com.geolud.atomica.util.logging;
 
+import java.text.FieldPosition;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.logging.LogRecord;
@@ -7,26 +8,54 @@ import java.util.logging.LogRecord;
 /**
  * Use this Formatter for logging messages in a single line, due to the Java
  * Logging API doesn't support this natively.
+ * <p/>
+ * <p>
+ * The line is built in a buffer which is reused for every record, so
+ * formatting only allocates the resulting string. Each handler needs its own
+ * instance.
+ * </p>
  *
  * @author Georg Ludewig
  */
 public class SingleLineFormatter extends java.util.logging.Formatter {
-    private static SimpleDateFormat dateFormat = new SimpleDateFormat(
+    /**
+     * The format of the time stamp.
+     */
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat(
             "yyyy.MM.dd HH:mm:ss.S");
 
+    /**
+     * The time of the record being formatted.
+     */
+    private final Date date = new Date();
+
+    /**
+     * Required by the date format, ignored.
+     */
+    private final FieldPosition fieldPosition = new FieldPosition(0);
+
+    /**
+     * The line being built.
+     */
+    private final StringBuffer line = new StringBuffer(256);
+
     /*
      * (non-Javadoc)
      * 
      * @see java.util.logging.Formatter#format(java.util.logging.LogRecord)
      */
     @Override
-    public String format(LogRecord record) {
-        return new StringBuffer().append(
-                dateFormat.format(new Date(record.getMillis()))).append(" ")
-                .append(record.getLevel()).append(" ").append(
-                        record.getSourceClassName()).append(".").append(
-                        record.getSourceMethodName()).append('\t').append(
-                        record.getMessage()).append('\n').toString();
+    public synchronized String format(LogRecord record) {
+        line.setLength(0);
+        date.setTime(record.getMillis());
+        dateFormat.format(date, line, fieldPosition);
+
+        line.append(' ').append(record.getLevel().getName()).append(' ')
+                .append(record.getSourceClassName()).append('.').append(
+                record.getSourceMethodName()).append('\t').append(
+                record.getMessage()).append('\n');
+
+        return line.toString();
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,333 @@
+package com.geolud.atomica.util.metrics;
+
+import com.geolud.atomica.objects.SituationSnapshot;
+import com.geolud.atomica.util.logging.Logging;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.logging.Level;
+
+/**
+ * MBean exposing the live metrics of the game engine to JMX tools like
+ * JConsole or VisualVM. For every histogram of {@link GameMetrics} it offers
+ * the count, mean, median, 90th and 99th percentile and maximum, durations in
+ * microseconds. Gauges show the occupancy of the board of the running game
+ * and an estimate of the heap used by its game state. The operations
+ * <code>reset</code> and <code>report</code> discard the values and return
+ * them as a table.
+ * <p/>
+ * <p>
+ * The MBean is registered as <code>com.geolud.atomica:type=AtomicaMetrics</code>
+ * by {@link #register()}. The board is taken from the snapshots published by
+ * the game controller, so reading the gauges never touches the game itself.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class AtomicaMetrics implements DynamicMBean {
+    /**
+     * The name the MBean is registered under.
+     */
+    public static final String OBJECT_NAME = "com.geolud.atomica:type=AtomicaMetrics";
+
+    /**
+     * The estimated size of a field in bytes, on a 64 bit VM with compressed
+     * references.
+     */
+    private static final int FIELD_BYTES = 24;
+
+    /**
+     * The estimated size of a token in bytes.
+     */
+    private static final int TOKEN_BYTES = 24;
+
+    /**
+     * The estimated size of an array header in bytes.
+     */
+    private static final int ARRAY_BYTES = 16;
+
+    /**
+     * The estimated size of an array element in bytes.
+     */
+    private static final int REFERENCE_BYTES = 4;
+
+    /**
+     * The statistics offered for every histogram, in the order of the
+     * attributes.
+     */
+    private static final String[] STATISTICS = {"Count", "Mean", "P50",
+            "P90", "P99", "Max"};
+
+    /**
+     * The board of the running game, null if no game was started.
+     */
+    private static volatile SituationSnapshot board = null;
+
+    /**
+     * Flag which indicates that the MBean is registered.
+     */
+    private static boolean registered = false;
+
+    /**
+     * The histograms by attribute name prefix.
+     */
+    private final LinkedHashMap<String, LogHistogram> histograms = new LinkedHashMap<String, LogHistogram>();
+
+    /**
+     * The description of the attributes and operations.
+     */
+    private final MBeanInfo info;
+
+    /**
+     * Creates the MBean for all histograms of the GameMetrics.
+     */
+    AtomicaMetrics() {
+        ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        for (LogHistogram histogram : GameMetrics.getAll()) {
+            String prefix = Character.toUpperCase(histogram.getName()
+                    .charAt(0))
+                    + histogram.getName().substring(1);
+            histograms.put(prefix, histogram);
+
+            String unit = histogram.isNanoseconds() ? " in microseconds" : "";
+            for (String statistic : STATISTICS) {
+                boolean count = "Count".equals(statistic);
+                attributes.add(new MBeanAttributeInfo(prefix + statistic,
+                        count ? "long" : "double", statistic + " of "
+                        + histogram.getName() + (count ? "" : unit), true,
+                        false, false));
+            }
+        }
+
+        attributes.add(new MBeanAttributeInfo("BoardOccupancy", "double",
+                "Share of fields holding an atom or indicator", true, false,
+                false));
+        attributes.add(new MBeanAttributeInfo("BoardAtoms", "int",
+                "Number of atoms on the board", true, false, false));
+        attributes.add(new MBeanAttributeInfo("GameStateBytes", "long",
+                "Estimated heap used by fields and tokens of the game", true,
+                false, false));
+
+        MBeanOperationInfo[] operations = {
+                new MBeanOperationInfo("reset", "Discards all values",
+                        new MBeanParameterInfo[0], "void",
+                        MBeanOperationInfo.ACTION),
+                new MBeanOperationInfo("report", "Returns all values as table",
+                        new MBeanParameterInfo[0], "java.lang.String",
+                        MBeanOperationInfo.INFO)};
+
+        info = new MBeanInfo(getClass().getName(),
+                "Live metrics of the Atomica game engine",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+                null, operations, null);
+    }
+
+    /**
+     * Registers the MBean at the platform MBean server. Calling it more than
+     * once has no effect. A failure is only logged, so the game runs without
+     * the MBean.
+     */
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new AtomicaMetrics(), new ObjectName(
+                    OBJECT_NAME));
+            registered = true;
+        } catch (JMException e) {
+            Logging.getLogger().log(Level.WARNING,
+                    "Could not register the metrics MBean", e);
+        }
+    }
+
+    /**
+     * Sets the board of the running game for the gauges. Called whenever the
+     * game changed, by any thread.
+     *
+     * @param snapshot the snapshot of the board
+     */
+    public static void boardChanged(SituationSnapshot snapshot) {
+        board = snapshot;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.management.DynamicMBean#getAttribute(java.lang.String)
+     */
+    public Object getAttribute(String attribute)
+            throws AttributeNotFoundException {
+        if ("BoardOccupancy".equals(attribute)) {
+            SituationSnapshot snapshot = board;
+            if (snapshot == null || snapshot.getCellCount() == 0) {
+                return 0.0;
+            }
+            return (double) countTokens(snapshot, false)
+                    / snapshot.getCellCount();
+        } else if ("BoardAtoms".equals(attribute)) {
+            SituationSnapshot snapshot = board;
+            return snapshot != null ? countTokens(snapshot, true) : 0;
+        } else if ("GameStateBytes".equals(attribute)) {
+            return estimateGameStateBytes(board);
+        }
+
+        for (String statistic : STATISTICS) {
+            if (attribute.endsWith(statistic)) {
+                LogHistogram histogram = histograms.get(attribute.substring(
+                        0, attribute.length() - statistic.length()));
+                if (histogram != null) {
+                    return getStatistic(histogram, statistic);
+                }
+            }
+        }
+
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.management.DynamicMBean#getAttributes(java.lang.String[])
+     */
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // unknown attributes are left out
+            }
+        }
+
+        return list;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.management.DynamicMBean#setAttribute(javax.management.Attribute)
+     */
+    public void setAttribute(Attribute attribute)
+            throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Read only: "
+                + attribute.getName());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.management.DynamicMBean#setAttributes(javax.management.AttributeList)
+     */
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.management.DynamicMBean#invoke(java.lang.String,
+     * java.lang.Object[], java.lang.String[])
+     */
+    public Object invoke(String actionName, Object[] params,
+                         String[] signature) throws ReflectionException {
+        if ("reset".equals(actionName)) {
+            GameMetrics.reset();
+            return null;
+        } else if ("report".equals(actionName)) {
+            return GameMetrics.createReport();
+        }
+
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.management.DynamicMBean#getMBeanInfo()
+     */
+    public MBeanInfo getMBeanInfo() {
+        return info;
+    }
+
+    /**
+     * Returns a statistic of the given histogram.
+     *
+     * @param histogram the histogram
+     * @param statistic one of {@link #STATISTICS}
+     * @return the count as Long, all others as Double
+     */
+    private static Object getStatistic(LogHistogram histogram,
+                                       String statistic) {
+        if ("Count".equals(statistic)) {
+            return histogram.getCount();
+        }
+
+        double value;
+        if ("Mean".equals(statistic)) {
+            value = histogram.getMean();
+        } else if ("Max".equals(statistic)) {
+            value = histogram.getMax();
+        } else {
+            value = histogram.getValueAtPercentile(Double
+                    .parseDouble(statistic.substring(1)));
+        }
+
+        return histogram.isNanoseconds() ? value / 1000 : value;
+    }
+
+    /**
+     * Counts the tokens on the given board.
+     *
+     * @param snapshot  the board
+     * @param atomsOnly true to count only atoms
+     * @return the number of tokens
+     */
+    private static int countTokens(SituationSnapshot snapshot,
+                                   boolean atomsOnly) {
+        int tokens = 0;
+        for (int cell = 0; cell < snapshot.getCellCount(); cell++) {
+            byte code = snapshot.getCell(cell);
+            if (atomsOnly ? SituationSnapshot.isAtomCell(code)
+                    : code != SituationSnapshot.EMPTY) {
+                tokens++;
+            }
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Estimates the heap used by the fields and tokens of the given board,
+     * including the arrays holding the fields.
+     *
+     * @param snapshot the board, may be null
+     * @return the estimated bytes, 0 if there is no board
+     */
+    private static long estimateGameStateBytes(SituationSnapshot snapshot) {
+        if (snapshot == null) {
+            return 0;
+        }
+
+        long cols = snapshot.getCols();
+        long rows = snapshot.getRows();
+        return ARRAY_BYTES + cols * (ARRAY_BYTES + rows * REFERENCE_BYTES)
+                + cols * rows * FIELD_BYTES
+                + (long) countTokens(snapshot, false) * TOKEN_BYTES;
+    }
+}
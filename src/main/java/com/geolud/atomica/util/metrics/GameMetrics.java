@@ -0,0 +1,229 @@
+package com.geolud.atomica.util.metrics;
+
+import com.geolud.atomica.util.logging.Logging;
+
+import java.util.Locale;
+import java.util.logging.Level;
+
+/**
+ * Central registry of the timings and counters of the game engine. The
+ * duration of each phase of a move, of path queries, saves and paints is
+ * recorded in nanoseconds, together with
+ * the work done per call: the nodes expanded by the path finder, the atoms
+ * scanned and the molecules found by the molecule detector. All values of all
+ * games since the start or the last {@link #reset()} are aggregated, so a
+ * report shows which phase dominates on the boards actually played.
+ * <p/>
+ * <p>
+ * The metrics are enabled by default and cost about two calls of
+ * <code>System.nanoTime()</code> per phase. They can be disabled at startup
+ * by the system property <code>atomica.metrics=false</code>.
+ * </p>
+ *
+ * @author Georg Ludewig
+ */
+public class GameMetrics {
+    /**
+     * The system property for disabling the metrics at startup.
+     */
+    public static final String PROPERTY_ENABLED = "atomica.metrics";
+
+    /**
+     * The duration of a whole successful move.
+     */
+    public static final LogHistogram MOVE = new LogHistogram("move", true);
+
+    /**
+     * The duration of a path query for displaying the path to the cursor.
+     */
+    public static final LogHistogram PATH_QUERY = new LogHistogram(
+            "pathQuery", true);
+
+    /**
+     * The duration of scanning the board for molecules.
+     */
+    public static final LogHistogram DETECTION = new LogHistogram(
+            "detectMolecules", true);
+
+    /**
+     * The duration of starting a new round.
+     */
+    public static final LogHistogram NEXT_ROUND = new LogHistogram(
+            "nextRound", true);
+
+    /**
+     * The duration of detecting, scoring and removing molecules.
+     */
+    public static final LogHistogram CHECK_MOLECULES = new LogHistogram(
+            "checkNewMolecules", true);
+
+    /**
+     * The duration of placing the indicators of a new round.
+     */
+    public static final LogHistogram PLACE_INDICATORS = new LogHistogram(
+            "placeNewIndicators", true);
+
+    /**
+     * The duration of letting all tokens fall down.
+     */
+    public static final LogHistogram FLUSH = new LogHistogram("flushTokens",
+            true);
+
+    /**
+     * The duration of writing a game situation into a file.
+     */
+    public static final LogHistogram SAVE = new LogHistogram("save", true);
+
+    /**
+     * The duration of painting a board.
+     */
+    public static final LogHistogram PAINT = new LogHistogram("paint", true);
+
+    /**
+     * The number of nodes expanded by the path finder per move.
+     */
+    public static final LogHistogram PATH_NODES = new LogHistogram(
+            "pathNodesExpanded", false);
+
+    /**
+     * The number of atoms scanned per molecule detection.
+     */
+    public static final LogHistogram ATOMS_SCANNED = new LogHistogram(
+            "atomsScanned", false);
+
+    /**
+     * The number of molecules found per molecule detection.
+     */
+    public static final LogHistogram MOLECULES_FOUND = new LogHistogram(
+            "moleculesFound", false);
+
+    /**
+     * The number of times molecules were removed in a row by one flush.
+     */
+    public static final LogHistogram CASCADE_LINKS = new LogHistogram(
+            "cascadeLinks", false);
+
+    /**
+     * All histograms in the order of the report.
+     */
+    private static final LogHistogram[] ALL = {MOVE, PATH_QUERY, DETECTION,
+            CHECK_MOLECULES, NEXT_ROUND, PLACE_INDICATORS, FLUSH, SAVE, PAINT,
+            PATH_NODES, ATOMS_SCANNED, MOLECULES_FOUND, CASCADE_LINKS};
+
+    /**
+     * Indicates if the metrics are enabled.
+     */
+    private static volatile boolean enabled = !"false".equals(System
+            .getProperty(PROPERTY_ENABLED));
+
+    /**
+     * No instances, only static access.
+     */
+    private GameMetrics() {
+
+    }
+
+    /**
+     * Indicates if the metrics are enabled.
+     *
+     * @return true if the metrics are enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the metrics. The recorded values are kept.
+     *
+     * @param enable true for enabling the metrics
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Returns the start time of a phase to pass to {@link #stop(LogHistogram,
+     * long)}.
+     *
+     * @return the current time in nanoseconds, 0 if the metrics are disabled
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the duration of a phase.
+     *
+     * @param histogram the histogram of the phase
+     * @param startTime the value returned by {@link #start()}
+     */
+    public static void stop(LogHistogram histogram, long startTime) {
+        if (startTime != 0) {
+            histogram.recordSince(startTime);
+        }
+    }
+
+    /**
+     * Records a counter value.
+     *
+     * @param histogram the histogram of the counter
+     * @param value     the value
+     */
+    public static void count(LogHistogram histogram, long value) {
+        if (enabled) {
+            histogram.record(value);
+        }
+    }
+
+    /**
+     * Returns all histograms.
+     *
+     * @return a copy of the array of all histograms
+     */
+    public static LogHistogram[] getAll() {
+        return ALL.clone();
+    }
+
+    /**
+     * Discards all recorded values.
+     */
+    public static void reset() {
+        for (LogHistogram histogram : ALL) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Creates a table of all histograms. Durations are given in microseconds.
+     *
+     * @return the report
+     */
+    public static String createReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ENGLISH,
+                "%-24s %10s %10s %10s %10s %10s %10s %12s%n", "metric",
+                "count", "mean", "p50", "p90", "p99", "max", "total"));
+
+        for (LogHistogram h : ALL) {
+            double unit = h.isNanoseconds() ? 1000.0 : 1.0;
+            report.append(String.format(Locale.ENGLISH,
+                    "%-24s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %12.0f%n",
+                    h.getName() + (h.isNanoseconds() ? " [us]" : ""), h
+                    .getCount(), h.getMean() / unit, h
+                    .getValueAtPercentile(50) / unit, h
+                    .getValueAtPercentile(90) / unit, h
+                    .getValueAtPercentile(99) / unit, h.getMax() / unit, h
+                    .getTotal() / unit));
+        }
+
+        return report.toString();
+    }
+
+    /**
+     * Writes the report into the log.
+     */
+    public static void dump() {
+        Logging.getLogger().log(Level.INFO,
+                "Game metrics\n" + createReport());
+    }
+}
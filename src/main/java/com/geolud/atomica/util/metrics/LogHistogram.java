@@ -0,0 +1,232 @@
+package com.geolud.atomica.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values with logarithmic buckets.
+ * Each power of two is divided into {@link #SUB_BUCKETS} linear buckets, so
+ * every value is recorded with a relative error of at most 1/8, from single
+ * nanoseconds up to hours. Recording is a few atomic increments and never
+ * allocates, so it can be called on every move. Any thread may record and
+ * read at the same time; a read while recording may miss the latest values.
+ *
+ * @author Georg Ludewig
+ */
+public class LogHistogram {
+    /**
+     * The number of bits selecting the linear bucket within a power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * The number of linear buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of buckets covering all long values.
+     */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1)
+            * SUB_BUCKETS;
+
+    /**
+     * The name of the histogram as displayed in reports.
+     */
+    private final String name;
+
+    /**
+     * Flag which indicates that the values are durations in nanoseconds.
+     */
+    private final boolean nanoseconds;
+
+    /**
+     * The number of values per bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * The number of recorded values.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * The sum of all recorded values.
+     */
+    private final AtomicLong total = new AtomicLong();
+
+    /**
+     * The largest recorded value.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param name        the name of the histogram
+     * @param nanoseconds true if the values are durations in nanoseconds
+     */
+    public LogHistogram(String name, boolean nanoseconds) {
+        this.name = name;
+        this.nanoseconds = nanoseconds;
+    }
+
+    /**
+     * Returns the name of the histogram.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Indicates if the values are durations in nanoseconds.
+     *
+     * @return true for durations, false for counts
+     */
+    public boolean isNanoseconds() {
+        return nanoseconds;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value the value
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts.incrementAndGet(getBucket(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+
+        long previous = max.get();
+        while (value > previous && !max.compareAndSet(previous, value)) {
+            previous = max.get();
+        }
+    }
+
+    /**
+     * Records the time passed since the given start time.
+     *
+     * @param startTime the start time returned by <code>System.nanoTime()</code>
+     */
+    public void recordSince(long startTime) {
+        record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum of all recorded values.
+     *
+     * @return the sum of the values
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return the largest value, 0 if none was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return the mean, 0 if no value was recorded
+     */
+    public double getMean() {
+        long n = count.get();
+        return n > 0 ? (double) total.get() / n : 0;
+    }
+
+    /**
+     * Returns the value below which the given share of the recorded values
+     * lies. The result is the upper bound of the bucket holding that value,
+     * but never more than the largest value.
+     *
+     * @param percentile the share in percent, from 0 to 100
+     * @return the value at the percentile, 0 if no value was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(getUpperBound(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Discards all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Returns the bucket of the given value.
+     *
+     * @param value a non-negative value
+     * @return the index of the bucket
+     */
+    static int getBucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS
+                + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the largest value of the given bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the largest value recorded into that bucket
+     */
+    static long getUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS)) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
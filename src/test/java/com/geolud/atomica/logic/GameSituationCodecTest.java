@@ -0,0 +1,194 @@
+package com.geolud.atomica.logic;
+
+import com.geolud.atomica.objects.AtomToken;
+import com.geolud.atomica.objects.DefaultGameSettings;
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.objects.SituationSnapshot;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that a game situation survives encoding and decoding, and that
+ * damaged bytes are rejected.
+ *
+ * @author Georg Ludewig
+ */
+public class GameSituationCodecTest {
+    /**
+     * Plays a seeded game for some moves.
+     *
+     * @param seed the seed of the game and its moves
+     * @return the game
+     */
+    private static Game playGame(long seed) {
+        DefaultGameSettings settings = new DefaultGameSettings();
+        settings.setCols(9);
+        settings.setRows(11);
+        Game game = new Game(settings);
+        game.setSeed(seed);
+        game.start();
+
+        Random random = new Random(seed);
+        for (int move = 0; move < 60 && !game.getIsGameOver(); move++) {
+            AtomToken atom = game.queryAtomToken(random.nextInt(game
+                    .getCols()), random.nextInt(game.getRows()));
+            Field field = game.findRandomEmptyField();
+            if (atom != null && field != null) {
+                game.moveAtomToken(atom, field);
+            }
+        }
+
+        return game;
+    }
+
+    /**
+     * A decoded situation equals the encoded one.
+     *
+     * @throws IOException if the situation can't be decoded
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (long seed = 1; seed <= 5; seed++) {
+            GameSituation situation = playGame(seed).getSituation();
+            ByteBuffer encoded = GameSituationCodec.encode(situation);
+            assertTrue(GameSituationCodec.isEncoded(encoded));
+
+            GameSituation decoded = GameSituationCodec.decode(encoded);
+            assertFalse(encoded.hasRemaining());
+            assertSnapshotEquals(situation.createSnapshot(), decoded
+                    .createSnapshot());
+            assertEquals(situation.getLastLevel().getLevelNumber(), decoded
+                    .getLastLevel().getLevelNumber());
+            for (int i = 1; i <= situation.getLastLevel().getLevelNumber(); i++) {
+                assertEquals(situation.getLevel(i).getScore(), decoded
+                        .getLevel(i).getScore());
+                assertEquals(situation.getLevel(i).getNumberOfColors(),
+                        decoded.getLevel(i).getNumberOfColors());
+            }
+        }
+    }
+
+    /**
+     * Decoding only the snapshot gives the board of the situation and leaves
+     * the buffer untouched.
+     *
+     * @throws IOException if the situation can't be decoded
+     */
+    @Test
+    public void testDecodeSnapshot() throws IOException {
+        GameSituation situation = playGame(7).getSituation();
+        ByteBuffer encoded = GameSituationCodec.encode(situation);
+        int remaining = encoded.remaining();
+
+        SituationSnapshot snapshot = GameSituationCodec
+                .decodeSnapshot(encoded);
+        assertEquals(remaining, encoded.remaining());
+        assertSnapshotEquals(situation.createSnapshot(), snapshot);
+    }
+
+    /**
+     * A changed byte fails the checksum.
+     */
+    @Test
+    public void testCorruptionDetected() {
+        ByteBuffer encoded = GameSituationCodec.encode(playGame(3)
+                .getSituation());
+        int cell = encoded.limit() - 10;
+        encoded.put(cell, (byte) (encoded.get(cell) ^ 1));
+
+        try {
+            GameSituationCodec.decode(encoded);
+            fail("corrupt situation decoded");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Bytes which are no encoded situation are rejected.
+     */
+    @Test
+    public void testForeignBytesRejected() {
+        ByteBuffer foreign = ByteBuffer.wrap("<?xml version=\"1.0\"?>"
+                .getBytes());
+        assertFalse(GameSituationCodec.isEncoded(foreign));
+
+        try {
+            GameSituationCodec.decodeSnapshot(foreign);
+            fail("foreign bytes decoded");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Board sizes, fields and levels out of range are rejected even with a
+     * valid checksum.
+     */
+    @Test
+    public void testValuesOutOfRangeRejected() {
+        // 9x11 board as 1x99 board
+        ByteBuffer encoded = GameSituationCodec.encode(playGame(4)
+                .getSituation());
+        encoded.putShort(7, (short) 1);
+        encoded.putShort(9, (short) 99);
+        assertRejected(encoded);
+
+        // a field of a 13th color
+        encoded = GameSituationCodec.encode(playGame(4).getSituation());
+        encoded.put(encoded.limit() - 10, (byte) 13);
+        assertRejected(encoded);
+
+        // a level without colors
+        encoded = GameSituationCodec.encode(playGame(4).getSituation());
+        encoded.put(23, (byte) 0);
+        assertRejected(encoded);
+    }
+
+    /**
+     * Updates the checksum of a changed encoded situation and asserts that
+     * decoding it fails anyway.
+     *
+     * @param encoded the changed encoded situation
+     */
+    private static void assertRejected(ByteBuffer encoded) {
+        int checksumOffset = encoded.limit() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(encoded.array(), encoded.arrayOffset(), checksumOffset);
+        encoded.putInt(checksumOffset, (int) crc.getValue());
+
+        try {
+            GameSituationCodec.decode(encoded);
+            fail("situation out of range decoded");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(
+                    "Corrupt game situation"));
+        }
+    }
+
+    /**
+     * Asserts that two snapshots hold the same board, score and level.
+     *
+     * @param expected the expected snapshot
+     * @param actual   the actual snapshot
+     */
+    private static void assertSnapshotEquals(SituationSnapshot expected,
+                                             SituationSnapshot actual) {
+        assertEquals(expected.getCols(), actual.getCols());
+        assertEquals(expected.getRows(), actual.getRows());
+        assertEquals(expected.getScore(), actual.getScore());
+        assertEquals(expected.getLevelNumber(), actual.getLevelNumber());
+        assertArrayEquals(expected.copyCells(), actual.copyCells());
+    }
+}
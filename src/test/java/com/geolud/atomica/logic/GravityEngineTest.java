@@ -0,0 +1,174 @@
+package com.geolud.atomica.logic;
+
+import com.geolud.atomica.objects.AtomToken;
+import com.geolud.atomica.objects.DefaultGameSettings;
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.objects.IndicatorToken;
+import com.geolud.atomica.objects.Token;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the GravityEngine compacts the columns keeping the order of
+ * their tokens and that flushing resolves cascades of molecules.
+ *
+ * @author Georg Ludewig
+ */
+public class GravityEngineTest {
+    /**
+     * Moves the tokens directly on the fields.
+     */
+    private static final GravityEngine.TokenMover MOVER =
+            new GravityEngine.TokenMover() {
+                public void moveToken(Field from, Field to) {
+                    to.placeToken(from.getToken());
+                }
+            };
+
+    /**
+     * Creates an empty situation.
+     *
+     * @param cols the number of columns
+     * @param rows the number of rows
+     * @return the situation
+     */
+    private static GameSituation createSituation(int cols, int rows) {
+        DefaultGameSettings settings = new DefaultGameSettings();
+        settings.setCols(cols);
+        settings.setRows(rows);
+        return new GameSituation(settings);
+    }
+
+    /**
+     * Returns the tokens of a column from the bottom to the top.
+     *
+     * @param situation the situation
+     * @param col       the column
+     * @return the tokens of the column
+     */
+    private static ArrayList<Token> getColumn(GameSituation situation,
+                                              int col) {
+        ArrayList<Token> tokens = new ArrayList<Token>();
+        for (int row = situation.getRows() - 1; row >= 0; row--) {
+            Token token = situation.getField(col, row).getToken();
+            if (token != null) {
+                tokens.add(token);
+            }
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Every token falls to the lowest free field below it and the tokens of
+     * a column keep their order.
+     */
+    @Test
+    public void testCompaction() {
+        Random random = new Random(7);
+        GameSituation situation = createSituation(12, 15);
+        int expectedMoves = 0;
+        ArrayList<ArrayList<Token>> columns = new ArrayList<ArrayList<Token>>();
+        for (int col = 0; col < situation.getCols(); col++) {
+            int free = situation.getRows() - 1;
+            for (int row = free; row >= 0; row--) {
+                if (random.nextBoolean()) {
+                    situation.getField(col, row).placeToken(random
+                            .nextBoolean() ? new AtomToken(random.nextInt(3))
+                            : new IndicatorToken(random.nextInt(3)));
+                    if (row != free) {
+                        expectedMoves++;
+                    }
+                    free--;
+                }
+            }
+            columns.add(getColumn(situation, col));
+        }
+
+        GravityEngine engine = new GravityEngine(situation, MOVER);
+        engine.markAllDirty();
+        assertEquals(expectedMoves, engine.compact());
+        assertEquals(0, engine.compact());
+
+        for (int col = 0; col < situation.getCols(); col++) {
+            ArrayList<Token> tokens = columns.get(col);
+            for (int i = 0; i < situation.getRows(); i++) {
+                Field field = situation.getField(col, situation.getRows() - 1
+                        - i);
+                if (i < tokens.size()) {
+                    assertSame(tokens.get(i), field.getToken());
+                } else {
+                    assertNull(field.getToken());
+                }
+            }
+        }
+    }
+
+    /**
+     * Only the columns marked dirty are compacted.
+     */
+    @Test
+    public void testDirtyColumns() {
+        GameSituation situation = createSituation(4, 6);
+        for (int col = 0; col < situation.getCols(); col++) {
+            situation.getField(col, 0).placeToken(new AtomToken(col % 3));
+        }
+
+        GravityEngine engine = new GravityEngine(situation, MOVER);
+        engine.markDirty(2);
+        assertEquals(1, engine.compact());
+
+        for (int col = 0; col < situation.getCols(); col++) {
+            int row = col == 2 ? situation.getRows() - 1 : 0;
+            assertTrue(situation.getField(col, row).getToken() != null);
+        }
+    }
+
+    /**
+     * Flushing lets a square of atoms fall into place, and removing it lets
+     * further atoms fall into a second square.
+     */
+    @Test
+    public void testCascade() {
+        GameSituation situation = createSituation(10, 10);
+        int bottom = situation.getRows() - 1;
+
+        // the indicators of the first round lie on the ground to the right
+        for (int col = 5; col < 5 + GameSituation.INDICATORS_IN_ROUND; col++) {
+            situation.getField(col, bottom).placeToken(new IndicatorToken(
+                    col % 3));
+        }
+
+        // columns 0 and 1 form a square of color 0 when falling, columns 1
+        // and 2 one of color 1 after it is removed
+        situation.getField(0, 2).placeToken(new AtomToken(0));
+        situation.getField(0, 3).placeToken(new AtomToken(0));
+        situation.getField(1, 0).placeToken(new AtomToken(1));
+        situation.getField(1, 1).placeToken(new AtomToken(1));
+        situation.getField(1, 2).placeToken(new AtomToken(0));
+        situation.getField(1, 3).placeToken(new AtomToken(0));
+        situation.getField(2, 2).placeToken(new AtomToken(1));
+        situation.getField(2, 3).placeToken(new AtomToken(1));
+
+        Game game = new Game(situation);
+        game.start();
+        game.flushTokens();
+
+        assertEquals(2, game.getLastCascadeLength());
+        assertEquals(2, game.getMoleculeNumber());
+        assertTrue(game.getScore() > 0);
+        for (int col = 0; col < 3; col++) {
+            for (int row = 0; row <= bottom; row++) {
+                assertNull(situation.getField(col, row).getToken());
+            }
+        }
+    }
+}
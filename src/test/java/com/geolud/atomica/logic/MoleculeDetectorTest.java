@@ -0,0 +1,210 @@
+package com.geolud.atomica.logic;
+
+import com.geolud.atomica.objects.DefaultGameSettings;
+import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.objects.Molecule;
+import com.geolud.atomica.objects.SituationSnapshot;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that scanning only the changed chunks finds the same Molecules as
+ * scanning the whole board.
+ *
+ * @author Georg Ludewig
+ */
+public class MoleculeDetectorTest {
+    /**
+     * Creates an empty situation.
+     *
+     * @param cols the number of columns
+     * @param rows the number of rows
+     * @return the situation
+     */
+    private static GameSituation createSituation(int cols, int rows) {
+        DefaultGameSettings settings = new DefaultGameSettings();
+        settings.setCols(cols);
+        settings.setRows(rows);
+        return new GameSituation(settings);
+    }
+
+    /**
+     * Places an atom, replacing the token of the field.
+     *
+     * @param situation  the situation
+     * @param col        the column of the field
+     * @param row        the row of the field
+     * @param colorIndex the color of the atom
+     */
+    private static void placeAtom(GameSituation situation, int col, int row,
+                                  int colorIndex) {
+        situation.getField(col, row).removeToken();
+        situation.getField(col, row).placeToken(SituationSnapshot
+                .decodeCell((byte) (colorIndex + 1)));
+    }
+
+    /**
+     * Places a block of atoms without its upper right corner, as if it had
+     * been there since the last detection, and then the corner.
+     *
+     * @param situation  the situation
+     * @param minCol     the first column of the block
+     * @param minRow     the first row of the block
+     * @param cols       the number of columns of the block
+     * @param rows       the number of rows of the block
+     * @param colorIndex the color of the atoms
+     */
+    private static void completeBlock(GameSituation situation, int minCol,
+                                      int minRow, int cols, int rows,
+                                      int colorIndex) {
+        int maxCol = minCol + cols - 1;
+        for (int row = Math.max(0, minRow - 1); row <= Math.min(situation
+                .getRows() - 1, minRow + rows); row++) {
+            for (int col = Math.max(0, minCol - 1); col <= Math.min(situation
+                    .getCols() - 1, maxCol + 1); col++) {
+                situation.getField(col, row).removeToken();
+            }
+        }
+        for (int row = minRow; row < minRow + rows; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                if (row != minRow || col != maxCol) {
+                    placeAtom(situation, col, row, colorIndex);
+                }
+            }
+        }
+
+        situation.clearDirtyChunks();
+        placeAtom(situation, maxCol, minRow, colorIndex);
+    }
+
+    /**
+     * Detects the Molecules of the changed chunks and compares them with a
+     * scan of the whole board.
+     *
+     * @param situation the situation
+     * @return the detected Molecules
+     */
+    private static ArrayList<Molecule> assertSameMolecules(
+            GameSituation situation) {
+        ArrayList<Molecule> expected = new MoleculeDetector(situation)
+                .detectMolecules();
+        ArrayList<Molecule> actual = new MoleculeDetector(situation)
+                .detectNewMolecules();
+
+        assertEquals(describe(expected), describe(actual));
+        return actual;
+    }
+
+    /**
+     * Describes the position, size and color of Molecules.
+     *
+     * @param molecules the Molecules
+     * @return the description
+     */
+    private static String describe(ArrayList<Molecule> molecules) {
+        StringBuilder description = new StringBuilder();
+        for (Molecule m : molecules) {
+            description.append(m.getColorIndex()).append('@')
+                    .append(m.getMinCol()).append(',').append(m.getMinRow())
+                    .append('-').append(m.getMaxCol()).append(',')
+                    .append(m.getMaxRow()).append('#').append(m.size())
+                    .append(' ');
+        }
+
+        return description.toString();
+    }
+
+    /**
+     * Removes the atoms of the detected Molecules, like the Game does.
+     *
+     * @param situation the situation
+     * @param molecules the detected Molecules
+     */
+    private static void removeMolecules(GameSituation situation,
+                                        ArrayList<Molecule> molecules) {
+        for (Molecule m : molecules) {
+            for (int i = 0; i < m.size(); i++) {
+                m.getAtom(i).getField().removeToken();
+            }
+        }
+    }
+
+    /**
+     * A block wider than a chunk starting two chunks left of the completing
+     * field is found as a whole.
+     */
+    @Test
+    public void testWideBlock() {
+        GameSituation situation = createSituation(100, 100);
+        situation.clearDirtyChunks();
+        completeBlock(situation, 31, 0, 34, 2, 0);
+
+        ArrayList<Molecule> molecules = assertSameMolecules(situation);
+        assertEquals(1, molecules.size());
+        assertEquals(31, molecules.get(0).getMinCol());
+        assertEquals(68, molecules.get(0).size());
+    }
+
+    /**
+     * A block taller than a chunk starting two chunks above the completing
+     * field is found as a whole.
+     */
+    @Test
+    public void testTallBlock() {
+        GameSituation situation = createSituation(100, 100);
+        situation.clearDirtyChunks();
+        completeBlock(situation, 40, 5, 3, 70, 1);
+
+        ArrayList<Molecule> molecules = assertSameMolecules(situation);
+        assertEquals(1, molecules.size());
+        assertEquals(5, molecules.get(0).getMinRow());
+        assertEquals(210, molecules.get(0).size());
+    }
+
+    /**
+     * Random changes and blocks of random size on a crowded board give the
+     * same Molecules as a scan of the whole board.
+     */
+    @Test
+    public void testRandomBoards() {
+        for (long seed = 1; seed <= 3; seed++) {
+            Random random = new Random(seed);
+            GameSituation situation = createSituation(100, 70);
+            for (int row = 0; row < situation.getRows(); row++) {
+                for (int col = 0; col < situation.getCols(); col++) {
+                    if (random.nextInt(10) < 7) {
+                        placeAtom(situation, col, row, random.nextInt(3));
+                    }
+                }
+            }
+
+            for (int round = 0; round < 24; round++) {
+                removeMolecules(situation, assertSameMolecules(situation));
+
+                if (round % 4 == 3) {
+                    int cols = 2 + random.nextInt(60);
+                    int rows = 2 + random.nextInt(2);
+                    if (random.nextBoolean()) {
+                        int swap = cols;
+                        cols = rows;
+                        rows = swap;
+                    }
+                    completeBlock(situation, random.nextInt(situation
+                            .getCols() - cols + 1), random.nextInt(situation
+                            .getRows() - rows + 1), cols, rows, random
+                            .nextInt(3));
+                } else {
+                    for (int i = 0; i < 200; i++) {
+                        placeAtom(situation, random.nextInt(situation
+                                .getCols()), random.nextInt(situation
+                                .getRows()), random.nextInt(3));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.geolud.atomica.logic;
+
+import com.geolud.atomica.objects.AtomToken;
+import com.geolud.atomica.objects.DefaultGameSettings;
+import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.objects.IndicatorToken;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that puzzles added to a library and saved are read back, also after
+ * removing puzzles from the mapped file.
+ *
+ * @author Georg Ludewig
+ */
+public class PuzzleLibraryTest {
+    /**
+     * The library file.
+     */
+    private File file;
+
+    /**
+     * Creates the library file name.
+     *
+     * @throws IOException if the file can't be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("atomica", ".library");
+        file.delete();
+    }
+
+    /**
+     * Deletes the library file.
+     */
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Creates a puzzle with atoms and indicators on random fields.
+     *
+     * @param random the source of the fields and colors
+     * @return the puzzle
+     */
+    private static GameSituation createPuzzle(Random random) {
+        DefaultGameSettings settings = new DefaultGameSettings();
+        settings.setCols(5 + random.nextInt(10));
+        settings.setRows(5 + random.nextInt(10));
+        GameSituation situation = new GameSituation(settings);
+        for (int row = 0; row < situation.getRows(); row++) {
+            for (int col = 0; col < situation.getCols(); col++) {
+                int r = random.nextInt(10);
+                if (r < 4) {
+                    situation.getField(col, row).placeToken(new AtomToken(
+                            random.nextInt(3)));
+                } else if (r == 4) {
+                    situation.getField(col, row).placeToken(
+                            new IndicatorToken(random.nextInt(3)));
+                }
+            }
+        }
+
+        return situation;
+    }
+
+    /**
+     * Asserts that the library holds the given puzzles in their order.
+     *
+     * @param expected the expected puzzles
+     * @param library  the library
+     * @throws IOException if a puzzle can't be decoded
+     */
+    private static void assertPuzzles(ArrayList<GameSituation> expected,
+                                      PuzzleLibrary library)
+            throws IOException {
+        assertEquals(expected.size(), library.size());
+        for (int i = 0; i < expected.size(); i++) {
+            GameSituation puzzle = expected.get(i);
+            GameSituation read = library.getSituation(i);
+            assertEquals(puzzle.getCols(), read.getCols());
+            assertEquals(puzzle.getRows(), read.getRows());
+            assertArrayEquals(puzzle.createSnapshot().copyCells(), read
+                    .createSnapshot().copyCells());
+
+            long hash = PuzzleLibrary.hash(puzzle.createSnapshot());
+            assertEquals(hash, library.getInfo(i).getPositionHash());
+            assertEquals(i, library.indexOf(hash));
+        }
+    }
+
+    /**
+     * Added puzzles are saved, and removing puzzles rewrites the mapped file
+     * including the unsaved ones.
+     *
+     * @throws IOException if the library can't be written or read
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random random = new Random(11);
+        ArrayList<GameSituation> puzzles = new ArrayList<GameSituation>();
+        PuzzleLibrary library = new PuzzleLibrary(file.getPath());
+        assertEquals(0, library.size());
+        for (int i = 0; i < 5; i++) {
+            puzzles.add(createPuzzle(random));
+            assertEquals(i, library.add(puzzles.get(i)));
+        }
+        assertTrue(library.isModified());
+        assertPuzzles(puzzles, library);
+
+        library.save();
+        assertFalse(library.isModified());
+        assertPuzzles(puzzles, library);
+        assertPuzzles(puzzles, new PuzzleLibrary(file.getPath()));
+
+        // remove from the mapped file while another puzzle is unsaved
+        puzzles.add(createPuzzle(random));
+        library.add(puzzles.get(5));
+        library.remove(1);
+        puzzles.remove(1);
+        library.remove(0);
+        puzzles.remove(0);
+        assertFalse(library.isModified());
+        assertPuzzles(puzzles, library);
+        assertPuzzles(puzzles, new PuzzleLibrary(file.getPath()));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+}
@@ -0,0 +1,68 @@
+package com.geolud.atomica.logic;
+
+import com.geolud.atomica.objects.BaseFactorScoringRules;
+import com.geolud.atomica.objects.DefaultGameSettings;
+import com.geolud.atomica.objects.Level;
+import com.geolud.atomica.objects.ScoringRules;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the precomputed scores equal the scores of the rules, within and
+ * beyond the tables.
+ *
+ * @author Georg Ludewig
+ */
+public class ScoreTableTest {
+    /**
+     * The largest molecule size, combo and cascade length checked, beyond
+     * the precomputed tables.
+     */
+    private static final int MAX = 100;
+
+    /**
+     * The default rules score as before: the square of the size, multiplied
+     * by the number of molecules of the round, regardless of cascades.
+     */
+    @Test
+    public void testDefaultRules() {
+        DefaultGameSettings settings = new DefaultGameSettings();
+        ScoreTable table = new ScoreTable(settings);
+        for (Level level : settings.getLevels()) {
+            for (int size = 4; size <= MAX; size++) {
+                for (int molecules = 1; molecules <= MAX; molecules += 3) {
+                    for (int link = 1; link <= MAX; link += 7) {
+                        assertEquals(size * size * molecules, table.getScore(
+                                level.getLevelNumber(), size, molecules,
+                                link));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The table looks up the same scores as the base factor rules compute.
+     */
+    @Test
+    public void testBaseFactorRules() {
+        DefaultGameSettings settings = new DefaultGameSettings();
+        ScoringRules rules = new BaseFactorScoringRules();
+        settings.setScoringRules(rules);
+        ScoreTable table = new ScoreTable(settings);
+        for (Level level : settings.getLevels()) {
+            for (int size = 4; size <= MAX; size++) {
+                for (int molecules = 1; molecules <= MAX; molecules += 3) {
+                    for (int link = 1; link <= MAX; link += 7) {
+                        assertEquals(rules.getMoleculeScore(level, size)
+                                * rules.getComboMultiplier(molecules)
+                                * rules.getCascadeMultiplier(link), table
+                                .getScore(level.getLevelNumber(), size,
+                                        molecules, link));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.geolud.atomica.logic.leaderboard;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the ranks counted by the ScoreIndex against counting all scores.
+ *
+ * @author Georg Ludewig
+ */
+public class ScoreIndexTest {
+    /**
+     * Counts the scores higher than the given one.
+     *
+     * @param scores all scores
+     * @param score  the score
+     * @return the number of higher scores
+     */
+    private static long countAbove(ArrayList<Integer> scores, int score) {
+        long count = 0;
+        for (int s : scores) {
+            if (s > score) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * An empty index ranks every score first.
+     */
+    @Test
+    public void testEmpty() {
+        ScoreIndex index = new ScoreIndex();
+        assertEquals(0, index.size());
+        assertEquals(0, index.countAbove(0));
+        assertEquals(0, index.countAbove(Integer.MIN_VALUE));
+    }
+
+    /**
+     * Random scores with many duplicates are counted like a linear scan.
+     */
+    @Test
+    public void testCountAbove() {
+        Random random = new Random(5);
+        ScoreIndex index = new ScoreIndex();
+        ArrayList<Integer> scores = new ArrayList<Integer>();
+        for (int i = 0; i < 3000; i++) {
+            int score = random.nextInt(500) * 10;
+            index.add(score);
+            scores.add(score);
+
+            if (i % 100 == 0) {
+                for (int probe = -10; probe <= 5010; probe += 5) {
+                    assertEquals("score " + probe, countAbove(scores, probe),
+                            index.countAbove(probe));
+                }
+            }
+        }
+        assertEquals(scores.size(), index.size());
+    }
+
+    /**
+     * Games with the same score share a rank in the leaderboard.
+     */
+    @Test
+    public void testSharedRank() {
+        Leaderboard leaderboard = new Leaderboard();
+        assertEquals(1, leaderboard.add(new LeaderboardEntry(100, 1, 0)));
+        assertEquals(1, leaderboard.add(new LeaderboardEntry(200, 1, 0)));
+        assertEquals(2, leaderboard.add(new LeaderboardEntry(100, 1, 0)));
+        assertEquals(4, leaderboard.add(new LeaderboardEntry(50, 1, 0)));
+        assertEquals(2, leaderboard.getRank(100));
+        assertEquals(4, leaderboard.size());
+    }
+}
@@ -0,0 +1,159 @@
+package com.geolud.atomica.logic.pathfinding;
+
+import com.geolud.atomica.objects.AtomToken;
+import com.geolud.atomica.objects.DefaultGameSettings;
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.GameSituation;
+import com.geolud.atomica.objects.IndicatorToken;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests that the paths found by the A* search are as short as the paths
+ * found by a breadth first search.
+ *
+ * @author Georg Ludewig
+ */
+public class PathFinderTest {
+    /**
+     * The number of searches on each board.
+     */
+    private static final int SEARCHES = 200;
+
+    /**
+     * Creates a situation with atoms and indicators on random fields.
+     *
+     * @param random  the source of the fields and colors
+     * @param cols    the number of columns
+     * @param rows    the number of rows
+     * @param percent the percentage of fields holding an atom
+     * @return the situation
+     */
+    private static GameSituation createSituation(Random random, int cols,
+                                                 int rows, int percent) {
+        DefaultGameSettings settings = new DefaultGameSettings();
+        settings.setCols(cols);
+        settings.setRows(rows);
+        GameSituation situation = new GameSituation(settings);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int r = random.nextInt(100);
+                if (r < percent) {
+                    situation.getField(col, row).placeToken(new AtomToken(
+                            random.nextInt(3)));
+                } else if (r < percent + 5) {
+                    situation.getField(col, row).placeToken(
+                            new IndicatorToken(random.nextInt(3)));
+                }
+            }
+        }
+
+        return situation;
+    }
+
+    /**
+     * Returns the number of steps of a shortest path by a breadth first
+     * search. Only atoms block the way, the starting field may hold one.
+     *
+     * @param situation the situation
+     * @param from      the starting field
+     * @param to        the destination field
+     * @return the number of steps or -1 if the destination can't be reached
+     */
+    private static int getDistance(GameSituation situation, Field from,
+                                   Field to) {
+        int cols = situation.getCols();
+        int rows = situation.getRows();
+        int[] distance = new int[cols * rows];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[cols * rows];
+        int head = 0;
+        int tail = 0;
+        int start = from.getRow() * cols + from.getCol();
+        distance[start] = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int cell = queue[head++];
+            int col = cell % cols;
+            int row = cell / cols;
+            int[] next = {col > 0 ? cell - 1 : -1,
+                    col < cols - 1 ? cell + 1 : -1,
+                    row > 0 ? cell - cols : -1,
+                    row < rows - 1 ? cell + cols : -1};
+            for (int n : next) {
+                if (n >= 0 && distance[n] < 0 && !situation.getField(n % cols,
+                        n / cols).isBlocked()) {
+                    distance[n] = distance[cell] + 1;
+                    queue[tail++] = n;
+                }
+            }
+        }
+
+        return distance[to.getRow() * cols + to.getCol()];
+    }
+
+    /**
+     * Searches paths between random fields and compares their lengths to the
+     * breadth first search.
+     *
+     * @param finder    the path finder
+     * @param random    the source of the fields
+     * @param situation the situation
+     */
+    private static void assertShortestPaths(PathFinder finder, Random random,
+                                            GameSituation situation) {
+        for (int i = 0; i < SEARCHES; i++) {
+            Field from = situation.getField(random.nextInt(situation
+                    .getCols()), random.nextInt(situation.getRows()));
+            Field to = situation.getField(random.nextInt(situation
+                    .getCols()), random.nextInt(situation.getRows()));
+            if (to.isBlocked() || from == to) {
+                continue;
+            }
+
+            Path path = finder.findShortestPath(situation, from, to);
+            int distance = getDistance(situation, from, to);
+            if (distance < 0) {
+                assertNull(path);
+                continue;
+            }
+
+            assertNotNull(path);
+            assertEquals(distance + 1, path.size());
+            assertSame(from, path.get(0));
+            assertSame(to, path.get(path.size() - 1));
+            for (int n = 1; n < path.size(); n++) {
+                Field previous = path.get(n - 1);
+                Field field = path.get(n);
+                assertEquals(1, Math.abs(field.getCol() - previous.getCol())
+                        + Math.abs(field.getRow() - previous.getRow()));
+                assertFalse(field.isBlocked());
+            }
+        }
+    }
+
+    /**
+     * The paths are shortest on small and large boards of different
+     * densities, searched by the same path finder.
+     */
+    @Test
+    public void testShortestPaths() {
+        Random random = new Random(3);
+        PathFinder finder = new PathFinder();
+        int[][] boards = {{9, 9}, {30, 30}, {120, 80}, {30, 30}};
+        for (int[] board : boards) {
+            for (int percent = 10; percent <= 50; percent += 20) {
+                assertShortestPaths(finder, random, createSituation(random,
+                        board[0], board[1], percent));
+            }
+        }
+    }
+}
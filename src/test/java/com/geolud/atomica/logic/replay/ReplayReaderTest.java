@@ -0,0 +1,101 @@
+package com.geolud.atomica.logic.replay;
+
+import com.geolud.atomica.logic.Game;
+import com.geolud.atomica.objects.AtomToken;
+import com.geolud.atomica.objects.DefaultGameSettings;
+import com.geolud.atomica.objects.Field;
+import com.geolud.atomica.objects.SituationSnapshot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that a replay written by the ReplayWriter gives back every step of
+ * the recorded game.
+ *
+ * @author Georg Ludewig
+ */
+public class ReplayReaderTest {
+    /**
+     * The replay file.
+     */
+    private File file;
+
+    /**
+     * Creates the replay file.
+     *
+     * @throws IOException if the file can't be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("atomica", ".replay");
+        file.delete();
+    }
+
+    /**
+     * Deletes the replay file.
+     */
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Every step of a seeded game, moves and flushes, is read back.
+     *
+     * @throws IOException if the replay can't be read
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        DefaultGameSettings settings = new DefaultGameSettings();
+        Game game = new Game(settings);
+        game.setSeed(42);
+        game.addGameEventListener(new ReplayWriter(file.getPath()));
+
+        ArrayList<SituationSnapshot> steps = new ArrayList<SituationSnapshot>();
+        game.start();
+        steps.add(game.getSituation().createSnapshot());
+
+        Random random = new Random(1);
+        for (int move = 0; move < 300 && !game.getIsGameOver(); move++) {
+            if (move % 37 == 36) {
+                game.flushTokens();
+                steps.add(game.getSituation().createSnapshot());
+                continue;
+            }
+
+            ArrayList<AtomToken> atoms = game.getSituation().getAtoms();
+            ArrayList<Field> empty = game.getSituation().getEmptyFields(true);
+            if (atoms.isEmpty() || empty.isEmpty()) {
+                break;
+            }
+            if (game.moveAtomToken(atoms.get(random.nextInt(atoms.size())),
+                    empty.get(random.nextInt(empty.size())))) {
+                steps.add(game.getSituation().createSnapshot());
+            }
+        }
+        game.close();
+
+        ReplayReader reader = new ReplayReader(file.getPath());
+        assertEquals(42, reader.getSeed());
+        assertEquals(game.getCols(), reader.getCols());
+        assertEquals(game.getRows(), reader.getRows());
+        assertEquals(steps.size(), reader.getStepCount());
+        for (int step = 0; step < steps.size(); step++) {
+            SituationSnapshot expected = steps.get(step);
+            SituationSnapshot actual = reader.getPosition(step);
+            assertEquals("score of step " + step, expected.getScore(), actual
+                    .getScore());
+            assertArrayEquals("board of step " + step, expected.copyCells(),
+                    actual.copyCells());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.geolud.atomica.ui.util.thumbnail;
+
+import com.geolud.atomica.objects.SituationSnapshot;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that thumbnails fit into the requested size for boards of any size.
+ *
+ * @author Georg Ludewig
+ */
+public class ThumbnailRendererTest {
+    /**
+     * The maximum width and height of the rendered thumbnails.
+     */
+    private static final int SIZE = 128;
+
+    /**
+     * Thumbnails of small and large boards fit into the requested square.
+     */
+    @Test
+    public void testSquareBoards() {
+        assertFits(render(8, 8), SIZE, SIZE);
+        assertFits(render(30, 30), SIZE, SIZE);
+        assertFits(render(100, 100), SIZE, SIZE);
+    }
+
+    /**
+     * Thumbnails of boards wider or taller than square keep the proportions
+     * of the board.
+     */
+    @Test
+    public void testOblongBoards() {
+        assertFits(render(100, 50), SIZE, SIZE / 2);
+        assertFits(render(40, 80), SIZE / 2, SIZE);
+    }
+
+    /**
+     * Renders an empty board of the given size into a thumbnail.
+     *
+     * @param cols the number of columns
+     * @param rows the number of rows
+     * @return the thumbnail
+     */
+    private BufferedImage render(int cols, int rows) {
+        SituationSnapshot snapshot = new SituationSnapshot(cols, rows,
+                new byte[cols * rows], 0, 1);
+        return new ThumbnailRenderer().render(snapshot, SIZE);
+    }
+
+    /**
+     * Checks that the image is not larger than the given size.
+     *
+     * @param image     the rendered image
+     * @param maxWidth  the maximum width
+     * @param maxHeight the maximum height
+     */
+    private void assertFits(BufferedImage image, int maxWidth, int maxHeight) {
+        assertTrue("width " + image.getWidth(), image.getWidth() <= maxWidth);
+        assertTrue("height " + image.getHeight(),
+                image.getHeight() <= maxHeight);
+    }
+}